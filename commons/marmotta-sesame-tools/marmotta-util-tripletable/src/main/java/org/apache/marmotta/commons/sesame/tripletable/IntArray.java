@@ -17,10 +17,12 @@
  */
 package org.apache.marmotta.commons.sesame.tripletable;
 
+import com.google.common.base.Charsets;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
+import org.openrdf.model.BNode;
 import org.openrdf.model.Literal;
 import org.openrdf.model.Resource;
 import org.openrdf.model.URI;
@@ -29,45 +31,60 @@ import org.openrdf.model.Value;
 import java.io.Serializable;
 import java.nio.IntBuffer;
 import java.util.Arrays;
+import java.util.UUID;
 
 /**
- * Add file description here!
+ * A key for triple indexes and triple registries. The key consists of the hash codes of the triple components
+ * (used for range lookups in sorted indexes) and a 128bit key computed from the content of all triple components.
+ * <p/>
+ * The 128bit key is computed with a fixed seed, so it is the same in all JVMs and can be shared between cluster
+ * nodes. Since equality is determined by the 128bit key, collisions of the component hash codes do not cause
+ * different triples to share a key.
  * <p/>
  * Author: Sebastian Schaffert
  */
 public final class IntArray implements Comparable<IntArray>, Serializable {
 
-    private static HashFunction hashFunction32 = Hashing.goodFastHash(32);
-    private static HashFunction hashFunction64 = Hashing.goodFastHash(64);
+    // murmur3 with a fixed seed, unlike Hashing.goodFastHash() the result does not change between JVM runs
+    private static HashFunction hashFunction128 = Hashing.murmur3_128();
+
+    private static final byte TYPE_NULL    = 0;
+    private static final byte TYPE_URI     = 1;
+    private static final byte TYPE_BNODE   = 2;
+    private static final byte TYPE_LITERAL = 3;
+    private static final byte TYPE_OTHER   = 4;
 
     private int[] data;
 
-    private HashCode hashCode32, hashCode64;
+    private long keyHigh, keyLow;
 
 
     public IntArray(int[] data) {
         this.data = data;
-    }
 
-    private void ensureHashCode() {
-        if(hashCode32 == null) {
-            Hasher hasher = hashFunction32.newHasher();
-            for(int i : data) {
-                hasher.putInt(i);
-            }
-            hashCode32 = hasher.hash();
+        Hasher hasher = hashFunction128.newHasher();
+        for(int i : data) {
+            hasher.putInt(i);
         }
+        setKey(hasher.hash());
     }
 
-    private void ensureLongHashCode() {
-        if(hashCode64 == null) {
-            Hasher hasher = hashFunction64.newHasher();
-            for(int i : data) {
-                hasher.putInt(i);
-            }
-            hashCode64 = hasher.hash();
-        }
+    private IntArray(int[] data, long keyHigh, long keyLow) {
+        this.data    = data;
+        this.keyHigh = keyHigh;
+        this.keyLow  = keyLow;
+    }
+
+    private void setKey(HashCode hashCode) {
+        byte[] bytes = hashCode.asBytes();
 
+        long high = 0, low = 0;
+        for(int i = 0; i < 8; i++) {
+            high = (high << 8) | (bytes[i] & 0xff);
+            low  = (low  << 8) | (bytes[i + 8] & 0xff);
+        }
+        keyHigh = high;
+        keyLow  = low;
     }
 
     public static final IntArray createSPOCKey(Resource subject, URI property, Value object, Resource context){
@@ -86,7 +103,29 @@ public final class IntArray implements Comparable<IntArray>, Serializable {
         bb.put(o);
         bb.put(c);
 
-        return new IntArray(bb.array());
+        IntArray result = new IntArray(bb.array(), 0, 0);
+        result.setKey(calcContentKey(subject, property, object, context));
+        return result;
+
+    }
+
+    /**
+     * Create the lower bound of a range lookup in an SPOC index, where unbound components are given as null.
+     */
+    public static final IntArray createSPOCMinKey(Resource subject, URI property, Value object, Resource context){
+
+        int s = subject != null ? subject.hashCode() : Integer.MIN_VALUE;
+        int p = property != null ? property.hashCode() : Integer.MIN_VALUE;
+        int o = object != null ? calcObjectHash(object) : Integer.MIN_VALUE;
+        int c = context != null ? context.hashCode() : Integer.MIN_VALUE;
+
+        IntBuffer bb = IntBuffer.allocate(4);
+        bb.put(s);
+        bb.put(p);
+        bb.put(o);
+        bb.put(c);
+
+        return new IntArray(bb.array(), Long.MIN_VALUE, Long.MIN_VALUE);
 
     }
 
@@ -106,7 +145,7 @@ public final class IntArray implements Comparable<IntArray>, Serializable {
         bb.put(o);
         bb.put(c);
 
-        return new IntArray(bb.array());
+        return new IntArray(bb.array(), Long.MAX_VALUE, Long.MAX_VALUE);
 
     }
 
@@ -126,7 +165,29 @@ public final class IntArray implements Comparable<IntArray>, Serializable {
         bb.put(p);
         bb.put(o);
 
-        return new IntArray(bb.array());
+        IntArray result = new IntArray(bb.array(), 0, 0);
+        result.setKey(calcContentKey(subject, property, object, context));
+        return result;
+
+    }
+
+    /**
+     * Create the lower bound of a range lookup in a CSPO index, where unbound components are given as null.
+     */
+    public static final IntArray createCSPOMinKey(Resource subject, URI property, Value object, Resource context){
+
+        int s = subject != null ? subject.hashCode() : Integer.MIN_VALUE;
+        int p = property != null ? property.hashCode() : Integer.MIN_VALUE;
+        int o = object != null ? calcObjectHash(object) : Integer.MIN_VALUE;
+        int c = context != null ? context.hashCode() : Integer.MIN_VALUE;
+
+        IntBuffer bb = IntBuffer.allocate(4);
+        bb.put(c);
+        bb.put(s);
+        bb.put(p);
+        bb.put(o);
+
+        return new IntArray(bb.array(), Long.MIN_VALUE, Long.MIN_VALUE);
 
     }
 
@@ -146,7 +207,7 @@ public final class IntArray implements Comparable<IntArray>, Serializable {
         bb.put(p);
         bb.put(o);
 
-        return new IntArray(bb.array());
+        return new IntArray(bb.array(), Long.MAX_VALUE, Long.MAX_VALUE);
 
     }
 
@@ -169,10 +230,77 @@ public final class IntArray implements Comparable<IntArray>, Serializable {
         }
     }
 
+    /**
+     * Compute the 128bit content key of a triple from the type and string values of its components, i.e. the
+     * same information that determines equality of Sesame values.
+     */
+    private static HashCode calcContentKey(Resource subject, URI property, Value object, Resource context) {
+        Hasher hasher = hashFunction128.newHasher();
+        putValue(hasher, subject);
+        putValue(hasher, property);
+        putValue(hasher, object);
+        putValue(hasher, context);
+        return hasher.hash();
+    }
+
+    private static void putValue(Hasher hasher, Value value) {
+        if(value == null) {
+            hasher.putByte(TYPE_NULL);
+        } else if(value instanceof URI) {
+            hasher.putByte(TYPE_URI);
+            putString(hasher, value.stringValue());
+        } else if(value instanceof BNode) {
+            hasher.putByte(TYPE_BNODE);
+            putString(hasher, value.stringValue());
+        } else if(value instanceof Literal) {
+            Literal l = (Literal) value;
+            hasher.putByte(TYPE_LITERAL);
+            putString(hasher, l.getLabel());
+            putString(hasher, l.getLanguage());
+            putString(hasher, l.getDatatype() != null ? l.getDatatype().stringValue() : null);
+        } else {
+            hasher.putByte(TYPE_OTHER);
+            putString(hasher, value.stringValue());
+        }
+    }
+
+    // strings are length-prefixed so that the boundaries between components are unambiguous
+    private static void putString(Hasher hasher, String value) {
+        if(value == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(value.length());
+            hasher.putString(value, Charsets.UTF_8);
+        }
+    }
+
+    /**
+     * Return the upper 64 bits of the 128bit content key.
+     */
+    public long getKeyHigh() {
+        return keyHigh;
+    }
+
+    /**
+     * Return the lower 64 bits of the 128bit content key.
+     */
+    public long getKeyLow() {
+        return keyLow;
+    }
+
+    /**
+     * Return the 128bit content key as UUID, a compact serializable representation that can be used as key in
+     * (distributed) maps.
+     */
+    public UUID getKey() {
+        return new UUID(keyHigh, keyLow);
+    }
+
     @Override
     public String toString() {
         return "IntArray{" +
                 "data=" + Arrays.toString(data) +
+                ", key=" + getKey() +
                 '}';
     }
 
@@ -185,6 +313,13 @@ public final class IntArray implements Comparable<IntArray>, Serializable {
                 return 1;
             }
         }
+
+        // equal component hashes, order by content key
+        if(keyHigh != o.keyHigh) {
+            return keyHigh < o.keyHigh ? -1 : 1;
+        } else if(keyLow != o.keyLow) {
+            return keyLow < o.keyLow ? -1 : 1;
+        }
         return 0;
     }
 
@@ -196,18 +331,16 @@ public final class IntArray implements Comparable<IntArray>, Serializable {
 
         IntArray intArray = (IntArray) o;
 
-        return Arrays.equals(data, intArray.data);
+        return keyHigh == intArray.keyHigh && keyLow == intArray.keyLow && Arrays.equals(data, intArray.data);
 
     }
 
     @Override
     public int hashCode() {
-        ensureHashCode();
-        return hashCode32.asInt();
+        return (int) (keyLow ^ (keyLow >>> 32));
     }
 
     public long longHashCode() {
-        ensureLongHashCode();
-        return hashCode64.asLong();
+        return keyLow;
     }
 }
@@ -410,41 +410,50 @@ public class TripleTable<Triple extends Statement> implements Set<Triple>, Seria
                 (  (subject != null && property != null && object != null)
                  || (subject != null && property != null)
                  || subject != null)) {
-            IntArray fromKey = IntArray.createSPOCKey(subject, property, object, context);
+            IntArray fromKey = IntArray.createSPOCMinKey(subject, property, object, context);
             IntArray toKey   = IntArray.createSPOCMaxKey(subject, property, object, context);
 
-            return indexSPOC.subMap(fromKey,true,toKey,true).values();
+            // the index is ordered by hash codes, so the range may contain triples with colliding hash codes
+            return filter(indexSPOC.subMap(fromKey,true,toKey,true).values(), subject, property, object, context);
         } else if(  (context != null && subject != null && property != null)
                  || (context != null && subject != null)
                  || context != null) {
-            IntArray fromKey = IntArray.createCSPOKey(subject, property, object, context);
+            IntArray fromKey = IntArray.createCSPOMinKey(subject, property, object, context);
             IntArray toKey   = IntArray.createCSPOMaxKey(subject, property, object, context);
 
-            return indexCSPO.subMap(fromKey,true,toKey,true).values();
+            return filter(indexCSPO.subMap(fromKey,true,toKey,true).values(), subject, property, object, context);
         } else {
             // in all other cases we need to iterate and filter :-(
-            Predicate<Statement> p = new Predicate<Statement>() {
-                @Override
-                public boolean apply(Statement triple) {
-                    if(subject != null && !triple.getSubject().equals(subject)) {
-                        return false;
-                    }
-                    if(property != null && !triple.getPredicate().equals(property)) {
-                        return false;
-                    }
-                    if(object != null && !triple.getObject().equals(object)) {
-                        return false;
-                    }
-                    if(context != null && !triple.getContext().equals(context)) {
-                        return false;
-                    }
-
-                    return true;
+            return filter(data, subject, property, object, context);
+        }
+    }
+
+    /**
+     * Return a view of the given triples that only contains triples matching the filter criteria. Arguments with null
+     * value are treated as wildcards.
+     */
+    private Collection<Triple> filter(Collection<Triple> triples, final Resource subject, final URI property, final Value object, final Resource context) {
+        Predicate<Statement> p = new Predicate<Statement>() {
+            @Override
+            public boolean apply(Statement triple) {
+                if(subject != null && !triple.getSubject().equals(subject)) {
+                    return false;
+                }
+                if(property != null && !triple.getPredicate().equals(property)) {
+                    return false;
+                }
+                if(object != null && !triple.getObject().equals(object)) {
+                    return false;
+                }
+                if(context != null && !triple.getContext().equals(context)) {
+                    return false;
                 }
-            };
 
-            return Collections2.filter(data, p);
-        }
+                return true;
+            }
+        };
+
+        return Collections2.filter(triples, p);
     }
 
     public synchronized Collection<Resource> listContextIDs() {
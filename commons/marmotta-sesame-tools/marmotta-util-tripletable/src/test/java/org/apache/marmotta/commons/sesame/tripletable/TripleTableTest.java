@@ -28,6 +28,7 @@ import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.URIImpl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 /**
  * Test cases for triple tables.
@@ -125,4 +126,42 @@ public class TripleTableTest {
         assertEquals(0, table.listTriples(subject2,predicate2,object2,null, true).size());
     }
 
+
+    /**
+     * Triples whose components have the same Java hash codes ("Aa" and "BB") must still be distinguished.
+     */
+    @Test
+    public void testHashCollisions() {
+        URI subject1 = new URIImpl("http://localhost/Aa");
+        URI subject2 = new URIImpl("http://localhost/BB");
+        URI predicate = new URIImpl("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+        Literal object = new LiteralImpl(RandomStringUtils.randomAlphanumeric(8));
+
+        assertEquals(subject1.hashCode(), subject2.hashCode());
+
+        Statement stmt1 = new StatementImpl(subject1,predicate,object);
+        Statement stmt2 = new StatementImpl(subject2,predicate,object);
+
+        IntArray key1 = IntArray.createSPOCKey(subject1, predicate, object, null);
+        IntArray key2 = IntArray.createSPOCKey(subject2, predicate, object, null);
+
+        assertNotEquals(key1, key2);
+        assertNotEquals(key1.getKey(), key2.getKey());
+        assertEquals(key1, IntArray.createSPOCKey(new URIImpl("http://localhost/Aa"), predicate, object, null));
+        assertEquals(key1.getKey(), IntArray.createSPOCKey(new URIImpl("http://localhost/Aa"), predicate, object, null).getKey());
+
+        TripleTable<Statement> table = new TripleTable<>();
+        table.add(stmt1);
+        table.add(stmt2);
+
+        assertEquals(2, table.size());
+        assertEquals(1, table.listTriples(subject1,predicate,object,null, true).size());
+        assertEquals(1, table.listTriples(subject2,predicate,object,null, true).size());
+        assertEquals(1, table.listTriples(subject1,null,null,null, true).size());
+        assertEquals(2, table.listTriples(null,predicate,null,null, true).size());
+
+        table.remove(stmt1);
+        assertEquals(0, table.listTriples(subject1,predicate,object,null, true).size());
+        assertEquals(1, table.listTriples(subject2,predicate,object,null, true).size());
+    }
 }
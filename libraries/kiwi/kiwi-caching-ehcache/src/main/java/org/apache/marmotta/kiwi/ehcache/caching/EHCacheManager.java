@@ -23,6 +23,7 @@ import org.apache.marmotta.kiwi.ehcache.util.CacheMap;
 import org.apache.marmotta.kiwi.model.rdf.*;
 
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * KiWi Cache Manager implementation based on EHCache. Best used for single machine production environments.
@@ -42,7 +43,7 @@ public class EHCacheManager implements CacheManager {
     private CacheMap<String,KiWiNamespace> nsPrefixCache;
     private CacheMap<String,KiWiNamespace> nsUriCache;
 
-    private CacheMap<Long,Long> registryCache;
+    private CacheMap<UUID,Long> registryCache;
 
     public EHCacheManager(KiWiConfiguration configuration) {
         cacheManager = net.sf.ehcache.CacheManager.newInstance(EHCacheManager.class.getResource("/ehcache-kiwi.xml"));
@@ -163,7 +164,7 @@ public class EHCacheManager implements CacheManager {
      * @return
      */
     @Override
-    public Map<Long, Long> getRegistryCache() {
+    public Map<UUID, Long> getRegistryCache() {
         if(registryCache == null) {
             registryCache = new CacheMap<>(cacheManager.getCache((REGISTRY_CACHE)));
         }
@@ -23,7 +23,9 @@ import com.hazelcast.config.MaxSizeConfig;
 import com.hazelcast.config.SerializerConfig;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
 import org.apache.marmotta.kiwi.caching.CacheManager;
+import org.apache.marmotta.kiwi.caching.WriteBehindMap;
 import org.apache.marmotta.kiwi.config.CacheMode;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.hazelcast.serializer.*;
@@ -32,7 +34,11 @@ import org.apache.marmotta.kiwi.model.rdf.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Add file description here!
@@ -49,15 +55,19 @@ public class HazelcastCacheManager implements CacheManager {
 
     private HazelcastInstance hazelcast;
 
-    private AsyncMap<Long,KiWiNode> nodeCache;
-    private AsyncMap<Long,KiWiTriple> tripleCache;
-    private AsyncMap<String,KiWiUriResource> uriCache;
-    private AsyncMap<String,KiWiAnonResource> bnodeCache;
-    private AsyncMap<String,KiWiLiteral> literalCache;
-    private AsyncMap<String,KiWiNamespace> nsPrefixCache;
-    private AsyncMap<String,KiWiNamespace> nsUriCache;
+    private Map<Long,KiWiNode> nodeCache;
+    private Map<Long,KiWiTriple> tripleCache;
+    private Map<String,KiWiUriResource> uriCache;
+    private Map<String,KiWiAnonResource> bnodeCache;
+    private Map<String,KiWiLiteral> literalCache;
+    private Map<String,KiWiNamespace> nsPrefixCache;
+    private Map<String,KiWiNamespace> nsUriCache;
 
-    private Map<Long,Long> registryCache;
+    private Map<UUID,Long> registryCache;
+
+    // executor and maps used in WRITE_BEHIND cache write mode
+    private ScheduledExecutorService writeBehindExecutor;
+    private List<WriteBehindMap> writeBehindMaps = new ArrayList<>();
 
     public HazelcastCacheManager(KiWiConfiguration configuration) {
         this.configuration = configuration;
@@ -142,6 +152,25 @@ public class HazelcastCacheManager implements CacheManager {
         hcConfiguration.addMapConfig(cfg);
     }
 
+    /**
+     * Wrap the Hazelcast map according to the configured cache write mode (synchronous, asynchronous or write-behind)
+     */
+    private synchronized <K,V> Map<K,V> wrap(IMap<K,V> map) {
+        switch (configuration.getCacheWriteMode()) {
+            case STRICT:
+                return map;
+            case WRITE_BEHIND:
+                if(writeBehindExecutor == null) {
+                    writeBehindExecutor = WriteBehindMap.createFlushExecutor("Hazelcast " + configuration.getClusterName());
+                }
+                WriteBehindMap<K,V> writeBehindMap = new WriteBehindMap<>(map, configuration.getCacheWriteBehindQueueSize(), configuration.getCacheWriteBehindInterval(), writeBehindExecutor);
+                writeBehindMaps.add(writeBehindMap);
+                return writeBehindMap;
+            default:
+                return new AsyncMap<>(map);
+        }
+    }
+
     /**
      * Return the node id -> node cache from the cache manager. This cache is heavily used to lookup
      * nodes when querying or loading triples and should therefore have a decent size (default 500.000 elements).
@@ -151,7 +180,7 @@ public class HazelcastCacheManager implements CacheManager {
     @Override
     public Map<Long, KiWiNode> getNodeCache() {
         if(nodeCache == null) {
-            nodeCache = new AsyncMap<>(hazelcast.<Long,KiWiNode>getMap(NODE_CACHE));
+            nodeCache = wrap(hazelcast.<Long,KiWiNode>getMap(NODE_CACHE));
         }
 
         return nodeCache;
@@ -166,7 +195,7 @@ public class HazelcastCacheManager implements CacheManager {
     @Override
     public Map<Long, KiWiTriple> getTripleCache() {
         if(tripleCache == null) {
-            tripleCache = new AsyncMap<>(hazelcast.<Long,KiWiTriple>getMap(TRIPLE_CACHE));
+            tripleCache = wrap(hazelcast.<Long,KiWiTriple>getMap(TRIPLE_CACHE));
         }
 
         return tripleCache;
@@ -181,7 +210,7 @@ public class HazelcastCacheManager implements CacheManager {
     @Override
     public Map<String, KiWiUriResource> getUriCache() {
         if(uriCache == null) {
-            uriCache = new AsyncMap<>(hazelcast.<String,KiWiUriResource>getMap(URI_CACHE));
+            uriCache = wrap(hazelcast.<String,KiWiUriResource>getMap(URI_CACHE));
         }
 
         return uriCache;
@@ -196,7 +225,7 @@ public class HazelcastCacheManager implements CacheManager {
     @Override
     public Map<String, KiWiAnonResource> getBNodeCache() {
         if(bnodeCache == null) {
-            bnodeCache = new AsyncMap<>(hazelcast.<String,KiWiAnonResource>getMap(BNODE_CACHE));
+            bnodeCache = wrap(hazelcast.<String,KiWiAnonResource>getMap(BNODE_CACHE));
         }
 
         return bnodeCache;
@@ -212,7 +241,7 @@ public class HazelcastCacheManager implements CacheManager {
     @Override
     public Map<String, KiWiLiteral> getLiteralCache() {
         if(literalCache == null) {
-            literalCache = new AsyncMap<>(hazelcast.<String,KiWiLiteral>getMap(LITERAL_CACHE));
+            literalCache = wrap(hazelcast.<String,KiWiLiteral>getMap(LITERAL_CACHE));
         }
 
         return literalCache;
@@ -226,7 +255,7 @@ public class HazelcastCacheManager implements CacheManager {
     @Override
     public Map<String, KiWiNamespace> getNamespaceUriCache() {
         if(nsUriCache == null) {
-            nsUriCache = new AsyncMap<>(hazelcast.<String,KiWiNamespace>getMap(NS_URI_CACHE));
+            nsUriCache = wrap(hazelcast.<String,KiWiNamespace>getMap(NS_URI_CACHE));
         }
 
         return nsUriCache;
@@ -240,7 +269,7 @@ public class HazelcastCacheManager implements CacheManager {
     @Override
     public Map<String, KiWiNamespace> getNamespacePrefixCache() {
         if(nsPrefixCache == null) {
-            nsPrefixCache = new AsyncMap<>(hazelcast.<String,KiWiNamespace>getMap(NS_PREFIX_CACHE));
+            nsPrefixCache = wrap(hazelcast.<String,KiWiNamespace>getMap(NS_PREFIX_CACHE));
         }
 
         return nsPrefixCache;
@@ -253,7 +282,7 @@ public class HazelcastCacheManager implements CacheManager {
      * @return
      */
     @Override
-    public Map<Long, Long> getRegistryCache() {
+    public Map<UUID, Long> getRegistryCache() {
         if(registryCache == null) {
             registryCache = hazelcast.getMap(REGISTRY_CACHE);
         }
@@ -299,6 +328,15 @@ public class HazelcastCacheManager implements CacheManager {
      */
     @Override
     public void shutdown() {
+        synchronized (this) {
+            // write all queued cache updates before leaving the cluster
+            for(WriteBehindMap m : writeBehindMaps) {
+                m.close();
+            }
+            if(writeBehindExecutor != null) {
+                writeBehindExecutor.shutdown();
+            }
+        }
         hazelcast.shutdown();
     }
 }
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test.cluster;
+
+import org.apache.marmotta.kiwi.config.CacheMode;
+import org.apache.marmotta.kiwi.config.CacheWriteMode;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.hazelcast.caching.HazelcastCacheManager;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.persistence.h2.H2Dialect;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * Benchmark the cache write modes against an embedded two-member Hazelcast cluster: measures the time spent by the
+ * writing thread (the part that would be on the commit path) and checks that all writes reach the other member.
+ */
+public class HazelcastWriteModeTest {
+
+    private static Logger log = LoggerFactory.getLogger(HazelcastWriteModeTest.class);
+
+    private static final int NODES = 10000;
+
+    // each node is written this many times, like repeated cache updates of the same node during a transaction
+    private static final int REPEATS = 3;
+
+    @Test
+    public void testStrict() throws InterruptedException {
+        runBenchmark(CacheWriteMode.STRICT, 61231);
+    }
+
+    @Test
+    public void testAsync() throws InterruptedException {
+        runBenchmark(CacheWriteMode.ASYNC, 61232);
+    }
+
+    @Test
+    public void testWriteBehind() throws InterruptedException {
+        runBenchmark(CacheWriteMode.WRITE_BEHIND, 61233);
+    }
+
+    private void runBenchmark(CacheWriteMode mode, int port) throws InterruptedException {
+        HazelcastCacheManager writer = new HazelcastCacheManager(createConfiguration(mode, port, 1));
+        HazelcastCacheManager reader = new HazelcastCacheManager(createConfiguration(mode, port, 2));
+        try {
+            Map<Long,KiWiNode> writerCache = writer.getNodeCache();
+            Map<Long,KiWiNode> readerCache = reader.getNodeCache();
+
+            long start = System.nanoTime();
+            for(int r = 0; r < REPEATS; r++) {
+                for(long id = 1; id <= NODES; id++) {
+                    KiWiUriResource node = new KiWiUriResource("http://localhost/resource/" + id);
+                    node.setId(id);
+                    writerCache.put(id, node);
+                }
+            }
+            long writeTime = System.nanoTime() - start;
+
+            // wait until all writes have reached the other cluster member
+            long last = NODES;
+            for(int i = 0; i < 600 && readerCache.get(last) == null; i++) {
+                Thread.sleep(100);
+            }
+            long visibleTime = System.nanoTime() - start;
+
+            log.info("{}: {} cache writes took {} ms on the writing thread ({} µs per write), visible in the cluster after {} ms",
+                    mode, NODES * REPEATS, writeTime / 1000000, writeTime / 1000 / (NODES * REPEATS), visibleTime / 1000000);
+
+            for(long id = 1; id <= NODES; id += 97) {
+                KiWiNode node = readerCache.get(id);
+                Assert.assertNotNull("node " + id + " has not been written to the cluster", node);
+                Assert.assertEquals("http://localhost/resource/" + id, node.stringValue());
+            }
+        } finally {
+            writer.shutdown();
+            reader.shutdown();
+        }
+    }
+
+    private static KiWiConfiguration createConfiguration(CacheWriteMode mode, int port, int datacenterId) {
+        KiWiConfiguration config = new KiWiConfiguration(
+                "default-H2",
+                "jdbc:h2:mem:kiwitest;MVCC=true;DB_CLOSE_ON_EXIT=TRUE;DB_CLOSE_DELAY=-1",
+                "kiwi", "kiwi",
+                new H2Dialect());
+        config.setDatacenterId(datacenterId);
+        config.setClustered(true);
+        config.setClusterName("WriteModeTest-" + mode);
+        config.setClusterPort(port);
+        config.setCacheMode(CacheMode.DISTRIBUTED);
+        config.setCacheWriteMode(mode);
+        return config;
+    }
+}
@@ -19,6 +19,8 @@ package org.apache.marmotta.kiwi.infinispan.embedded;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.marmotta.kiwi.caching.CacheManager;
+import org.apache.marmotta.kiwi.caching.WriteBehindMap;
+import org.apache.marmotta.kiwi.config.CacheWriteMode;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.infinispan.externalizer.*;
 import org.apache.marmotta.kiwi.infinispan.util.AsyncMap;
@@ -40,8 +42,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -62,6 +67,10 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
 
     private Map nodeCache, tripleCache, uriCache, literalCache, bnodeCache, nsPrefixCache, nsUriCache, registryCache;
 
+    // executor and maps used in WRITE_BEHIND cache write mode
+    private ScheduledExecutorService writeBehindExecutor;
+    private List<WriteBehindMap> writeBehindMaps = new ArrayList<>();
+
 
     /**
      * Create a new cache manager with its own automatically created Infinispan instance.
@@ -152,11 +161,15 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
                     .addAdvancedExternalizer(externalizers)
                 .build();
 
-        defaultConfiguration = new ConfigurationBuilder()
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        if(config.getCacheWriteMode() == CacheWriteMode.STRICT) {
+            builder.clustering().cacheMode(CacheMode.DIST_SYNC);
+        } else {
+            builder.clustering().cacheMode(CacheMode.DIST_ASYNC).async().asyncMarshalling();
+        }
+
+        defaultConfiguration = builder
                 .clustering()
-                    .cacheMode(CacheMode.DIST_ASYNC)
-                    .async()
-                        .asyncMarshalling()
                     .l1()
                         .lifespan(5, TimeUnit.MINUTES)
                     .hash()
@@ -207,11 +220,15 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
                     .addAdvancedExternalizer(externalizers)
                 .build();
 
-        defaultConfiguration = new ConfigurationBuilder()
+        ConfigurationBuilder builder = new ConfigurationBuilder();
+        if(config.getCacheWriteMode() == CacheWriteMode.STRICT) {
+            builder.clustering().cacheMode(CacheMode.REPL_SYNC);
+        } else {
+            builder.clustering().cacheMode(CacheMode.REPL_ASYNC).async().asyncMarshalling();
+        }
+
+        defaultConfiguration = builder
                 .clustering()
-                    .cacheMode(CacheMode.REPL_ASYNC)
-                    .async()
-                        .asyncMarshalling()
                     .stateTransfer()
                         .fetchInMemoryState(false)
                     .timeout(config.getClusterTimeout())
@@ -247,6 +264,25 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
         };
     }
 
+    /**
+     * Wrap the cache according to the configured cache write mode (synchronous, asynchronous or write-behind)
+     */
+    private synchronized Map wrap(Cache cache) {
+        switch (config.getCacheWriteMode()) {
+            case STRICT:
+                return cache;
+            case WRITE_BEHIND:
+                if(writeBehindExecutor == null) {
+                    writeBehindExecutor = WriteBehindMap.createFlushExecutor("Infinispan " + config.getClusterName());
+                }
+                WriteBehindMap writeBehindMap = new WriteBehindMap(cache, config.getCacheWriteBehindQueueSize(), config.getCacheWriteBehindInterval(), writeBehindExecutor);
+                writeBehindMaps.add(writeBehindMap);
+                return writeBehindMap;
+            default:
+                return new AsyncMap(cache);
+        }
+    }
+
     /**
      * Return the node id -> node cache from the cache manager. This cache is heavily used to lookup
      * nodes when querying or loading triples and should therefore have a decent size (default 500.000 elements).
@@ -264,7 +300,7 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
                     .build();
             cacheManager.defineConfiguration(NODE_CACHE, nodeConfiguration);
 
-            nodeCache = new AsyncMap(cacheManager.getCache(NODE_CACHE).getAdvancedCache().withFlags(Flag.SKIP_LOCKING, Flag.SKIP_CACHE_LOAD, Flag.SKIP_REMOTE_LOOKUP));
+            nodeCache = wrap(cacheManager.getCache(NODE_CACHE).getAdvancedCache().withFlags(Flag.SKIP_LOCKING, Flag.SKIP_CACHE_LOAD, Flag.SKIP_REMOTE_LOOKUP));
         }
 
         return nodeCache;
@@ -289,7 +325,7 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
                     .build();
             cacheManager.defineConfiguration(TRIPLE_CACHE, tripleConfiguration);
 
-            tripleCache = new AsyncMap(cacheManager.getCache(TRIPLE_CACHE).getAdvancedCache().withFlags(Flag.SKIP_LOCKING, Flag.SKIP_CACHE_LOAD, Flag.SKIP_REMOTE_LOOKUP));
+            tripleCache = wrap(cacheManager.getCache(TRIPLE_CACHE).getAdvancedCache().withFlags(Flag.SKIP_LOCKING, Flag.SKIP_CACHE_LOAD, Flag.SKIP_REMOTE_LOOKUP));
         }
         return tripleCache;
     }
@@ -309,7 +345,7 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
                     .build();
             cacheManager.defineConfiguration(URI_CACHE, uriConfiguration);
 
-            uriCache = new AsyncMap(cacheManager.getCache(URI_CACHE).getAdvancedCache().withFlags(Flag.SKIP_LOCKING, Flag.SKIP_CACHE_LOAD, Flag.SKIP_REMOTE_LOOKUP));
+            uriCache = wrap(cacheManager.getCache(URI_CACHE).getAdvancedCache().withFlags(Flag.SKIP_LOCKING, Flag.SKIP_CACHE_LOAD, Flag.SKIP_REMOTE_LOOKUP));
         }
         return uriCache;
     }
@@ -329,7 +365,7 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
                     .build();
             cacheManager.defineConfiguration(BNODE_CACHE, bnodeConfiguration);
 
-            bnodeCache = new AsyncMap(cacheManager.getCache(BNODE_CACHE).getAdvancedCache().withFlags(Flag.SKIP_LOCKING, Flag.SKIP_CACHE_LOAD, Flag.SKIP_REMOTE_LOOKUP));
+            bnodeCache = wrap(cacheManager.getCache(BNODE_CACHE).getAdvancedCache().withFlags(Flag.SKIP_LOCKING, Flag.SKIP_CACHE_LOAD, Flag.SKIP_REMOTE_LOOKUP));
         }
         return bnodeCache;
     }
@@ -349,7 +385,7 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
                     .build();
             cacheManager.defineConfiguration(LITERAL_CACHE, literalConfiguration);
 
-            literalCache = new AsyncMap(cacheManager.getCache(LITERAL_CACHE).getAdvancedCache().withFlags(Flag.SKIP_LOCKING, Flag.SKIP_CACHE_LOAD, Flag.SKIP_REMOTE_LOOKUP));
+            literalCache = wrap(cacheManager.getCache(LITERAL_CACHE).getAdvancedCache().withFlags(Flag.SKIP_LOCKING, Flag.SKIP_CACHE_LOAD, Flag.SKIP_REMOTE_LOOKUP));
         }
         return literalCache;
     }
@@ -381,7 +417,7 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
                 cacheManager.defineConfiguration(NS_URI_CACHE, nsuriConfiguration);
             }
 
-            nsUriCache = new AsyncMap(cacheManager.getCache(NS_URI_CACHE).getAdvancedCache().withFlags(Flag.SKIP_LOCKING, Flag.SKIP_CACHE_LOAD, Flag.SKIP_REMOTE_LOOKUP));
+            nsUriCache = wrap(cacheManager.getCache(NS_URI_CACHE).getAdvancedCache().withFlags(Flag.SKIP_LOCKING, Flag.SKIP_CACHE_LOAD, Flag.SKIP_REMOTE_LOOKUP));
         }
         return nsUriCache;
     }
@@ -472,6 +508,15 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
      * Clear all caches managed by this cache manager.
      */
     public void clear() {
+        synchronized (this) {
+            // drop queued cache updates, they must not be written after the caches have been cleared
+            for(WriteBehindMap m : writeBehindMaps) {
+                m.clear();
+                m.close();
+            }
+            writeBehindMaps.clear();
+        }
+
         Set<String> set =  cacheManager.getCacheNames();
         for (String cacheName : set) {
             Cache<String, Object> cache = cacheManager.getCache(cacheName);
@@ -492,6 +537,18 @@ public class InfinispanEmbeddedCacheManager implements CacheManager {
      * Shutdown this cache manager instance. Will shutdown the underlying EHCache cache manager.
      */
     public void shutdown() {
+        synchronized (this) {
+            // write all queued cache updates before leaving the cluster
+            for(WriteBehindMap m : writeBehindMaps) {
+                m.close();
+            }
+            writeBehindMaps.clear();
+            if(writeBehindExecutor != null) {
+                writeBehindExecutor.shutdown();
+                writeBehindExecutor = null;
+            }
+        }
+
         try {
             if(cacheManager.getStatus() == ComponentStatus.RUNNING) {
                 log.warn("shutting down cache manager ...");
@@ -18,9 +18,11 @@
 package org.apache.marmotta.kiwi.infinispan.remote;
 
 import org.apache.marmotta.kiwi.caching.CacheManager;
+import org.apache.marmotta.kiwi.caching.WriteBehindMap;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.infinispan.util.AsyncMap;
 import org.apache.marmotta.kiwi.model.rdf.*;
+import org.infinispan.client.hotrod.RemoteCache;
 import org.infinispan.client.hotrod.RemoteCacheManager;
 import org.infinispan.client.hotrod.configuration.Configuration;
 import org.infinispan.client.hotrod.configuration.ConfigurationBuilder;
@@ -28,7 +30,11 @@ import org.infinispan.commons.CacheException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Implementation of an Infinispan cache manager with a remote (client-server) cache.
@@ -45,6 +51,10 @@ public class InfinispanRemoteCacheManager implements CacheManager {
 
     private Map nodeCache, tripleCache, uriCache, literalCache, bnodeCache, nsPrefixCache, nsUriCache, registryCache;
 
+    // executor and maps used in WRITE_BEHIND cache write mode
+    private ScheduledExecutorService writeBehindExecutor;
+    private List<WriteBehindMap> writeBehindMaps = new ArrayList<>();
+
 
     public InfinispanRemoteCacheManager(KiWiConfiguration configuration) {
         this.configuration = configuration;
@@ -64,6 +74,25 @@ public class InfinispanRemoteCacheManager implements CacheManager {
     }
 
 
+    /**
+     * Wrap the remote cache according to the configured cache write mode (synchronous, asynchronous or write-behind)
+     */
+    private synchronized Map wrap(RemoteCache cache) {
+        switch (configuration.getCacheWriteMode()) {
+            case STRICT:
+                return cache;
+            case WRITE_BEHIND:
+                if(writeBehindExecutor == null) {
+                    writeBehindExecutor = WriteBehindMap.createFlushExecutor("HotRod " + configuration.getClusterName());
+                }
+                WriteBehindMap writeBehindMap = new WriteBehindMap(cache, configuration.getCacheWriteBehindQueueSize(), configuration.getCacheWriteBehindInterval(), writeBehindExecutor);
+                writeBehindMaps.add(writeBehindMap);
+                return writeBehindMap;
+            default:
+                return new AsyncMap(cache);
+        }
+    }
+
     /**
      * Return the node id -> node cache from the cache manager. This cache is heavily used to lookup
      * nodes when querying or loading triples and should therefore have a decent size (default 500.000 elements).
@@ -73,7 +102,7 @@ public class InfinispanRemoteCacheManager implements CacheManager {
     @Override
     public Map<Long, KiWiNode> getNodeCache() {
         if(nodeCache == null) {
-            nodeCache = new AsyncMap(cacheManager.getCache(NODE_CACHE));
+            nodeCache = wrap(cacheManager.getCache(NODE_CACHE));
         }
         return nodeCache;
     }
@@ -87,7 +116,7 @@ public class InfinispanRemoteCacheManager implements CacheManager {
     @Override
     public Map<Long, KiWiTriple> getTripleCache() {
         if(tripleCache == null) {
-            tripleCache = new AsyncMap(cacheManager.getCache(TRIPLE_CACHE));
+            tripleCache = wrap(cacheManager.getCache(TRIPLE_CACHE));
         }
         return tripleCache;
     }
@@ -101,7 +130,7 @@ public class InfinispanRemoteCacheManager implements CacheManager {
     @Override
     public Map<String, KiWiUriResource> getUriCache() {
         if(uriCache == null) {
-            uriCache = new AsyncMap(cacheManager.getCache(URI_CACHE));
+            uriCache = wrap(cacheManager.getCache(URI_CACHE));
         }
         return uriCache;
     }
@@ -115,7 +144,7 @@ public class InfinispanRemoteCacheManager implements CacheManager {
     @Override
     public Map<String, KiWiAnonResource> getBNodeCache() {
         if(bnodeCache == null) {
-            bnodeCache = new AsyncMap(cacheManager.getCache(BNODE_CACHE));
+            bnodeCache = wrap(cacheManager.getCache(BNODE_CACHE));
         }
         return bnodeCache;
     }
@@ -130,7 +159,7 @@ public class InfinispanRemoteCacheManager implements CacheManager {
     @Override
     public Map<String, KiWiLiteral> getLiteralCache() {
         if(literalCache == null) {
-            literalCache = new AsyncMap(cacheManager.getCache(LITERAL_CACHE));
+            literalCache = wrap(cacheManager.getCache(LITERAL_CACHE));
         }
         return literalCache;
     }
@@ -143,7 +172,7 @@ public class InfinispanRemoteCacheManager implements CacheManager {
     @Override
     public Map<String, KiWiNamespace> getNamespaceUriCache() {
         if(nsUriCache == null) {
-            nsUriCache = new AsyncMap(cacheManager.getCache(NS_URI_CACHE));
+            nsUriCache = wrap(cacheManager.getCache(NS_URI_CACHE));
         }
         return nsUriCache;
     }
@@ -156,7 +185,7 @@ public class InfinispanRemoteCacheManager implements CacheManager {
     @Override
     public Map<String, KiWiNamespace> getNamespacePrefixCache() {
         if(nsPrefixCache == null) {
-            nsPrefixCache = new AsyncMap(cacheManager.getCache(NS_PREFIX_CACHE));
+            nsPrefixCache = wrap(cacheManager.getCache(NS_PREFIX_CACHE));
         }
         return nsPrefixCache;
     }
@@ -168,7 +197,7 @@ public class InfinispanRemoteCacheManager implements CacheManager {
      * @return
      */
     @Override
-    public Map<Long, Long> getRegistryCache() {
+    public Map<UUID, Long> getRegistryCache() {
         if(registryCache == null) {
             registryCache = cacheManager.getCache(REGISTRY_CACHE);
         }
@@ -200,6 +229,16 @@ public class InfinispanRemoteCacheManager implements CacheManager {
      */
     @Override
     public void shutdown() {
+        synchronized (this) {
+            // write all queued cache updates before disconnecting
+            for(WriteBehindMap m : writeBehindMaps) {
+                m.close();
+            }
+            if(writeBehindExecutor != null) {
+                writeBehindExecutor.shutdown();
+            }
+        }
+
         try {
             log.info("shutting down Infinispan remote cache manager ...");
             cacheManager.stop();
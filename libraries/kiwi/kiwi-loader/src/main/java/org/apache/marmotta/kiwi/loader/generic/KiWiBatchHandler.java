@@ -231,6 +231,11 @@ public abstract class KiWiBatchHandler extends KiWiHandler implements RDFHandler
     private synchronized void flushBacklog() throws SQLException {
         flushBacklogInternal();
 
+        // triples are written directly to the database, so the triple counters need to be updated explicitly
+        for(KiWiTriple triple : tripleBacklog) {
+            connection.updateTripleCount(triple.getContext(), 1);
+        }
+
         nodeBacklog.clear();
         tripleBacklog.clear();
 
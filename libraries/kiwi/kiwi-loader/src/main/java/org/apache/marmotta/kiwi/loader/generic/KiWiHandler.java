@@ -293,6 +293,7 @@ public class KiWiHandler implements RDFHandler {
                 }
             } else {
                 result.setId(connection.getNextSequence());
+                result.setNewTriple(true);
 
                 storeTriple(result);
             }
@@ -80,6 +80,11 @@ public class KiWiPostgresHandler extends KiWiBatchHandler implements RDFHandler
             }
             log.debug("PostgreSQL: running SQL script '{}'", script.toString());
             runner.runScript(new StringReader(script.toString()));
+
+            // the optional object-leading indexes are only dropped and recreated in case they exist
+            if(store.getPersistence().hasObjectIndexes()) {
+                runner.runScript(new StringReader(connection.getDialect().getDropIndexScript("object")));
+            }
         } catch (IOException ex) {
             throw new SQLException("error while dropping indexes",ex);
         }
@@ -99,6 +104,10 @@ public class KiWiPostgresHandler extends KiWiBatchHandler implements RDFHandler
             }
             log.debug("PostgreSQL: running SQL script '{}'", script.toString());
             runner.runScript(new StringReader(script.toString()));
+
+            if(store.getPersistence().hasObjectIndexes()) {
+                runner.runScript(new StringReader(connection.getDialect().getCreateIndexScript("object")));
+            }
         } catch (IOException ex) {
             throw new SQLException("error while creating indexes",ex);
         }
@@ -16,6 +16,7 @@
 DROP INDEX IF EXISTS idx_triples_p;
 DROP INDEX IF EXISTS idx_triples_spo;
 DROP INDEX IF EXISTS idx_triples_cspo;
+DROP INDEX IF EXISTS idx_triples_cid;
 DROP INDEX IF EXISTS idx_node_dcontent;
 DROP INDEX IF EXISTS idx_node_icontent;
 
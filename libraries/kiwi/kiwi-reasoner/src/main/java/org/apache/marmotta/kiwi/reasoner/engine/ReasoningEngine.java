@@ -28,11 +28,11 @@ import org.apache.marmotta.commons.sesame.model.StatementCommons;
 import org.apache.marmotta.commons.sesame.transactions.api.TransactionListener;
 import org.apache.marmotta.commons.sesame.transactions.api.TransactionalSail;
 import org.apache.marmotta.commons.sesame.transactions.model.TransactionData;
-import org.apache.marmotta.commons.sesame.tripletable.TripleTable;
 import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
 import org.apache.marmotta.kiwi.model.rdf.KiWiResource;
 import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
 import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.persistence.util.CompactTripleList;
 import org.apache.marmotta.kiwi.reasoner.model.exception.ReasoningException;
 import org.apache.marmotta.kiwi.reasoner.model.exception.UnjustifiedTripleException;
 import org.apache.marmotta.kiwi.reasoner.model.program.*;
@@ -63,8 +63,10 @@ import java.util.concurrent.locks.ReentrantLock;
  * <li>full reasoning: (re-)runs the reasoning process over all triples currently contained in the triple store</li>
  * </ul>
  * Since reasoning can require some time, the actual execution of incremental reasonong is implemented in a
- * producer-consumer style. When new transaction data is available, it is added to a queue. A separate reasoning
- * thread then takes new transaction data and processes the rules asynchronously.
+ * producer-consumer style. When new transaction data is available, the added and removed triples are added to a queue
+ * in compact form (node ids only, see {@link CompactTripleList}), so a long queue does not keep the triple and node
+ * objects of all pending transactions in memory. A separate reasoning thread then takes the worklists and processes
+ * the rules asynchronously, resolving the triples in batches.
  * <p/>
  * The reasoning engine uses its own connection to the database to carry out reasoning tasks.
  * <p/>
@@ -82,10 +84,10 @@ public class ReasoningEngine implements TransactionListener {
     private static final String TASK_GROUP = "Reasoner";
 
     /**
-     * A queue of transaction data objects of committed transactions, will be consumed by the reasoner
-     * thread in incremental reasoning.
+     * A queue of worklists of committed transactions, will be consumed by the reasoner thread in incremental
+     * reasoning.
      */
-    private LinkedBlockingQueue<TransactionData> reasoningQueue;
+    private LinkedBlockingQueue<Worklist> reasoningQueue;
 
 
     /**
@@ -261,11 +263,11 @@ public class ReasoningEngine implements TransactionListener {
     public void afterCommit(TransactionData data) {
         if( (data.getAddedTriples().size() > 0 || data.getRemovedTriples().size() > 0) && patternRuleMap.size() > 0) {
 
-            reasoningQueue.remove(data);
-            if (!reasoningQueue.offer(data)) {
+            Worklist worklist = new Worklist(data);
+            if (!reasoningQueue.offer(worklist)) {
                 log.info("waiting for reasoning queue to become available ...");
                 try {
-                    reasoningQueue.put(data);
+                    reasoningQueue.put(worklist);
                     log.info("reasoning queue available, added data");
                 } catch (InterruptedException e) {
                     log.error("interrupted while waiting for reasoning queue to become available ...");
@@ -338,25 +340,18 @@ public class ReasoningEngine implements TransactionListener {
 
     }
 
-    private void executeReasoner(TransactionData data) {
+    private void executeReasoner(Worklist data) {
         try {
-            updateTaskStatus("fetching worklist");
-            Set<KiWiTriple> newTriples = StatementCommons.newQuadrupleSet();
-            for(Statement stmt : data.getAddedTriples()) {
-                KiWiTriple t = (KiWiTriple)stmt;
-                if(t.isNewTriple()) {
-                    newTriples.add(t);
-                    t.setNewTriple(false);
-                }
-            }
-
-            //taskManagerService.setTaskSteps(newTriples.size() + data.getRemovedTriples().size());
+            //taskManagerService.setTaskSteps(data.getAddedTriples().size() + data.getRemovedTriples().size());
             // evaluate the rules for all added triples
-            if(newTriples.size() > 0) {
+            if(data.getAddedTriples().size() > 0) {
                 long start2 = System.currentTimeMillis();
-                updateTaskStatus("reasoning over " + newTriples.size() + " new triples");
-                processRules(newTriples);
-                log.debug("REASONER: reasoning for {} new triples took {} ms overall", newTriples.size(), System.currentTimeMillis() - start2);
+                updateTaskStatus("reasoning over " + data.getAddedTriples().size() + " new triples");
+                for(int from = 0; from < data.getAddedTriples().size(); from += config.getBatchSize()) {
+                    updateTaskStatus("fetching worklist");
+                    processRules(resolveTriples(data.getAddedTriples(), from));
+                }
+                log.debug("REASONER: reasoning for {} new triples took {} ms overall", data.getAddedTriples().size(), System.currentTimeMillis() - start2);
             }
 
             if(data.getRemovedTriples().size() > 0) {
@@ -394,6 +389,22 @@ public class ReasoningEngine implements TransactionListener {
         }
     }
 
+    /**
+     * Resolve the next batch of triples of the compact worklist given as argument, starting at the given index.
+     * Triples whose nodes no longer exist in the database are skipped.
+     */
+    private Set<KiWiTriple> resolveTriples(CompactTripleList worklist, int from) throws SQLException {
+        Set<KiWiTriple> result = StatementCommons.newQuadrupleSet();
+        try (KiWiReasoningConnection connection = persistence.getConnection()) {
+            for(KiWiTriple t : connection.resolveTriples(worklist, from, Math.min(from + config.getBatchSize(), worklist.size()))) {
+                if(t.getSubject() != null && t.getPredicate() != null && t.getObject() != null) {
+                    result.add(t);
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Clean all inferred triples and re-run all reasoning rules.
      */
@@ -486,11 +497,12 @@ public class ReasoningEngine implements TransactionListener {
      *
      * @param removedTriples
      */
-    private void cleanupJustifications(KiWiReasoningConnection connection, TripleTable<Statement> removedTriples) throws SQLException {
+    private void cleanupJustifications(KiWiReasoningConnection connection, CompactTripleList removedTriples) throws SQLException {
         updateTaskStatus("cleaning up justifications for " + removedTriples.size() + " removed triples");
-        for(Statement stmt : removedTriples) {
-            KiWiTriple t = (KiWiTriple)stmt;
-            connection.deleteJustifications(t);
+        for(int from = 0; from < removedTriples.size(); from += config.getBatchSize()) {
+            for(KiWiTriple t : connection.resolveTriples(removedTriples, from, Math.min(from + config.getBatchSize(), removedTriples.size()))) {
+                connection.deleteJustifications(t);
+            }
         }
     }
 
@@ -981,7 +993,7 @@ public class ReasoningEngine implements TransactionListener {
                 try {
                     updateTaskStatus("idle");
 
-                    TransactionData data = reasoningQueue.take();
+                    Worklist data = reasoningQueue.take();
                     running = true;
 
                     updateTaskMaxProgress(reasoningQueue.size());
@@ -1002,4 +1014,50 @@ public class ReasoningEngine implements TransactionListener {
         }
     }
 
+
+    /**
+     * The triples added and removed by a committed transaction, kept in compact form until the reasoner thread
+     * processes them. Only added triples that are new to the triple store are considered.
+     */
+    private static class Worklist {
+
+        private final String transactionId;
+
+        private final CompactTripleList addedTriples;
+
+        private final CompactTripleList removedTriples;
+
+        private Worklist(TransactionData data) {
+            this.transactionId  = data.getTransactionId();
+            this.addedTriples   = new CompactTripleList(data.getAddedTriples().size());
+            this.removedTriples = new CompactTripleList(data.getRemovedTriples().size());
+
+            for(Statement stmt : data.getAddedTriples()) {
+                KiWiTriple t = (KiWiTriple)stmt;
+                if(t.isNewTriple()) {
+                    addedTriples.add(t);
+                    t.setNewTriple(false);
+                }
+            }
+            for(Statement stmt : data.getRemovedTriples()) {
+                KiWiTriple t = (KiWiTriple)stmt;
+                if(t.getId() >= 0) {
+                    removedTriples.add(t);
+                }
+            }
+        }
+
+        public String getTransactionId() {
+            return transactionId;
+        }
+
+        public CompactTripleList getAddedTriples() {
+            return addedTriples;
+        }
+
+        public CompactTripleList getRemovedTriples() {
+            return removedTriples;
+        }
+    }
+
 }
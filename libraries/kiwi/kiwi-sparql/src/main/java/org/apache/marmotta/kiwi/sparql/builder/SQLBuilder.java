@@ -22,6 +22,7 @@ import com.google.common.base.Preconditions;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -29,8 +30,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
 import org.apache.marmotta.kiwi.persistence.KiWiDialect;
 import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
 import org.apache.marmotta.kiwi.sparql.builder.collect.ConditionFinder;
@@ -47,20 +53,25 @@ import org.apache.marmotta.kiwi.sparql.builder.collect.VariableFinder;
 import org.apache.marmotta.kiwi.sparql.builder.eval.ValueExpressionEvaluator;
 import org.apache.marmotta.kiwi.sparql.builder.model.SQLAbstractSubquery;
 import org.apache.marmotta.kiwi.sparql.builder.model.SQLFragment;
+import org.apache.marmotta.kiwi.sparql.builder.model.SQLPath;
 import org.apache.marmotta.kiwi.sparql.builder.model.SQLPattern;
 import org.apache.marmotta.kiwi.sparql.builder.model.SQLVariable;
 import org.apache.marmotta.kiwi.sparql.exception.UnsatisfiableQueryException;
 import org.apache.marmotta.kiwi.sparql.function.NativeFunctionRegistry;
+import org.apache.marmotta.kiwi.sparql.statistics.KiWiTripleStatistics;
 import org.openrdf.model.Resource;
 import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 import org.openrdf.model.vocabulary.SESAME;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.Dataset;
+import org.openrdf.query.algebra.ArbitraryLengthPath;
 import org.openrdf.query.algebra.Avg;
+import org.openrdf.query.algebra.BindingSetAssignment;
 import org.openrdf.query.algebra.BNodeGenerator;
 import org.openrdf.query.algebra.Compare;
 import org.openrdf.query.algebra.Count;
+import org.openrdf.query.algebra.Difference;
 import org.openrdf.query.algebra.Distinct;
 import org.openrdf.query.algebra.Exists;
 import org.openrdf.query.algebra.Extension;
@@ -70,8 +81,10 @@ import org.openrdf.query.algebra.FunctionCall;
 import org.openrdf.query.algebra.Group;
 import org.openrdf.query.algebra.IRIFunction;
 import org.openrdf.query.algebra.If;
+import org.openrdf.query.algebra.Intersection;
 import org.openrdf.query.algebra.Join;
 import org.openrdf.query.algebra.LeftJoin;
+import org.openrdf.query.algebra.ListMemberOperator;
 import org.openrdf.query.algebra.MathExpr;
 import org.openrdf.query.algebra.NAryValueOperator;
 import org.openrdf.query.algebra.Order;
@@ -178,6 +191,25 @@ public class SQLBuilder {
     // a prefix for naming table aliases (needed in case this is a subquery)
     private String prefix;
 
+    // triple statistics used for ordering the patterns of a fragment, may be null
+    private KiWiTripleStatistics statistics;
+
+    // converter for node ids that are turned into JDBC parameters; in this case, converter records all values
+    // that are still written literally into the query
+    private ValueConverter parameterConverter;
+
+    // variables providing the values of JDBC parameters, indexed by parameter marker; null if not parameterized
+    private List<Var> parameters;
+
+    // unique marker for JDBC parameters in the SQL string; replaced by "?" when building the prepared statement
+    private String parameterMarker;
+
+    // values that have been converted to node ids and written literally into the query
+    private Set<Value> inlinedValues;
+
+    // variables providing the values of the initial bindings as JDBC parameters, by binding name; null if not parameterized
+    private Map<String,Var> bindingVars;
+
     /**
      * Create a new SQLBuilder for the given query, initial bindings, dataset, and
      * @param query
@@ -185,12 +217,30 @@ public class SQLBuilder {
      * @param dataset
      */
     public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, final KiWiValueFactory valueFactory, KiWiDialect dialect, Set<String> projectedVars) throws UnsatisfiableQueryException {
+        this(query, bindings, dataset, valueFactory, dialect, projectedVars, null, false);
+    }
+
+    /**
+     * Create a new SQLBuilder for the given query, initial bindings, dataset, and triple statistics. The statistics
+     * are used to order the triple patterns in the FROM clause by their estimated cardinality.
+     * @param query
+     * @param bindings
+     * @param dataset
+     * @param statistics triple statistics, or null in case patterns should be kept in query order
+     * @param parameterized if true, the node ids of bound variables are turned into JDBC parameters (see {@link #buildPrepared(java.util.List)})
+     */
+    public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, final KiWiValueFactory valueFactory, KiWiDialect dialect, Set<String> projectedVars, KiWiTripleStatistics statistics, boolean parameterized) throws UnsatisfiableQueryException {
         this(query, bindings, dataset, new ValueConverter() {
             @Override
             public KiWiNode convert(Value value) {
                 return valueFactory.convert(value);
             }
-        }, dialect, projectedVars);
+
+            @Override
+            public KiWiUriResource lookup(URI uri) {
+                return valueFactory.loadURI(uri.stringValue());
+            }
+        }, dialect, "", projectedVars, new HashMap<String, SQLVariable>(), statistics, parameterized);
     }
 
 
@@ -205,14 +255,54 @@ public class SQLBuilder {
      * @param dataset
      */
     public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect, String prefix, Set<String> projectedVars, Map<String,SQLVariable> variables) throws UnsatisfiableQueryException {
+        this(query, bindings, dataset, converter, dialect, prefix, projectedVars, variables, null, false);
+    }
+
+    /**
+     * Create a new SQLBuilder for the given query, initial bindings, dataset, and triple statistics.
+     * @param query
+     * @param bindings
+     * @param dataset
+     * @param statistics triple statistics, or null in case patterns should be kept in query order
+     * @param parameterized if true, the node ids of bound variables are turned into JDBC parameters (see {@link #buildPrepared(java.util.List)})
+     */
+    public SQLBuilder(TupleExpr query, BindingSet bindings, Dataset dataset, final ValueConverter converter, KiWiDialect dialect, String prefix, Set<String> projectedVars, Map<String,SQLVariable> variables, KiWiTripleStatistics statistics, boolean parameterized) throws UnsatisfiableQueryException {
         this.query = query;
         this.bindings = bindings;
         this.dataset = dataset;
-        this.converter = converter;
         this.dialect = dialect;
         this.projectedVars = projectedVars;
         this.prefix = prefix;
         this.variables = variables;
+        this.statistics = statistics;
+        this.parameterConverter = converter;
+
+        if(parameterized) {
+            this.parameters = new ArrayList<>();
+            this.bindingVars = new TreeMap<>();
+            if(bindings != null) {
+                for(String name : bindings.getBindingNames()) {
+                    bindingVars.put(name, new Var(name, bindings.getValue(name)));
+                }
+            }
+            this.parameterMarker = "{" + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ":";
+            this.inlinedValues = new HashSet<>();
+            this.converter = new ValueConverter() {
+                @Override
+                public KiWiNode convert(Value value) {
+                    inlinedValues.add(value);
+                    return converter.convert(value);
+                }
+
+                @Override
+                public KiWiUriResource lookup(URI uri) {
+                    inlinedValues.add(uri);
+                    return converter.lookup(uri);
+                }
+            };
+        } else {
+            this.converter = converter;
+        }
 
         prepareBuilder();
     }
@@ -241,8 +331,12 @@ public class SQLBuilder {
         return projectedVars;
     }
 
+    public String getPrefix() {
+        return prefix;
+    }
+
     private void prepareBuilder()  throws UnsatisfiableQueryException {
-        Preconditions.checkArgument(query instanceof Projection || query instanceof Union || query instanceof Extension || query instanceof Order || query instanceof Group || query instanceof LeftJoin ||query instanceof Join || query instanceof Filter || query instanceof StatementPattern || query instanceof Distinct || query instanceof Slice || query instanceof Reduced);
+        Preconditions.checkArgument(query instanceof Projection || query instanceof Union || query instanceof Extension || query instanceof Order || query instanceof Group || query instanceof LeftJoin ||query instanceof Join || query instanceof Filter || query instanceof StatementPattern || query instanceof Distinct || query instanceof Slice || query instanceof Reduced || query instanceof ArbitraryLengthPath || query instanceof BindingSetAssignment || query instanceof Difference || query instanceof Intersection);
 
 
         // collect all patterns in a list, using depth-first search over the join
@@ -250,6 +344,13 @@ public class SQLBuilder {
 
         fragments = pc.parts;
 
+        // seed the recursion of property paths with unbound ends by a selective pattern joined on one of the ends
+        for(SQLAbstractSubquery sq : fragments.get(0).getSubqueries()) {
+            if(sq instanceof SQLPath) {
+                seedPath((SQLPath) sq, fragments.get(0).getPatterns());
+            }
+        }
+
         // collect offset and limit from the query if given
         offset   = new LimitFinder(query).offset;
         limit    = new LimitFinder(query).limit;
@@ -283,7 +384,7 @@ public class SQLBuilder {
                         sv.setProjectionType(ValueType.NODE);
                     }
 
-                    sv.addExpression(""+ converter.convert(v.getValue()).getId());
+                    sv.addExpression(nodeIdExpression(v));
 
                     addVariable(sv);
                 }
@@ -541,6 +642,91 @@ public class SQLBuilder {
         }
 
         prepareConditions();
+
+        if(statistics != null && statistics.isInitialised()) {
+            orderPatterns();
+        }
+    }
+
+    /**
+     * Order the patterns of all fragments whose conditions are placed in the WHERE clause by their estimated
+     * cardinality, most selective first. Fragments with conditions in JOIN ... ON clauses keep their order, because
+     * the conditions may only refer to patterns that have been joined before.
+     */
+    private void orderPatterns() {
+        for(SQLFragment f : fragments) {
+            if(f.getConditionPosition() == SQLFragment.ConditionPosition.WHERE && f.getPatterns().size() > 1) {
+                final Map<SQLPattern,Double> cardinalities = new HashMap<>();
+                for (SQLPattern p : f.getPatterns()) {
+                    Var[] fields = p.getFields();
+                    long[] ids = new long[fields.length];
+                    for (int i = 0; i < fields.length; i++) {
+                        if (fields[i] != null && fields[i].hasValue()) {
+                            ids[i] = parameterConverter.convert(fields[i].getValue()).getId();
+                        } else {
+                            ids[i] = KiWiTripleStatistics.UNBOUND;
+                        }
+                    }
+                    cardinalities.put(p, statistics.getCardinality(ids[0], ids[1], ids[2], ids[3]));
+                }
+
+                // stable sort, patterns with equal estimates stay in query order
+                Collections.sort(f.getPatterns(), new Comparator<SQLPattern>() {
+                    @Override
+                    public int compare(SQLPattern p1, SQLPattern p2) {
+                        return Double.compare(cardinalities.get(p1), cardinalities.get(p2));
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Restrict the recursion of a property path with unbound ends to the nodes matched by a selective triple pattern
+     * joined on one of the ends, i.e. a pattern of the same (non-optional) fragment with a constant subject or object
+     * like ?x rdf:type foaf:Person. Otherwise the closure of the complete relation would be computed.
+     */
+    private void seedPath(SQLPath path, List<SQLPattern> patterns) {
+        Set<String> seedVariables = path.getSeedVariables();
+        for(SQLPattern p : patterns) {
+            Var[] fields = p.getFields();
+            // subject (0) or object (2) joined with the path, the other one constant
+            for(int i = 0; i <= 2; i += 2) {
+                Var other = fields[2 - i];
+                if(!fields[i].hasValue() && seedVariables.contains(fields[i].getName()) && other.hasValue() && !fields[i].getName().equals(other.getName())) {
+                    boolean exists = true;
+                    for (Var field : fields) {
+                        if (field != null && field.hasValue()) {
+                            KiWiNode node = parameterConverter.convert(field.getValue());
+                            exists &= node != null && node.getId() >= 0;
+                        }
+                    }
+                    if(exists) {
+                        StringBuilder condition = new StringBuilder("S.deleted = false");
+                        for (int j = 0; j < fields.length; j++) {
+                            if (fields[j] != null && fields[j].hasValue()) {
+                                condition.append(" AND S.").append(positions[j]).append(" = ").append(nodeIdExpression(fields[j]));
+                            }
+                        }
+                        path.setSeed(fields[i].getName(), positions[i], condition.toString());
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the SQL expression for the node id of the value bound to the given variable. In a parameterized builder,
+     * this is a marker for a JDBC parameter, otherwise the node id itself.
+     */
+    private String nodeIdExpression(Var v) {
+        if(parameters != null) {
+            parameters.add(v);
+            return parameterMarker + (parameters.size() - 1) + "}";
+        } else {
+            return Long.toString(parameterConverter.convert(v.getValue()).getId());
+        }
     }
 
     private void prepareConditions() throws UnsatisfiableQueryException {
@@ -572,11 +758,11 @@ public class SQLBuilder {
                     // in this way we can avoid setting too many query parameters
                     long nodeId = -1;
                     if (fields[i] != null && fields[i].hasValue()) {
-                        Value v = converter.convert(fields[i].getValue());
+                        Value v = parameterConverter.convert(fields[i].getValue());
                         nodeId = ((KiWiNode) v).getId();
 
                         if (nodeId >= 0) {
-                            p.addCondition(pName + "." + positions[i] + " = " + nodeId);
+                            p.addCondition(pName + "." + positions[i] + " = " + nodeIdExpression(fields[i]));
                         }
                     }
                 }
@@ -585,28 +771,30 @@ public class SQLBuilder {
 
 
         // 6. for each context variable with a restricted list of contexts, we add a condition to the where clause
-        //    of the form (V.id = R1.id OR V.id = R2.id ...)
+        //    of the form V.context IN (R1.id, R2.id, ...); unlike a chain of ORs, an IN list can be served
+        //    by the context-leading index on all supported databases
         for(SQLFragment f : fragments) {
             for (SQLPattern p : f.getPatterns()) {
                 // the variable
                 String varName = p.getName();
 
                 if (p.getVariableContexts() != null) {
+                    List<Long> contextIds = new ArrayList<>();
+                    for (Resource context : p.getVariableContexts()) {
+                        Value v = converter.convert(context);
+                        contextIds.add(((KiWiNode) v).getId());
+                    }
+
                     // the string we are building
                     StringBuilder cCond = new StringBuilder();
-                    cCond.append("(");
-                    for (Iterator<Resource> it = p.getVariableContexts().iterator(); it.hasNext(); ) {
-                        Value v = converter.convert(it.next());
-                        long nodeId = ((KiWiNode) v).getId();
-
-                        cCond.append(varName).append(".context = ").append(nodeId);
-
-                        if (it.hasNext()) {
-                            cCond.append(" OR ");
-                        }
-
+                    cCond.append(varName).append(".context");
+                    if (contextIds.size() == 1) {
+                        cCond.append(" = ").append(contextIds.get(0));
+                    } else {
+                        cCond.append(" IN (");
+                        Joiner.on(",").appendTo(cCond, contextIds);
+                        cCond.append(")");
                     }
-                    cCond.append(")");
                     p.addCondition(cCond.toString());
                 }
             }
@@ -746,8 +934,12 @@ public class SQLBuilder {
                 if(sv != null && sv.hasExpressions()) {
                     List<String> vNames = sv.getExpressions();
                     String vName = vNames.get(0);
-                    Value binding = converter.convert(bindings.getValue(v));
-                    whereConditions.add(vName+" = "+((KiWiNode)binding).getId());
+                    if(bindingVars != null) {
+                        whereConditions.add(vName+" = "+nodeIdExpression(bindingVars.get(v)));
+                    } else {
+                        Value binding = converter.convert(bindings.getValue(v));
+                        whereConditions.add(vName+" = "+((KiWiNode)binding).getId());
+                    }
                 }
             }
         }
@@ -893,6 +1085,8 @@ public class SQLBuilder {
             return ValueType.URI;
         } else if(expr instanceof FunctionCall) {
             return functionRegistry.get(((FunctionCall) expr).getURI()).getReturnType();
+        } else if(expr instanceof ListMemberOperator) {
+            return ValueType.BOOL;
         } else if(expr instanceof NAryValueOperator) {
             return getProjectionType(((NAryValueOperator) expr).getArguments().get(0));
         } else if(expr instanceof ValueConstant) {
@@ -964,11 +1158,88 @@ public class SQLBuilder {
     }
 
     /**
-     * Construct the SQL query for the given SPARQL query part.
+     * Build the SQL query as prepared statement, with JDBC parameters ("?") in place of the node ids of bound
+     * variables. The variables providing the values of the parameters are added to the list passed as argument in
+     * the order of the parameters in the query. Only supported by builders created as parameterized.
+     *
+     * @param parameterVars list to which the parameter variables are added
+     * @return the SQL query string
+     */
+    public String buildPrepared(List<Var> parameterVars) {
+        Preconditions.checkState(parameters != null, "SQL builder has not been created as parameterized");
+
+        Matcher m = Pattern.compile(Pattern.quote(parameterMarker) + "(\\d+)\\}").matcher(build());
+        StringBuffer sql = new StringBuffer();
+        while (m.find()) {
+            parameterVars.add(parameters.get(Integer.parseInt(m.group(1))));
+            m.appendReplacement(sql, "?");
+        }
+        m.appendTail(sql);
+        return sql.toString();
+    }
+
+    /**
+     * Return the variables holding the values of the initial bindings of a parameterized builder, ordered by binding
+     * name. Conditions on initial bindings use these variables as JDBC parameters, so the SQL query does not depend
+     * on the bound values.
+     */
+    public List<Var> getBindingVariables() {
+        Preconditions.checkState(bindingVars != null, "SQL builder has not been created as parameterized");
+
+        return new ArrayList<>(bindingVars.values());
+    }
+
+    /**
+     * Return the values that have been converted to node ids and written literally into the query by a
+     * parameterized builder, e.g. in filters, subqueries, or dataset restrictions. A translation can only be reused for
+     * a query binding the same values at these positions.
+     */
+    public Set<Value> getInlinedValues() {
+        return inlinedValues;
+    }
+
+    /**
+     * Return the common table expressions needed by the subqueries of this query (e.g. the recursive queries for
+     * property paths), including those of nested subqueries.
+     *
+     * @return
+     */
+    public List<String> getCommonTableExpressions() {
+        List<String> result = new ArrayList<>();
+        for(SQLFragment f : fragments) {
+            for(SQLAbstractSubquery sq : f.getSubqueries()) {
+                result.addAll(sq.getCommonTableExpressions());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Construct the SQL query for the given SPARQL query part, including a WITH clause defining the common table
+     * expressions of all (nested) subqueries.
      *
      * @return
      */
     public StringBuilder build()  {
+        List<String> commonTableExpressions = getCommonTableExpressions();
+        if(commonTableExpressions.isEmpty()) {
+            return buildSubquery();
+        }
+
+        final StringBuilder queryString = new StringBuilder();
+        queryString.append("WITH RECURSIVE ");
+        Joiner.on(",\n ").appendTo(queryString, commonTableExpressions);
+        queryString.append("\n ").append(buildSubquery());
+        return queryString;
+    }
+
+    /**
+     * Construct the SQL query for the given SPARQL query part without defining the common table expressions, to be
+     * used as subquery of a query built with {@link #build()}.
+     *
+     * @return
+     */
+    public StringBuilder buildSubquery()  {
         StringBuilder selectClause = buildSelectClause();
         StringBuilder fromClause   = buildFromClause();
         StringBuilder whereClause  = buildWhereClause();
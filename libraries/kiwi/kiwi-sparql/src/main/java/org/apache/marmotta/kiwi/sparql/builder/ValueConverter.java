@@ -18,6 +18,8 @@
 package org.apache.marmotta.kiwi.sparql.builder;
 
 import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 
 /**
@@ -30,4 +32,11 @@ public interface ValueConverter {
 
 
     KiWiNode convert(Value value);
+
+    /**
+     * Return the KiWiUriResource for the given URI in case it is already stored in the database, or null otherwise.
+     * Unlike {@link #convert(org.openrdf.model.Value)}, this never creates a new node, so it can be used for values
+     * that only need to be compared with the stored nodes (e.g. VALUES blocks or IN lists).
+     */
+    KiWiUriResource lookup(URI uri);
 }
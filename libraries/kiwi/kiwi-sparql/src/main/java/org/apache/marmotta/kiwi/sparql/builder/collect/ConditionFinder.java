@@ -17,6 +17,7 @@
 
 package org.apache.marmotta.kiwi.sparql.builder.collect;
 
+import org.apache.marmotta.kiwi.sparql.builder.eval.ValueExpressionEvaluator;
 import org.openrdf.query.algebra.*;
 import org.openrdf.query.algebra.helpers.QueryModelVisitorBase;
 
@@ -63,6 +64,16 @@ public class ConditionFinder extends QueryModelVisitorBase<RuntimeException> {
         // stop, subquery
     }
 
+    @Override
+    public void meet(Difference node) throws RuntimeException {
+        // stop, subquery
+    }
+
+    @Override
+    public void meet(Intersection node) throws RuntimeException {
+        // stop, subquery
+    }
+
     @Override
     public void meet(Projection node) throws RuntimeException {
         // stop, subquery
@@ -178,6 +189,18 @@ public class ConditionFinder extends QueryModelVisitorBase<RuntimeException> {
         valueNeeded--;
     }
 
+    @Override
+    public void meet(ListMemberOperator node) throws RuntimeException {
+        // lists of IRIs are compared by node id, other lists by value
+        if(ValueExpressionEvaluator.isNodeIdList(node)) {
+            super.meet(node);
+        } else {
+            valueNeeded++;
+            super.meet(node);
+            valueNeeded--;
+        }
+    }
+
     @Override
     public void meet(LocalName node) throws RuntimeException {
         valueNeeded++;
@@ -58,4 +58,14 @@ public class DistinctFinder extends QueryModelVisitorBase<RuntimeException> {
     public void meet(Union node) throws RuntimeException {
         // stop at projection, subquery
     }
+
+    @Override
+    public void meet(Difference node) throws RuntimeException {
+        // stop at minus, subquery
+    }
+
+    @Override
+    public void meet(Intersection node) throws RuntimeException {
+        // stop at intersection, subquery
+    }
 }
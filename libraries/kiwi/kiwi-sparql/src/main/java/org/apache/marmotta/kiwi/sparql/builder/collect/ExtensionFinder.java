@@ -68,4 +68,14 @@ public class ExtensionFinder extends QueryModelVisitorBase<RuntimeException> {
     public void meet(Union node) throws RuntimeException {
         // stop here, this is a subquery in SQL
     }
+
+    @Override
+    public void meet(Difference node) throws RuntimeException {
+        // stop here, this is a subquery in SQL
+    }
+
+    @Override
+    public void meet(Intersection node) throws RuntimeException {
+        // stop here, this is a subquery in SQL
+    }
 }
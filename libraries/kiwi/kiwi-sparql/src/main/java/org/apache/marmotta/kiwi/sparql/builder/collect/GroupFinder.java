@@ -58,4 +58,14 @@ public class GroupFinder extends QueryModelVisitorBase<RuntimeException> {
     public void meet(Union node) throws RuntimeException {
         // stop at union, subquery
     }
+
+    @Override
+    public void meet(Difference node) throws RuntimeException {
+        // stop at minus, subquery
+    }
+
+    @Override
+    public void meet(Intersection node) throws RuntimeException {
+        // stop at intersection, subquery
+    }
 }
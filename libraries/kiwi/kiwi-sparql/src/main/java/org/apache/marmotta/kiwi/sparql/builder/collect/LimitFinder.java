@@ -17,6 +17,8 @@
 
 package org.apache.marmotta.kiwi.sparql.builder.collect;
 
+import org.openrdf.query.algebra.Difference;
+import org.openrdf.query.algebra.Intersection;
 import org.openrdf.query.algebra.Projection;
 import org.openrdf.query.algebra.Slice;
 import org.openrdf.query.algebra.TupleExpr;
@@ -55,4 +57,14 @@ public class LimitFinder extends QueryModelVisitorBase<RuntimeException> {
         // stop at projection, subquery
     }
 
+    @Override
+    public void meet(Difference node) throws RuntimeException {
+        // stop at minus, subquery
+    }
+
+    @Override
+    public void meet(Intersection node) throws RuntimeException {
+        // stop at intersection, subquery
+    }
+
 }
@@ -57,4 +57,14 @@ public class OrderFinder extends QueryModelVisitorBase<RuntimeException> {
         // stop at projection, subquery
     }
 
+    @Override
+    public void meet(Difference node) throws RuntimeException {
+        // stop at minus, subquery
+    }
+
+    @Override
+    public void meet(Intersection node) throws RuntimeException {
+        // stop at intersection, subquery
+    }
+
 }
@@ -20,9 +20,13 @@ package org.apache.marmotta.kiwi.sparql.builder.collect;
 import org.apache.marmotta.kiwi.persistence.KiWiDialect;
 import org.apache.marmotta.kiwi.sparql.builder.ValueConverter;
 import org.apache.marmotta.kiwi.sparql.builder.model.SQLFragment;
+import org.apache.marmotta.kiwi.sparql.builder.model.SQLIntersection;
+import org.apache.marmotta.kiwi.sparql.builder.model.SQLMinus;
+import org.apache.marmotta.kiwi.sparql.builder.model.SQLPath;
 import org.apache.marmotta.kiwi.sparql.builder.model.SQLPattern;
 import org.apache.marmotta.kiwi.sparql.builder.model.SQLSubQuery;
 import org.apache.marmotta.kiwi.sparql.builder.model.SQLUnion;
+import org.apache.marmotta.kiwi.sparql.builder.model.SQLValues;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.Dataset;
 import org.openrdf.query.algebra.*;
@@ -106,6 +110,35 @@ public class PatternCollector extends QueryModelVisitorBase<RuntimeException> {
                                             node, bindings, dataset, converter, dialect, projectedVars));
     }
 
+    @Override
+    public void meet(ArbitraryLengthPath node) throws RuntimeException {
+        // property paths are evaluated by a recursive subquery; we don't continue collection, the path expression is
+        // part of the subquery
+
+        parts.getLast().getSubqueries().add(new SQLPath(prefix + "R" + (++counter), node, bindings, dataset, converter));
+    }
+
+    @Override
+    public void meet(BindingSetAssignment node) throws RuntimeException {
+        // VALUES blocks are translated into a derived table of node ids
+
+        parts.getLast().getSubqueries().add(new SQLValues(prefix + "B" + (++counter), node, converter));
+    }
+
+    @Override
+    public void meet(Difference node) throws RuntimeException {
+        // MINUS is evaluated as anti join over two subqueries; we don't continue collection
+
+        parts.getLast().getSubqueries().add(new SQLMinus(prefix + "M" + (++counter), node, bindings, dataset, converter, dialect));
+    }
+
+    @Override
+    public void meet(Intersection node) throws RuntimeException {
+        // intersections are evaluated as semi join over two subqueries; we don't continue collection
+
+        parts.getLast().getSubqueries().add(new SQLIntersection(prefix + "I" + (++counter), node, bindings, dataset, converter, dialect));
+    }
+
     @Override
     public void meet(Exists node) throws RuntimeException {
         // stop at exists, it is treated as a subquery in the condition part
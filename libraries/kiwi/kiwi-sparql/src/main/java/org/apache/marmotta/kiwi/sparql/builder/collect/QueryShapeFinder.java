@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.builder.collect;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.query.algebra.AggregateOperator;
+import org.openrdf.query.algebra.BindingSetAssignment;
+import org.openrdf.query.algebra.FunctionCall;
+import org.openrdf.query.algebra.GroupElem;
+import org.openrdf.query.algebra.IRIFunction;
+import org.openrdf.query.algebra.ListMemberOperator;
+import org.openrdf.query.algebra.QueryModelNode;
+import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.algebra.Var;
+import org.openrdf.query.algebra.helpers.QueryModelVisitorBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compute the shape of a tuple expression, i.e. a string representation of the expression in which the values bound
+ * to variables are replaced by their kind (URI, blank node, or literal with datatype and language). Queries with
+ * the same shape are translated into the same SQL query, apart from the node ids of the bound values. The bound
+ * variables are collected in the order they occur in the expression.
+ */
+public class QueryShapeFinder extends QueryModelVisitorBase<RuntimeException> {
+
+    private StringBuilder shape = new StringBuilder();
+
+    private List<Var> boundVariables = new ArrayList<>();
+
+    private boolean cacheable = true;
+
+    public QueryShapeFinder(TupleExpr expr) {
+        expr.visit(this);
+    }
+
+    /**
+     * Return the shape of the expression.
+     */
+    public String getShape() {
+        return shape.toString();
+    }
+
+    /**
+     * Return the variables of the expression that are bound to a value, in the order they occur in the shape.
+     */
+    public List<Var> getBoundVariables() {
+        return boundVariables;
+    }
+
+    /**
+     * Return false in case the translation of the expression depends on values that are not part of the shape,
+     * i.e. the contents of VALUES blocks and IN lists, which are written literally into the query. Such translations
+     * are hardly ever reused and should not be cached.
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    @Override
+    protected void meetNode(QueryModelNode node) throws RuntimeException {
+        shape.append(node.getSignature());
+
+        // properties relevant for the translation that are not part of the node signature
+        if(node instanceof FunctionCall) {
+            shape.append(' ').append(((FunctionCall) node).getURI());
+        } else if(node instanceof IRIFunction) {
+            shape.append(' ').append(((IRIFunction) node).getBaseURI());
+        } else if(node instanceof GroupElem) {
+            shape.append(' ').append(((GroupElem) node).getName());
+        } else if(node instanceof AggregateOperator && ((AggregateOperator) node).isDistinct()) {
+            shape.append(" DISTINCT");
+        } else if(node instanceof BindingSetAssignment || node instanceof ListMemberOperator) {
+            cacheable = false;
+        }
+
+        shape.append('(');
+        node.visitChildren(this);
+        shape.append(')');
+    }
+
+    @Override
+    public void meet(Var node) throws RuntimeException {
+        shape.append("Var(");
+
+        // the names of constants are derived from their values and not used in SQL
+        if(!node.getName().startsWith("-const") && !node.getName().startsWith("_const")) {
+            shape.append(node.getName());
+        }
+        if(node.isAnonymous()) {
+            shape.append(",anonymous");
+        }
+        if(node.hasValue()) {
+            shape.append(',').append(getKind(node.getValue()));
+            boundVariables.add(node);
+        }
+        shape.append(')');
+    }
+
+    private static String getKind(Value value) {
+        if(value instanceof URI) {
+            return "uri";
+        } else if(value instanceof BNode) {
+            return "bnode";
+        } else if(value instanceof Literal) {
+            Literal l = (Literal) value;
+            return "literal^^" + l.getDatatype() + "@" + l.getLanguage();
+        } else {
+            return value.getClass().getName();
+        }
+    }
+}
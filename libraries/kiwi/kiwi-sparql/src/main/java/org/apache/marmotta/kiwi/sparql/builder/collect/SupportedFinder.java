@@ -19,9 +19,14 @@ package org.apache.marmotta.kiwi.sparql.builder.collect;
 
 import org.apache.marmotta.kiwi.persistence.KiWiDialect;
 import org.apache.marmotta.kiwi.sparql.function.NativeFunctionRegistry;
+import org.openrdf.query.BindingSet;
 import org.openrdf.query.algebra.*;
 import org.openrdf.query.algebra.helpers.QueryModelVisitorBase;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Check if all constructs in the query are supported natively. Whenever you add a new construct to SQLBuilder
  * or ValueExpressionEvaluator, it should be removed here.
@@ -33,6 +38,10 @@ public class SupportedFinder extends QueryModelVisitorBase<RuntimeException> {
     private boolean supported = true;
     private KiWiDialect dialect;
 
+    // property paths inside EXISTS are not supported, because the subquery of EXISTS is built separately and
+    // cannot define its recursive queries in the outermost query
+    private int existsDepth = 0;
+
     public SupportedFinder(TupleExpr expr, KiWiDialect dialect) {
         this.dialect = dialect;
 
@@ -52,12 +61,28 @@ public class SupportedFinder extends QueryModelVisitorBase<RuntimeException> {
 
     @Override
     public void meet(ArbitraryLengthPath node) throws RuntimeException {
-        supported = false;
+        if(!dialect.isRecursiveQuerySupported() || existsDepth > 0 || !isSinglePropertyPath(node)) {
+            supported = false;
+        }
+        // don't visit the path expression, it is translated as a whole
     }
 
     @Override
     public void meet(BindingSetAssignment node) throws RuntimeException {
-        supported = false;
+        // unbound values (UNDEF) would need special join conditions, empty blocks an empty table
+        if(node.getBindingNames().isEmpty() || !node.getBindingSets().iterator().hasNext()) {
+            supported = false;
+        }
+        for(BindingSet row : node.getBindingSets()) {
+            if(!row.getBindingNames().containsAll(node.getBindingNames())) {
+                supported = false;
+                break;
+            }
+        }
+        // rows with IRIs that are not stored in the database are dropped from the translation
+        if(!getJoinedPatternVariables(node).containsAll(node.getBindingNames())) {
+            supported = false;
+        }
     }
 
     @Override
@@ -96,7 +121,11 @@ public class SupportedFinder extends QueryModelVisitorBase<RuntimeException> {
 
     @Override
     public void meet(Difference node) throws RuntimeException {
-        supported = false;
+        if(!isNodeComparable(node)) {
+            supported = false;
+        } else {
+            super.meet(node);
+        }
     }
 
     @Override
@@ -104,6 +133,13 @@ public class SupportedFinder extends QueryModelVisitorBase<RuntimeException> {
         supported = false;
     }
 
+    @Override
+    public void meet(Exists node) throws RuntimeException {
+        existsDepth++;
+        super.meet(node);
+        existsDepth--;
+    }
+
     @Override
     public void meet(FunctionCall node) throws RuntimeException {
         if(!isFunctionSupported(node)) {
@@ -115,7 +151,11 @@ public class SupportedFinder extends QueryModelVisitorBase<RuntimeException> {
 
     @Override
     public void meet(Intersection node) throws RuntimeException {
-        supported = false;
+        if(!isNodeComparable(node)) {
+            supported = false;
+        } else {
+            super.meet(node);
+        }
     }
 
 
@@ -140,11 +180,6 @@ public class SupportedFinder extends QueryModelVisitorBase<RuntimeException> {
         supported = false;
     }
 
-    @Override
-    public void meet(ListMemberOperator node) throws RuntimeException {
-        supported = false;
-    }
-
     /**
      * All update expressions are not directly supported; however, their query parts should work fine!
      */
@@ -158,6 +193,99 @@ public class SupportedFinder extends QueryModelVisitorBase<RuntimeException> {
     }
 
 
+    /**
+     * Check if the path is over a single, constant property, connecting the subject and object of the path, like
+     * rdfs:subClassOf* or ^skos:broader+. Sequences and alternatives of properties and paths within a GRAPH ?g
+     * clause are not supported.
+     */
+    private static boolean isSinglePropertyPath(ArbitraryLengthPath node) {
+        if(!(node.getPathExpression() instanceof StatementPattern)) {
+            return false;
+        }
+        if(node.getContextVar() != null && !node.getContextVar().hasValue()) {
+            return false;
+        }
+
+        StatementPattern step = (StatementPattern) node.getPathExpression();
+        if(!step.getPredicateVar().hasValue()) {
+            return false;
+        }
+
+        String subject = node.getSubjectVar().getName(), object = node.getObjectVar().getName();
+        String stepSubject = step.getSubjectVar().getName(), stepObject = step.getObjectVar().getName();
+        return (subject.equals(stepSubject) && object.equals(stepObject)) || (subject.equals(stepObject) && object.equals(stepSubject));
+    }
+
+    /**
+     * Check if the variables shared by the arguments of a MINUS or intersection can be compared by their node ids.
+     * This is not the case for variables bound to a computed value (BIND, aggregation), whose column contains the value.
+     */
+    private static boolean isNodeComparable(BinaryTupleOperator node) {
+        return Collections.disjoint(getComputedVariables(node.getLeftArg()), node.getRightArg().getBindingNames())
+                && Collections.disjoint(getComputedVariables(node.getRightArg()), node.getLeftArg().getBindingNames());
+    }
+
+    private static Set<String> getComputedVariables(TupleExpr expr) {
+        final Set<String> result = new HashSet<>();
+        expr.visit(new QueryModelVisitorBase<RuntimeException>() {
+            @Override
+            public void meet(ExtensionElem node) throws RuntimeException {
+                if(!(node.getExpr() instanceof Var && ((Var) node.getExpr()).getName().equals(node.getName()))) {
+                    result.add(node.getName());
+                }
+            }
+
+            @Override
+            public void meet(GroupElem node) throws RuntimeException {
+                result.add(node.getName());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Return the variables of the triple patterns joined with the given expression, i.e. the patterns of all
+     * enclosing joins except for optional, alternative, and nested parts. Values that are not stored in the database
+     * cannot be bound to these variables.
+     */
+    private static Set<String> getJoinedPatternVariables(TupleExpr expr) {
+        QueryModelNode join = expr;
+        while(join.getParentNode() instanceof Join) {
+            join = join.getParentNode();
+        }
+
+        final Set<String> result = new HashSet<>();
+        join.visit(new QueryModelVisitorBase<RuntimeException>() {
+            @Override
+            public void meet(StatementPattern node) throws RuntimeException {
+                for(Var v : node.getVarList()) {
+                    if(!v.hasValue()) {
+                        result.add(v.getName());
+                    }
+                }
+            }
+
+            @Override
+            public void meet(LeftJoin node) throws RuntimeException {
+                node.getLeftArg().visit(this);
+            }
+
+            @Override
+            public void meet(Difference node) throws RuntimeException {
+                node.getLeftArg().visit(this);
+            }
+
+            @Override
+            public void meet(Union node) throws RuntimeException {
+            }
+
+            @Override
+            public void meet(Projection node) throws RuntimeException {
+            }
+        });
+        return result;
+    }
+
     private static boolean isAtomic(ValueExpr expr) {
         return expr instanceof Var || expr instanceof ValueConstant;
     }
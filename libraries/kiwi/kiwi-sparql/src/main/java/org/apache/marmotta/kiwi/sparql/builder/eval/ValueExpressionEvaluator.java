@@ -128,9 +128,10 @@ public class ValueExpressionEvaluator extends QueryModelVisitorBase<RuntimeExcep
     @Override
     public void meet(Exists node) throws RuntimeException {
         // TODO: need to make sure that variables of the parent are visible in the subquery
-        //       - pattern names need to be unique even in subqueries
         //       - variable lookup for expressions in the subquery need to refer to the parent
-        SQLBuilder sq_builder = new SQLBuilder(node.getSubQuery(), parent.getBindings(), parent.getDataset(), parent.getConverter(), parent.getDialect(), "_", Collections.EMPTY_SET, copyVariables(parent.getVariables()));
+        // pattern names need to be unique also in nested EXISTS, because the subquery refers to the patterns of all
+        // enclosing queries
+        SQLBuilder sq_builder = new SQLBuilder(node.getSubQuery(), parent.getBindings(), parent.getDataset(), parent.getConverter(), parent.getDialect(), parent.getPrefix() + "_", Collections.EMPTY_SET, copyVariables(parent.getVariables()));
 
         builder.append("EXISTS (").append(sq_builder.build()).append(")");
     }
@@ -475,6 +476,65 @@ public class ValueExpressionEvaluator extends QueryModelVisitorBase<RuntimeExcep
     }
 
 
+    @Override
+    public void meet(ListMemberOperator node) throws RuntimeException {
+        List<ValueExpr> args = node.getArguments();
+
+        if(args.size() < 2) {
+            // empty list
+            builder.append("false");
+        } else if(isNodeIdList(node)) {
+            // IRIs are only equal to themselves, so we can test the node ids; IRIs that are not stored in the
+            // database cannot be bound to the variable and are left out
+            Set<Long> ids = new LinkedHashSet<>();
+            for(ValueExpr member : args.subList(1, args.size())) {
+                KiWiNode n = parent.getConverter().lookup((URI) ((ValueConstant) member).getValue());
+                if(n != null) {
+                    ids.add(n.getId());
+                }
+            }
+
+            if(ids.isEmpty()) {
+                builder.append("false");
+            } else {
+                optypes.push(ValueType.NODE);
+                args.get(0).visit(this);
+                optypes.pop();
+
+                builder.append(" IN (");
+                Joiner.on(",").appendTo(builder, ids);
+                builder.append(")");
+            }
+        } else {
+            // compare by value, like the = operator
+            builder.append("(");
+            for(int i = 1; i < args.size(); i++) {
+                if(i > 1) {
+                    builder.append(" OR ");
+                }
+                new Compare(args.get(0).clone(), args.get(i).clone(), Compare.CompareOp.EQ).visit(this);
+            }
+            builder.append(")");
+        }
+    }
+
+    /**
+     * Return true in case the list member test checks a variable against a list of IRIs, which can be done on the
+     * node ids instead of the values.
+     */
+    public static boolean isNodeIdList(ListMemberOperator node) {
+        List<ValueExpr> args = node.getArguments();
+        if(args.isEmpty() || !(args.get(0) instanceof Var)) {
+            return false;
+        }
+        for(ValueExpr member : args.subList(1, args.size())) {
+            if(!(member instanceof ValueConstant) || !(((ValueConstant) member).getValue() instanceof URI)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public void meet(LocalName node) throws RuntimeException {
         super.meet(node);
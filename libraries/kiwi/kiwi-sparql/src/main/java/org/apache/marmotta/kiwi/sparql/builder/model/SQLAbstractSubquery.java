@@ -17,7 +17,9 @@
 
 package org.apache.marmotta.kiwi.sparql.builder.model;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -78,6 +80,16 @@ public abstract class SQLAbstractSubquery extends SQLClause {
      */
     public abstract Set<SQLVariable> getQueryVariables();
 
+    /**
+     * Return the common table expressions (name, columns and query) needed by the subquery, including those of
+     * nested subqueries. They are defined in a WITH clause at the beginning of the outermost query, because not all
+     * databases support WITH in subqueries.
+     * @return
+     */
+    public List<String> getCommonTableExpressions() {
+        return Collections.emptyList();
+    }
+
     /**
      * Mapping for a variable between its name in a subquery and its name in the parent query. Used for resolving join
      * fields in subqueries.
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.sparql.builder.model;
+
+import org.apache.marmotta.kiwi.persistence.KiWiDialect;
+import org.apache.marmotta.kiwi.sparql.builder.ValueConverter;
+import org.apache.marmotta.kiwi.sparql.exception.UnsatisfiableQueryException;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.Dataset;
+import org.openrdf.query.algebra.Intersection;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Represents an INTERSECTION in SQL as semi join (EXISTS). A result of the left argument is kept in case the right
+ * argument has an equal result, i.e. one binding the same variables to the same values. SQL INTERSECT would need the
+ * same columns in both arguments and removes duplicates, and is not available on all supported databases, so the
+ * columns are compared explicitly, treating two unbound values as equal.
+ */
+public class SQLIntersection extends SQLSemiJoin {
+
+    public SQLIntersection(String alias, Intersection query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect) throws UnsatisfiableQueryException {
+        super(alias, query, bindings, dataset, converter, dialect);
+    }
+
+    @Override
+    protected boolean isNegated() {
+        return false;
+    }
+
+    @Override
+    protected String buildMatchCondition(String leftAlias, String rightAlias) {
+        Set<String> names = new TreeSet<>(getLeftVariables().keySet());
+        names.addAll(getRightVariables().keySet());
+
+        StringBuilder condition = new StringBuilder();
+        for(String name : names) {
+            if(condition.length() > 0) {
+                condition.append(" AND ");
+            }
+
+            SQLVariable lv = getLeftVariables().get(name);
+            SQLVariable rv = getRightVariables().get(name);
+            if(lv == null) {
+                condition.append(rightAlias).append(".").append(rv.getName()).append(" IS NULL");
+            } else if(rv == null) {
+                condition.append(leftAlias).append(".").append(lv.getName()).append(" IS NULL");
+            } else {
+                String l = leftAlias + "." + lv.getName();
+                String r = rightAlias + "." + rv.getName();
+                condition.append("(").append(l).append(" = ").append(r)
+                        .append(" OR (").append(l).append(" IS NULL AND ").append(r).append(" IS NULL))");
+            }
+        }
+
+        return condition.toString();
+    }
+}
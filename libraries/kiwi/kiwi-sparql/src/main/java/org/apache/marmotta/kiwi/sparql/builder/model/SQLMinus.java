@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.sparql.builder.model;
+
+import org.apache.marmotta.kiwi.persistence.KiWiDialect;
+import org.apache.marmotta.kiwi.sparql.builder.ValueConverter;
+import org.apache.marmotta.kiwi.sparql.exception.UnsatisfiableQueryException;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.Dataset;
+import org.openrdf.query.algebra.Difference;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Represents a SPARQL MINUS in SQL as anti join (NOT EXISTS). Following the SPARQL semantics, a result of the left
+ * argument is removed in case the right argument has a result that is compatible with it (all shared variables bound
+ * in both have the same value) and that shares at least one bound variable with it. Unlike FILTER NOT EXISTS, the right
+ * argument is evaluated without the bindings of the left argument.
+ * <p/>
+ * Example: for { ?p foaf:name ?n } MINUS { ?p foaf:knows ?f } with left subquery M1_L and right subquery M1_R, rows are
+ * kept WHERE NOT EXISTS (SELECT 1 FROM (...) AS M1_R WHERE M1_L.V1 = M1_R.V1).
+ */
+public class SQLMinus extends SQLSemiJoin {
+
+    public SQLMinus(String alias, Difference query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect) throws UnsatisfiableQueryException {
+        super(alias, query, bindings, dataset, converter, dialect);
+    }
+
+    @Override
+    protected boolean isNegated() {
+        return true;
+    }
+
+    @Override
+    protected String buildMatchCondition(String leftAlias, String rightAlias) {
+        Set<String> shared = new TreeSet<>(getLeftVariables().keySet());
+        shared.retainAll(getRightVariables().keySet());
+
+        if(shared.isEmpty()) {
+            // without shared variables, no result is removed
+            return "false";
+        }
+
+        List<String> compatible = new ArrayList<>();
+        List<String> overlapping = new ArrayList<>();
+        for(String name : shared) {
+            String l = leftAlias + "." + getLeftVariables().get(name).getName();
+            String r = rightAlias + "." + getRightVariables().get(name).getName();
+
+            compatible.add("(" + l + " IS NULL OR " + r + " IS NULL OR " + l + " = " + r + ")");
+            overlapping.add(l + " = " + r);
+        }
+
+        if(shared.size() == 1) {
+            // compatible and overlapping in case the variable has the same value in both
+            return overlapping.get(0);
+        }
+
+        StringBuilder condition = new StringBuilder();
+        for(String c : compatible) {
+            condition.append(c).append(" AND ");
+        }
+        condition.append("(");
+        for(int i = 0; i < overlapping.size(); i++) {
+            if(i > 0) {
+                condition.append(" OR ");
+            }
+            condition.append(overlapping.get(i));
+        }
+        condition.append(")");
+
+        return condition.toString();
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.sparql.builder.model;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.sparql.builder.ValueConverter;
+import org.apache.marmotta.kiwi.sparql.builder.ValueType;
+import org.apache.marmotta.kiwi.sparql.exception.UnsatisfiableQueryException;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.vocabulary.SESAME;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.Dataset;
+import org.openrdf.query.algebra.ArbitraryLengthPath;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.Var;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents a SPARQL arbitrary length property path (e.g. rdfs:subClassOf* or skos:broader+) over a single
+ * predicate in SQL. The transitive closure of the predicate is computed by a recursive common table expression
+ * with the columns start_id and end_id, which is defined at the beginning of the outermost query (see
+ * {@link org.apache.marmotta.kiwi.sparql.builder.SQLBuilder#getCommonTableExpressions()}). The subquery then selects
+ * the distinct pairs from the closure, adding the zero length pairs for paths with a minimum length of 0.
+ * <p/>
+ * The recursion starts at the bound end of the path (a constant or a value of the initial bindings), walking
+ * backwards if only the end node is bound. If neither end is bound, the builder may seed the recursion with a
+ * selective triple pattern joined on one of the ends (see {@link #setSeed(String, String, String)}); otherwise the
+ * closure of the complete relation is computed. Cycles are detected by using UNION in the recursive query, which
+ * removes pairs that have been found before.
+ */
+public class SQLPath extends SQLAbstractSubquery {
+
+    // common table expressions are defined in the outermost query, so their names need to be unique across all
+    // (nested) builders
+    private static AtomicInteger cteCounter = new AtomicInteger(0);
+
+    private static final String START = "start_id";
+    private static final String END   = "end_id";
+
+    private String cteName;
+
+    private String fromColumn, toColumn;
+
+    private Var startVar, endVar;
+
+    // node ids of the bound ends of the path, -1 if unbound; nodes that do not exist in the database match nothing
+    private long predicateId, startId = -1, endId = -1;
+
+    private boolean startBound, endBound;
+
+    private long minLength;
+
+    private String contextCondition;
+
+    // column and condition (on the alias S) of a triple pattern selecting the start nodes of the recursion, or null
+    private String seedColumn, seedCondition;
+
+    private String commonTableExpression;
+
+    private String closureQuery;
+
+    private Set<SQLVariable> variables;
+
+    public SQLPath(String alias, ArbitraryLengthPath path, BindingSet bindings, Dataset dataset, ValueConverter converter) throws UnsatisfiableQueryException {
+        super(alias);
+
+        this.cteName = "PATH" + cteCounter.incrementAndGet();
+
+        StatementPattern step = (StatementPattern) path.getPathExpression();
+
+        // the step pattern is inverted for inverse paths like ^skos:broader+
+        boolean inverse = step.getObjectVar().getName().equals(path.getSubjectVar().getName())
+                && !step.getSubjectVar().getName().equals(path.getSubjectVar().getName());
+
+        fromColumn = inverse ? "object" : "subject";
+        toColumn   = inverse ? "subject" : "object";
+
+        startVar = path.getSubjectVar();
+        endVar   = path.getObjectVar();
+
+        // values of the initial bindings are used like constants to start the recursion, the variables remain
+        // columns of the subquery so the builder can still join them with the bindings
+        Value startValue = getValue(startVar, bindings);
+        Value endValue   = getValue(endVar, bindings);
+
+        // walk backwards from the end node in case only the end of the path is bound
+        if(startValue == null && endValue != null) {
+            reverse();
+
+            Value tmp  = startValue;
+            startValue = endValue;
+            endValue   = tmp;
+        }
+
+        predicateId = getNodeId(step.getPredicateVar().getValue(), converter);
+
+        if(startValue != null) {
+            startBound = true;
+            startId = getNodeId(startValue, converter);
+        }
+        if(endValue != null) {
+            endBound = true;
+            endId = getNodeId(endValue, converter);
+        }
+
+        minLength = path.getMinLength();
+        contextCondition = buildContextCondition(path, dataset, converter);
+    }
+
+    /**
+     * Return the variables of the path ends that are neither constants nor bound by the initial bindings, and can
+     * therefore be used for seeding the recursion with a joined triple pattern.
+     */
+    public Set<String> getSeedVariables() {
+        Set<String> result = new HashSet<>();
+        if(!startBound && !endBound) {
+            result.add(startVar.getName());
+            result.add(endVar.getName());
+        }
+        return result;
+    }
+
+    /**
+     * Restrict the start nodes of the recursion to the nodes bound to the given variable by a triple pattern joined
+     * with the path. The recursion walks backwards in case the variable is the end of the path. The seed must
+     * select a superset of the nodes the variable can be bound to in the joined query.
+     *
+     * @param variable  name of one of the variables returned by {@link #getSeedVariables()}
+     * @param column    the column of the triples table (alias S) holding the node ids of the variable
+     * @param condition the condition on the triples table (alias S) selecting the seed nodes
+     */
+    public void setSeed(String variable, String column, String condition) {
+        Preconditions.checkState(closureQuery == null && variables == null, "path query has already been built");
+        Preconditions.checkArgument(getSeedVariables().contains(variable));
+
+        if(!startVar.getName().equals(variable)) {
+            reverse();
+        }
+        seedColumn    = column;
+        seedCondition = condition;
+    }
+
+    private void reverse() {
+        Var tmpVar = startVar;
+        startVar = endVar;
+        endVar   = tmpVar;
+
+        String tmp = fromColumn;
+        fromColumn = toColumn;
+        toColumn   = tmp;
+    }
+
+    private static Value getValue(Var var, BindingSet bindings) {
+        if(var.hasValue()) {
+            return var.getValue();
+        } else if(bindings != null) {
+            return bindings.getValue(var.getName());
+        } else {
+            return null;
+        }
+    }
+
+    private String buildSeedQuery() {
+        return "SELECT S." + seedColumn + " FROM triples S WHERE " + seedCondition;
+    }
+
+    private void buildQueries() {
+        if(closureQuery != null) {
+            return;
+        }
+
+        // the closure of the step relation, computed by a recursive query
+        StringBuilder cte = new StringBuilder();
+        cte.append(cteName);
+        cte.append("(").append(START).append(", ").append(END).append(") AS (");
+        cte.append("SELECT T.").append(fromColumn).append(", T.").append(toColumn);
+        cte.append(" FROM triples T WHERE ").append(buildStepCondition("T", predicateId, contextCondition));
+        if(startBound) {
+            cte.append(" AND T.").append(fromColumn).append(" = ").append(startId);
+        } else if(seedCondition != null) {
+            cte.append(" AND T.").append(fromColumn).append(" IN (").append(buildSeedQuery()).append(")");
+        }
+        cte.append(" UNION ");
+        cte.append("SELECT R.").append(START).append(", T.").append(toColumn);
+        cte.append(" FROM ").append(cteName).append(" R, triples T WHERE T.").append(fromColumn).append(" = R.").append(END);
+        cte.append(" AND ").append(buildStepCondition("T", predicateId, contextCondition));
+        cte.append(")");
+        commonTableExpression = cte.toString();
+
+        // the distinct pairs of the closure, plus the zero length paths if requested; these do not depend on the
+        // predicate, so they are also returned if it does not occur in the database
+        StringBuilder closure = new StringBuilder();
+        closure.append("SELECT DISTINCT ").append(START).append(", ").append(END).append(" FROM ").append(cteName);
+        if(minLength == 0) {
+            if(startBound) {
+                closure.append(" UNION SELECT ").append(startId).append(", ").append(startId);
+            } else if(seedCondition != null) {
+                closure.append(" UNION SELECT S.").append(seedColumn).append(", S.").append(seedColumn);
+                closure.append(" FROM triples S WHERE ").append(seedCondition);
+            } else {
+                // all nodes occurring in the active graph
+                closure.append(" UNION SELECT Z.subject, Z.subject FROM triples Z WHERE Z.deleted = false");
+                if(contextCondition != null) {
+                    closure.append(" AND Z.").append(contextCondition);
+                }
+                closure.append(" UNION SELECT Z.object, Z.object FROM triples Z WHERE Z.deleted = false");
+                if(contextCondition != null) {
+                    closure.append(" AND Z.").append(contextCondition);
+                }
+            }
+        }
+
+        List<String> conditions = new ArrayList<>();
+        if(endBound) {
+            conditions.add(alias + "_C." + END + " = " + endId);
+        }
+        if(!startBound && !endBound && startVar.getName().equals(endVar.getName())) {
+            conditions.add(alias + "_C." + START + " = " + alias + "_C." + END);
+        }
+
+        StringBuilder query = new StringBuilder();
+        query.append("SELECT ").append(alias).append("_C.").append(START).append(", ").append(alias).append("_C.").append(END);
+        query.append(" FROM (").append(closure).append(") AS ").append(alias).append("_C");
+        if(conditions.size() > 0) {
+            query.append(" WHERE ");
+            Joiner.on(" AND ").appendTo(query, conditions);
+        }
+        closureQuery = query.toString();
+    }
+
+    private static long getNodeId(Value value, ValueConverter converter) {
+        KiWiNode node = converter.convert(value);
+        return node != null ? node.getId() : -1;
+    }
+
+    private static String buildStepCondition(String name, long predicateId, String contextCondition) {
+        StringBuilder condition = new StringBuilder();
+        condition.append(name).append(".predicate = ").append(predicateId);
+        condition.append(" AND ").append(name).append(".deleted = false");
+        if(contextCondition != null) {
+            condition.append(" AND ").append(name).append(".").append(contextCondition);
+        }
+        return condition.toString();
+    }
+
+    /**
+     * Build the restriction of the context column given by the context of the path or the dataset, following the
+     * same rules as for statement patterns (MARMOTTA-340). Returns null in case the path is not restricted to
+     * certain contexts.
+     */
+    private static String buildContextCondition(ArbitraryLengthPath path, Dataset dataset, ValueConverter converter) throws UnsatisfiableQueryException {
+        Value contextValue = path.getContextVar() != null ? path.getContextVar().getValue() : null;
+
+        Set<URI> graphs = null;
+        if (dataset != null) {
+            if (path.getScope() == StatementPattern.Scope.DEFAULT_CONTEXTS) {
+                graphs = dataset.getDefaultGraphs();
+                if(graphs.isEmpty() && !dataset.getNamedGraphs().isEmpty()) {
+                    throw new UnsatisfiableQueryException("dataset does not contain any default graphs");
+                }
+            } else {
+                graphs = dataset.getNamedGraphs();
+                if(graphs.isEmpty() && !dataset.getDefaultGraphs().isEmpty()) {
+                    throw new UnsatisfiableQueryException("dataset does not contain any named graphs");
+                }
+            }
+        }
+
+        List<Long> contextIds = new ArrayList<>();
+        if (graphs == null || graphs.isEmpty()) {
+            if (contextValue != null) {
+                contextIds.add(getNodeId(contextValue, converter));
+            }
+        } else if (contextValue != null) {
+            if (graphs.contains(contextValue)) {
+                contextIds.add(getNodeId(contextValue, converter));
+            } else {
+                throw new UnsatisfiableQueryException("default graph does not contain path context '" + contextValue.stringValue() + "'");
+            }
+        } else {
+            for (URI graph : graphs) {
+                if (!SESAME.NIL.equals(graph)) {
+                    contextIds.add(getNodeId(graph, converter));
+                }
+            }
+        }
+
+        if(contextIds.isEmpty()) {
+            return null;
+        } else if(contextIds.size() == 1) {
+            return "context = " + contextIds.get(0);
+        } else {
+            return "context IN (" + Joiner.on(",").join(contextIds) + ")";
+        }
+    }
+
+    /**
+     * Return the SQL variables used by the subquery; we need this to do proper mapping in the parent query.
+     *
+     * @return
+     */
+    @Override
+    public Set<SQLVariable> getQueryVariables() {
+        if(variables == null) {
+            // the ends of the path that are not constants are the variables of the subquery
+            variables = new HashSet<>();
+            if(!startVar.hasValue()) {
+                SQLVariable sv = new SQLVariable(START, startVar.getName());
+                sv.setProjectionType(ValueType.NODE);
+                variables.add(sv);
+            }
+            if(!endVar.hasValue() && !endVar.getName().equals(startVar.getName())) {
+                SQLVariable sv = new SQLVariable(END, endVar.getName());
+                sv.setProjectionType(ValueType.NODE);
+                variables.add(sv);
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Return the recursive common table expression computing the closure of the path.
+     *
+     * @return
+     */
+    @Override
+    public List<String> getCommonTableExpressions() {
+        buildQueries();
+        return Collections.singletonList(commonTableExpression);
+    }
+
+    /**
+     * Build the query fragment that can be used in the FROM clause of a SQL query for representing this SPARQL construct.
+     * The fragment will be joined appropriately by the enclosing construct using CROSS JOIN, LEFT JOIN or normal JOIN.
+     *
+     * @return
+     */
+    @Override
+    public String buildFromClause() {
+        buildQueries();
+
+        StringBuilder fromClause = new StringBuilder();
+        fromClause
+                .append("(")
+                .append(closureQuery)
+                .append(") AS ")
+                .append(alias);
+
+        for(VariableMapping var : getJoinFields()) {
+            fromClause.append(" LEFT JOIN nodes AS ");  // outer join because binding might be NULL
+            fromClause.append(alias).append("_").append(var.getParentName());
+
+            fromClause
+                    .append(" ON ").append(alias).append(".").append(var.getSubqueryName())
+                    .append(" = ").append(alias).append("_").append(var.getParentName()).append(".id ");
+        }
+
+        return fromClause.toString();
+    }
+}
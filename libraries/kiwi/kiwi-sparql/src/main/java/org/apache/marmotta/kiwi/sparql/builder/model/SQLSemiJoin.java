@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.sparql.builder.model;
+
+import org.apache.marmotta.kiwi.persistence.KiWiDialect;
+import org.apache.marmotta.kiwi.sparql.builder.SQLBuilder;
+import org.apache.marmotta.kiwi.sparql.builder.ValueConverter;
+import org.apache.marmotta.kiwi.sparql.builder.ValueType;
+import org.apache.marmotta.kiwi.sparql.exception.UnsatisfiableQueryException;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.Dataset;
+import org.openrdf.query.algebra.BinaryTupleOperator;
+import org.openrdf.query.algebra.Projection;
+import org.openrdf.query.algebra.ProjectionElem;
+import org.openrdf.query.algebra.TupleExpr;
+
+import java.util.*;
+
+/**
+ * Common base for SPARQL constructs that keep those results of their left argument that do (INTERSECTION) or do not
+ * (MINUS) have a matching result in their right argument. The left argument is translated into a derived table, whose
+ * rows are filtered by an EXISTS or NOT EXISTS subquery over the right argument, so the database can evaluate the
+ * construct as semi join or anti join. Like the arguments of a UNION, both arguments are translated independently;
+ * which rows match is decided by comparing the columns of their shared variables (see {@link #buildMatchCondition(String, String)}).
+ */
+public abstract class SQLSemiJoin extends SQLAbstractSubquery {
+
+    private SQLBuilder left, right;
+
+    // the SQL variables projected by the left and right argument, by SPARQL variable name
+    private Map<String,SQLVariable> leftVariables  = new HashMap<>();
+    private Map<String,SQLVariable> rightVariables = new HashMap<>();
+
+    protected SQLSemiJoin(String alias, BinaryTupleOperator query, BindingSet bindings, Dataset dataset, ValueConverter converter, KiWiDialect dialect) throws UnsatisfiableQueryException {
+        super(alias);
+
+        Set<String> leftProjected  = getProjectedVariables(query.getLeftArg());
+        Set<String> rightProjected = getProjectedVariables(query.getRightArg());
+
+        left  = new SQLBuilder(query.getLeftArg(), bindings, dataset, converter, dialect, leftProjected);
+        right = new SQLBuilder(query.getRightArg(), bindings, dataset, converter, dialect, rightProjected);
+
+        collectVariables(left, leftProjected, leftVariables);
+        collectVariables(right, rightProjected, rightVariables);
+    }
+
+    /**
+     * Return true in case the rows of the left argument having a match in the right argument are removed (NOT EXISTS),
+     * false in case they are kept (EXISTS).
+     */
+    protected abstract boolean isNegated();
+
+    /**
+     * Build the condition deciding whether a row of the left argument matches a row of the right argument.
+     *
+     * @param leftAlias  alias of the derived table of the left argument
+     * @param rightAlias alias of the derived table of the right argument
+     * @return the SQL condition, or the empty string if all rows match
+     */
+    protected abstract String buildMatchCondition(String leftAlias, String rightAlias);
+
+    /**
+     * Return the SQL variables projected by the left argument, by SPARQL variable name.
+     */
+    protected Map<String, SQLVariable> getLeftVariables() {
+        return leftVariables;
+    }
+
+    /**
+     * Return the SQL variables projected by the right argument, by SPARQL variable name.
+     */
+    protected Map<String, SQLVariable> getRightVariables() {
+        return rightVariables;
+    }
+
+    /**
+     * Return the SQL variables used by the subquery; we need this to do proper mapping in the parent query. These are
+     * the variables of the left argument, the right argument only filters its results.
+     *
+     * @return
+     */
+    @Override
+    public Set<SQLVariable> getQueryVariables() {
+        return new HashSet<>(leftVariables.values());
+    }
+
+    /**
+     * Return the common table expressions needed by both arguments.
+     *
+     * @return
+     */
+    @Override
+    public List<String> getCommonTableExpressions() {
+        List<String> result = new ArrayList<>(left.getCommonTableExpressions());
+        result.addAll(right.getCommonTableExpressions());
+        return result;
+    }
+
+    /**
+     * Build the query fragment that can be used in the FROM clause of a SQL query for representing this SPARQL construct.
+     * The fragment will be joined appropriately by the enclosing construct using CROSS JOIN, LEFT JOIN or normal JOIN.
+     *
+     * @return
+     */
+    @Override
+    public String buildFromClause() {
+        String leftAlias  = alias + "_L";
+        String rightAlias = alias + "_R";
+
+        StringBuilder fromClause = new StringBuilder();
+        fromClause
+                .append("(SELECT * FROM (")
+                .append(left.buildSubquery())
+                .append(") AS ").append(leftAlias)
+                .append(" WHERE ").append(isNegated() ? "NOT EXISTS" : "EXISTS")
+                .append(" (SELECT 1 FROM (")
+                .append(right.buildSubquery())
+                .append(") AS ").append(rightAlias);
+
+        String matchCondition = buildMatchCondition(leftAlias, rightAlias);
+        if(matchCondition.length() > 0) {
+            fromClause.append(" WHERE ").append(matchCondition);
+        }
+
+        fromClause.append(")) AS ").append(alias);
+
+        for(VariableMapping var : getJoinFields()) {
+            fromClause.append(" LEFT JOIN nodes AS ");  // outer join because binding might be NULL
+            fromClause.append(alias).append("_").append(var.getParentName());
+
+            fromClause
+                    .append(" ON ").append(alias).append(".").append(var.getSubqueryName())
+                    .append(" = ").append(alias).append("_").append(var.getParentName()).append(".id ");
+        }
+
+        return fromClause.toString();
+    }
+
+
+    /**
+     * Collect the variables of a builder that are projected as columns of its query.
+     */
+    private static void collectVariables(SQLBuilder builder, Set<String> projected, Map<String,SQLVariable> result) {
+        for(SQLVariable sv : builder.getVariables().values()) {
+            if(sv.getProjectionType() != ValueType.NONE && sv.hasExpressions() && (projected.isEmpty() || projected.contains(sv.getSparqlName()))) {
+                result.put(sv.getSparqlName(), sv);
+            }
+        }
+    }
+
+    private static Set<String> getProjectedVariables(TupleExpr expr) {
+        Set<String> projectedVars = new HashSet<>();
+        if(expr instanceof Projection) {
+            for (ProjectionElem elem : ((Projection) expr).getProjectionElemList().getElements()) {
+                projectedVars.add(elem.getSourceName());
+            }
+        }
+        return projectedVars;
+    }
+}
@@ -27,6 +27,7 @@ import org.openrdf.query.algebra.Projection;
 import org.openrdf.query.algebra.ProjectionElem;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -73,6 +74,16 @@ public class SQLSubQuery extends SQLAbstractSubquery {
         return variables;
     }
 
+    /**
+     * Return the common table expressions needed by the subquery.
+     *
+     * @return
+     */
+    @Override
+    public List<String> getCommonTableExpressions() {
+        return builder.getCommonTableExpressions();
+    }
+
     /**
      * Build the query fragment that can be used in the FROM clause of a SQL query for representing this SPARQL construct.
      * The fragment will be joined appropriately by the enclosing construct using CROSS JOIN, LEFT JOIN or normal JOIN.
@@ -84,7 +95,7 @@ public class SQLSubQuery extends SQLAbstractSubquery {
         StringBuilder fromClause = new StringBuilder();
         fromClause
                 .append("(")
-                .append(builder.build())
+                .append(builder.buildSubquery())
                 .append(") AS ")
                 .append(alias);
 
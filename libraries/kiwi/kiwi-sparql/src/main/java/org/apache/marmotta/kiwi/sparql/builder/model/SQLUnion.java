@@ -145,6 +145,18 @@ public class SQLUnion extends SQLAbstractSubquery {
         return variables;
     }
 
+    /**
+     * Return the common table expressions needed by both parts of the union.
+     *
+     * @return
+     */
+    @Override
+    public List<String> getCommonTableExpressions() {
+        List<String> result = new ArrayList<>(left.getCommonTableExpressions());
+        result.addAll(right.getCommonTableExpressions());
+        return result;
+    }
+
     /**
      * Build the query fragment that can be used in the FROM clause of a SQL query for representing this SPARQL construct.
      * The fragment will be joined appropriately by the enclosing construct using CROSS JOIN, LEFT JOIN or normal JOIN.
@@ -156,9 +168,9 @@ public class SQLUnion extends SQLAbstractSubquery {
         StringBuilder fromClause = new StringBuilder();
         fromClause
                 .append("((")
-                .append(left.build())
+                .append(left.buildSubquery())
                 .append(") UNION (")
-                .append(right.build())
+                .append(right.buildSubquery())
                 .append(")) AS ")
                 .append(alias);
 
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.kiwi.sparql.builder.model;
+
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.sparql.builder.ValueConverter;
+import org.apache.marmotta.kiwi.sparql.builder.ValueType;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.algebra.BindingSetAssignment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Represents a SPARQL VALUES block in SQL. The rows of the block are translated into a derived table of node ids,
+ * built as UNION ALL of single row SELECTs, which is supported by all databases and keeps duplicate rows like
+ * SPARQL does. The derived table is then joined with the rest of the query like any other subquery.
+ * <p/>
+ * Rows with unbound values (UNDEF) are not supported, because the join conditions of the enclosing query do not
+ * treat NULL as compatible with any value (see {@link org.apache.marmotta.kiwi.sparql.builder.collect.SupportedFinder}).
+ * IRIs are only looked up in the database, rows containing IRIs that are not stored are dropped; the finder
+ * therefore only supports blocks whose variables are all bound by joined triple patterns.
+ */
+public class SQLValues extends SQLAbstractSubquery {
+
+    private Set<SQLVariable> variables = new HashSet<>();
+
+    private String valuesQuery;
+
+    public SQLValues(String alias, BindingSetAssignment node, ValueConverter converter) {
+        super(alias);
+
+        // fixed column order, the binding names of a binding set assignment are not ordered
+        List<String> names = new ArrayList<>(new TreeSet<>(node.getBindingNames()));
+        for(int i = 0; i < names.size(); i++) {
+            SQLVariable sv = new SQLVariable("V" + (i + 1), names.get(i));
+            sv.setProjectionType(ValueType.NODE);
+            variables.add(sv);
+        }
+
+        // IRIs that are not stored in the database cannot match any joined pattern, so their rows are dropped
+        // instead of creating new nodes for them
+        List<List<Long>> rows = new ArrayList<>();
+        for(BindingSet row : node.getBindingSets()) {
+            List<Long> ids = new ArrayList<>(names.size());
+            for(String name : names) {
+                Value value = row.getValue(name);
+                KiWiNode n = value instanceof URI ? converter.lookup((URI) value) : converter.convert(value);
+                if(n == null) {
+                    break;
+                }
+                ids.add(n.getId());
+            }
+            if(ids.size() == names.size()) {
+                rows.add(ids);
+            }
+        }
+
+        // a single row of ids that do not exist represents an empty block
+        if(rows.isEmpty()) {
+            rows.add(Collections.nCopies(names.size(), -1L));
+        }
+
+        StringBuilder query = new StringBuilder();
+        boolean first = true;
+        for(List<Long> row : rows) {
+            if(!first) {
+                query.append("\n UNION ALL ");
+            }
+            query.append("SELECT ");
+            for(int i = 0; i < names.size(); i++) {
+                if(i > 0) {
+                    query.append(", ");
+                }
+                query.append(row.get(i));
+
+                // column names are taken from the first SELECT of the union
+                if(first) {
+                    query.append(" AS V").append(i + 1);
+                }
+            }
+            first = false;
+        }
+        valuesQuery = query.toString();
+    }
+
+    /**
+     * Return the SQL variables used by the subquery; we need this to do proper mapping in the parent query.
+     *
+     * @return
+     */
+    @Override
+    public Set<SQLVariable> getQueryVariables() {
+        return variables;
+    }
+
+    /**
+     * Build the query fragment that can be used in the FROM clause of a SQL query for representing this SPARQL construct.
+     * The fragment will be joined appropriately by the enclosing construct using CROSS JOIN, LEFT JOIN or normal JOIN.
+     *
+     * @return
+     */
+    @Override
+    public String buildFromClause() {
+        StringBuilder fromClause = new StringBuilder();
+        fromClause
+                .append("(")
+                .append(valuesQuery)
+                .append(") AS ")
+                .append(alias);
+
+        for(VariableMapping var : getJoinFields()) {
+            fromClause.append(" LEFT JOIN nodes AS ");
+            fromClause.append(alias).append("_").append(var.getParentName());
+
+            fromClause
+                    .append(" ON ").append(alias).append(".").append(var.getSubqueryName())
+                    .append(" = ").append(alias).append("_").append(var.getParentName()).append(".id ");
+        }
+
+        return fromClause.toString();
+    }
+}
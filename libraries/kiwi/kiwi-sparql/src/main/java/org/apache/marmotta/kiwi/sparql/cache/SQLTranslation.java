@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.cache;
+
+import org.apache.marmotta.kiwi.sparql.builder.model.SQLVariable;
+import org.openrdf.model.Value;
+import org.openrdf.query.algebra.Var;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The translation of a SPARQL query into a parameterized SQL query. The values of the JDBC parameters are taken from
+ * the bound variables of the query (as collected by
+ * {@link org.apache.marmotta.kiwi.sparql.builder.collect.QueryShapeFinder}), so a translation can be reused for all
+ * queries with the same shape. Values that have been written literally into the SQL query (e.g. in filters or
+ * subqueries) are recorded and need to be the same for reusing a translation.
+ * <p/>
+ * Translations are immutable and can be shared between connections.
+ */
+public class SQLTranslation {
+
+    private final String sql;
+
+    // index of the bound variable providing the value for each JDBC parameter
+    private final int[] parameters;
+
+    // values of bound variables that are written literally in the SQL query, by index of the bound variable
+    private final Map<Integer,Value> fixedValues;
+
+    private final List<SQLVariable> variables;
+
+    private final Set<String> projectedVars;
+
+    private SQLTranslation(String sql, int[] parameters, Map<Integer, Value> fixedValues, Collection<SQLVariable> variables, Set<String> projectedVars) {
+        this.sql = sql;
+        this.parameters = parameters;
+        this.fixedValues = fixedValues;
+        this.variables = Collections.unmodifiableList(new ArrayList<>(variables));
+        this.projectedVars = Collections.unmodifiableSet(new HashSet<>(projectedVars));
+    }
+
+    /**
+     * Create a new translation.
+     *
+     * @param sql            the SQL query, with "?" for JDBC parameters
+     * @param parameterVars  the variables providing the values of the JDBC parameters, in parameter order
+     * @param inlinedValues  the values written literally into the SQL query
+     * @param boundVariables the bound variables of the translated query
+     * @param variables      the SQL variables of the query, used for constructing results
+     * @param projectedVars  the projected variables of the query
+     * @return the translation
+     * @throws IllegalArgumentException in case a parameter variable is not one of the bound variables of the query
+     */
+    public static SQLTranslation create(String sql, List<Var> parameterVars, Set<Value> inlinedValues, List<Var> boundVariables, Collection<SQLVariable> variables, Set<String> projectedVars) {
+        int[] parameters = new int[parameterVars.size()];
+        for(int i = 0; i < parameters.length; i++) {
+            parameters[i] = indexOf(boundVariables, parameterVars.get(i));
+            if(parameters[i] < 0) {
+                throw new IllegalArgumentException("parameter variable " + parameterVars.get(i).getName() + " is not bound in the query");
+            }
+        }
+
+        Map<Integer,Value> fixedValues = new HashMap<>();
+        for(int i = 0; i < boundVariables.size(); i++) {
+            if(inlinedValues.contains(boundVariables.get(i).getValue())) {
+                fixedValues.put(i, boundVariables.get(i).getValue());
+            }
+        }
+
+        return new SQLTranslation(sql, parameters, fixedValues, variables, projectedVars);
+    }
+
+    /**
+     * Return the index of the given variable in the list of bound variables, or -1 if it is not contained. Variables
+     * are compared by identity, because variables with the same name and value may occur several times in a query.
+     */
+    public static int indexOf(List<Var> boundVariables, Var v) {
+        for(int i = 0; i < boundVariables.size(); i++) {
+            if(boundVariables.get(i) == v) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return true in case this translation can be used for a query with the given bound variables, i.e. all values
+     * that have been written literally into the SQL query are the same.
+     */
+    public boolean matches(List<Var> boundVariables) {
+        for(Map.Entry<Integer,Value> entry : fixedValues.entrySet()) {
+            if(entry.getKey() >= boundVariables.size() || !entry.getValue().equals(boundVariables.get(entry.getKey()).getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the values for the JDBC parameters of the SQL query, taken from the given bound variables.
+     */
+    public Value[] getParameterValues(List<Var> boundVariables) {
+        Value[] values = new Value[parameters.length];
+        for(int i = 0; i < parameters.length; i++) {
+            values[i] = boundVariables.get(parameters[i]).getValue();
+        }
+        return values;
+    }
+
+    public String getSQL() {
+        return sql;
+    }
+
+    public List<SQLVariable> getVariables() {
+        return variables;
+    }
+
+    public Set<String> getProjectedVars() {
+        return projectedVars;
+    }
+}
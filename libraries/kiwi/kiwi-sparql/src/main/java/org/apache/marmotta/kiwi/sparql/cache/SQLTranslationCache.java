@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.openrdf.query.algebra.Var;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache for SPARQL to SQL translations, keyed by the shape of the translated query (see
+ * {@link org.apache.marmotta.kiwi.sparql.builder.collect.QueryShapeFinder}). The cache is shared by all connections
+ * of a SPARQL sail.
+ */
+public class SQLTranslationCache implements SQLTranslationCacheMBean {
+
+    private Cache<String,SQLTranslation> cache;
+
+    private final AtomicLong hits   = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * Create a new translation cache holding at most the given number of translations.
+     */
+    public SQLTranslationCache(int maximumSize) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * Look up the translation for the query with the given shape and bound variables.
+     *
+     * @param shape          the query shape
+     * @param boundVariables the bound variables of the query
+     * @return the cached translation, or null in case there is no translation usable for the query
+     */
+    public SQLTranslation get(String shape, List<Var> boundVariables) {
+        SQLTranslation translation = cache.getIfPresent(shape);
+        if(translation != null && translation.matches(boundVariables)) {
+            hits.incrementAndGet();
+            return translation;
+        } else {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Add the translation of a query with the given shape to the cache.
+     */
+    public void put(String shape, SQLTranslation translation) {
+        cache.put(shape, translation);
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public void clear() {
+        cache.invalidateAll();
+        hits.set(0);
+        misses.set(0);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.cache;
+
+/**
+ * Statistics of the SPARQL to SQL translation cache, to be published in JMX. The JMX name of the bean will be
+ * org.apache.marmotta.kiwi.jmx:type=SQLTranslationCacheMBean,name=[configuration name]
+ */
+public interface SQLTranslationCacheMBean {
+
+    /**
+     * Return the number of queries that have been answered with a cached translation.
+     */
+    long getHits();
+
+    /**
+     * Return the number of queries that needed to be translated.
+     */
+    long getMisses();
+
+    /**
+     * Return the number of translations currently in the cache.
+     */
+    long getSize();
+
+    /**
+     * Remove all translations from the cache and reset the counters.
+     */
+    void clear();
+}
@@ -14,24 +14,45 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.apache.marmotta.kiwi.sparql.evaluation;
 
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.sparql.statistics.KiWiTripleStatistics;
+import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 import org.openrdf.query.algebra.StatementPattern;
 import org.openrdf.query.algebra.Var;
 import org.openrdf.query.algebra.evaluation.impl.EvaluationStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
 
 /**
- * Add file description here!
+ * Evaluation statistics for query optimization in the KiWi triple store. In case triple statistics are available,
+ * the cardinality of statement patterns is estimated using the number of triples per predicate and context and
+ * the number of distinct subjects and objects per predicate; otherwise, the Sesame default heuristics are used.
  *
  * @author Sebastian Schaffert (sschaffert@apache.org)
  */
 public class KiWiEvaluationStatistics extends EvaluationStatistics {
 
+    private static Logger log = LoggerFactory.getLogger(KiWiEvaluationStatistics.class);
+
+    private KiWiTripleStatistics statistics;
+
+    private KiWiConnection connection;
+
     public KiWiEvaluationStatistics() {
     }
 
+    public KiWiEvaluationStatistics(KiWiTripleStatistics statistics, KiWiConnection connection) {
+        this.statistics = statistics;
+        this.connection = connection;
+    }
+
     @Override
     protected CardinalityCalculator createCardinalityCalculator() {
         return new KiWiCardinalityCalculator();
@@ -41,12 +62,43 @@ public class KiWiEvaluationStatistics extends EvaluationStatistics {
 
         @Override
         protected double getCardinality(StatementPattern sp) {
+            if(statistics != null && statistics.isInitialised()) {
+                return statistics.getCardinality(
+                        getNodeId(sp.getSubjectVar()),
+                        getNodeId(sp.getPredicateVar()),
+                        getNodeId(sp.getObjectVar()),
+                        getNodeId(sp.getContextVar())
+                );
+            }
             return super.getCardinality(sp);
         }
 
         protected Value getConstantValue(Var var) {
             return (var != null) ? var.getValue() : null;
         }
+
+        /**
+         * Return the database id of the value the variable is bound to, or one of the special ids
+         * KiWiTripleStatistics.UNBOUND and KiWiTripleStatistics.UNKNOWN. URIs are looked up without creating them.
+         */
+        private long getNodeId(Var var) {
+            Value value = getConstantValue(var);
+            if(value == null) {
+                return KiWiTripleStatistics.UNBOUND;
+            } else if(value instanceof KiWiNode && ((KiWiNode) value).getId() >= 0) {
+                return ((KiWiNode) value).getId();
+            } else if(value instanceof URI && connection != null) {
+                try {
+                    KiWiUriResource uri = connection.loadUriResource(value.stringValue());
+                    if(uri != null) {
+                        return uri.getId();
+                    }
+                } catch (SQLException ex) {
+                    log.warn("could not look up URI {} for cardinality estimation", value);
+                }
+            }
+            return KiWiTripleStatistics.UNKNOWN;
+        }
     }
 
 }
@@ -17,19 +17,26 @@
 
 package org.apache.marmotta.kiwi.sparql.evaluation;
 
+import com.google.common.primitives.Longs;
 import info.aduna.iteration.*;
 import org.apache.marmotta.commons.vocabulary.XSD;
 import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
 import org.apache.marmotta.kiwi.persistence.KiWiConnection;
-import org.apache.marmotta.kiwi.persistence.util.ResultSetIteration;
-import org.apache.marmotta.kiwi.persistence.util.ResultTransformerFunction;
+import org.apache.marmotta.kiwi.exception.ResultInterruptedException;
 import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
 import org.apache.marmotta.kiwi.sparql.builder.SQLBuilder;
+import org.apache.marmotta.kiwi.sparql.builder.ValueConverter;
 import org.apache.marmotta.kiwi.sparql.builder.ValueType;
+import org.apache.marmotta.kiwi.sparql.builder.collect.QueryShapeFinder;
 import org.apache.marmotta.kiwi.sparql.builder.collect.SupportedFinder;
 import org.apache.marmotta.kiwi.sparql.builder.model.SQLVariable;
+import org.apache.marmotta.kiwi.sparql.cache.SQLTranslation;
+import org.apache.marmotta.kiwi.sparql.cache.SQLTranslationCache;
 import org.apache.marmotta.kiwi.sparql.exception.UnsatisfiableQueryException;
+import org.apache.marmotta.kiwi.sparql.statistics.KiWiTripleStatistics;
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
 import org.openrdf.model.impl.BNodeImpl;
 import org.openrdf.model.impl.LiteralImpl;
 import org.openrdf.model.impl.URIImpl;
@@ -37,6 +44,7 @@ import org.openrdf.query.*;
 import org.openrdf.query.algebra.*;
 import org.openrdf.query.algebra.evaluation.TripleSource;
 import org.openrdf.query.algebra.evaluation.impl.EvaluationStrategyImpl;
+import org.openrdf.query.algebra.helpers.QueryModelVisitorBase;
 import org.openrdf.query.impl.MapBindingSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,11 +52,15 @@ import org.slf4j.LoggerFactory;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.concurrent.*;
+import java.util.TreeSet;
 
 /**
  * An implementation of the SPARQL query evaluation strategy with specific extensions and optimizations. The KiWi
@@ -73,7 +85,16 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
      */
     private KiWiConnection connection;
     private KiWiValueFactory valueFactory;
-    private ExecutorService executorService;
+
+    /**
+     * Triple statistics used for ordering the patterns of native queries, may be null.
+     */
+    private KiWiTripleStatistics statistics;
+
+    /**
+     * Cache for SPARQL to SQL translations shared between connections, may be null.
+     */
+    private SQLTranslationCache translationCache;
 
 
     private Set<String> projectedVars = new HashSet<>();
@@ -82,18 +103,18 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
         super(tripleSource);
         this.connection = connection;
         this.valueFactory = valueFactory;
-
-        // interruptible queries run in a separate thread
-        this.executorService = Executors.newCachedThreadPool();
     }
 
     public KiWiEvaluationStrategy(TripleSource tripleSource, Dataset dataset, KiWiConnection connection, KiWiValueFactory valueFactory) {
+        this(tripleSource, dataset, connection, valueFactory, null, null);
+    }
+
+    public KiWiEvaluationStrategy(TripleSource tripleSource, Dataset dataset, KiWiConnection connection, KiWiValueFactory valueFactory, KiWiTripleStatistics statistics, SQLTranslationCache translationCache) {
         super(tripleSource, dataset);
         this.connection = connection;
         this.valueFactory = valueFactory;
-
-        // interruptible queries run in a separate thread
-        this.executorService = Executors.newCachedThreadPool();
+        this.statistics = statistics;
+        this.translationCache = translationCache;
     }
 
     @Override
@@ -191,6 +212,33 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
         }
     }
 
+    @Override
+    public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Difference difference, BindingSet bindings) throws QueryEvaluationException {
+        if(isSupported(difference)) {
+            return evaluateNative(difference, bindings);
+        } else {
+            return super.evaluate(difference, bindings);
+        }
+    }
+
+    @Override
+    public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(Intersection intersection, BindingSet bindings) throws QueryEvaluationException {
+        if(isSupported(intersection)) {
+            return evaluateNative(intersection, bindings);
+        } else {
+            return super.evaluate(intersection, bindings);
+        }
+    }
+
+    @Override
+    public CloseableIteration<BindingSet, QueryEvaluationException> evaluate(ArbitraryLengthPath path, BindingSet bindings) throws QueryEvaluationException {
+        if(isSupported(path)) {
+            return evaluateNative(path, bindings);
+        } else {
+            return super.evaluate(path, bindings);
+        }
+    }
+
     /**
      * Evaluate a statement pattern join or filter on the database by translating it into an appropriate SQL statement.
      * Copied and adapted from KiWiReasoningConnection.query()
@@ -202,215 +250,379 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
         log.debug("applying KiWi native optimizations on SPARQL query ...");
 
         try {
-            final SQLBuilder builder = new SQLBuilder(join, bindings, dataset, valueFactory, connection.getDialect(), projectedVars);
+            List<Var> boundVariables = new ArrayList<>();
+            final SQLTranslation translation = translate(join, bindings, boundVariables);
 
-            final PreparedStatement queryStatement = connection.getJDBCConnection().prepareStatement(builder.build().toString());
-            if (connection.getDialect().isCursorSupported()) {
-                queryStatement.setFetchSize(connection.getConfiguration().getCursorSize());
+            // the prepared statement is cached by the connection and reused for all queries with the same translation,
+            // unless it is still in use by another open result
+            final PreparedStatement queryStatement = connection.acquirePreparedQuery(translation.getSQL());
+            try {
+                Value[] parameters = translation.getParameterValues(boundVariables);
+                for (int i = 0; i < parameters.length; i++) {
+                    queryStatement.setLong(i + 1, valueFactory.convert(parameters[i]).getId());
+                }
+                queryStatement.setQueryTimeout(connection.getQueryTimeout());
+            } catch (SQLException | RuntimeException ex) {
+                connection.releasePreparedQuery(queryStatement);
+                throw ex;
             }
 
-            Future<ResultSet> queryFuture =
-                    executorService.submit(new Callable<ResultSet>() {
-                                               @Override
-                                               public ResultSet call() throws Exception {
-                                                   try {
-                                                       return queryStatement.executeQuery();
-                                                   } catch (SQLException ex) {
-                                                       if (Thread.interrupted()) {
-                                                           log.info("SQL query execution cancelled; not returning result (Thread={})", Thread.currentThread());
-                                                           throw new InterruptedException("SPARQL query execution cancelled");
-                                                       } else {
-                                                           throw ex;
-                                                       }
-                                                   }
-                                               }
-                                           }
-                    );
+            final NativeQueryIteration it = new NativeQueryIteration(queryStatement, translation, bindings);
+
+            return new ExceptionConvertingIteration<BindingSet, QueryEvaluationException>(it) {
+                @Override
+                protected QueryEvaluationException convert(Exception e) {
+                    if (it.isCancelled()) {
+                        log.info("SPARQL query execution cancelled");
+                        return new QueryInterruptedException("SPARQL query execution cancelled");
+                    } else if (isTimeout(e)) {
+                        log.info("SPARQL query execution cancelled by the database after {}s", connection.getQueryTimeout());
+                        return new QueryInterruptedException("SPARQL query execution exceeded the query timeout", e);
+                    } else {
+                        return new QueryEvaluationException(e);
+                    }
+                }
+            };
+        } catch (SQLException | IllegalArgumentException e) {
+            throw new QueryEvaluationException(e);
+        } catch (UnsatisfiableQueryException ex) {
+            return new EmptyIteration<>();
+        }
+    }
 
-            try {
-                ResultSet result = queryFuture.get();
 
-                ResultSetIteration<BindingSet> it = new ResultSetIteration<>(result, true, new ResultTransformerFunction<BindingSet>() {
-                    @Override
-                    public BindingSet apply(ResultSet row) throws SQLException {
-                        MapBindingSet resultRow = new MapBindingSet();
+    /**
+     * Translate a statement pattern join or filter into a parameterized SQL query. Translations are looked up in the
+     * translation cache by the shape of the query, so queries differing only in the values of bound variables (e.g.
+     * constants in triple patterns) share the same translation and prepared statement.
+     *
+     * @param join           the expression to translate
+     * @param bindings       initial bindings of the query
+     * @param boundVariables list to which the bound variables of the expression are added; the values of the
+     *                       JDBC parameters of the translation are taken from these variables
+     * @return the translation
+     */
+    private SQLTranslation translate(TupleExpr join, BindingSet bindings, List<Var> boundVariables) throws UnsatisfiableQueryException {
+        QueryShapeFinder shapeFinder = new QueryShapeFinder(join);
+        boundVariables.addAll(shapeFinder.getBoundVariables());
+
+        // the SQL query also depends on the projected variables and the dataset, which are written literally into
+        // the query, and on the names of the initial bindings; the values of initial bindings are passed as JDBC
+        // parameters like the values of bound variables and follow them in the list of bound variables, ordered by name
+        StringBuilder shape = new StringBuilder(shapeFinder.getShape());
+        shape.append("\nprojection: ").append(new TreeSet<>(projectedVars));
+        if (dataset != null) {
+            shape.append("\ndataset: ").append(dataset);
+        }
+        int bindingsStart = boundVariables.size();
+        if (bindings != null && bindings.size() > 0) {
+            shape.append("\nbindings: ");
+            for (String name : new TreeSet<>(bindings.getBindingNames())) {
+                shape.append(name).append(' ');
+                boundVariables.add(new Var(name, bindings.getValue(name)));
+            }
+        }
 
-                        List<SQLVariable> vars = new ArrayList<>(builder.getVariables().values());
+        if (translationCache != null && shapeFinder.isCacheable()) {
+            SQLTranslation cached = translationCache.get(shape.toString(), boundVariables);
+            if (cached != null) {
+                return cached;
+            }
+        }
 
-                        long[] nodeIds = new long[vars.size()];
-                        for (int i = 0; i < vars.size(); i++) {
-                            SQLVariable sv = vars.get(i);
-                            if (sv.getProjectionType() == ValueType.NODE && (builder.getProjectedVars().isEmpty()
-                                    || builder.getProjectedVars().contains(sv.getSparqlName()))) {
-                                nodeIds[i] = row.getLong(sv.getName());
-                            }
-                        }
-                        KiWiNode[] nodes = connection.loadNodesByIds(nodeIds);
-
-                        for (int i = 0; i < vars.size(); i++) {
-                            SQLVariable sv = vars.get(i);
-                            if (nodes[i] != null) {
-                                // resolved node
-                                resultRow.addBinding(sv.getSparqlName(), nodes[i]);
-                            } else if (sv.getProjectionType() != ValueType.NONE && (builder.getProjectedVars().isEmpty()
-                                    || builder.getProjectedVars().contains(sv.getSparqlName()))) {
-                                // literal value
-                                String svalue;
-                                switch (sv.getProjectionType()) {
-                                    case URI:
-                                        svalue = row.getString(sv.getName());
-                                        if (svalue != null)
-                                            try {
-                                                resultRow.addBinding(sv.getSparqlName(), new URIImpl(svalue));
-                                            } catch (IllegalArgumentException ex) {
-                                            } // illegal URI unbound
-                                        break;
-                                    case BNODE:
-                                        svalue = row.getString(sv.getName());
-                                        if (svalue != null)
-                                            resultRow.addBinding(sv.getSparqlName(), new BNodeImpl(svalue));
-                                        break;
-                                    case INT:
-                                        if (row.getObject(sv.getName()) != null) {
-                                            svalue = Integer.toString(row.getInt(sv.getName()));
-                                            URI type = XSD.Integer;
-                                            try {
-                                                long typeId = row.getLong(sv.getName() + "_TYPE");
-                                                if (typeId > 0)
-                                                    type = (URI) connection.loadNodeById(typeId);
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, type));
-                                        }
-                                        break;
-                                    case DOUBLE:
-                                        if (row.getObject(sv.getName()) != null) {
-                                            svalue = Double.toString(row.getDouble(sv.getName()));
-                                            URI type = XSD.Double;
-                                            try {
-                                                long typeId = row.getLong(sv.getName() + "_TYPE");
-                                                if (typeId > 0)
-                                                    type = (URI) connection.loadNodeById(typeId);
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, type));
-                                        }
-                                        break;
-                                    case DECIMAL:
-                                        if (row.getObject(sv.getName()) != null) {
-                                            svalue = row.getBigDecimal(sv.getName()).toString();
-                                            URI type = XSD.Decimal;
-                                            try {
-                                                long typeId = row.getLong(sv.getName() + "_TYPE");
-                                                if (typeId > 0)
-                                                    type = (URI) connection.loadNodeById(typeId);
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, type));
-                                        }
-                                        break;
-                                    case BOOL:
-                                        if (row.getObject(sv.getName()) != null) {
-                                            svalue = Boolean.toString(row.getBoolean(sv.getName()));
-                                            resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue.toLowerCase(), XSD.Boolean));
-                                        }
-                                        break;
-                                    case STRING:
-                                    default:
-                                        svalue = row.getString(sv.getName());
-
-                                        if (svalue != null) {
-
-                                            // retrieve optional type and language information, because string functions
-                                            // need to preserve this in certain cases, even when constructing new literals
-                                            String lang = null;
-                                            try {
-                                                lang = row.getString(sv.getName() + "_LANG");
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            URI type = null;
-                                            try {
-                                                long typeId = row.getLong(sv.getName() + "_TYPE");
-                                                if (typeId > 0)
-                                                    type = (URI) connection.loadNodeById(typeId);
-                                            } catch (SQLException ex) {
-                                            }
-
-                                            if (lang != null) {
-                                                if (svalue.length() > 0) {
-                                                    resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, lang));
-                                                } else {
-                                                    // string functions that return empty literal should yield no type or language
-                                                    resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(""));
-                                                }
-                                            } else if (type != null) {
-                                                if (type.stringValue().equals(XSD.String.stringValue())) {
-                                                    // string functions on other datatypes than string should yield no binding
-                                                    if (svalue.length() > 0) {
-                                                        resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue, type));
-                                                    } else {
-                                                        // string functions that return empty literal should yield no type or language
-                                                        resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(""));
-                                                    }
-                                                }
-                                            } else {
-                                                resultRow.addBinding(sv.getSparqlName(), new LiteralImpl(svalue));
-                                            }
-
-                                        }
-                                        break;
-                                }
-                            }
+        // IRIs listed in VALUES blocks and IN lists are answered from the prefetched resources, including those
+        // that do not exist in the database
+        final Map<String,KiWiUriResource> listed = prefetchListedResources(join);
+        ValueConverter converter = new ValueConverter() {
+            @Override
+            public KiWiNode convert(Value value) {
+                return valueFactory.convert(value);
+            }
+
+            @Override
+            public KiWiUriResource lookup(URI uri) {
+                if(listed.containsKey(uri.stringValue())) {
+                    return listed.get(uri.stringValue());
+                }
+                return valueFactory.loadURI(uri.stringValue());
+            }
+        };
+
+        SQLBuilder builder = new SQLBuilder(join, bindings, dataset, converter, connection.getDialect(), "", projectedVars, new HashMap<String, SQLVariable>(), statistics, true);
+
+        // the parameters of the SQL query refer to the binding variables created by the builder
+        boundVariables.subList(bindingsStart, boundVariables.size()).clear();
+        boundVariables.addAll(builder.getBindingVariables());
+
+        List<Var> parameterVars = new ArrayList<>();
+        String sql = builder.buildPrepared(parameterVars);
+
+        // parameters are usually bound variables of the expression; in case they are not (e.g. variables created
+        // while building), the translation can still be used for this query, but not cached
+        boolean cacheable = shapeFinder.isCacheable();
+        for (Var v : parameterVars) {
+            if (SQLTranslation.indexOf(boundVariables, v) < 0) {
+                boundVariables.add(v);
+                cacheable = false;
+            }
+        }
+
+        SQLTranslation translation = SQLTranslation.create(sql, parameterVars, builder.getInlinedValues(), boundVariables, builder.getVariables().values(), builder.getProjectedVars());
+        if (translationCache != null && cacheable) {
+            translationCache.put(shape.toString(), translation);
+        }
+        return translation;
+    }
+
+    /**
+     * Construct a page of binding sets from the result of a native SQL query. The node ids of all rows in the page
+     * that are not yet cached are resolved together in batch queries before the binding sets are constructed.
+     *
+     * @param row         the SQL query result, positioned before the first row of the page
+     * @param translation the translation of the SPARQL query
+     * @param bindings    the initial bindings to add to every result row
+     * @param maxPrefetch maximum number of rows to read ahead
+     * @return the binding sets of the page; less than maxPrefetch binding sets if the result is exhausted
+     */
+    private List<BindingSet> constructBindingSetsFromDatabase(ResultSet row, SQLTranslation translation, BindingSet bindings, int maxPrefetch) throws SQLException {
+        List<SQLVariable> vars = translation.getVariables();
+        Set<String> projected  = translation.getProjectedVars();
+
+        List<Value[]> rows = new ArrayList<>();
+        List<long[]> rowNodeIds = new ArrayList<>();
+        Set<Long> nodeIds = new HashSet<>();
+
+        int count = 0;
+        while (count < maxPrefetch && row.next()) {
+            count++;
+
+            if(row.isClosed()) {
+                throw new ResultInterruptedException("retrieving results has been interrupted");
+            }
+
+            Value[] values = new Value[vars.size()];
+            long[] ids = new long[vars.size()];
+            for (int i = 0; i < vars.size(); i++) {
+                SQLVariable sv = vars.get(i);
+                if (projected.isEmpty() || projected.contains(sv.getSparqlName())) {
+                    if (sv.getProjectionType() == ValueType.NODE) {
+                        ids[i] = row.getLong(sv.getName());
+                        if (ids[i] != 0) {
+                            nodeIds.add(ids[i]);
                         }
+                    } else if (sv.getProjectionType() != ValueType.NONE) {
+                        values[i] = constructLiteralFromDatabase(row, sv);
+                    }
+                }
+            }
+            rows.add(values);
+            rowNodeIds.add(ids);
+        }
 
+        // resolve all nodes of the page at once; cached nodes are taken from the cache
+        Map<Long,KiWiNode> nodes = new HashMap<>(nodeIds.size() << 1);
+        if (nodeIds.size() > 0) {
+            for (KiWiNode node : connection.loadNodesByIds(Longs.toArray(nodeIds))) {
+                if (node != null) {
+                    nodes.put(node.getId(), node);
+                }
+            }
+        }
+
+        List<BindingSet> result = new ArrayList<>(rows.size());
+        for (int r = 0; r < rows.size(); r++) {
+            Value[] values = rows.get(r);
+            long[] ids = rowNodeIds.get(r);
+
+            MapBindingSet resultRow = new MapBindingSet();
+            for (int i = 0; i < vars.size(); i++) {
+                Value value = ids[i] != 0 ? nodes.get(ids[i]) : values[i];
+                if (value != null) {
+                    resultRow.addBinding(vars.get(i).getSparqlName(), value);
+                }
+            }
+
+            if (bindings != null) {
+                for (Binding binding : bindings) {
+                    resultRow.addBinding(binding);
+                }
+            }
+            result.add(resultRow);
+        }
+
+        return result;
+    }
 
-                        if (bindings != null) {
-                            for (Binding binding : bindings) {
-                                resultRow.addBinding(binding);
+    /**
+     * Construct the value of a variable that is not projected as database node but as literal value (e.g. the
+     * result of a function) from the current row of a native SQL query result.
+     *
+     * @return the constructed value, or null if the variable is unbound in the row
+     */
+    private Value constructLiteralFromDatabase(ResultSet row, SQLVariable sv) throws SQLException {
+        String svalue;
+        switch (sv.getProjectionType()) {
+            case URI:
+                svalue = row.getString(sv.getName());
+                if (svalue != null)
+                    try {
+                        return new URIImpl(svalue);
+                    } catch (IllegalArgumentException ex) {
+                    } // illegal URI unbound
+                break;
+            case BNODE:
+                svalue = row.getString(sv.getName());
+                if (svalue != null)
+                    return new BNodeImpl(svalue);
+                break;
+            case INT:
+                if (row.getObject(sv.getName()) != null) {
+                    svalue = Integer.toString(row.getInt(sv.getName()));
+                    URI type = XSD.Integer;
+                    try {
+                        long typeId = row.getLong(sv.getName() + "_TYPE");
+                        if (typeId > 0)
+                            type = (URI) connection.loadNodeById(typeId);
+                    } catch (SQLException ex) {
+                    }
+
+                    return new LiteralImpl(svalue, type);
+                }
+                break;
+            case DOUBLE:
+                if (row.getObject(sv.getName()) != null) {
+                    svalue = Double.toString(row.getDouble(sv.getName()));
+                    URI type = XSD.Double;
+                    try {
+                        long typeId = row.getLong(sv.getName() + "_TYPE");
+                        if (typeId > 0)
+                            type = (URI) connection.loadNodeById(typeId);
+                    } catch (SQLException ex) {
+                    }
+
+                    return new LiteralImpl(svalue, type);
+                }
+                break;
+            case DECIMAL:
+                if (row.getObject(sv.getName()) != null) {
+                    svalue = row.getBigDecimal(sv.getName()).toString();
+                    URI type = XSD.Decimal;
+                    try {
+                        long typeId = row.getLong(sv.getName() + "_TYPE");
+                        if (typeId > 0)
+                            type = (URI) connection.loadNodeById(typeId);
+                    } catch (SQLException ex) {
+                    }
+
+                    return new LiteralImpl(svalue, type);
+                }
+                break;
+            case BOOL:
+                if (row.getObject(sv.getName()) != null) {
+                    svalue = Boolean.toString(row.getBoolean(sv.getName()));
+                    return new LiteralImpl(svalue.toLowerCase(), XSD.Boolean);
+                }
+                break;
+            case STRING:
+            default:
+                svalue = row.getString(sv.getName());
+
+                if (svalue != null) {
+
+                    // retrieve optional type and language information, because string functions
+                    // need to preserve this in certain cases, even when constructing new literals
+                    String lang = null;
+                    try {
+                        lang = row.getString(sv.getName() + "_LANG");
+                    } catch (SQLException ex) {
+                    }
+
+                    URI type = null;
+                    try {
+                        long typeId = row.getLong(sv.getName() + "_TYPE");
+                        if (typeId > 0)
+                            type = (URI) connection.loadNodeById(typeId);
+                    } catch (SQLException ex) {
+                    }
+
+                    if (lang != null) {
+                        if (svalue.length() > 0) {
+                            return new LiteralImpl(svalue, lang);
+                        } else {
+                            // string functions that return empty literal should yield no type or language
+                            return new LiteralImpl("");
+                        }
+                    } else if (type != null) {
+                        if (type.stringValue().equals(XSD.String.stringValue())) {
+                            // string functions on other datatypes than string should yield no binding
+                            if (svalue.length() > 0) {
+                                return new LiteralImpl(svalue, type);
+                            } else {
+                                // string functions that return empty literal should yield no type or language
+                                return new LiteralImpl("");
                             }
                         }
-                        return resultRow;
+                    } else {
+                        return new LiteralImpl(svalue);
                     }
-                });
 
+                }
+                break;
+        }
+        return null;
+    }
 
-                return new ExceptionConvertingIteration<BindingSet, QueryEvaluationException>(
-                        new CloseableIteratorIteration<BindingSet, SQLException>(Iterations.asList(it).iterator())) {
-                    @Override
-                    protected QueryEvaluationException convert(Exception e) {
-                        return new QueryEvaluationException(e);
+
+    /**
+     * Load the IRIs listed in VALUES blocks and IN filters of the expression in batches, so that converting them to
+     * node ids while building the SQL query does not need a database query per IRI.
+     *
+     * @param expr
+     * @return the listed IRIs mapped to their resources, or to null in case they do not exist in the database; empty
+     *         in case the resources could not be loaded
+     */
+    private Map<String,KiWiUriResource> prefetchListedResources(TupleExpr expr) {
+        final Set<String> uris = new HashSet<>();
+        expr.visit(new QueryModelVisitorBase<RuntimeException>() {
+            @Override
+            public void meet(BindingSetAssignment node) throws RuntimeException {
+                for(BindingSet row : node.getBindingSets()) {
+                    for(Binding binding : row) {
+                        if(binding.getValue() instanceof URI) {
+                            uris.add(binding.getValue().stringValue());
+                        }
                     }
-                };
-
-            } catch (InterruptedException | CancellationException e) {
-                log.info("SPARQL query execution cancelled");
-                queryFuture.cancel(true);
-                queryStatement.cancel();
-                queryStatement.close();
-
-                throw new QueryInterruptedException("SPARQL query execution cancelled");
-            } catch (ExecutionException e) {
-                log.error("error executing SPARQL query", e.getCause());
-                if (e.getCause() instanceof SQLException) {
-                    throw new QueryEvaluationException(e.getCause());
-                } else if (e.getCause() instanceof InterruptedException) {
-                    throw new QueryInterruptedException(e.getCause());
-                } else {
-                    throw new QueryEvaluationException("error executing SPARQL query", e);
                 }
             }
-        } catch (SQLException | IllegalArgumentException e) {
-            throw new QueryEvaluationException(e);
-        } catch (UnsatisfiableQueryException ex) {
-            return new EmptyIteration<>();
+
+            @Override
+            public void meet(ListMemberOperator node) throws RuntimeException {
+                for(ValueExpr member : node.getArguments()) {
+                    if(member instanceof ValueConstant && ((ValueConstant) member).getValue() instanceof URI) {
+                        uris.add(((ValueConstant) member).getValue().stringValue());
+                    }
+                }
+                super.meet(node);
+            }
+        });
+
+        Map<String,KiWiUriResource> result = new HashMap<>();
+        if(uris.size() > 0) {
+            try {
+                for(String uri : uris) {
+                    result.put(uri, null);
+                }
+                for(KiWiUriResource resource : connection.loadUriResources(uris)) {
+                    result.put(resource.stringValue(), resource);
+                }
+            } catch (SQLException ex) {
+                log.warn("could not load the resources listed in the query in a batch (error: {})", ex.getMessage());
+                result.clear();
+            }
         }
+        return result;
     }
 
-
     /**
      * Test if a tuple expression is supported nby the optimized evaluation; in this case we can apply a specific optimization.
      *
@@ -421,4 +633,149 @@ public class KiWiEvaluationStrategy extends EvaluationStrategyImpl{
         return new SupportedFinder(expr, connection.getDialect()).isSupported();
     }
 
+    /**
+     * Return true in case the exception reports that the database cancelled a query because it exceeded the query
+     * timeout (SQL state 57014 is used by PostgreSQL and H2 for cancelled statements).
+     */
+    private static boolean isTimeout(Exception e) {
+        return e instanceof SQLTimeoutException || (e instanceof SQLException && "57014".equals(((SQLException) e).getSQLState()));
+    }
+
+
+    /**
+     * Iteration over the result of a native query. The query is executed when the first result is requested, so a
+     * time limit set on the query result (see {@link org.openrdf.query.Query#setMaxQueryTime(int)}) also covers the
+     * execution in the database. Closing the iteration while the query is still executing or fetching rows, e.g.
+     * because the time limit has been exceeded, cancels the query in the database. The rows are read ahead a page
+     * at a time, so the nodes of the whole page can be resolved in a few batch queries instead of one query per row.
+     */
+    private class NativeQueryIteration implements CloseableIteration<BindingSet, SQLException> {
+
+        private final PreparedStatement statement;
+        private final SQLTranslation translation;
+        private final BindingSet bindings;
+        private final int prefetchSize;
+
+        private ResultSet result = null;
+        private List<BindingSet> batch = null;
+        private int batchPosition = 0;
+        private boolean finished = false;
+
+        // the iteration may be closed by another thread (e.g. on timeout) while the query thread waits for the
+        // database; in this case the other thread only cancels the statement, and the query thread releases the
+        // result set and the statement once the database returns
+        private final Object lock = new Object();
+        private boolean executing = false;
+        private boolean released = false;
+        private volatile boolean closed = false;
+        private volatile boolean cancelled = false;
+
+        private NativeQueryIteration(PreparedStatement statement, SQLTranslation translation, BindingSet bindings) {
+            this.statement = statement;
+            this.translation = translation;
+            this.bindings = bindings;
+            this.prefetchSize = Math.max(1, connection.getConfiguration().getResultPrefetchSize());
+        }
+
+        /**
+         * Return true in case the iteration has been closed before all results have been read.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean hasNext() throws SQLException {
+            fetchBatch();
+
+            return batch != null && batch.size() > batchPosition;
+        }
+
+        @Override
+        public BindingSet next() throws SQLException {
+            fetchBatch();
+
+            if(batch != null && batch.size() > batchPosition) {
+                return batch.get(batchPosition++);
+            } else {
+                throw new NoSuchElementException("no more results");
+            }
+        }
+
+        private void fetchBatch() throws SQLException {
+            if((batch == null || batch.size() <= batchPosition) && !finished && !closed) {
+                if(Thread.currentThread().isInterrupted()) {
+                    close();
+                    throw new ResultInterruptedException("retrieving results has been interrupted");
+                }
+
+                synchronized (lock) {
+                    if(closed) {
+                        return;
+                    }
+                    executing = true;
+                }
+                try {
+                    if(result == null) {
+                        result = statement.executeQuery();
+                    }
+                    batch = constructBindingSetsFromDatabase(result, translation, bindings, prefetchSize);
+                    batchPosition = 0;
+                } finally {
+                    synchronized (lock) {
+                        executing = false;
+                        if(closed) {
+                            // closed by another thread while the query was running
+                            release();
+                        }
+                    }
+                }
+
+                if(batch.size() < prefetchSize) {
+                    finished = true;
+                    close();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            synchronized (lock) {
+                if(!closed) {
+                    closed = true;
+                    cancelled = !finished;
+                    if(executing) {
+                        // only cancel while the statement is running, a cancel request arriving later could
+                        // otherwise abort the next statement executed on the connection; the query thread
+                        // releases the statement when the database returns
+                        statement.cancel();
+                    } else {
+                        release();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Close the result set and release the statement; only called while the statement is not executing.
+         */
+        private void release() throws SQLException {
+            if(!released) {
+                released = true;
+                try {
+                    if(result != null) {
+                        result.close();
+                    }
+                } finally {
+                    connection.releasePreparedQuery(statement);
+                }
+            }
+        }
+
+        @Override
+        public void remove() throws SQLException {
+            throw new UnsupportedOperationException("removing results not supported");
+        }
+    }
+
 }
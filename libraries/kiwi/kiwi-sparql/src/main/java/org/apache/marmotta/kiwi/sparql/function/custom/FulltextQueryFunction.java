@@ -40,8 +40,8 @@ import org.openrdf.query.algebra.evaluation.function.FunctionRegistry;
  *         and some other languages as supported by PostgreSQL).
  *     </li>*
  * </ul>
- * Note that for performance reasons it might be preferrable to create a full-text index for your database. Please
- * consult your database documentation on how to do this.
+ * The function is only supported by PostgreSQL, since the boolean query syntax of MySQL and H2 differs; the search
+ * uses the fulltext indexes created by the KiWiSparqlSail in the same way as {@link FulltextSearchFunction}.
  *
  * @author Sebastian Schaffert (sschaffert@apache.org)
  */
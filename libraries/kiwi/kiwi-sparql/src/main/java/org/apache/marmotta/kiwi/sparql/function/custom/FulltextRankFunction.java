@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.function.custom;
+
+import org.apache.marmotta.kiwi.persistence.KiWiDialect;
+import org.apache.marmotta.kiwi.persistence.h2.H2Dialect;
+import org.apache.marmotta.kiwi.persistence.mysql.MySQLDialect;
+import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
+import org.apache.marmotta.kiwi.sparql.builder.ValueType;
+import org.apache.marmotta.kiwi.sparql.function.NativeFunction;
+import org.apache.marmotta.kiwi.sparql.function.NativeFunctionRegistry;
+import org.apache.marmotta.kiwi.vocabulary.FN_MARMOTTA;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.query.algebra.evaluation.ValueExprEvaluationException;
+import org.openrdf.query.algebra.evaluation.function.FunctionRegistry;
+
+/**
+ * A SPARQL function returning the relevance of the content of a string for a full-text search, to be used for
+ * ordering the results of fn:fulltext-search. Should be implemented directly in the database, as the in-memory
+ * implementation is non-functional.
+ * <p/>
+ * The function can be called either as:
+ * <ul>
+ *     <li>fn:fulltext-rank(?var, 'query') - using a generic stemmer and dictionary</li>
+ *     <li>fn:fulltext-rank(?var, 'query', 'language') - using a language-specific stemmer and dictionary</li>
+ * </ul>
+ * The relevance is computed with ts_rank on PostgreSQL and MATCH ... AGAINST on MySQL. The native H2 fulltext index
+ * does not compute a relevance, so H2 returns 1 for matching and 0 for other values.
+ */
+public class FulltextRankFunction implements NativeFunction {
+
+    // auto-register for SPARQL environment
+    static {
+        if(!FunctionRegistry.getInstance().has(FN_MARMOTTA.RANK_FULLTEXT.toString())) {
+            FunctionRegistry.getInstance().add(new FulltextRankFunction());
+        }
+    }
+
+    @Override
+    public Value evaluate(ValueFactory valueFactory, Value... args) throws ValueExprEvaluationException {
+        throw new UnsupportedOperationException("cannot evaluate in-memory, needs to be supported by the database");
+    }
+
+    @Override
+    public String getURI() {
+        return FN_MARMOTTA.RANK_FULLTEXT.toString();
+    }
+
+
+    /**
+     * Return true if this function has available native support for the given dialect
+     *
+     * @param dialect
+     * @return
+     */
+    @Override
+    public boolean isSupported(KiWiDialect dialect) {
+        return dialect instanceof PostgreSQLDialect || dialect instanceof MySQLDialect || dialect instanceof H2Dialect;
+    }
+
+    /**
+     * Return a string representing how this function is translated into SQL in the given dialect
+     *
+     * @param dialect
+     * @param args
+     * @return
+     */
+    @Override
+    public String getNative(KiWiDialect dialect, String... args) {
+        if(dialect instanceof PostgreSQLDialect) {
+            if(args.length == 2) {
+                return String.format("ts_rank(to_tsvector('simple' :: regconfig,%1$s), plainto_tsquery('simple' :: regconfig,%2$s))", args[0], args[1]);
+            } else if(args.length == 3) {
+                return String.format("ts_rank(to_tsvector(kiwi_ft_lang(%3$s) :: regconfig, %1$s), plainto_tsquery(kiwi_ft_lang(%3$s) :: regconfig, %2$s))", args[0], args[1], args[2]);
+            }
+        } else if(dialect instanceof MySQLDialect) {
+            FulltextSearchFunction.checkFulltextIndex(dialect, args[0]);
+            return String.format("MATCH(%1$s) AGAINST(%2$s IN NATURAL LANGUAGE MODE)", args[0], args[1]);
+        } else if(dialect instanceof H2Dialect) {
+            String search = NativeFunctionRegistry.getInstance().get(FN_MARMOTTA.SEARCH_FULLTEXT).getNative(dialect, args);
+            return String.format("CASE WHEN %1$s THEN 1.0 ELSE 0.0 END", search);
+        }
+        throw new UnsupportedOperationException("fulltext ranking not supported by dialect "+dialect);
+    }
+
+    /**
+     * Get the return type of the function. This is needed for SQL type casting inside KiWi.
+     *
+     * @return
+     */
+    @Override
+    public ValueType getReturnType() {
+        return ValueType.DOUBLE;
+    }
+
+    /**
+     * Get the argument type of the function for the arg'th argument (starting to count at 0).
+     * This is needed for SQL type casting inside KiWi.
+     *
+     * @param arg
+     * @return
+     */
+    @Override
+    public ValueType getArgumentType(int arg) {
+        return ValueType.STRING;
+    }
+
+    /**
+     * Return the minimum number of arguments this function requires.
+     *
+     * @return
+     */
+    @Override
+    public int getMinArgs() {
+        return 2;
+    }
+
+    /**
+     * Return the maximum number of arguments this function can take
+     *
+     * @return
+     */
+    @Override
+    public int getMaxArgs() {
+        return 3;
+    }
+}
@@ -17,6 +17,8 @@
 package org.apache.marmotta.kiwi.sparql.function.custom;
 
 import org.apache.marmotta.kiwi.persistence.KiWiDialect;
+import org.apache.marmotta.kiwi.persistence.h2.H2Dialect;
+import org.apache.marmotta.kiwi.persistence.mysql.MySQLDialect;
 import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
 import org.apache.marmotta.kiwi.sparql.builder.ValueType;
 import org.apache.marmotta.kiwi.sparql.function.NativeFunction;
@@ -26,6 +28,8 @@ import org.openrdf.model.ValueFactory;
 import org.openrdf.query.algebra.evaluation.ValueExprEvaluationException;
 import org.openrdf.query.algebra.evaluation.function.FunctionRegistry;
 
+import java.util.regex.Pattern;
+
 /**
  * A SPARQL function for doing a full-text search on the content of a string. Should be implemented directly in
  * the database, as the in-memory implementation is non-functional.
@@ -35,17 +39,23 @@ import org.openrdf.query.algebra.evaluation.function.FunctionRegistry;
  *     <li>fn:fulltext-search(?var, 'query') - using a generic stemmer and dictionary</li>
  *     <li>
  *         fn:fulltext-search(?var, 'query', 'language') - using a language-specific stemmer and dictionary
- *         (currently only supported by PostgreSQL with the language values 'english', 'german', 'french', 'italian', 'spanish'
- *         and some other languages as supported by PostgreSQL).
- *     </li>*
+ *         (currently only supported by PostgreSQL with the ISO language codes 'en', 'de', 'fr', 'it', 'es'
+ *         and some other languages as supported by PostgreSQL; other databases ignore the language).
+ *     </li>
  * </ul>
- * Note that for performance reasons it might be preferrable to create a full-text index for your database. Please
- * consult your database documentation on how to do this.
+ * The search uses the fulltext indexes created by the KiWiSparqlSail in case fulltext support is enabled in the
+ * configuration. On PostgreSQL, the indexes are used when the language is either constant and one of the configured
+ * fulltext languages, or the language of the searched value (e.g. lang(?var)). MySQL and H2 require the index, so
+ * the translation fails in case fulltext support is disabled; MySQL also needs the value to be a plain column, i.e.
+ * str(?var).
  *
  * @author Sebastian Schaffert (sschaffert@apache.org)
  */
 public class FulltextSearchFunction implements NativeFunction {
 
+    // the string column of a nodes table alias, which is covered by the fulltext index
+    private static final Pattern INDEXED_COLUMN = Pattern.compile("\\w+\\.svalue");
+
     // auto-register for SPARQL environment
     static {
         if(!FunctionRegistry.getInstance().has(FN_MARMOTTA.SEARCH_FULLTEXT.toString())) {
@@ -72,7 +82,7 @@ public class FulltextSearchFunction implements NativeFunction {
      */
     @Override
     public boolean isSupported(KiWiDialect dialect) {
-        return dialect instanceof PostgreSQLDialect;
+        return dialect instanceof PostgreSQLDialect || dialect instanceof MySQLDialect || dialect instanceof H2Dialect;
     }
 
     /**
@@ -90,11 +100,39 @@ public class FulltextSearchFunction implements NativeFunction {
             } else if(args.length == 3) {
                 return String.format("(to_tsvector(kiwi_ft_lang(%3$s) :: regconfig, %1$s) @@ plainto_tsquery(kiwi_ft_lang(%3$s) :: regconfig, %2$s))", args[0], args[1], args[2]);
             }
+        } else if(dialect instanceof MySQLDialect) {
+            checkFulltextIndex(dialect, args[0]);
+
+            // MATCH returns the relevance, which is non-zero for matching rows; it is used without comparison so
+            // MySQL can evaluate it using the fulltext index
+            return String.format("MATCH(%1$s) AGAINST(%2$s IN NATURAL LANGUAGE MODE)", args[0], args[1]);
+        } else if(dialect instanceof H2Dialect) {
+            checkFulltextIndex(dialect, args[0]);
 
+            // the native H2 fulltext search returns the primary keys of the matching nodes; the search does not
+            // depend on the row, so H2 evaluates it only once per query
+            return String.format("(%1$s IN (SELECT ft_n.svalue FROM FT_SEARCH_DATA(%2$s, 0, 0) AS ft_r, nodes AS ft_n " +
+                    "WHERE ft_r.\"TABLE\" = 'NODES' AND ft_n.id = CAST(ARRAY_GET(ft_r.KEYS, 1) AS BIGINT)))", args[0], args[1]);
         }
         throw new UnsupportedOperationException("fulltext search not supported by dialect "+dialect);
     }
 
+    /**
+     * Check that a fulltext search on the given SQL expression can be answered by the fulltext index of MySQL or H2.
+     * The index only exists if fulltext support is enabled, and MySQL can only match the indexed column itself,
+     * i.e. the value of a variable like str(?var), not a computed string.
+     *
+     * @throws IllegalArgumentException in case the search cannot be translated
+     */
+    static void checkFulltextIndex(KiWiDialect dialect, String value) {
+        if(!dialect.isFulltextEnabled()) {
+            throw new IllegalArgumentException("fulltext search is not enabled for the database; enable fulltext support in the configuration");
+        }
+        if(dialect instanceof MySQLDialect && !INDEXED_COLUMN.matcher(value).matches()) {
+            throw new IllegalArgumentException("MySQL fulltext search is only supported on the value of a variable, e.g. str(?var), not on " + value);
+        }
+    }
+
     /**
      * Get the return type of the function. This is needed for SQL type casting inside KiWi.
      *
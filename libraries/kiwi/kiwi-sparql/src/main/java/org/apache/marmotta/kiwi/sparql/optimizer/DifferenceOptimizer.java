@@ -30,13 +30,12 @@ import java.util.HashSet;
 import java.util.Set;
 
 /**
- * This optimizer replaces occurrences of Difference with constructs that can be translated to SQL more easily:
- * - in case the left and right argument have shared variables, the right argument is replaced by a Filter with a NOT EXISTS subquery
- * - in case the left and right argument have no shared variables, the right argument is ignored
- *
- * Note that this transformation does not respect the case 3 documented in the SPARQL standard regarding variable scoping
- * of inner FILTERs (http://www.w3.org/TR/sparql11-query/#neg-notexists-minus). This is a border case and almost impossible to
- * translate to SQL with its unification semantics.
+ * This optimizer removes occurrences of Difference that cannot remove any result: in case the left and right argument
+ * have no shared variables, the right argument is ignored (http://www.w3.org/TR/sparql11-query/#neg-notexists-minus).
+ * All other occurrences are kept and translated to SQL as anti join with the SPARQL semantics for shared variables
+ * (see {@link org.apache.marmotta.kiwi.sparql.builder.model.SQLMinus}) or evaluated in memory. They are not replaced
+ * by FILTER NOT EXISTS, which differs for unbound shared variables and inner FILTERs, and which is evaluated once per
+ * result in case the query cannot be translated to SQL completely.
  *
  * @author Sebastian Schaffert (sschaffert@apache.org)
  */
@@ -58,19 +57,13 @@ public class DifferenceOptimizer implements QueryOptimizer {
             Set<String> rightVars = new VariableFinder(node.getRightArg()).variables;
 
             if(Sets.intersection(leftVars,rightVars).size() > 0) {
-                // left and right share variables, so we replace with a FILTER with NOT EXISTS
-                log.debug("replacing SPARQL MINUS with a FILTER on NOT EXISTS, because there are shared variables");
-                log.debug("AST before:\n{}", node);
-
-                ValueExpr notExists = new Not(new Exists(node.getRightArg()));
-                Filter replacement = new Filter(node.getLeftArg(), notExists);
-                node.replaceWith(replacement);
-
-                log.debug("AST after:\n{}", node);
+                // left and right share variables, continue with nested occurrences
+                super.meet(node);
             } else {
                 // left and right do not share variables, so we replace with the left subquery
                 log.debug("replacing SPARQL MINUS with its left argument, because there are no variables");
                 node.replaceWith(node.getLeftArg());
+                node.getLeftArg().visit(this);
             }
         }
     }
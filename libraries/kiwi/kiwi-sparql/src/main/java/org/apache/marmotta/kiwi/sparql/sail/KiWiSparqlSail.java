@@ -20,10 +20,15 @@ package org.apache.marmotta.kiwi.sparql.sail;
 import org.apache.commons.io.IOUtils;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.KiWiDialect;
+import org.apache.marmotta.kiwi.persistence.h2.H2Dialect;
+import org.apache.marmotta.kiwi.persistence.mysql.MySQLDialect;
 import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
 import org.apache.marmotta.kiwi.persistence.util.ScriptRunner;
 import org.apache.marmotta.kiwi.sail.KiWiSailConnection;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sparql.cache.SQLTranslationCache;
+import org.apache.marmotta.kiwi.sparql.statistics.KiWiTripleStatistics;
 import org.openrdf.sail.*;
 import org.openrdf.sail.helpers.NotifyingSailWrapper;
 import org.openrdf.sail.helpers.SailConnectionWrapper;
@@ -31,11 +36,23 @@ import org.openrdf.sail.helpers.SailWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Add file description here!
@@ -49,6 +66,14 @@ public class KiWiSparqlSail extends NotifyingSailWrapper {
 
     private KiWiStore parent;
 
+    private KiWiTripleStatistics statistics;
+
+    private ScheduledExecutorService statisticsRefresher;
+
+    private SQLTranslationCache translationCache;
+
+    private List<ObjectName> registeredBeans = new ArrayList<>();
+
     public KiWiSparqlSail(NotifyingSail baseSail) {
         super(baseSail);
 
@@ -59,14 +84,115 @@ public class KiWiSparqlSail extends NotifyingSailWrapper {
     public void initialize() throws SailException {
         super.initialize();
 
-        // start fulltext indexing in a separate thread (MARMOTTA-415)
-        Thread indexer = new Thread("Fulltext Indexer") {
+        if(parent.getPersistence().getConfiguration().getDialect() instanceof PostgreSQLDialect) {
+            // start fulltext indexing in a separate thread (MARMOTTA-415)
+            Thread indexer = new Thread("Fulltext Indexer") {
+                @Override
+                public void run() {
+                    prepareFulltext(parent.getPersistence().getConfiguration());
+                }
+            };
+            indexer.start();
+        } else {
+            // H2 and MySQL can only search with a fulltext index, so it needs to exist before the first query
+            prepareFulltext(parent.getPersistence().getConfiguration());
+        }
+
+        prepareStatistics(parent.getPersistence().getConfiguration());
+
+        if(parent.getPersistence().getConfiguration().getQueryCacheSize() > 0) {
+            translationCache = new SQLTranslationCache(parent.getPersistence().getConfiguration().getQueryCacheSize());
+            registerMBean(translationCache, "SQLTranslationCacheMBean");
+        }
+    }
+
+    @Override
+    public void shutDown() throws SailException {
+        if(statisticsRefresher != null) {
+            statisticsRefresher.shutdownNow();
+            statisticsRefresher = null;
+        }
+
+        for(ObjectName name : registeredBeans) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (Exception ex) {
+                log.warn("could not unregister {} from JMX: {}", name, ex.getMessage());
+            }
+        }
+        registeredBeans.clear();
+
+        super.shutDown();
+    }
+
+    /**
+     * Return the triple statistics used for query planning.
+     */
+    public KiWiTripleStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Return the cache for SPARQL to SQL translations, or null if translations are not cached.
+     */
+    public SQLTranslationCache getTranslationCache() {
+        return translationCache;
+    }
+
+    /**
+     * Set up the triple statistics used for ordering joins: the statistics are computed in a background thread and
+     * then recomputed periodically according to the configured refresh interval. A negative refresh interval
+     * disables computing the statistics from the database; joins are then ordered heuristically. The same applies to
+     * databases not supporting table sampling, unless full scans are enabled in the configuration. In case JMX is
+     * enabled, the statistics are also published as MBean.
+     */
+    private void prepareStatistics(final KiWiConfiguration configuration) {
+        statistics = new KiWiTripleStatistics(parent.getPersistence());
+
+        statisticsRefresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Triple Statistics");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        Runnable refresh = new Runnable() {
             @Override
             public void run() {
-                prepareFulltext(parent.getPersistence().getConfiguration());
+                statistics.refresh();
             }
         };
-        indexer.start();
+        if(!configuration.getDialect().isTableSampleSupported() && !configuration.isStatisticsFullScanEnabled()) {
+            log.info("database does not support table sampling, not computing triple statistics (full scans are disabled)");
+        } else if(configuration.getStatisticsRefreshInterval() > 0) {
+            statisticsRefresher.scheduleWithFixedDelay(refresh, 0, configuration.getStatisticsRefreshInterval(), TimeUnit.SECONDS);
+        } else if(configuration.getStatisticsRefreshInterval() == 0) {
+            statisticsRefresher.execute(refresh);
+        }
+
+        registerMBean(statistics, "KiWiTripleStatisticsMBean");
+    }
+
+    /**
+     * Publish the given bean in JMX in case JMX is enabled in the configuration. The JMX name of the bean will be
+     * org.apache.marmotta.kiwi.jmx:type=[type],name=[configuration name]
+     */
+    private void registerMBean(Object bean, String type) {
+        KiWiConfiguration configuration = parent.getPersistence().getConfiguration();
+        if(configuration.isJmxEnabled()) {
+            try {
+                MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName("org.apache.marmotta.kiwi.jmx:type=" + type + ",name=" + ObjectName.quote(configuration.getName()));
+                if(!mbs.isRegistered(name)) {
+                    mbs.registerMBean(bean, name);
+                    registeredBeans.add(name);
+                }
+            } catch (Exception ex) {
+                log.warn("could not register {} in JMX: {}", type, ex.getMessage());
+            }
+        }
     }
 
     /**
@@ -85,90 +211,33 @@ public class KiWiSparqlSail extends NotifyingSailWrapper {
     }
 
 
+    /**
+     * Create the fulltext indexes needed by fn:fulltext-search, fn:fulltext-query and fn:fulltext-rank. The indexes
+     * are managed according to the configuration:
+     * <ul>
+     *     <li>PostgreSQL: a generic index, one index for each configured language and one index using the language
+     *         of each literal; indexes of languages that are no longer configured are dropped</li>
+     *     <li>MySQL: a FULLTEXT index over nodes.svalue (no language support)</li>
+     *     <li>H2: a native H2 fulltext index over nodes.svalue (no language support)</li>
+     * </ul>
+     * The index state is recorded in the metadata table, so indexes are only created once.
+     */
     private void prepareFulltext(KiWiConfiguration configuration) {
         try {
             if(configuration.isFulltextEnabled()) {
                 try (KiWiConnection connection = parent.getPersistence().getConnection()) {
                     if (configuration.getDialect() instanceof PostgreSQLDialect) {
-
-                        // for postgres, we need to create
-                        // - a stored procedure for mapping ISO language codes to PostgreSQL fulltext configuration names
-                        // - if languages are not null, for each configured language as well as for the generic configuration
-                        //   an index over nodes.svalue
-
-                        ScriptRunner runner = new ScriptRunner(connection.getJDBCConnection(), false, false);
-                        if (connection.getMetadata("ft.lookup") == null) {
-                            log.info("PostgreSQL: creating language configuration lookup function");
-                            StringBuilder script = new StringBuilder();
-                            for (String line : IOUtils.readLines(PostgreSQLDialect.class.getResourceAsStream("create_fulltext_langlookup.sql"))) {
-                                if (!line.startsWith("--")) {
-                                    script.append(line);
-                                    script.append(" ");
-                                }
-                            }
-                            log.debug("PostgreSQL: running SQL script '{}'", script.toString());
-                            runner.runScript(new StringReader(script.toString()));
-                        }
-
-                        // language specific indexes
-                        if (configuration.getFulltextLanguages() != null) {
-                            StringBuilder script = new StringBuilder();
-                            for (String line : IOUtils.readLines(PostgreSQLDialect.class.getResourceAsStream("create_fulltext_index.sql"))) {
-                                if (!line.startsWith("--")) {
-                                    script.append(line);
-                                    script.append(" ");
-                                }
-                            }
-                            for (String lang : configuration.getFulltextLanguages()) {
-                                if (connection.getMetadata("ft.idx." + lang) == null) {
-                                    String pg_configuration = POSTGRES_LANG_MAPPINGS.get(lang);
-                                    if (pg_configuration != null) {
-                                        log.info("PostgreSQL: creating fulltext index for language {}", lang);
-                                        String script_lang = script.toString().replaceAll("@LANGUAGE@", lang).replaceAll("@CONFIGURATION@", pg_configuration);
-                                        log.debug("PostgreSQL: running SQL script '{}'", script_lang);
-                                        runner.runScript(new StringReader(script_lang));
-                                    }
-                                }
-                            }
-                        }
-
-                        // generic index
-                        if (configuration.getFulltextLanguages() != null) {
-                            if (connection.getMetadata("ft.idx.generic") == null) {
-                                StringBuilder script = new StringBuilder();
-                                for (String line : IOUtils.readLines(PostgreSQLDialect.class.getResourceAsStream("create_fulltext_index_generic.sql"))) {
-                                    if (!line.startsWith("--")) {
-                                        script.append(line);
-                                        script.append(" ");
-                                    }
-                                }
-                                log.info("PostgreSQL: creating generic fulltext index ");
-                                log.debug("PostgreSQL: running SQL script '{}'", script.toString());
-                                runner.runScript(new StringReader(script.toString()));
-                            }
-                        }
-
-                        /*
+                        preparePostgreSQLFulltext(connection, configuration);
                     } else if(configuration.getDialect() instanceof MySQLDialect) {
-
-                        // for MySQL, just create a fulltext index (no language support)
                         if(connection.getMetadata("ft.idx") == null) {
-                            ScriptRunner runner = new ScriptRunner(connection.getJDBCConnection(), false, false);
-                            String script = IOUtils.toString(MySQLDialect.class.getResourceAsStream("create_fulltext_index.sql"));
-                            log.info("MySQL: creating generic fulltext index ");
-                            log.debug("MySQL: running SQL script '{}'", script.toString());
-                            runner.runScript(new StringReader(script));
+                            log.info("MySQL: creating generic fulltext index");
+                            runScript(connection, IOUtils.toString(MySQLDialect.class.getResourceAsStream("create_fulltext_index.sql")));
                         }
-                        /*
                     } else if(configuration.getDialect() instanceof H2Dialect) {
-
-                        // for H2, just create a fulltext index (no language support)
-                        if(connection.getMetadata("fulltext.index") == null) {
-                            ScriptRunner runner = new ScriptRunner(connection.getJDBCConnection(), false, false);
-                            String script = IOUtils.toString(H2Dialect.class.getResourceAsStream("create_fulltext_index.sql"));
-                            runner.runScript(new StringReader(script));
+                        if(connection.getMetadata("ft.idx") == null) {
+                            log.info("H2: creating generic fulltext index");
+                            runScript(connection, IOUtils.toString(H2Dialect.class.getResourceAsStream("create_fulltext_index.sql")));
                         }
-                        */
                     }
                 }
             }
@@ -177,6 +246,87 @@ public class KiWiSparqlSail extends NotifyingSailWrapper {
         }
     }
 
+    private void preparePostgreSQLFulltext(KiWiConnection connection, KiWiConfiguration configuration) throws IOException, SQLException {
+        // for postgres, we need to create
+        // - a stored procedure for mapping ISO language codes to PostgreSQL fulltext configuration names
+        // - an index over nodes.svalue for the generic configuration, for each configured language and, if
+        //   languages are configured, for the language of each node
+
+        if (connection.getMetadata("ft.lookup") == null) {
+            log.info("PostgreSQL: creating language configuration lookup function");
+            runScript(connection, readScript(PostgreSQLDialect.class, "create_fulltext_langlookup.sql"));
+        }
+
+        Set<String> languages = new HashSet<>();
+        if (configuration.getFulltextLanguages() != null) {
+            for (String lang : configuration.getFulltextLanguages()) {
+                if (POSTGRES_LANG_MAPPINGS.containsKey(lang)) {
+                    languages.add(lang);
+                } else {
+                    log.warn("PostgreSQL: no fulltext configuration available for language {}, not creating an index", lang);
+                }
+            }
+        }
+        if (!languages.isEmpty()) {
+            languages.add("nodelang");
+        }
+
+        // drop the indexes of languages that are no longer configured
+        List<String> existing = new ArrayList<>();
+        try (ResultSet result = connection.getPreparedStatement("ft.indexes").executeQuery()) {
+            while (result.next()) {
+                existing.add(result.getString(1).substring("ft.idx.".length()));
+            }
+        }
+        for (String lang : existing) {
+            if (!"generic".equals(lang) && !languages.contains(lang)) {
+                log.info("PostgreSQL: dropping fulltext index for language {}", lang);
+                runScript(connection, readScript(PostgreSQLDialect.class, "drop_fulltext_index.sql").replaceAll("@LANGUAGE@", lang));
+            }
+        }
+
+        // language specific indexes
+        for (String lang : languages) {
+            if (!existing.contains(lang)) {
+                if ("nodelang".equals(lang)) {
+                    log.info("PostgreSQL: creating fulltext index for the language of each literal");
+                    runScript(connection, readScript(PostgreSQLDialect.class, "create_fulltext_index_nodelang.sql"));
+                } else {
+                    log.info("PostgreSQL: creating fulltext index for language {}", lang);
+                    runScript(connection, readScript(PostgreSQLDialect.class, "create_fulltext_index.sql").replaceAll("@LANGUAGE@", lang));
+                }
+            }
+        }
+
+        // generic index
+        if (!existing.contains("generic")) {
+            log.info("PostgreSQL: creating generic fulltext index ");
+            runScript(connection, readScript(PostgreSQLDialect.class, "create_fulltext_index_generic.sql"));
+        }
+    }
+
+    /**
+     * Read a SQL script located in the package of the given dialect, dropping comment lines and joining the remaining
+     * lines, so statements containing several lines (like function definitions) are run as a whole.
+     */
+    private static String readScript(Class<? extends KiWiDialect> dialect, String name) throws IOException {
+        StringBuilder script = new StringBuilder();
+        for (String line : IOUtils.readLines(dialect.getResourceAsStream(name))) {
+            if (!line.startsWith("--")) {
+                script.append(line);
+                script.append(" ");
+            }
+        }
+        return script.toString();
+    }
+
+    private static void runScript(KiWiConnection connection, String script) throws IOException, SQLException {
+        log.debug("running SQL script '{}'", script);
+
+        ScriptRunner runner = new ScriptRunner(connection.getJDBCConnection(), false, false);
+        runner.runScript(new StringReader(script));
+    }
+
     /**
      * Get the root connection in a wrapped sail connection stack
      * @param connection
@@ -197,7 +347,7 @@ public class KiWiSparqlSail extends NotifyingSailWrapper {
         NotifyingSailConnection connection = super.getConnection();
         KiWiSailConnection root   = getRootConnection(connection);
 
-        return new KiWiSparqlSailConnection(connection, root.getDatabaseConnection(), root.getValueFactory());
+        return new KiWiSparqlSailConnection(connection, root.getDatabaseConnection(), root.getValueFactory(), statistics, translationCache);
     }
 
 
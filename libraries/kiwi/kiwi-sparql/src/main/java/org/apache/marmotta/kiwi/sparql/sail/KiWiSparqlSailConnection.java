@@ -18,14 +18,18 @@
 package org.apache.marmotta.kiwi.sparql.sail;
 
 import info.aduna.iteration.CloseableIteration;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
 import org.apache.marmotta.kiwi.persistence.KiWiConnection;
 import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
+import org.apache.marmotta.kiwi.sparql.cache.SQLTranslationCache;
 import org.apache.marmotta.kiwi.sparql.evaluation.KiWiEvaluationStatistics;
 import org.apache.marmotta.kiwi.sparql.evaluation.KiWiEvaluationStrategy;
 import org.apache.marmotta.kiwi.sparql.evaluation.KiWiTripleSource;
 import org.apache.marmotta.kiwi.sparql.optimizer.DifferenceOptimizer;
 import org.apache.marmotta.kiwi.sparql.optimizer.DistinctLimitOptimizer;
 import org.apache.marmotta.kiwi.sparql.optimizer.NativeFilterOptimizer;
+import org.apache.marmotta.kiwi.sparql.statistics.KiWiTripleStatistics;
+import org.openrdf.model.Statement;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.Dataset;
 import org.openrdf.query.QueryEvaluationException;
@@ -35,11 +39,13 @@ import org.openrdf.query.algebra.evaluation.EvaluationStrategy;
 import org.openrdf.query.algebra.evaluation.impl.*;
 import org.openrdf.query.impl.EmptyBindingSet;
 import org.openrdf.sail.NotifyingSailConnection;
+import org.openrdf.sail.SailConnectionListener;
 import org.openrdf.sail.SailException;
 import org.openrdf.sail.helpers.NotifyingSailConnectionWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+
 /**
  * Add file description here!
  *
@@ -52,10 +58,58 @@ public class KiWiSparqlSailConnection extends NotifyingSailConnectionWrapper {
     private KiWiConnection connection;
     private KiWiValueFactory valueFactory;
 
+    private KiWiTripleStatistics statistics;
+
+    private SQLTranslationCache translationCache;
+
+    // changes of the current transaction, applied to the statistics on commit
+    private final KiWiTripleStatistics.Delta statisticsDelta = new KiWiTripleStatistics.Delta();
+
     public KiWiSparqlSailConnection(NotifyingSailConnection parent, KiWiConnection connection, KiWiValueFactory valueFactory) {
+        this(parent, connection, valueFactory, null, null);
+    }
+
+    public KiWiSparqlSailConnection(NotifyingSailConnection parent, KiWiConnection connection, KiWiValueFactory valueFactory, KiWiTripleStatistics statistics, SQLTranslationCache translationCache) {
         super(parent);
         this.connection = connection;
         this.valueFactory = valueFactory;
+        this.statistics = statistics;
+        this.translationCache = translationCache;
+
+        if(statistics != null) {
+            parent.addConnectionListener(new SailConnectionListener() {
+                @Override
+                public void statementAdded(Statement st) {
+                    if(st instanceof KiWiTriple) {
+                        statisticsDelta.add((KiWiTriple) st, 1);
+                    }
+                }
+
+                @Override
+                public void statementRemoved(Statement st) {
+                    if(st instanceof KiWiTriple) {
+                        statisticsDelta.add((KiWiTriple) st, -1);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void commit() throws SailException {
+        super.commit();
+
+        if(statistics != null && !statisticsDelta.isEmpty()) {
+            statistics.update(statisticsDelta);
+        }
+        statisticsDelta.clear();
+    }
+
+    @Override
+    public void rollback() throws SailException {
+        super.rollback();
+
+        statisticsDelta.clear();
     }
 
     @Override
@@ -71,7 +125,7 @@ public class KiWiSparqlSailConnection extends NotifyingSailConnectionWrapper {
 
         try {
             KiWiTripleSource tripleSource = new KiWiTripleSource(this, valueFactory, includeInferred);
-            EvaluationStrategy strategy = new KiWiEvaluationStrategy(tripleSource, dataset, connection, valueFactory);
+            EvaluationStrategy strategy = new KiWiEvaluationStrategy(tripleSource, dataset, connection, valueFactory, statistics, translationCache);
 
             new BindingAssigner().optimize(tupleExpr, dataset, bindings);
             //new ConstantOptimizer(strategy).optimize(tupleExpr, dataset, bindings);
@@ -83,14 +137,14 @@ public class KiWiSparqlSailConnection extends NotifyingSailConnectionWrapper {
             //new SameTermFilterOptimizer().optimize(tupleExpr, dataset, bindings);
 
             new QueryModelNormalizer().optimize(tupleExpr, dataset, bindings);
-            new QueryJoinOptimizer(new KiWiEvaluationStatistics()).optimize(tupleExpr, dataset, bindings);
+            new QueryJoinOptimizer(new KiWiEvaluationStatistics(statistics, connection)).optimize(tupleExpr, dataset, bindings);
             new IterativeEvaluationOptimizer().optimize(tupleExpr, dataset, bindings);
 
             new NativeFilterOptimizer().optimize(tupleExpr, dataset, bindings);
             //new OrderLimitOptimizer().optimize(tupleExpr, dataset, bindings);
             new DistinctLimitOptimizer().optimize(tupleExpr, dataset, bindings);
 
-            // replace Difference with NOT EXISTS
+            // remove Difference without shared variables
             new DifferenceOptimizer().optimize(tupleExpr,dataset,bindings);
 
             log.debug("evaluating SPARQL query:\n {}", tupleExpr);
@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.statistics;
+
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.KiWiPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Triple statistics of a KiWi triple store used for query planning. The statistics keep the number of triples per
+ * predicate and per context as well as the number of distinct subjects and objects per predicate. They are
+ * recomputed from the database by calling {@link #refresh()} (usually periodically) and kept up-to-date in between
+ * by applying the changes of committed transactions.
+ * <p/>
+ * Distinct subject and object counts are only updated on recomputation; for estimating cardinalities, the
+ * selectivity of a bound subject or object is therefore taken from the last database snapshot.
+ */
+public class KiWiTripleStatistics implements KiWiTripleStatisticsMBean {
+
+    private static Logger log = LoggerFactory.getLogger(KiWiTripleStatistics.class);
+
+    /**
+     * Used as node id in cardinality estimations for pattern positions that are not bound
+     */
+    public static final long UNBOUND = -1L;
+
+    /**
+     * Used as node id in cardinality estimations for pattern positions that are bound to a value whose database id
+     * is not known (e.g. a literal that has not been looked up)
+     */
+    public static final long UNKNOWN = -2L;
+
+    /**
+     * Minimum number of triples in the triple store for computing the statistics from a sample
+     */
+    private static final long MIN_SAMPLED_TRIPLES = 100000;
+
+    private KiWiPersistence persistence;
+
+    private final AtomicLong tripleCount = new AtomicLong(0);
+
+    private final ConcurrentMap<Long,AtomicLong> predicateTriples = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long,AtomicLong> contextTriples = new ConcurrentHashMap<>();
+
+    // distinct subject and object counts per predicate; replaced as a whole on each refresh
+    private volatile Map<Long,Long> predicateSubjects = new HashMap<>();
+    private volatile Map<Long,Long> predicateObjects  = new HashMap<>();
+
+    private volatile long totalSubjects = 0;
+    private volatile long totalObjects  = 0;
+
+    private volatile Date lastRefresh;
+
+    public KiWiTripleStatistics(KiWiPersistence persistence) {
+        this.persistence = persistence;
+    }
+
+    /**
+     * Recompute the statistics from the database, replacing all incrementally maintained values. Per-predicate
+     * values are computed from a sample of the triple table in case the database supports table sampling and the
+     * triple store is large enough; triple counts per context are taken from the triple counters. Errors are logged
+     * and leave the previous statistics in place.
+     */
+    @Override
+    public synchronized void refresh() {
+        try {
+            long start = System.currentTimeMillis();
+
+            Map<Long,Long> predicates = new HashMap<>();
+            Map<Long,Long> subjects   = new HashMap<>();
+            Map<Long,Long> objects    = new HashMap<>();
+            Map<Long,Long> contexts   = new HashMap<>();
+            long total, sumSubjects = 0, sumObjects = 0;
+
+            try (KiWiConnection connection = persistence.getConnection()) {
+                total = connection.getSize();
+
+                double samplePercent = persistence.getConfiguration().getStatisticsSamplePercent();
+                boolean sampled = persistence.getDialect().isTableSampleSupported() && samplePercent > 0 && samplePercent < 100
+                        && total >= MIN_SAMPLED_TRIPLES;
+
+                if(sampled) {
+                    // the sample only contains a fraction of the distinct values, so they are estimated from the
+                    // frequency profile of the sample; the triple counts per predicate are scaled up
+                    double factor = 100.0 / samplePercent;
+
+                    PreparedStatement querySubjects = connection.getPreparedStatement("stats.subjects_sample");
+                    querySubjects.setDouble(1, samplePercent);
+                    try (ResultSet result = querySubjects.executeQuery()) {
+                        while (result.next()) {
+                            long predicate = result.getLong(1);
+                            long count     = Math.round(result.getLong(2) * factor);
+
+                            predicates.put(predicate, count);
+                            subjects.put(predicate, estimateDistinct(count, result.getLong(2), result.getLong(3), result.getLong(4)));
+                        }
+                    }
+
+                    PreparedStatement queryObjects = connection.getPreparedStatement("stats.objects_sample");
+                    queryObjects.setDouble(1, samplePercent);
+                    try (ResultSet result = queryObjects.executeQuery()) {
+                        while (result.next()) {
+                            Long count = predicates.get(result.getLong(1));
+                            if(count != null) {
+                                objects.put(result.getLong(1), estimateDistinct(count, result.getLong(2), result.getLong(3), result.getLong(4)));
+                            }
+                        }
+                    }
+                } else {
+                    PreparedStatement queryPredicates = connection.getPreparedStatement("stats.predicates");
+                    try (ResultSet result = queryPredicates.executeQuery()) {
+                        while (result.next()) {
+                            long predicate = result.getLong(1);
+
+                            predicates.put(predicate, result.getLong(2));
+                            subjects.put(predicate, result.getLong(3));
+                            objects.put(predicate, result.getLong(4));
+                        }
+                    }
+                }
+                for(Long predicate : predicates.keySet()) {
+                    sumSubjects += subjects.get(predicate);
+                    sumObjects  += objects.containsKey(predicate) ? objects.get(predicate) : 0;
+                }
+
+                PreparedStatement queryContexts = connection.getPreparedStatement("stats.contexts");
+                try (ResultSet result = queryContexts.executeQuery()) {
+                    while (result.next()) {
+                        contexts.put(result.getLong(1), result.getLong(2));
+                    }
+                }
+
+                connection.commit();
+            }
+
+            synchronized (tripleCount) {
+                tripleCount.set(total);
+                replace(predicateTriples, predicates);
+                replace(contextTriples, contexts);
+                predicateSubjects = subjects;
+                predicateObjects  = objects;
+                totalSubjects = sumSubjects;
+                totalObjects  = sumObjects;
+            }
+            lastRefresh = new Date();
+
+            log.debug("recomputed triple statistics ({} triples, {} predicates, {} contexts) in {} ms", total, predicates.size(), contexts.size(), System.currentTimeMillis() - start);
+        } catch (SQLException ex) {
+            log.error("could not compute triple statistics", ex);
+        }
+    }
+
+    /**
+     * Estimate the number of distinct values in a column from a random sample using the GEE estimator (Charikar et
+     * al., "Towards Estimation Error Guarantees for Distinct Values"): values seen more than once in the sample are
+     * assumed to be frequent and counted once, values seen exactly once stand for sqrt(rows/sampledRows) distinct
+     * values each. Scaling the distinct count of the sample linearly would instead assume that every value occurs
+     * only once. The estimate is never lower than the distinct count of the sample and never higher than the number
+     * of rows.
+     *
+     * @param rows            the (estimated) number of rows of the complete table
+     * @param sampledRows     the number of rows in the sample
+     * @param sampledDistinct the number of distinct values in the sample
+     * @param singletons      the number of values occurring exactly once in the sample
+     * @return the estimated number of distinct values of the complete table
+     */
+    public static long estimateDistinct(long rows, long sampledRows, long sampledDistinct, long singletons) {
+        if(sampledRows <= 0 || rows <= sampledRows) {
+            return sampledDistinct;
+        }
+        double estimate = Math.sqrt((double) rows / sampledRows) * singletons + (sampledDistinct - singletons);
+        return Math.max(sampledDistinct, Math.min(rows, Math.round(estimate)));
+    }
+
+    private static void replace(ConcurrentMap<Long,AtomicLong> target, Map<Long,Long> values) {
+        target.clear();
+        for(Map.Entry<Long,Long> entry : values.entrySet()) {
+            target.put(entry.getKey(), new AtomicLong(entry.getValue()));
+        }
+    }
+
+    /**
+     * Update the statistics with the changes of a committed transaction.
+     *
+     * @param delta the per-predicate and per-context changes of the transaction
+     */
+    public void update(Delta delta) {
+        synchronized (tripleCount) {
+            tripleCount.addAndGet(delta.triples);
+            for(Map.Entry<Long,Long> entry : delta.predicates.entrySet()) {
+                increment(predicateTriples, entry.getKey(), entry.getValue());
+            }
+            for(Map.Entry<Long,Long> entry : delta.contexts.entrySet()) {
+                increment(contextTriples, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static void increment(ConcurrentMap<Long,AtomicLong> counts, long id, long delta) {
+        AtomicLong count = counts.get(id);
+        if(count == null) {
+            AtomicLong existing = counts.putIfAbsent(id, count = new AtomicLong());
+            if(existing != null) {
+                count = existing;
+            }
+        }
+        if(count.addAndGet(delta) < 0) {
+            count.set(0);
+        }
+    }
+
+    /**
+     * Return true in case the statistics have been computed from the database at least once.
+     */
+    public boolean isInitialised() {
+        return lastRefresh != null;
+    }
+
+    @Override
+    public long getTripleCount() {
+        return Math.max(0, tripleCount.get());
+    }
+
+    @Override
+    public int getPredicateCount() {
+        return predicateTriples.size();
+    }
+
+    @Override
+    public int getContextCount() {
+        return contextTriples.size();
+    }
+
+    @Override
+    public Date getLastRefresh() {
+        return lastRefresh;
+    }
+
+    /**
+     * Return the number of triples with the given predicate.
+     */
+    public long getPredicateTriples(long predicate) {
+        AtomicLong count = predicateTriples.get(predicate);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Return the number of triples in the given context.
+     */
+    public long getContextTriples(long context) {
+        AtomicLong count = contextTriples.get(context);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Return the number of distinct subjects of triples with the given predicate (as of the last refresh).
+     */
+    public long getDistinctSubjects(long predicate) {
+        Long count = predicateSubjects.get(predicate);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Return the number of distinct objects of triples with the given predicate (as of the last refresh).
+     */
+    public long getDistinctObjects(long predicate) {
+        Long count = predicateObjects.get(predicate);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Estimate the number of triples matching a triple pattern. Each argument is either the database id of the
+     * node the position is bound to, {@link #UNBOUND} or {@link #UNKNOWN}.
+     *
+     * @return the estimated number of matching triples
+     */
+    public double getCardinality(long subject, long predicate, long object, long context) {
+        double total = Math.max(1, getTripleCount());
+
+        double cardinality;
+        double subjects, objects;
+        if(predicate >= 0) {
+            cardinality = getPredicateTriples(predicate);
+            subjects    = getDistinctSubjects(predicate);
+            objects     = getDistinctObjects(predicate);
+        } else if(predicate == UNKNOWN) {
+            // average predicate
+            double predicates = Math.max(1, getPredicateCount());
+            cardinality = total / predicates;
+            subjects    = totalSubjects / predicates;
+            objects     = totalObjects / predicates;
+        } else {
+            cardinality = total;
+            subjects    = totalSubjects;
+            objects     = totalObjects;
+        }
+
+        if(subject != UNBOUND) {
+            cardinality = cardinality / Math.max(1, subjects);
+        }
+        if(object != UNBOUND) {
+            cardinality = cardinality / Math.max(1, objects);
+        }
+        if(context >= 0) {
+            cardinality = cardinality * getContextTriples(context) / total;
+        }
+
+        return cardinality;
+    }
+
+    /**
+     * The changes of the triple counts per predicate and per context made by a transaction. Only the aggregated
+     * counts are kept, so the memory used does not grow with the number of triples added or removed.
+     */
+    public static class Delta {
+
+        private long triples = 0;
+
+        private final Map<Long,Long> predicates = new HashMap<>();
+
+        private final Map<Long,Long> contexts = new HashMap<>();
+
+        /**
+         * Record a triple that has been added (delta = 1) or removed (delta = -1).
+         */
+        public void add(KiWiTriple triple, long delta) {
+            triples += delta;
+            add(predicates, triple.getPredicate().getId(), delta);
+            if(triple.getContext() != null) {
+                add(contexts, triple.getContext().getId(), delta);
+            }
+        }
+
+        private static void add(Map<Long,Long> counts, long id, long delta) {
+            Long value = counts.get(id);
+            counts.put(id, value != null ? value + delta : delta);
+        }
+
+        public boolean isEmpty() {
+            return predicates.isEmpty();
+        }
+
+        public void clear() {
+            triples = 0;
+            predicates.clear();
+            contexts.clear();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.statistics;
+
+import java.util.Date;
+
+/**
+ * Triple statistics used by the SPARQL module for query planning, to be published in JMX beside the
+ * KiWiStatisticsMBean. The JMX name of the bean will be
+ * org.apache.marmotta.kiwi.jmx:type=KiWiTripleStatisticsMBean,name=[configuration name]
+ */
+public interface KiWiTripleStatisticsMBean {
+
+    /**
+     * Return the number of (non-deleted) triples in the triple store as currently known by the statistics.
+     */
+    long getTripleCount();
+
+    /**
+     * Return the number of different predicates for which statistics are available.
+     */
+    int getPredicateCount();
+
+    /**
+     * Return the number of different contexts for which statistics are available.
+     */
+    int getContextCount();
+
+    /**
+     * Return the time of the last complete recomputation of the statistics from the database, or null if the
+     * statistics have not been computed yet.
+     */
+    Date getLastRefresh();
+
+    /**
+     * Recompute the statistics from the database.
+     */
+    void refresh();
+}
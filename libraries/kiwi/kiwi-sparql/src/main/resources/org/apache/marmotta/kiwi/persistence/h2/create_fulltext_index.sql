@@ -13,9 +13,9 @@
 -- See the License for the specific language governing permissions and
 -- limitations under the License.
 
+CREATE ALIAS IF NOT EXISTS FT_INIT FOR "org.h2.fulltext.FullText.init";
 CALL FT_INIT();
-CALL FT_DROP_INDEX('PUBLIC','nodes');
-CALL FT_CREATE_INDEX('PUBLIC','nodes','svalue');
-
-INSERT INTO metadata(mkey,mvalue) VALUES ('fulltext.index','true');
+CALL FT_DROP_INDEX('PUBLIC','NODES');
+CALL FT_CREATE_INDEX('PUBLIC','NODES','SVALUE');
 
+INSERT INTO metadata(mkey,mvalue) VALUES ('ft.idx','true');
@@ -0,0 +1,21 @@
+-- Licensed to the Apache Software Foundation (ASF) under one or more
+-- contributor license agreements.  See the NOTICE file distributed with
+-- this work for additional information regarding copyright ownership.
+-- The ASF licenses this file to You under the Apache License, Version 2.0
+-- (the "License"); you may not use this file except in compliance with
+-- the License.  You may obtain a copy of the License at
+--
+--      http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- index over the language of each literal, used when searching with the language of the searched value,
+-- e.g. fn:fulltext-search(str(?x), 'query', lang(?x))
+DROP INDEX IF EXISTS kiwi_ft_idx_nodelang;
+CREATE INDEX kiwi_ft_idx_nodelang ON nodes USING gin(to_tsvector(kiwi_ft_lang(lang),svalue));
+
+INSERT INTO metadata(mkey,mvalue) VALUES ('ft.idx.nodelang','true');
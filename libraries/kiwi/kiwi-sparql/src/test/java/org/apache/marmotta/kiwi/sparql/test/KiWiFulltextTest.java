@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.test;
+
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.persistence.h2.H2Dialect;
+import org.apache.marmotta.kiwi.persistence.mysql.MySQLDialect;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sparql.builder.collect.SupportedFinder;
+import org.apache.marmotta.kiwi.sparql.function.NativeFunctionRegistry;
+import org.apache.marmotta.kiwi.sparql.sail.KiWiSparqlSail;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.apache.marmotta.kiwi.vocabulary.FN_MARMOTTA;
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.parser.ParsedQuery;
+import org.openrdf.query.parser.sparql.SPARQLParser;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.repository.sail.SailRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Random;
+
+/**
+ * Test the fulltext search functions and their indexes on a larger set of generated literals and measure the
+ * search latency.
+ */
+@RunWith(KiWiDatabaseRunner.class)
+public class KiWiFulltextTest {
+
+    private static Logger log = LoggerFactory.getLogger(KiWiFulltextTest.class);
+
+    private static final String PREFIXES =
+            "PREFIX dc: <http://purl.org/dc/elements/1.1/>\n" +
+            "PREFIX mm: <http://marmotta.apache.org/vocabulary/sparql-functions#>\n";
+
+    // number of generated literals; every 100th literal contains the word "needle", every 1000th contains it twice
+    private static final int LITERALS = 10000;
+
+    private static final int TERMS = 200;
+
+    private KiWiStore store;
+
+    private KiWiSparqlSail ssail;
+
+    private Repository repository;
+
+    private final KiWiConfiguration dbConfig;
+
+    public KiWiFulltextTest(KiWiConfiguration dbConfig) {
+        this.dbConfig = dbConfig;
+        dbConfig.setFulltextEnabled(true);
+        dbConfig.setFulltextLanguages(new String[] {"en"});
+    }
+
+    @Before
+    public void initDatabase() throws RepositoryException {
+        Assume.assumeTrue(NativeFunctionRegistry.getInstance().get(FN_MARMOTTA.SEARCH_FULLTEXT).isSupported(dbConfig.getDialect()));
+
+        store = new KiWiStore(dbConfig);
+        ssail = new KiWiSparqlSail(store);
+        repository = new SailRepository(ssail);
+        repository.initialize();
+
+        Random random = new Random(42);
+
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+
+            ValueFactory vf = con.getValueFactory();
+            URI description = vf.createURI("http://purl.org/dc/elements/1.1/description");
+            for(int i = 0; i < LITERALS; i++) {
+                StringBuilder text = new StringBuilder();
+                for(int w = 0; w < 10; w++) {
+                    text.append("term").append(random.nextInt(TERMS)).append(" ");
+                }
+                if(i % 100 == 0) {
+                    text.append("needle ");
+                }
+                if(i % 1000 == 0) {
+                    text.append("and another needle");
+                }
+
+                con.add(vf.createURI("http://localhost/doc/" + i), description, vf.createLiteral(text.toString().trim(), "en"));
+            }
+
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    @After
+    public void dropDatabase() throws RepositoryException, SQLException {
+        if(store != null) {
+            store.getPersistence().dropDatabase();
+            repository.shutDown();
+        }
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        String queryString = PREFIXES + "SELECT ?doc WHERE { ?doc dc:description ?desc . FILTER( mm:fulltext-search(str(?desc), \"needle\") ) }";
+        assertNative(queryString);
+        Assert.assertEquals(LITERALS / 100, count(queryString));
+    }
+
+    @Test
+    public void testSearchLanguage() throws Exception {
+        String queryString = PREFIXES + "SELECT ?doc WHERE { ?doc dc:description ?desc . FILTER( mm:fulltext-search(str(?desc), \"needle\", lang(?desc)) ) }";
+        assertNative(queryString);
+        Assert.assertEquals(LITERALS / 100, count(queryString));
+    }
+
+    /**
+     * Literals containing the search term twice need to be ranked before the literals containing it once. The native
+     * H2 index does not compute a relevance, so the test is skipped for H2.
+     */
+    @Test
+    public void testRank() throws Exception {
+        Assume.assumeFalse(dbConfig.getDialect() instanceof H2Dialect);
+
+        String queryString = PREFIXES +
+                "SELECT ?doc ?rank WHERE { ?doc dc:description ?desc . FILTER( mm:fulltext-search(str(?desc), \"needle\") ) " +
+                "BIND( mm:fulltext-rank(str(?desc), \"needle\") AS ?rank ) } ORDER BY DESC(?rank) LIMIT " + (LITERALS / 1000);
+        assertNative(queryString);
+
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+
+            TupleQuery query = con.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+            TupleQueryResult result = query.evaluate();
+            try {
+                int results = 0;
+                while (result.hasNext()) {
+                    BindingSet next = result.next();
+                    int doc = Integer.parseInt(next.getValue("doc").stringValue().substring("http://localhost/doc/".length()));
+                    Assert.assertEquals("document " + doc + " ranked too high", 0, doc % 1000);
+                    results++;
+                }
+                Assert.assertEquals(LITERALS / 1000, results);
+            } finally {
+                result.close();
+            }
+
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Measure the average latency of searches for random terms, preceded by a warmup round.
+     */
+    @Test
+    public void testSearchLatency() throws Exception {
+        Random random = new Random(4711);
+
+        for(int round = 0; round < 2; round++) {
+            int queries = round == 0 ? 10 : 50;
+            long results = 0;
+
+            long start = System.nanoTime();
+            for(int i = 0; i < queries; i++) {
+                results += count(PREFIXES + "SELECT ?doc WHERE { ?doc dc:description ?desc . FILTER( mm:fulltext-search(str(?desc), \"term" + random.nextInt(TERMS) + "\") ) }");
+            }
+            long time = System.nanoTime() - start;
+
+            if(round > 0) {
+                log.info("{}: fulltext search over {} literals took {}ms on average ({} results per query)",
+                        dbConfig.getName(), LITERALS, time / queries / 1000000.0, results / queries);
+            }
+            Assert.assertTrue(results > 0);
+        }
+    }
+
+    /**
+     * MySQL and H2 need the fulltext index for searching, so searches must fail with a clear error in case fulltext
+     * support is disabled.
+     */
+    @Test
+    public void testSearchDisabled() throws Exception {
+        Assume.assumeTrue(dbConfig.getDialect() instanceof MySQLDialect || dbConfig.getDialect() instanceof H2Dialect);
+
+        dbConfig.setFulltextEnabled(false);
+        try {
+            assertNotTranslated(PREFIXES + "SELECT ?doc WHERE { ?doc dc:description ?desc . FILTER( mm:fulltext-search(str(?desc), \"needle\") ) }", "not enabled");
+        } finally {
+            dbConfig.setFulltextEnabled(true);
+        }
+    }
+
+    /**
+     * MySQL can only match the indexed column, not a computed string.
+     */
+    @Test
+    public void testSearchExpression() throws Exception {
+        Assume.assumeTrue(dbConfig.getDialect() instanceof MySQLDialect);
+
+        assertNotTranslated(PREFIXES + "SELECT ?doc WHERE { ?doc dc:description ?desc . FILTER( mm:fulltext-search(concat(str(?desc), \" x\"), \"needle\") ) }", "str(?var)");
+    }
+
+    private void assertNotTranslated(String queryString, String message) throws Exception {
+        try {
+            count(queryString);
+            Assert.fail("query should not be translated");
+        } catch (QueryEvaluationException ex) {
+            Throwable cause = ex;
+            while (cause.getCause() != null && !(cause instanceof IllegalArgumentException)) {
+                cause = cause.getCause();
+            }
+            Assert.assertThat(cause.getMessage(), Matchers.containsString(message));
+        }
+    }
+
+    private void assertNative(String queryString) throws Exception {
+        ParsedQuery query = new SPARQLParser().parseQuery(queryString, "http://localhost/");
+        Assert.assertTrue("query is not evaluated natively", new SupportedFinder(query.getTupleExpr(), dbConfig.getDialect()).isSupported());
+    }
+
+    private int count(String queryString) throws Exception {
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+
+            TupleQuery query = con.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+            TupleQueryResult result = query.evaluate();
+            int count = 0;
+            try {
+                while (result.hasNext()) {
+                    result.next();
+                    count++;
+                }
+            } finally {
+                result.close();
+            }
+
+            con.commit();
+
+            return count;
+        } finally {
+            con.close();
+        }
+    }
+}
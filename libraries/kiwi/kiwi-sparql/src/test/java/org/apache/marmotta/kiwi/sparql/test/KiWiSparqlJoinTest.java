@@ -27,6 +27,7 @@ import org.apache.marmotta.commons.sesame.model.StatementCommons;
 import org.apache.marmotta.commons.vocabulary.FOAF;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sparql.builder.collect.SupportedFinder;
 import org.apache.marmotta.kiwi.sparql.function.NativeFunctionRegistry;
 import org.apache.marmotta.kiwi.sparql.sail.KiWiSparqlSail;
 import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
@@ -39,9 +40,12 @@ import org.junit.runner.RunWith;
 import org.openrdf.model.BNode;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
 import org.openrdf.model.impl.URIImpl;
 import org.openrdf.query.*;
 import org.openrdf.query.impl.DatasetImpl;
+import org.openrdf.query.parser.ParsedQuery;
+import org.openrdf.query.parser.sparql.SPARQLParser;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
@@ -147,6 +151,23 @@ public class KiWiSparqlJoinTest {
         testQuery("query1.sparql");
     }
 
+    /**
+     * Test joins and optional joins when the result is read ahead in pages smaller than the result size.
+     * @throws Exception
+     */
+    @Test
+    public void testResultPrefetch() throws Exception {
+        int prefetchSize = dbConfig.getResultPrefetchSize();
+        try {
+            dbConfig.setResultPrefetchSize(2);
+            testQuery("query1.sparql");
+            testQuery("query11.sparql");
+            testQuery("query12.sparql");
+        } finally {
+            dbConfig.setResultPrefetchSize(prefetchSize);
+        }
+    }
+
     @Test
     public void testQuery2() throws Exception {
         testQuery("query2.sparql");
@@ -343,6 +364,158 @@ public class KiWiSparqlJoinTest {
         testQuery("query36.sparql");
     }
 
+    // property path, unbound start and end, cyclic data
+    @Test
+    public void testQuery37() throws Exception {
+        testQuery("query37.sparql");
+    }
+
+    // property path with zero length, bound start
+    @Test
+    public void testQuery38() throws Exception {
+        testQuery("query38.sparql");
+    }
+
+    // property path with bound end, joined with a pattern
+    @Test
+    public void testQuery39() throws Exception {
+        testQuery("query39.sparql");
+    }
+
+    // inverse property path in optional with filter
+    @Test
+    public void testQuery40() throws Exception {
+        testQuery("query40.sparql");
+    }
+
+    // property path with zero length, unbound ends joined with a selective pattern
+    @Test
+    public void testQuery49() throws Exception {
+        testQuery("query49.sparql");
+    }
+
+    // property path with zero length over a property that is not used in the data
+    @Test
+    public void testQuery50() throws Exception {
+        testQuery("query50.sparql");
+    }
+
+    // property path starting at a node given by the initial bindings
+    @Test
+    public void testPropertyPathBindings() throws Exception {
+        testQueryString("PREFIX foaf: <http://xmlns.com/foaf/0.1/> SELECT ?p WHERE { ?s foaf:knows* ?p }",
+                "s", new URIImpl("http://localhost:8080/LMF/resource/hans_meier"));
+    }
+
+    // property paths are evaluated natively on databases supporting recursive queries
+    @Test
+    public void testPropertyPathSupported() throws Exception {
+        Assume.assumeTrue(dbConfig.getDialect().isRecursiveQuerySupported());
+
+        for(String filename : new String[] {"query37.sparql", "query38.sparql", "query39.sparql", "query40.sparql", "query49.sparql", "query50.sparql"}) {
+            String queryString = IOUtils.toString(this.getClass().getResourceAsStream(filename), "UTF-8");
+            ParsedQuery query = new SPARQLParser().parseQuery(queryString, "http://localhost/");
+
+            Assert.assertTrue(filename + " is not evaluated natively", new SupportedFinder(query.getTupleExpr(), dbConfig.getDialect()).isSupported());
+        }
+    }
+
+    // VALUES block
+    @Test
+    public void testQuery41() throws Exception {
+        testQuery("query41.sparql");
+    }
+
+    // VALUES block with several variables
+    @Test
+    public void testQuery42() throws Exception {
+        testQuery("query42.sparql");
+    }
+
+    // IN filter over resources
+    @Test
+    public void testQuery43() throws Exception {
+        testQuery("query43.sparql");
+    }
+
+    // NOT IN filter over literals
+    @Test
+    public void testQuery44() throws Exception {
+        testQuery("query44.sparql");
+    }
+
+    @Test
+    public void testValuesSupported() throws Exception {
+        for(String filename : new String[] {"query41.sparql", "query42.sparql", "query43.sparql", "query44.sparql"}) {
+            String queryString = IOUtils.toString(this.getClass().getResourceAsStream(filename), "UTF-8");
+            ParsedQuery query = new SPARQLParser().parseQuery(queryString, "http://localhost/");
+
+            Assert.assertTrue(filename + " is not evaluated natively", new SupportedFinder(query.getTupleExpr(), dbConfig.getDialect()).isSupported());
+        }
+    }
+
+    // large VALUES block and IN filter, more resources than fit into a single batch
+    @Test
+    public void testLargeValues() throws Exception {
+        StringBuilder resources = new StringBuilder();
+        for(int i = 0; i < 2000; i++) {
+            resources.append("<http://localhost:8080/LMF/resource/generated_").append(i).append("> ");
+        }
+        resources.append("<http://localhost:8080/LMF/resource/hans_meier> <http://localhost:8080/LMF/resource/anna_schmidt>");
+
+        testQueryString(
+                "PREFIX foaf: <http://xmlns.com/foaf/0.1/>\n" +
+                "SELECT ?p ?name WHERE { VALUES ?p { " + resources + " } ?p foaf:name ?name . }");
+
+        testQueryString(
+                "PREFIX foaf: <http://xmlns.com/foaf/0.1/>\n" +
+                "SELECT ?p ?name WHERE { ?p foaf:name ?name . FILTER(?p IN (" + resources.toString().replace("> <", ">, <") + ")) }");
+    }
+
+    // VALUES block that is not joined with a triple pattern, returning IRIs that are not stored in the database
+    @Test
+    public void testValuesUnknownResources() throws Exception {
+        String queryString = "SELECT ?p WHERE { VALUES ?p { <http://localhost:8080/LMF/resource/hans_meier> <http://localhost:8080/LMF/resource/unknown> } }";
+        ParsedQuery query = new SPARQLParser().parseQuery(queryString, "http://localhost/");
+        Assert.assertFalse(new SupportedFinder(query.getTupleExpr(), dbConfig.getDialect()).isSupported());
+
+        testQueryString(queryString);
+    }
+
+    // MINUS
+    @Test
+    public void testQuery45() throws Exception {
+        testQuery("query45.sparql");
+    }
+
+    // MINUS with an unbound shared variable
+    @Test
+    public void testQuery46() throws Exception {
+        testQuery("query46.sparql");
+    }
+
+    // MINUS with a filter on a variable of the left side, which is not in scope
+    @Test
+    public void testQuery47() throws Exception {
+        testQuery("query47.sparql");
+    }
+
+    // nested FILTER NOT EXISTS
+    @Test
+    public void testQuery48() throws Exception {
+        testQuery("query48.sparql");
+    }
+
+    @Test
+    public void testMinusSupported() throws Exception {
+        for(String filename : new String[] {"query45.sparql", "query46.sparql", "query47.sparql", "query48.sparql"}) {
+            String queryString = IOUtils.toString(this.getClass().getResourceAsStream(filename), "UTF-8");
+            ParsedQuery query = new SPARQLParser().parseQuery(queryString, "http://localhost/");
+
+            Assert.assertTrue(filename + " is not evaluated natively", new SupportedFinder(query.getTupleExpr(), dbConfig.getDialect()).isSupported());
+        }
+    }
+
     // INSERT/UPDATE
     @Test
     public void testUpdate01() throws Exception {
@@ -360,6 +533,9 @@ public class KiWiSparqlJoinTest {
             con1.begin();
 
             TupleQuery query1 = con1.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+            if(bindingName != null) {
+                query1.setBinding(bindingName, bindingValue);
+            }
             TupleQueryResult result1 = query1.evaluate();
 
             con1.commit();
@@ -381,7 +557,7 @@ public class KiWiSparqlJoinTest {
     // fulltext query filter
     @Test
     public void testQuery23() throws Exception {
-        Assume.assumeTrue(NativeFunctionRegistry.getInstance().get(FN_MARMOTTA.SEARCH_FULLTEXT).isSupported(dbConfig.getDialect()));
+        Assume.assumeTrue(NativeFunctionRegistry.getInstance().get(FN_MARMOTTA.QUERY_FULLTEXT).isSupported(dbConfig.getDialect()));
         String queryString = IOUtils.toString(this.getClass().getResourceAsStream("query23.sparql"), "UTF-8");
 
         RepositoryConnection con1 = repository.getConnection();
@@ -409,14 +585,23 @@ public class KiWiSparqlJoinTest {
     }
 
     private void testQuery(String filename) throws Exception {
-        String queryString = IOUtils.toString(this.getClass().getResourceAsStream(filename), "UTF-8");
+        testQueryString(IOUtils.toString(this.getClass().getResourceAsStream(filename), "UTF-8"));
+    }
 
+    private void testQueryString(String queryString) throws Exception {
+        testQueryString(queryString, null, null);
+    }
+
+    private void testQueryString(String queryString, String bindingName, Value bindingValue) throws Exception {
         RepositoryConnection con1 = repository.getConnection();
         RepositoryConnection con2 = reference.getConnection();
         try {
             con2.begin();
 
             TupleQuery query2 = con2.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+            if(bindingName != null) {
+                query2.setBinding(bindingName, bindingValue);
+            }
             TupleQueryResult result2 = query2.evaluate();
 
             con2.commit();
@@ -28,6 +28,7 @@ import java.util.Set;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.sail.KiWiSailConnection;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
 import org.apache.marmotta.kiwi.sparql.sail.KiWiSparqlSail;
 import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
@@ -42,6 +43,7 @@ import org.junit.runner.Description;
 import org.junit.runner.RunWith;
 import org.openrdf.model.BNode;
 import org.openrdf.model.Literal;
+import org.openrdf.model.vocabulary.RDFS;
 import org.openrdf.query.Binding;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.GraphQuery;
@@ -55,8 +57,11 @@ import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.repository.sail.SailRepositoryConnection;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFParseException;
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.helpers.SailConnectionWrapper;
 import org.openrdf.sail.memory.MemoryStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -396,4 +401,51 @@ public class KiWiSparqlTest {
         testQueryEvaluation(queryString);
     }
 
+    /**
+     * Test that queries and statement listings on a read-only connection are served from the read replica (here the
+     * primary database itself).
+     */
+    @Test
+    public void testReadOnlyQuery() throws Exception {
+        KiWiConfiguration replicaConfig = new KiWiConfiguration(dbConfig.getName() + "-replica", dbConfig.getJdbcUrl(), dbConfig.getDbUser(), dbConfig.getDbPassword(), dbConfig.getDialect());
+        replicaConfig.setReplicaJdbcUrl(dbConfig.getJdbcUrl());
+
+        KiWiStore replicated = new KiWiStore(replicaConfig);
+        SailRepository replicatedRepository = new SailRepository(new KiWiSparqlSail(replicated));
+        replicatedRepository.initialize();
+        try {
+            SailRepositoryConnection conn = replicatedRepository.getConnection();
+            try {
+                getRootConnection(conn.getSailConnection()).setReadOnly(true);
+
+                conn.begin();
+                TupleQuery query = conn.prepareTupleQuery(QueryLanguage.SPARQL, "SELECT ?s ?p ?o WHERE { ?s ?p ?o }");
+                Assert.assertFalse(Iterations.asList(query.evaluate()).isEmpty());
+                Assert.assertFalse(Iterations.asList(conn.getStatements(null, null, null, true)).isEmpty());
+
+                try {
+                    conn.add(replicatedRepository.getValueFactory().createBNode(), RDFS.LABEL, replicatedRepository.getValueFactory().createLiteral("read-only"));
+                    conn.commit();
+                    Assert.fail("read-only connection accepted a modification");
+                } catch (RepositoryException ex) {
+                    conn.rollback();
+                }
+            } finally {
+                conn.close();
+            }
+
+            Assert.assertTrue(replicated.getPersistence().getReplicaPoolStatistics().getBorrowed() > 0);
+            Assert.assertEquals(0, replicated.getPersistence().getReplicaFallbacks());
+        } finally {
+            replicatedRepository.shutDown();
+        }
+    }
+
+    private static KiWiSailConnection getRootConnection(SailConnection connection) {
+        while(connection instanceof SailConnectionWrapper) {
+            connection = ((SailConnectionWrapper) connection).getWrappedConnection();
+        }
+        return (KiWiSailConnection) connection;
+    }
+
 }
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.test;
+
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sparql.sail.KiWiSparqlSail;
+import org.apache.marmotta.kiwi.sparql.statistics.KiWiTripleStatistics;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openrdf.model.URI;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+
+import static org.apache.marmotta.kiwi.sparql.statistics.KiWiTripleStatistics.UNBOUND;
+
+/**
+ * Test the triple statistics used for ordering joins in the KiWi SPARQL module.
+ */
+@RunWith(KiWiDatabaseRunner.class)
+public class KiWiTripleStatisticsTest {
+
+    private static final String NS = "http://localhost/statistics/";
+
+    private KiWiStore store;
+
+    private KiWiSparqlSail ssail;
+
+    private Repository repository;
+
+    private final KiWiConfiguration dbConfig;
+
+    public KiWiTripleStatisticsTest(KiWiConfiguration dbConfig) {
+        this.dbConfig = dbConfig;
+    }
+
+    @Before
+    public void initDatabase() throws Exception {
+        dbConfig.setStatisticsFullScanEnabled(true);
+        store = new KiWiStore(dbConfig);
+        ssail = new KiWiSparqlSail(store);
+        repository = new SailRepository(ssail);
+        repository.initialize();
+
+        // 100 resources of type :Thing, 5 of them with a :name
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            ValueFactory vf = con.getValueFactory();
+            for(int i = 0; i < 100; i++) {
+                URI resource = vf.createURI(NS + "r" + i);
+                con.add(resource, vf.createURI(NS + "type"), vf.createURI(NS + "Thing"), vf.createURI(NS + "ctx"));
+                if(i % 20 == 0) {
+                    con.add(resource, vf.createURI(NS + "name"), vf.createLiteral("Resource " + i), vf.createURI(NS + "ctx"));
+                }
+            }
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    @After
+    public void dropDatabase() throws Exception {
+        store.getPersistence().dropDatabase();
+        repository.shutDown();
+    }
+
+    /**
+     * Wait for the initial computation started by the sail and then recompute the statistics so they include all
+     * test data.
+     */
+    private KiWiTripleStatistics getStatistics() throws InterruptedException {
+        KiWiTripleStatistics statistics = ssail.getStatistics();
+        for(int i = 0; i < 100 && !statistics.isInitialised(); i++) {
+            Thread.sleep(100);
+        }
+        statistics.refresh();
+        return statistics;
+    }
+
+    private long id(String localName) {
+        return ((KiWiNode) store.getValueFactory().createURI(NS + localName)).getId();
+    }
+
+    /**
+     * Test that statistics computed from the database reflect the stored triples.
+     */
+    @Test
+    public void testRefresh() throws Exception {
+        KiWiTripleStatistics statistics = getStatistics();
+
+        Assert.assertTrue(statistics.isInitialised());
+        Assert.assertNotNull(statistics.getLastRefresh());
+        Assert.assertEquals(105, statistics.getTripleCount());
+        Assert.assertEquals(2, statistics.getPredicateCount());
+        Assert.assertEquals(1, statistics.getContextCount());
+
+        Assert.assertEquals(100, statistics.getPredicateTriples(id("type")));
+        Assert.assertEquals(5, statistics.getPredicateTriples(id("name")));
+        Assert.assertEquals(105, statistics.getContextTriples(id("ctx")));
+        Assert.assertEquals(100, statistics.getDistinctSubjects(id("type")));
+        Assert.assertEquals(1, statistics.getDistinctObjects(id("type")));
+    }
+
+    /**
+     * Test that the statistics are updated incrementally when a transaction is committed and not updated when it is
+     * rolled back.
+     */
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        KiWiTripleStatistics statistics = getStatistics();
+
+        RepositoryConnection con = repository.getConnection();
+        try {
+            ValueFactory vf = con.getValueFactory();
+
+            con.begin();
+            con.add(vf.createURI(NS + "r100"), vf.createURI(NS + "name"), vf.createLiteral("Resource 100"), vf.createURI(NS + "ctx"));
+            con.add(vf.createURI(NS + "r101"), vf.createURI(NS + "name"), vf.createLiteral("Resource 101"), vf.createURI(NS + "ctx"));
+            con.remove(vf.createURI(NS + "r0"), vf.createURI(NS + "type"), null);
+            con.commit();
+
+            Assert.assertEquals(106, statistics.getTripleCount());
+            Assert.assertEquals(7, statistics.getPredicateTriples(id("name")));
+            Assert.assertEquals(99, statistics.getPredicateTriples(id("type")));
+            Assert.assertEquals(106, statistics.getContextTriples(id("ctx")));
+
+            con.begin();
+            con.add(vf.createURI(NS + "r102"), vf.createURI(NS + "name"), vf.createLiteral("Resource 102"));
+            con.rollback();
+
+            Assert.assertEquals(106, statistics.getTripleCount());
+            Assert.assertEquals(7, statistics.getPredicateTriples(id("name")));
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Test that patterns with a rare predicate are estimated more selective than patterns with a frequent predicate,
+     * and that queries joining them still return the correct results.
+     */
+    @Test
+    public void testCardinality() throws Exception {
+        KiWiTripleStatistics statistics = getStatistics();
+
+        double typeCard = statistics.getCardinality(UNBOUND, id("type"), id("Thing"), UNBOUND);
+        double nameCard = statistics.getCardinality(UNBOUND, id("name"), UNBOUND, UNBOUND);
+        double anyCard  = statistics.getCardinality(UNBOUND, UNBOUND, UNBOUND, UNBOUND);
+
+        Assert.assertEquals(100.0, typeCard, 0.001);
+        Assert.assertEquals(5.0, nameCard, 0.001);
+        Assert.assertEquals(105.0, anyCard, 0.001);
+        Assert.assertTrue(statistics.getCardinality(id("r0"), id("type"), UNBOUND, UNBOUND) < typeCard);
+
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            TupleQueryResult result = con.prepareTupleQuery(QueryLanguage.SPARQL,
+                    "SELECT ?r ?n WHERE { ?r <" + NS + "type> <" + NS + "Thing> . ?r <" + NS + "name> ?n }").evaluate();
+            int count = 0;
+            while (result.hasNext()) {
+                result.next();
+                count++;
+            }
+            result.close();
+            con.commit();
+
+            Assert.assertEquals(5, count);
+        } finally {
+            con.close();
+        }
+    }
+
+    /**
+     * Test estimating the distinct values from a sample: values occurring several times in the sample are counted
+     * once and values occurring once are scaled up.
+     */
+    @Test
+    public void testEstimateDistinct() {
+        // complete table
+        Assert.assertEquals(10, KiWiTripleStatistics.estimateDistinct(100, 100, 10, 0));
+
+        // a single frequent value (e.g. rdf:type objects) is not scaled up
+        Assert.assertEquals(1, KiWiTripleStatistics.estimateDistinct(100000, 1000, 1, 0));
+
+        // unique values (e.g. subjects of a functional property)
+        Assert.assertEquals(10000, KiWiTripleStatistics.estimateDistinct(100000, 1000, 1000, 1000));
+
+        // 20 values seen once, 10 values seen several times
+        Assert.assertEquals(210, KiWiTripleStatistics.estimateDistinct(10000, 100, 30, 20));
+    }
+}
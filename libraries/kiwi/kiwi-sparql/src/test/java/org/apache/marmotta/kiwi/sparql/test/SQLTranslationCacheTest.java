@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.sparql.test;
+
+import info.aduna.iteration.CloseableIteration;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
+import org.apache.marmotta.kiwi.sparql.cache.SQLTranslationCache;
+import org.apache.marmotta.kiwi.sparql.evaluation.KiWiEvaluationStrategy;
+import org.apache.marmotta.kiwi.sparql.sail.KiWiSparqlSail;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQuery;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.algebra.Projection;
+import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.impl.MapBindingSet;
+import org.openrdf.query.parser.sparql.SPARQLParser;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Test the reuse of SPARQL to SQL translations for queries with the same shape.
+ */
+@RunWith(KiWiDatabaseRunner.class)
+public class SQLTranslationCacheTest {
+
+    private static final String NS = "http://localhost/cache/";
+
+    private KiWiStore store;
+
+    private KiWiSparqlSail ssail;
+
+    private Repository repository;
+
+    private final KiWiConfiguration dbConfig;
+
+    public SQLTranslationCacheTest(KiWiConfiguration dbConfig) {
+        this.dbConfig = dbConfig;
+    }
+
+    @Before
+    public void initDatabase() throws Exception {
+        store = new KiWiStore(dbConfig);
+        ssail = new KiWiSparqlSail(store);
+        repository = new SailRepository(ssail);
+        repository.initialize();
+
+        // 10 resources, each linked to the next one and having a name
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            ValueFactory vf = con.getValueFactory();
+            for(int i = 0; i < 10; i++) {
+                URI resource = vf.createURI(NS + "r" + i);
+                con.add(resource, vf.createURI(NS + "next"), vf.createURI(NS + "r" + (i + 1)));
+                con.add(resource, vf.createURI(NS + "name"), vf.createLiteral("Resource " + i));
+            }
+            con.commit();
+        } finally {
+            con.close();
+        }
+    }
+
+    @After
+    public void dropDatabase() throws Exception {
+        store.getPersistence().dropDatabase();
+        repository.shutDown();
+    }
+
+    private Set<String> query(String query, String variable, String boundName, Value boundValue) throws Exception {
+        Set<String> values = new HashSet<>();
+
+        RepositoryConnection con = repository.getConnection();
+        try {
+            con.begin();
+            TupleQuery q = con.prepareTupleQuery(QueryLanguage.SPARQL, query);
+            if(boundName != null) {
+                q.setBinding(boundName, boundValue);
+            }
+            TupleQueryResult result = q.evaluate();
+            while (result.hasNext()) {
+                BindingSet row = result.next();
+                values.add(row.getValue(variable).stringValue());
+            }
+            result.close();
+            con.commit();
+        } finally {
+            con.close();
+        }
+        return values;
+    }
+
+    private Set<String> set(String... values) {
+        Set<String> result = new HashSet<>();
+        for(String v : values) {
+            result.add(v);
+        }
+        return result;
+    }
+
+    /**
+     * Test that queries differing only in their constants reuse the same translation and return correct results.
+     */
+    @Test
+    public void testConstants() throws Exception {
+        SQLTranslationCache cache = ssail.getTranslationCache();
+        cache.clear();
+
+        for(int i = 0; i < 5; i++) {
+            String query = "SELECT ?n WHERE { <" + NS + "r" + i + "> <" + NS + "next> ?x . ?x <" + NS + "name> ?n }";
+            Assert.assertEquals(set("Resource " + (i + 1)), query(query, "n", null, null));
+        }
+
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(4, cache.getHits());
+        Assert.assertEquals(1, cache.getSize());
+    }
+
+    /**
+     * Test that queries with variables bound by the client reuse the same translation and return correct results.
+     */
+    @Test
+    public void testBindings() throws Exception {
+        SQLTranslationCache cache = ssail.getTranslationCache();
+        cache.clear();
+
+        ValueFactory vf = repository.getValueFactory();
+        String query = "SELECT ?n WHERE { ?s <" + NS + "next> ?x . ?x <" + NS + "name> ?n }";
+        for(int i = 0; i < 5; i++) {
+            Assert.assertEquals(set("Resource " + (i + 1)), query(query, "n", "s", vf.createURI(NS + "r" + i)));
+        }
+
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(4, cache.getHits());
+    }
+
+    /**
+     * Test that expressions evaluated with different initial bindings (e.g. the right side of a join evaluated for
+     * each row of the left side) reuse the same translation and return correct results.
+     */
+    @Test
+    public void testInitialBindings() throws Exception {
+        SQLTranslationCache cache = ssail.getTranslationCache();
+        cache.clear();
+
+        TupleExpr join = ((Projection) new SPARQLParser().parseQuery("SELECT ?n WHERE { ?s <" + NS + "next> ?x . ?x <" + NS + "name> ?n }", null).getTupleExpr()).getArg();
+
+        KiWiConnection connection = store.getPersistence().getConnection();
+        try {
+            KiWiValueFactory vf = (KiWiValueFactory) store.getValueFactory();
+            KiWiEvaluationStrategy strategy = new KiWiEvaluationStrategy(null, null, connection, vf, null, cache);
+            for(int i = 0; i < 5; i++) {
+                MapBindingSet bindings = new MapBindingSet();
+                bindings.addBinding("s", vf.createURI(NS + "r" + i));
+
+                Set<String> values = new HashSet<>();
+                CloseableIteration<BindingSet, QueryEvaluationException> result = strategy.evaluate(join, bindings);
+                try {
+                    while (result.hasNext()) {
+                        values.add(result.next().getValue("n").stringValue());
+                    }
+                } finally {
+                    result.close();
+                }
+                Assert.assertEquals(set("Resource " + (i + 1)), values);
+            }
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(4, cache.getHits());
+    }
+
+    /**
+     * Test that a translation is not reused for a query in which a value that has been written literally into the
+     * SQL query differs, and that queries with a different shape are translated separately.
+     */
+    @Test
+    public void testInlinedValues() throws Exception {
+        SQLTranslationCache cache = ssail.getTranslationCache();
+        cache.clear();
+
+        String query1 = "SELECT ?n WHERE { { <" + NS + "r1> <" + NS + "name> ?n } UNION { <" + NS + "r2> <" + NS + "name> ?n } }";
+        String query2 = "SELECT ?n WHERE { { <" + NS + "r3> <" + NS + "name> ?n } UNION { <" + NS + "r4> <" + NS + "name> ?n } }";
+
+        Assert.assertEquals(set("Resource 1", "Resource 2"), query(query1, "n", null, null));
+        Assert.assertEquals(set("Resource 3", "Resource 4"), query(query2, "n", null, null));
+        Assert.assertEquals(set("Resource 1", "Resource 2"), query(query1, "n", null, null));
+
+        String query3 = "SELECT ?n WHERE { ?x <" + NS + "name> ?n FILTER(?n = \"Resource 5\") }";
+        String query4 = "SELECT ?n WHERE { ?x <" + NS + "name> ?n FILTER(?n = \"Resource 6\") }";
+
+        Assert.assertEquals(set("Resource 5"), query(query3, "n", null, null));
+        Assert.assertEquals(set("Resource 6"), query(query4, "n", null, null));
+    }
+
+    /**
+     * Test that translations of queries with VALUES blocks or IN lists, whose values are written literally into the
+     * SQL query, are not cached, and that IRIs listed in them are not stored in the database.
+     */
+    @Test
+    public void testListedValues() throws Exception {
+        SQLTranslationCache cache = ssail.getTranslationCache();
+        cache.clear();
+
+        for(int i = 0; i < 3; i++) {
+            String query1 = "SELECT ?n WHERE { VALUES ?x { <" + NS + "r" + i + "> <" + NS + "unknown" + i + "> } ?x <" + NS + "name> ?n }";
+            String query2 = "SELECT ?n WHERE { ?x <" + NS + "name> ?n FILTER(?x IN (<" + NS + "r" + i + ">, <" + NS + "missing" + i + ">)) }";
+
+            Assert.assertEquals(set("Resource " + i), query(query1, "n", null, null));
+            Assert.assertEquals(set("Resource " + i), query(query2, "n", null, null));
+        }
+
+        Assert.assertEquals(0, cache.getSize());
+
+        KiWiConnection connection = store.getPersistence().getConnection();
+        try {
+            for(int i = 0; i < 3; i++) {
+                Assert.assertNull(connection.loadUriResource(NS + "unknown" + i));
+                Assert.assertNull(connection.loadUriResource(NS + "missing" + i));
+            }
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+}
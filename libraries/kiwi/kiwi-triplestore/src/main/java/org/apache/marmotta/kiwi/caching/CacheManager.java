@@ -20,6 +20,7 @@ package org.apache.marmotta.kiwi.caching;
 import org.apache.marmotta.kiwi.model.rdf.*;
 
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * A generic cache manager API implemented by different caching backends. Each cache should be made accessible
@@ -106,7 +107,7 @@ public interface CacheManager {
      * cache and should be used with care.
      * @return
      */
-    Map<Long,Long> getRegistryCache();
+    Map<UUID,Long> getRegistryCache();
 
 
 
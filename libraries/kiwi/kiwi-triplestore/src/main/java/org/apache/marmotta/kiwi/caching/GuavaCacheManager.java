@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
@@ -47,7 +48,7 @@ public class GuavaCacheManager implements CacheManager {
     private Cache<String,KiWiAnonResource> bnodeCache;
     private Cache<String,KiWiLiteral> literalCache;
     private Cache<String,KiWiNamespace> namespaceUriCache, namespacePrefixCache;
-    private ConcurrentHashMap<Long,Long> registryCache;
+    private ConcurrentHashMap<UUID,Long> registryCache;
 
     private final Map<String,Cache> dynamicCaches;
 
@@ -186,7 +187,7 @@ public class GuavaCacheManager implements CacheManager {
      * @return
      */
     @Override
-    public Map<Long, Long> getRegistryCache() {
+    public Map<UUID, Long> getRegistryCache() {
         return registryCache;
     }
 
@@ -0,0 +1,483 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.caching;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A size-bounded cache that stores its values in serialized form outside the Java heap, keyed by primitive longs.
+ * Values are kept in direct byte buffers and only the index (arrays of primitive keys and offsets) lives on the
+ * heap, so even large caches add little to garbage collection work.
+ * <p/>
+ * The cache is split into segments, each with its own lock, a circular buffer holding the serialized entries and an
+ * open addressing index. When a segment buffer is full, the oldest entries are evicted (FIFO), so the memory used is
+ * bounded by the configured number of bytes. Since values are deserialized on every lookup, callers always receive a
+ * copy of the cached value, like with the distributed caching backends.
+ * <p/>
+ * Subclasses define the serialization of values.
+ */
+public abstract class OffHeapCache<V> extends AbstractMap<Long,V> {
+
+    private static Logger log = LoggerFactory.getLogger(OffHeapCache.class);
+
+    // entry header: long key, int length of the serialized value
+    private static final int HEADER_SIZE = 12;
+
+    // length marker for the unused space at the end of a segment buffer
+    private static final int PADDING = -1;
+
+    private final Segment[] segments;
+
+    /**
+     * Create a new off-heap cache using at most the given number of bytes for storing entries.
+     *
+     * @param maxBytes    maximum number of bytes used for storing serialized entries
+     * @param concurrency number of independently locked segments, will be rounded up to a power of two
+     */
+    public OffHeapCache(long maxBytes, int concurrency) {
+        int numSegments = 1;
+        while(numSegments < concurrency) {
+            numSegments <<= 1;
+        }
+
+        int segmentSize = (int) Math.min(Integer.MAX_VALUE, Math.max(maxBytes / numSegments, 1024));
+
+        segments = new Segment[numSegments];
+        for(int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+
+        log.debug("created off-heap cache with {} segments of {} bytes", numSegments, segmentSize);
+    }
+
+    /**
+     * Serialize the given value to the output.
+     */
+    protected abstract void writeValue(DataOutput output, V value) throws IOException;
+
+    /**
+     * Deserialize a value written by writeValue.
+     */
+    protected abstract V readValue(DataInput input) throws IOException;
+
+
+    private static long hash(long key) {
+        // 64bit mix function (from MurmurHash3), spreads sequential ids over segments and index slots
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 32) & (segments.length - 1)];
+    }
+
+    private byte[] serialize(V value) {
+        try {
+            ByteArrayDataOutput out = ByteStreams.newDataOutput();
+            writeValue(out, value);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("could not serialize cache value", e);
+        }
+    }
+
+    private V deserialize(byte[] data) {
+        if(data == null) {
+            return null;
+        }
+        try {
+            return readValue(ByteStreams.newDataInput(data));
+        } catch (IOException e) {
+            throw new IllegalStateException("could not deserialize cache value", e);
+        }
+    }
+
+
+    @Override
+    public V get(Object key) {
+        if(!(key instanceof Long)) {
+            return null;
+        }
+        long k = (Long) key;
+        long h = hash(k);
+        return deserialize(segmentFor(h).get(k, h));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if(!(key instanceof Long)) {
+            return false;
+        }
+        long k = (Long) key;
+        long h = hash(k);
+        return segmentFor(h).contains(k, h);
+    }
+
+    @Override
+    public V put(Long key, V value) {
+        if(value == null) {
+            throw new NullPointerException("off-heap cache does not support null values");
+        }
+        long h = hash(key);
+        return deserialize(segmentFor(h).put(key, h, serialize(value)));
+    }
+
+    @Override
+    public V remove(Object key) {
+        if(!(key instanceof Long)) {
+            return null;
+        }
+        long k = (Long) key;
+        long h = hash(k);
+        return deserialize(segmentFor(h).remove(k, h));
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for(Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for(Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Return the number of bytes currently occupied in the segment buffers, including space of removed entries not
+     * yet reclaimed by eviction.
+     */
+    public long getUsedBytes() {
+        long bytes = 0;
+        for(Segment segment : segments) {
+            bytes += segment.usedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Remove all entries and free the memory held by the cache. The cache can still be used afterwards and will
+     * allocate new memory when needed.
+     */
+    public void release() {
+        for(Segment segment : segments) {
+            segment.release();
+        }
+    }
+
+    /**
+     * Free the memory of a direct buffer immediately instead of waiting for garbage collection, if the JVM allows it.
+     */
+    private static void free(ByteBuffer buffer) {
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if(cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception ex) {
+            log.debug("could not free direct buffer, memory will be released by garbage collection");
+        }
+    }
+
+    /**
+     * Return a snapshot of the cache entries. Changes to the returned set are not written back to the cache.
+     */
+    @Override
+    public Set<Entry<Long, V>> entrySet() {
+        final List<Entry<Long,V>> entries = new ArrayList<>();
+        for(Segment segment : segments) {
+            for(Entry<Long,byte[]> e : segment.entries()) {
+                entries.add(new SimpleImmutableEntry<>(e.getKey(), deserialize(e.getValue())));
+            }
+        }
+
+        return new AbstractSet<Entry<Long, V>>() {
+            @Override
+            public Iterator<Entry<Long, V>> iterator() {
+                return entries.iterator();
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+
+
+    /**
+     * A segment of the cache, consisting of a circular buffer of serialized entries and an open addressing index
+     * mapping keys to buffer offsets. All methods synchronize on the segment.
+     */
+    private static class Segment {
+
+        private static final int EMPTY = -1;
+
+        // allocated on the first write, so unused caches do not reserve memory
+        private ByteBuffer buffer;
+        private final int capacity;
+
+        // oldest entry, next write position and bytes occupied between them (including padding and stale entries)
+        private int head, tail, used;
+
+        // open addressing index with linear probing; offsets of EMPTY denote free slots
+        private long[] keys;
+        private int[]  offsets;
+        private int    count;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+
+            initIndex(16);
+        }
+
+        private void initIndex(int slots) {
+            keys    = new long[slots];
+            offsets = new int[slots];
+            Arrays.fill(offsets, EMPTY);
+            count   = 0;
+        }
+
+        private int slot(long hash) {
+            return (int) hash & (keys.length - 1);
+        }
+
+        private int find(long key, long hash) {
+            for(int i = slot(hash); offsets[i] != EMPTY; i = (i + 1) & (keys.length - 1)) {
+                if(keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void indexPut(long key, long hash, int offset) {
+            if(2 * (count + 1) > keys.length) {
+                long[] oldKeys    = keys;
+                int[]  oldOffsets = offsets;
+                initIndex(keys.length * 2);
+                for(int i = 0; i < oldKeys.length; i++) {
+                    if(oldOffsets[i] != EMPTY) {
+                        indexPut(oldKeys[i], hash(oldKeys[i]), oldOffsets[i]);
+                    }
+                }
+            }
+
+            int i = slot(hash);
+            while(offsets[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & (keys.length - 1);
+            }
+            if(offsets[i] == EMPTY) {
+                count++;
+            }
+            keys[i]    = key;
+            offsets[i] = offset;
+        }
+
+        private void indexRemove(int i) {
+            offsets[i] = EMPTY;
+            count--;
+
+            // shift back following entries of the probe sequence so that lookups do not stop at the gap
+            int gap = i;
+            for(int j = (i + 1) & (keys.length - 1); offsets[j] != EMPTY; j = (j + 1) & (keys.length - 1)) {
+                int home = slot(hash(keys[j]));
+                if(((j - home) & (keys.length - 1)) >= ((j - gap) & (keys.length - 1))) {
+                    keys[gap]    = keys[j];
+                    offsets[gap] = offsets[j];
+                    offsets[j]   = EMPTY;
+                    gap = j;
+                }
+            }
+        }
+
+        private byte[] read(int offset) {
+            byte[] data = new byte[buffer.getInt(offset + 8)];
+            ByteBuffer src = buffer.duplicate();
+            src.position(offset + HEADER_SIZE);
+            src.get(data);
+            return data;
+        }
+
+        /**
+         * Evict the oldest entry or padding at the head of the buffer.
+         */
+        private void evictHead() {
+            if(capacity - head < HEADER_SIZE || buffer.getInt(head + 8) == PADDING) {
+                used -= capacity - head;
+                head = 0;
+            } else {
+                long key = buffer.getLong(head);
+                int size = HEADER_SIZE + buffer.getInt(head + 8);
+
+                int i = find(key, hash(key));
+                if(i >= 0 && offsets[i] == head) {
+                    indexRemove(i);
+                }
+
+                used -= size;
+                head += size;
+                if(head == capacity) {
+                    head = 0;
+                }
+            }
+            if(used == 0) {
+                head = tail = 0;
+            }
+        }
+
+        /**
+         * Reserve space for an entry of the given size at the tail of the buffer, evicting old entries as necessary.
+         */
+        private int allocate(int size) {
+            while(true) {
+                if(used == 0) {
+                    head = tail = 0;
+                }
+                if(tail >= head && !(used > 0 && tail == head)) {
+                    // free space is [tail,capacity) and [0,head)
+                    if(capacity - tail >= size) {
+                        break;
+                    }
+                    if(capacity - tail >= HEADER_SIZE) {
+                        buffer.putInt(tail + 8, PADDING);
+                    }
+                    used += capacity - tail;
+                    tail = 0;
+                } else {
+                    // free space is [tail,head)
+                    if(head - tail >= size) {
+                        break;
+                    }
+                    evictHead();
+                }
+            }
+
+            int offset = tail;
+            tail += size;
+            used += size;
+            if(tail == capacity) {
+                tail = 0;
+            }
+            return offset;
+        }
+
+        private synchronized byte[] get(long key, long hash) {
+            int i = find(key, hash);
+            return i >= 0 ? read(offsets[i]) : null;
+        }
+
+        private synchronized boolean contains(long key, long hash) {
+            return find(key, hash) >= 0;
+        }
+
+        private synchronized byte[] put(long key, long hash, byte[] data) {
+            byte[] previous = remove(key, hash);
+
+            int size = HEADER_SIZE + data.length;
+            if(size > capacity) {
+                log.warn("value for key {} too large for off-heap cache segment ({} bytes)", key, data.length);
+                return previous;
+            }
+
+            if(buffer == null) {
+                buffer = ByteBuffer.allocateDirect(capacity);
+            }
+
+            int offset = allocate(size);
+            buffer.putLong(offset, key);
+            buffer.putInt(offset + 8, data.length);
+            ByteBuffer dst = buffer.duplicate();
+            dst.position(offset + HEADER_SIZE);
+            dst.put(data);
+
+            indexPut(key, hash, offset);
+
+            return previous;
+        }
+
+        private synchronized byte[] remove(long key, long hash) {
+            int i = find(key, hash);
+            if(i >= 0) {
+                // the space of the entry is reclaimed when it reaches the head of the buffer
+                byte[] data = read(offsets[i]);
+                indexRemove(i);
+                return data;
+            }
+            return null;
+        }
+
+        private synchronized int size() {
+            return count;
+        }
+
+        private synchronized int usedBytes() {
+            return used;
+        }
+
+        private synchronized void clear() {
+            head = tail = used = 0;
+            initIndex(16);
+        }
+
+        private synchronized void release() {
+            clear();
+            if(buffer != null) {
+                free(buffer);
+                buffer = null;
+            }
+        }
+
+        private synchronized List<Map.Entry<Long,byte[]>> entries() {
+            List<Map.Entry<Long,byte[]>> result = new ArrayList<>(count);
+            for(int i = 0; i < keys.length; i++) {
+                if(offsets[i] != EMPTY) {
+                    result.add(new SimpleImmutableEntry<>(keys[i], read(offsets[i])));
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.caching;
+
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.io.KiWiIO;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A cache manager for single-machine setups that keeps the node and triple caches outside the Java heap, serialized
+ * with KiWiIO and bounded by the number of bytes configured in nodeCacheMemory and tripleCacheMemory. All other caches
+ * are the Guava in-memory caches. Does not support clustered operation.
+ * <p/>
+ * Note that the direct memory available to the JVM may need to be increased with -XX:MaxDirectMemorySize.
+ */
+public class OffHeapCacheManager extends GuavaCacheManager {
+
+    private static Logger log = LoggerFactory.getLogger(OffHeapCacheManager.class);
+
+    private static final int CONCURRENCY = 16;
+
+    private OffHeapCache<KiWiNode> nodeCache;
+    private OffHeapCache<KiWiTriple> tripleCache;
+
+    public OffHeapCacheManager(KiWiConfiguration configuration) {
+        super(configuration);
+
+        log.info("initialising off-heap node cache ({} bytes) and triple cache ({} bytes) ...", configuration.getNodeCacheMemory(), configuration.getTripleCacheMemory());
+
+        nodeCache = new OffHeapCache<KiWiNode>(configuration.getNodeCacheMemory(), CONCURRENCY) {
+            @Override
+            protected void writeValue(DataOutput output, KiWiNode value) throws IOException {
+                KiWiIO.writeNode(output, value);
+            }
+
+            @Override
+            protected KiWiNode readValue(DataInput input) throws IOException {
+                return KiWiIO.readNode(input);
+            }
+        };
+
+        tripleCache = new OffHeapCache<KiWiTriple>(configuration.getTripleCacheMemory(), CONCURRENCY) {
+            @Override
+            protected void writeValue(DataOutput output, KiWiTriple value) throws IOException {
+                KiWiIO.writeTriple(output, value);
+            }
+
+            @Override
+            protected KiWiTriple readValue(DataInput input) throws IOException {
+                return KiWiIO.readTriple(input);
+            }
+        };
+    }
+
+    /**
+     * Return the node id -> node cache from the cache manager. Nodes are stored serialized outside the Java heap,
+     * so every lookup returns a new node instance.
+     *
+     * @return a map containing the node id -> node mappings
+     */
+    @Override
+    public Map<Long, KiWiNode> getNodeCache() {
+        return nodeCache;
+    }
+
+    /**
+     * Return the triple id -> triple cache from the cache manager. Triples are stored serialized outside the Java heap,
+     * so every lookup returns a new triple instance.
+     *
+     * @return a map containing the triple id -> triple mappings
+     */
+    @Override
+    public Map<Long, KiWiTriple> getTripleCache() {
+        return tripleCache;
+    }
+
+    /**
+     * Clear all caches managed by this cache manager.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+
+        nodeCache.clear();
+        tripleCache.clear();
+    }
+
+    /**
+     * Shutdown this cache manager instance and free the memory of the off-heap caches.
+     */
+    @Override
+    public void shutdown() {
+        super.shutdown();
+
+        nodeCache.release();
+        tripleCache.release();
+    }
+}
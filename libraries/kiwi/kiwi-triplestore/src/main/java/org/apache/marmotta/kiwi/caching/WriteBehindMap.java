@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.caching;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A Map wrapper implementing write-behind for clustered caches. Writes (put and remove) are collected in a local
+ * queue and written to the delegate map in batches by a background task, so the calling thread never waits for
+ * the cluster. Repeated writes of the same key before the next flush are coalesced, only the last one is written.
+ * <p/>
+ * Reads first consult the queue, so a cluster member always sees its own writes. The bulk views (size, keySet,
+ * values, entrySet) flush the queue first and then return the views of the delegate.
+ * <p/>
+ * The queue is bounded: when it contains maxPending keys, further writes of new keys go to the delegate directly
+ * until the queue has been flushed, so memory use stays bounded when the cluster cannot keep up.
+ */
+public class WriteBehindMap<K,V> implements Map<K,V> {
+
+    private static Logger log = LoggerFactory.getLogger(WriteBehindMap.class);
+
+    // queue marker for removed keys
+    private static final Object REMOVED = new Object();
+
+    private final Map<K,V> delegate;
+
+    private final ConcurrentHashMap<K,Object> pending;
+
+    // approximate number of queued keys; ConcurrentHashMap.size() locks all segments
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+
+    private final int maxPending;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final ScheduledFuture<?> flushTask;
+
+    private final AtomicLong coalesced = new AtomicLong(0);
+    private final AtomicLong writtenThrough = new AtomicLong(0);
+
+    /**
+     * Create a new write-behind map flushing the queued writes to the delegate periodically using the given executor.
+     *
+     * @param delegate      the (synchronous) map of the cache backend
+     * @param maxPending    maximum number of keys in the write queue
+     * @param flushInterval interval in milliseconds between flushes
+     * @param executor      the executor running the flush task, e.g. created with createFlushExecutor()
+     */
+    public WriteBehindMap(Map<K, V> delegate, int maxPending, long flushInterval, ScheduledExecutorService executor) {
+        this.delegate   = delegate;
+        this.maxPending = maxPending;
+        this.pending    = new ConcurrentHashMap<>(Math.min(maxPending, 1024));
+
+        this.flushTask = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (RuntimeException ex) {
+                    log.warn("error while writing queued cache updates to the cluster: {}", ex.getMessage());
+                }
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a single-threaded executor with a daemon thread for running the flush tasks of the write-behind maps
+     * of a cache manager.
+     */
+    public static ScheduledExecutorService createFlushExecutor(String name) {
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat(name + " Cache Writer").setDaemon(true).build());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object o) {
+        Object value = pending.get(o);
+        if(value == REMOVED) {
+            return null;
+        } else if(value != null) {
+            return (V) value;
+        } else {
+            return delegate.get(o);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object o) {
+        Object value = pending.get(o);
+        if(value != null) {
+            return value != REMOVED;
+        } else {
+            return delegate.containsKey(o);
+        }
+    }
+
+    /**
+     * Queue the value for writing to the cluster. Like the other asynchronous cache maps, this method does not
+     * return the previous value.
+     */
+    @Override
+    public V put(K k, V v) {
+        enqueue(k, v);
+        return null;
+    }
+
+    /**
+     * Queue the removal of the key. Like the other asynchronous cache maps, this method does not return the
+     * previous value.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object o) {
+        enqueue((K) o, REMOVED);
+        return null;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        for(Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            enqueue(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void enqueue(K key, Object value) {
+        if(pendingCount.get() >= maxPending && !pending.containsKey(key)) {
+            // queue is full, write directly so memory use stays bounded
+            writtenThrough.incrementAndGet();
+            write(key, value);
+        } else if(pending.put(key, value) == null) {
+            pendingCount.incrementAndGet();
+        } else {
+            coalesced.incrementAndGet();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(K key, Object value) {
+        if(value == REMOVED) {
+            delegate.remove(key);
+        } else {
+            delegate.put(key, (V) value);
+        }
+    }
+
+    /**
+     * Write all queued updates to the delegate map. Updates queued while the flush is running are written by the
+     * next flush.
+     */
+    @SuppressWarnings("unchecked")
+    public void flush() {
+        flushLock.lock();
+        try {
+            if(pendingCount.get() == 0) {
+                return;
+            }
+
+            Map<K,Object> snapshot = new HashMap<>(pending);
+
+            Map<K,V> puts = new HashMap<>(snapshot.size() << 1);
+            List<K> removes = new ArrayList<>();
+            for(Entry<K,Object> entry : snapshot.entrySet()) {
+                if(entry.getValue() == REMOVED) {
+                    removes.add(entry.getKey());
+                } else {
+                    puts.put(entry.getKey(), (V) entry.getValue());
+                }
+            }
+
+            if(!puts.isEmpty()) {
+                delegate.putAll(puts);
+            }
+            for(K key : removes) {
+                delegate.remove(key);
+            }
+
+            // only dequeue entries that have not been overwritten in the meantime
+            for(Entry<K,Object> entry : snapshot.entrySet()) {
+                if(pending.remove(entry.getKey(), entry.getValue())) {
+                    pendingCount.decrementAndGet();
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stop the periodic flushing and write all queued updates to the delegate map.
+     */
+    public void close() {
+        flushTask.cancel(false);
+        flush();
+    }
+
+    /**
+     * Number of keys currently queued for writing
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Number of writes that have been coalesced with a queued write of the same key since the map has been created
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * Number of writes that went to the delegate directly because the queue was full
+     */
+    public long getWrittenThroughCount() {
+        return writtenThrough.get();
+    }
+
+    @Override
+    public int size() {
+        flush();
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        flush();
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public boolean containsValue(Object o) {
+        flush();
+        return delegate.containsValue(o);
+    }
+
+    @Override
+    public void clear() {
+        flushLock.lock();
+        try {
+            pending.clear();
+            pendingCount.set(0);
+            delegate.clear();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        flush();
+        return delegate.keySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        flush();
+        return delegate.values();
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        flush();
+        return delegate.entrySet();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.config;
+
+/**
+ * How writes to clustered caches (Hazelcast, Infinispan) are propagated to the cluster. Only relevant for the
+ * caching backends supporting clustering; the local caching backends always write synchronously.
+ */
+public enum CacheWriteMode {
+    /**
+     * Every cache write waits until the cluster has acknowledged it. Cache contents are always consistent in the
+     * cluster, but each write on the commit path costs a network round trip.
+     */
+    STRICT,
+
+    /**
+     * Every cache write is sent to the cluster asynchronously without waiting for the result. Serialization and
+     * sending still happen on the calling thread, one operation per write.
+     */
+    ASYNC,
+
+    /**
+     * Cache writes are collected in a bounded local queue and written to the cluster in batches by a background
+     * thread; repeated writes of the same key before the next flush are coalesced into one. Commit latency does not
+     * depend on the cluster, but other cluster members may see new entries only after the flush interval.
+     */
+    WRITE_BEHIND
+}
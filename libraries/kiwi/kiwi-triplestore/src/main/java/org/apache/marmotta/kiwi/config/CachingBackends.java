@@ -29,6 +29,11 @@ public enum CachingBackends {
      */
     GUAVA("org.apache.marmotta.kiwi.caching.GuavaCacheManagerFactory"),
 
+    /**
+     * In-memory cache backend storing serialized nodes and triples outside the Java heap; no clustering support
+     */
+    OFFHEAP("org.apache.marmotta.kiwi.caching.OffHeapCacheManagerFactory"),
+
     /**
      * Cache backend based on Infinispan using a dynamic cluster setup (UDP multicast)
      */
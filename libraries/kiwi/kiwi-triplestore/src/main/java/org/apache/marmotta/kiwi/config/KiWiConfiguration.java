@@ -17,6 +17,7 @@
  */
 package org.apache.marmotta.kiwi.config;
 
+import org.apache.marmotta.kiwi.generator.IDGeneratorType;
 import org.apache.marmotta.kiwi.persistence.KiWiDialect;
 
 import java.util.ArrayList;
@@ -45,6 +46,26 @@ public class KiWiConfiguration {
     private String dbUser;
     private String dbPassword;
 
+    /**
+     * JDBC URL of a read replica of the database (e.g. a PostgreSQL streaming replica). If set, read-only
+     * connections are served from a second connection pool on the replica. If null, all connections use the
+     * primary database.
+     */
+    private String replicaJdbcUrl;
+    private String replicaDbUser;
+    private String replicaDbPassword;
+
+    /**
+     * Maximum replication lag (in milliseconds) of the read replica; if the replica lags further behind, read-only
+     * connections are served from the primary database until it has caught up.
+     */
+    private long replicaMaxLag = 10000;
+
+    /**
+     * Interval (in milliseconds) between two checks of the replication lag and of the availability of the replica.
+     */
+    private long replicaCheckInterval = 5000;
+
     /**
      * The default context to use when no explicit context is given in createStatement. The KiWi triple store
      * does not support null values for the context of a triple, so this URL must be set to an appropriate value
@@ -71,14 +92,39 @@ public class KiWiConfiguration {
     /**
      * Enable batched commit for triples (if supported by the database dialect). If this is enabled,
      * the KiWiConnection will use an in-memory buffer for stored triples that are committed in a batch
-     * once the limit is reached or the connection committed. Enabling this can significantly improve the
-     * performance, and is usually quite safe for triples.
+     * once the limit is reached or the connection committed. Newly created nodes are buffered and written
+     * together with the triples. Enabling this can significantly improve the performance, and is usually
+     * quite safe for triples.
      */
     private boolean tripleBatchCommit;
 
 
     private int tripleBatchSize = 10000;
 
+    /**
+     * Minimum number of nodes and triples in a batch for writing it with the bulk load command of the database
+     * (e.g. COPY in PostgreSQL) instead of batched INSERT statements. Only applicable if batched commits are enabled
+     * and the dialect supports bulk loading. 0 disables bulk loading.
+     */
+    private int tripleCopyThreshold = 5000;
+
+    /**
+     * Maximum number of triples marked as deleted by a single statement when deleting a whole context or the
+     * whole repository.
+     */
+    private int deleteChunkSize = 10000;
+
+    /**
+     * Maximum number of rows examined by the garbage collector in a single chunk.
+     */
+    private int garbageCollectionChunkSize = 1000;
+
+    /**
+     * Maximum number of rows per second examined by the garbage collector; the garbage collector pauses between
+     * chunks to stay within this budget. 0 means no limit.
+     */
+    private long garbageCollectionRate = 10000;
+
     /**
      * Size of the database cursor for pre-fetching rows on database supporting this feature. If the size is set to 0,
      * no cursor is used and all rows are retrieved in one batch.
@@ -87,9 +133,74 @@ public class KiWiConfiguration {
      */
     private int cursorSize = 1000;
 
+    /**
+     * Number of result rows read ahead when constructing the results of native SPARQL queries. The nodes of all rows
+     * read ahead are resolved together in batch queries instead of one query per row.
+     */
+    private int resultPrefetchSize = 1024;
+
+    /**
+     * Default maximum time in seconds a native SPARQL query may run in the database before it is cancelled by the
+     * database, used by connections that do not set their own limit (e.g. for SPARQL endpoint queries, see
+     * {@link org.apache.marmotta.kiwi.persistence.KiWiConnection#setQueryTimeout(int)}). If set to 0, there is no limit.
+     *
+     * @see java.sql.Statement#setQueryTimeout(int)
+     */
+    private int queryTimeout = 0;
+
+    /**
+     * Maximum number of SPARQL to SQL translations cached by the SPARQL module. Queries with the same shape but
+     * different constants reuse a cached translation. If set to 0, translations are not cached.
+     */
+    private int queryCacheSize = 1000;
+
     private boolean fulltextEnabled     = false;
     private String[] fulltextLanguages;
 
+    /**
+     * Create the object-leading triple indexes (object,predicate,subject) and (object,subject,predicate). They speed
+     * up patterns with a bound object, but make every triple insert more expensive.
+     */
+    private boolean objectIndexesEnabled = false;
+
+    /**
+     * Interval (in seconds) for recomputing the triple statistics used by the SPARQL module for query planning
+     * from the database. Zero computes the statistics only once on startup, negative values disable computing
+     * them from the database altogether.
+     */
+    private int statisticsRefreshInterval = 3600;
+
+    /**
+     * Percentage of the triple table sampled when computing the triple statistics on databases supporting table
+     * sampling. Values of 100 or more always scan the complete table.
+     */
+    private double statisticsSamplePercent = 5.0;
+
+    /**
+     * Compute the triple statistics on databases not supporting table sampling, which requires grouping the complete
+     * triple table on every refresh.
+     */
+    private boolean statisticsFullScanEnabled = false;
+
+
+    /**
+     * Return true in case the triple statistics are also computed on databases not supporting table sampling (H2,
+     * MySQL and PostgreSQL before 9.5). Each refresh then groups the complete triple table, so this is not enabled
+     * by default; without it, joins are ordered heuristically on these databases.
+     */
+    public boolean isStatisticsFullScanEnabled() {
+        return statisticsFullScanEnabled;
+    }
+
+    /**
+     * Set to true in case the triple statistics should also be computed on databases not supporting table sampling
+     * (H2, MySQL and PostgreSQL before 9.5). Each refresh then groups the complete triple table.
+     */
+    public KiWiConfiguration setStatisticsFullScanEnabled(boolean statisticsFullScanEnabled) {
+        this.statisticsFullScanEnabled = statisticsFullScanEnabled;
+        return this;
+    }
+
 
     /**
      * Fully qualified class name of the cache manager factory to use. Falls back to the Guava
@@ -109,14 +220,61 @@ public class KiWiConfiguration {
 
     private int namespaceCacheSize = 500;
 
+    /**
+     * Maximum number of bytes used by the node cache of the off-heap caching backend.
+     */
+    private long nodeCacheMemory = 256L * 1024 * 1024;
+
+    /**
+     * Maximum number of bytes used by the triple cache of the off-heap caching backend.
+     */
+    private long tripleCacheMemory = 64L * 1024 * 1024;
+
+    /**
+     * Enable the prefix dictionary used for compressing URIs in serialized nodes and triples (e.g. in the off-heap
+     * or clustered caches). The dictionary is global to the JVM, so it should only be enabled when a single KiWi
+     * database is used per JVM.
+     */
+    private boolean prefixDictionaryEnabled = false;
+
+    /**
+     * Maximum number of prefixes in the prefix dictionary.
+     */
+    private int prefixDictionarySize = 256;
+
+    /**
+     * Additional URI prefixes to add to the prefix dictionary.
+     */
+    private List<String> prefixDictionaryPrefixes = new ArrayList<>();
+
     private int datacenterId = 0;
 
+    /**
+     * The strategy used for generating database ids for nodes and triples.
+     */
+    private IDGeneratorType idGeneratorType = IDGeneratorType.SNOWFLAKE;
+
 
     private RegistryStrategy registryStrategy = RegistryStrategy.LOCAL;
 
 
     private CacheMode cacheMode = CacheMode.REPLICATED;
 
+    /**
+     * How writes to clustered caches are propagated to the cluster (see CacheWriteMode).
+     */
+    private CacheWriteMode cacheWriteMode = CacheWriteMode.ASYNC;
+
+    /**
+     * Maximum number of cache writes queued per cache in WRITE_BEHIND mode before writes go to the cluster directly.
+     */
+    private int cacheWriteBehindQueueSize = 100000;
+
+    /**
+     * Interval in milliseconds in which queued cache writes are flushed to the cluster in WRITE_BEHIND mode.
+     */
+    private int cacheWriteBehindInterval = 100;
+
     /**
      * Enable JMX statistics collection
      */
@@ -185,6 +343,81 @@ public class KiWiConfiguration {
         return name;
     }
 
+    /**
+     * JDBC URL of a read replica of the database. If set, read-only connections are served from a second
+     * connection pool on the replica; if null, all connections use the primary database.
+     */
+    public String getReplicaJdbcUrl() {
+        return replicaJdbcUrl;
+    }
+
+    /**
+     * JDBC URL of a read replica of the database. If set, read-only connections are served from a second
+     * connection pool on the replica; if null, all connections use the primary database.
+     */
+    public KiWiConfiguration setReplicaJdbcUrl(String replicaJdbcUrl) {
+        this.replicaJdbcUrl = replicaJdbcUrl;
+        return this;
+    }
+
+    /**
+     * Database user for the read replica; defaults to the user of the primary database.
+     */
+    public String getReplicaDbUser() {
+        return replicaDbUser != null ? replicaDbUser : dbUser;
+    }
+
+    public KiWiConfiguration setReplicaDbUser(String replicaDbUser) {
+        this.replicaDbUser = replicaDbUser;
+        return this;
+    }
+
+    /**
+     * Database password for the read replica; defaults to the password of the primary database.
+     */
+    public String getReplicaDbPassword() {
+        return replicaDbPassword != null ? replicaDbPassword : dbPassword;
+    }
+
+    public KiWiConfiguration setReplicaDbPassword(String replicaDbPassword) {
+        this.replicaDbPassword = replicaDbPassword;
+        return this;
+    }
+
+    /**
+     * Maximum replication lag (in milliseconds) of the read replica before read-only connections fall back to the
+     * primary database (default: 10000).
+     */
+    public long getReplicaMaxLag() {
+        return replicaMaxLag;
+    }
+
+    /**
+     * Maximum replication lag (in milliseconds) of the read replica before read-only connections fall back to the
+     * primary database (default: 10000).
+     */
+    public KiWiConfiguration setReplicaMaxLag(long replicaMaxLag) {
+        this.replicaMaxLag = replicaMaxLag;
+        return this;
+    }
+
+    /**
+     * Interval (in milliseconds) between two checks of the replication lag and availability of the read replica
+     * (default: 5000).
+     */
+    public long getReplicaCheckInterval() {
+        return replicaCheckInterval;
+    }
+
+    /**
+     * Interval (in milliseconds) between two checks of the replication lag and availability of the read replica
+     * (default: 5000).
+     */
+    public KiWiConfiguration setReplicaCheckInterval(long replicaCheckInterval) {
+        this.replicaCheckInterval = replicaCheckInterval;
+        return this;
+    }
+
     public boolean isQueryLoggingEnabled() {
         return queryLoggingEnabled;
     }
@@ -215,8 +448,9 @@ public class KiWiConfiguration {
     /**
      * Enable batched commit for triples (if supported by the database dialect). If this is enabled,
      * the KiWiConnection will use an in-memory buffer for stored triples that are committed in a batch
-     * once the limit is reached or the connection committed. Enabling this can significantly improve the
-     * performance, and is usually quite safe for triples.
+     * once the limit is reached or the connection committed. Newly created nodes are buffered and written
+     * together with the triples. Enabling this can significantly improve the performance, and is usually
+     * quite safe for triples.
      */
     public boolean isTripleBatchCommit() {
         return tripleBatchCommit;
@@ -225,8 +459,9 @@ public class KiWiConfiguration {
     /**
      * Enable batched commit for triples (if supported by the database dialect). If this is enabled,
      * the KiWiConnection will use an in-memory buffer for stored triples that are committed in a batch
-     * once the limit is reached or the connection committed. Enabling this can significantly improve the
-     * performance, and is usually quite safe for triples.
+     * once the limit is reached or the connection committed. Newly created nodes are buffered and written
+     * together with the triples. Enabling this can significantly improve the performance, and is usually
+     * quite safe for triples.
      */
     public KiWiConfiguration setTripleBatchCommit(boolean tripleBatchCommit) {
         if(dialect.isBatchSupported()) {
@@ -244,6 +479,72 @@ public class KiWiConfiguration {
         return this;
     }
 
+    /**
+     * Minimum number of nodes and triples in a batch for writing it with the bulk load command of the database
+     * (e.g. COPY in PostgreSQL) instead of batched INSERT statements. 0 disables bulk loading (default: 5000).
+     */
+    public int getTripleCopyThreshold() {
+        return tripleCopyThreshold;
+    }
+
+    /**
+     * Minimum number of nodes and triples in a batch for writing it with the bulk load command of the database
+     * (e.g. COPY in PostgreSQL) instead of batched INSERT statements. 0 disables bulk loading (default: 5000).
+     */
+    public KiWiConfiguration setTripleCopyThreshold(int tripleCopyThreshold) {
+        this.tripleCopyThreshold = tripleCopyThreshold;
+        return this;
+    }
+
+    /**
+     * Maximum number of triples marked as deleted by a single statement when deleting a whole context or the
+     * whole repository (default: 10000).
+     */
+    public int getDeleteChunkSize() {
+        return deleteChunkSize;
+    }
+
+    /**
+     * Maximum number of triples marked as deleted by a single statement when deleting a whole context or the
+     * whole repository (default: 10000).
+     */
+    public KiWiConfiguration setDeleteChunkSize(int deleteChunkSize) {
+        this.deleteChunkSize = deleteChunkSize;
+        return this;
+    }
+
+    /**
+     * Maximum number of rows examined by the garbage collector in a single chunk (default: 1000).
+     */
+    public int getGarbageCollectionChunkSize() {
+        return garbageCollectionChunkSize;
+    }
+
+    /**
+     * Maximum number of rows examined by the garbage collector in a single chunk (default: 1000).
+     */
+    public KiWiConfiguration setGarbageCollectionChunkSize(int garbageCollectionChunkSize) {
+        this.garbageCollectionChunkSize = garbageCollectionChunkSize;
+        return this;
+    }
+
+    /**
+     * Maximum number of rows per second examined by the garbage collector; the garbage collector pauses between
+     * chunks to stay within this budget. 0 means no limit (default: 10000).
+     */
+    public long getGarbageCollectionRate() {
+        return garbageCollectionRate;
+    }
+
+    /**
+     * Maximum number of rows per second examined by the garbage collector; the garbage collector pauses between
+     * chunks to stay within this budget. 0 means no limit (default: 10000).
+     */
+    public KiWiConfiguration setGarbageCollectionRate(long garbageCollectionRate) {
+        this.garbageCollectionRate = garbageCollectionRate;
+        return this;
+    }
+
     /**
      * Size of the database cursor for pre-fetching rows on database supporting this feature. If the size is set to 0,
      * no cursor is used and all rows are retrieved in one batch.
@@ -265,6 +566,63 @@ public class KiWiConfiguration {
         return this;
     }
 
+    /**
+     * Number of result rows read ahead when constructing the results of native SPARQL queries. The nodes of all rows
+     * read ahead are resolved together in batch queries instead of one query per row.
+     */
+    public int getResultPrefetchSize() {
+        return resultPrefetchSize;
+    }
+
+    /**
+     * Number of result rows read ahead when constructing the results of native SPARQL queries. The nodes of all rows
+     * read ahead are resolved together in batch queries instead of one query per row.
+     */
+    public KiWiConfiguration setResultPrefetchSize(int resultPrefetchSize) {
+        this.resultPrefetchSize = resultPrefetchSize;
+        return this;
+    }
+
+    /**
+     * Default maximum time in seconds a native SPARQL query may run in the database before it is cancelled by the
+     * database, used by connections that do not set their own limit (e.g. for SPARQL endpoint queries, see
+     * {@link org.apache.marmotta.kiwi.persistence.KiWiConnection#setQueryTimeout(int)}). If set to 0, there is no limit.
+     *
+     * @see java.sql.Statement#setQueryTimeout(int)
+     */
+    public int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    /**
+     * Default maximum time in seconds a native SPARQL query may run in the database before it is cancelled by the
+     * database, used by connections that do not set their own limit (e.g. for SPARQL endpoint queries, see
+     * {@link org.apache.marmotta.kiwi.persistence.KiWiConnection#setQueryTimeout(int)}). If set to 0, there is no limit.
+     *
+     * @see java.sql.Statement#setQueryTimeout(int)
+     */
+    public KiWiConfiguration setQueryTimeout(int queryTimeout) {
+        this.queryTimeout = queryTimeout;
+        return this;
+    }
+
+    /**
+     * Maximum number of SPARQL to SQL translations cached by the SPARQL module. Queries with the same shape but
+     * different constants reuse a cached translation. If set to 0, translations are not cached.
+     */
+    public int getQueryCacheSize() {
+        return queryCacheSize;
+    }
+
+    /**
+     * Maximum number of SPARQL to SQL translations cached by the SPARQL module. Queries with the same shape but
+     * different constants reuse a cached translation. If set to 0, translations are not cached.
+     */
+    public KiWiConfiguration setQueryCacheSize(int queryCacheSize) {
+        this.queryCacheSize = queryCacheSize;
+        return this;
+    }
+
     /**
      * Return true in case fulltext support is enabled in this configuration. If this is the case, the SPARQL module
      * will prepare the database with appropriate fulltext index support. Since this adds additional overhead, it is
@@ -283,6 +641,27 @@ public class KiWiConfiguration {
      */
     public KiWiConfiguration setFulltextEnabled(boolean fulltextEnabled) {
         this.fulltextEnabled = fulltextEnabled;
+        if(dialect != null) {
+            dialect.setFulltextEnabled(fulltextEnabled);
+        }
+        return this;
+    }
+
+    /**
+     * Return true in case the object-leading triple indexes (object,predicate,subject) and (object,subject,predicate)
+     * are enabled. They speed up patterns with a bound object (e.g. reverse links or rdf:type lookups), but add
+     * overhead to every triple insert, so they are not enabled by default.
+     */
+    public boolean isObjectIndexesEnabled() {
+        return objectIndexesEnabled;
+    }
+
+    /**
+     * Set to true in case the object-leading triple indexes (object,predicate,subject) and (object,subject,predicate)
+     * should be created. The indexes are created or dropped when the database is initialised.
+     */
+    public KiWiConfiguration setObjectIndexesEnabled(boolean objectIndexesEnabled) {
+        this.objectIndexesEnabled = objectIndexesEnabled;
         return this;
     }
 
@@ -315,6 +694,44 @@ public class KiWiConfiguration {
         return this;
     }
 
+    /**
+     * Return the interval (in seconds) for recomputing the triple statistics used by the SPARQL module for query
+     * planning from the database. In between, the statistics are updated incrementally on each commit. Zero
+     * computes the statistics only once on startup, negative values disable computing them from the database
+     * altogether.
+     */
+    public int getStatisticsRefreshInterval() {
+        return statisticsRefreshInterval;
+    }
+
+    /**
+     * Set the interval (in seconds) for recomputing the triple statistics used by the SPARQL module for query
+     * planning from the database. In between, the statistics are updated incrementally on each commit. Zero
+     * computes the statistics only once on startup, negative values disable computing them from the database
+     * altogether.
+     */
+    public KiWiConfiguration setStatisticsRefreshInterval(int statisticsRefreshInterval) {
+        this.statisticsRefreshInterval = statisticsRefreshInterval;
+        return this;
+    }
+
+    /**
+     * Return the percentage of the triple table sampled when computing the triple statistics on databases
+     * supporting table sampling (PostgreSQL 9.5 and later). Values of 100 or more always scan the complete table.
+     */
+    public double getStatisticsSamplePercent() {
+        return statisticsSamplePercent;
+    }
+
+    /**
+     * Set the percentage of the triple table sampled when computing the triple statistics on databases
+     * supporting table sampling (PostgreSQL 9.5 and later). Values of 100 or more always scan the complete table.
+     */
+    public KiWiConfiguration setStatisticsSamplePercent(double statisticsSamplePercent) {
+        this.statisticsSamplePercent = statisticsSamplePercent;
+        return this;
+    }
+
 
     /**
      * Fully qualified class name of the cache manager factory to use. Falls back to the Guava
@@ -429,6 +846,85 @@ public class KiWiConfiguration {
         return this;
     }
 
+    /**
+     * Maximum number of bytes used by the node cache of the off-heap caching backend (default: 256MB)
+     */
+    public long getNodeCacheMemory() {
+        return nodeCacheMemory;
+    }
+
+    /**
+     * Maximum number of bytes used by the node cache of the off-heap caching backend (default: 256MB)
+     */
+    public KiWiConfiguration setNodeCacheMemory(long nodeCacheMemory) {
+        this.nodeCacheMemory = nodeCacheMemory;
+        return this;
+    }
+
+    /**
+     * Maximum number of bytes used by the triple cache of the off-heap caching backend (default: 64MB)
+     */
+    public long getTripleCacheMemory() {
+        return tripleCacheMemory;
+    }
+
+    /**
+     * Maximum number of bytes used by the triple cache of the off-heap caching backend (default: 64MB)
+     */
+    public KiWiConfiguration setTripleCacheMemory(long tripleCacheMemory) {
+        this.tripleCacheMemory = tripleCacheMemory;
+        return this;
+    }
+
+    /**
+     * Enable the prefix dictionary used for compressing URIs in serialized nodes and triples (e.g. in the off-heap
+     * or clustered caches). The dictionary is global to the JVM, so it should only be enabled when a single KiWi
+     * database is used per JVM.
+     */
+    public boolean isPrefixDictionaryEnabled() {
+        return prefixDictionaryEnabled;
+    }
+
+    /**
+     * Enable the prefix dictionary used for compressing URIs in serialized nodes and triples (e.g. in the off-heap
+     * or clustered caches). The dictionary is global to the JVM, so it should only be enabled when a single KiWi
+     * database is used per JVM.
+     */
+    public KiWiConfiguration setPrefixDictionaryEnabled(boolean prefixDictionaryEnabled) {
+        this.prefixDictionaryEnabled = prefixDictionaryEnabled;
+        return this;
+    }
+
+    /**
+     * Maximum number of prefixes in the prefix dictionary (default: 256).
+     */
+    public int getPrefixDictionarySize() {
+        return prefixDictionarySize;
+    }
+
+    /**
+     * Maximum number of prefixes in the prefix dictionary (default: 256).
+     */
+    public KiWiConfiguration setPrefixDictionarySize(int prefixDictionarySize) {
+        this.prefixDictionarySize = prefixDictionarySize;
+        return this;
+    }
+
+    /**
+     * Additional URI prefixes to add to the prefix dictionary. Prefixes need to end with '/', '#' or ':'.
+     */
+    public List<String> getPrefixDictionaryPrefixes() {
+        return prefixDictionaryPrefixes;
+    }
+
+    /**
+     * Additional URI prefixes to add to the prefix dictionary. Prefixes need to end with '/', '#' or ':'.
+     */
+    public KiWiConfiguration setPrefixDictionaryPrefixes(List<String> prefixDictionaryPrefixes) {
+        this.prefixDictionaryPrefixes = prefixDictionaryPrefixes;
+        return this;
+    }
+
     /**
      * The datacenter ID of this server for generating unique database IDs. If not given, a random value will
      * be generated.
@@ -448,6 +944,21 @@ public class KiWiConfiguration {
         return this;
     }
 
+    /**
+     * The strategy used for generating database ids for nodes and triples (default: SNOWFLAKE).
+     */
+    public IDGeneratorType getIdGeneratorType() {
+        return idGeneratorType;
+    }
+
+    /**
+     * The strategy used for generating database ids for nodes and triples (default: SNOWFLAKE).
+     */
+    public KiWiConfiguration setIdGeneratorType(IDGeneratorType idGeneratorType) {
+        this.idGeneratorType = idGeneratorType;
+        return this;
+    }
+
 
     /**
      * Return the strategy to use for synchronizing between transactions. Currently either "database" or "cache".
@@ -621,6 +1132,59 @@ public class KiWiConfiguration {
         this.clusterTimeout = clusterTimeout;
     }
 
+    /**
+     * Return how writes to clustered caches are propagated to the cluster: STRICT waits for the cluster on every
+     * write, ASYNC sends every write asynchronously, WRITE_BEHIND queues writes locally and flushes them in batches
+     * (default: ASYNC). Only used by the clustered caching backends.
+     */
+    public CacheWriteMode getCacheWriteMode() {
+        return cacheWriteMode;
+    }
+
+    /**
+     * Change how writes to clustered caches are propagated to the cluster: STRICT waits for the cluster on every
+     * write, ASYNC sends every write asynchronously, WRITE_BEHIND queues writes locally and flushes them in batches
+     * (default: ASYNC). Only used by the clustered caching backends.
+     */
+    public KiWiConfiguration setCacheWriteMode(CacheWriteMode cacheWriteMode) {
+        this.cacheWriteMode = cacheWriteMode;
+        return this;
+    }
+
+    /**
+     * Return the maximum number of cache writes queued per cache in WRITE_BEHIND mode. When the queue is full, further
+     * writes go to the cluster directly until the queue has been flushed (default: 100000).
+     */
+    public int getCacheWriteBehindQueueSize() {
+        return cacheWriteBehindQueueSize;
+    }
+
+    /**
+     * Change the maximum number of cache writes queued per cache in WRITE_BEHIND mode. When the queue is full, further
+     * writes go to the cluster directly until the queue has been flushed (default: 100000).
+     */
+    public KiWiConfiguration setCacheWriteBehindQueueSize(int cacheWriteBehindQueueSize) {
+        this.cacheWriteBehindQueueSize = cacheWriteBehindQueueSize;
+        return this;
+    }
+
+    /**
+     * Return the interval in milliseconds in which queued cache writes are flushed to the cluster in WRITE_BEHIND
+     * mode (default: 100).
+     */
+    public int getCacheWriteBehindInterval() {
+        return cacheWriteBehindInterval;
+    }
+
+    /**
+     * Change the interval in milliseconds in which queued cache writes are flushed to the cluster in WRITE_BEHIND
+     * mode (default: 100).
+     */
+    public KiWiConfiguration setCacheWriteBehindInterval(int cacheWriteBehindInterval) {
+        this.cacheWriteBehindInterval = cacheWriteBehindInterval;
+        return this;
+    }
+
 
     /**
      * Return true if statistics collection in JMX. The JMX name of the KiWi statistics bean will be
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generate unique IDs using the same layout as the Snowflake algorithm (41 bits time stamp, 10 bits datacenter id,
+ * 12 bits sequence number), but without synchronization. Time stamp and sequence number together form a slot
+ * counter; each thread reserves a block of consecutive slots with a single atomic operation and then hands out ids
+ * from its block without any further coordination. Uniqueness across cluster nodes is guaranteed by the datacenter
+ * id as for Snowflake.
+ * <p/>
+ * The slot counter never falls behind the current time, but it may run ahead of it in case more than 4096 ids per
+ * millisecond are requested. On shutdown, the generator therefore waits until the clock has passed the last reserved
+ * slot, so a generator started afterwards on the same node will not reuse ids.
+ */
+public class BlockIDGenerator extends SnowflakeIDGenerator {
+
+    private static Logger log = LoggerFactory.getLogger(BlockIDGenerator.class);
+
+    /**
+     * Default number of ids reserved by a thread at once.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    private final int blockSize;
+
+    // next free slot: (time stamp - twepoch) << sequenceBits | sequence
+    private final AtomicLong nextSlot = new AtomicLong(0);
+
+    // current block of each thread: { next slot, end of block (exclusive) }
+    private final ThreadLocal<long[]> blocks = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[2];
+        }
+    };
+
+    public BlockIDGenerator(long datacenterId) {
+        this(datacenterId, DEFAULT_BLOCK_SIZE);
+    }
+
+    public BlockIDGenerator(long datacenterId, int blockSize) {
+        super(datacenterId);
+
+        if(blockSize < 1 || blockSize > sequenceMask + 1) {
+            throw new IllegalArgumentException("block size must be between 1 and " + (sequenceMask + 1));
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Return the next unique id from the block of the current thread, reserving a new block if necessary.
+     *
+     * @return
+     */
+    @Override
+    public long getId() {
+        long[] block = blocks.get();
+        if(block[0] >= block[1]) {
+            block[0] = reserveBlock();
+            block[1] = block[0] + blockSize;
+        }
+        long slot = block[0]++;
+
+        return ((slot >>> sequenceBits) << timestampLeftShift) | (datacenterId << datacenterIdShift) | (slot & sequenceMask);
+    }
+
+    /**
+     * Reserve a new block of slots and return its first slot. Blocks start at the current time at the earliest,
+     * so ids stay roughly ordered by creation time.
+     */
+    private long reserveBlock() {
+        long now = (System.currentTimeMillis() - twepoch) << sequenceBits;
+        while (true) {
+            long current = nextSlot.get();
+            long start   = Math.max(current, now);
+            if(nextSlot.compareAndSet(current, start + blockSize)) {
+                return start;
+            }
+        }
+    }
+
+    /**
+     * Wait until the clock has passed all reserved slots, so that ids are not reused after a restart.
+     */
+    @Override
+    public void shutdown() {
+        long last = (nextSlot.get() >>> sequenceBits) + twepoch;
+        long wait = last - System.currentTimeMillis();
+        if(wait > 0) {
+            log.info("waiting {} ms for the clock to pass the reserved id range", wait);
+            try {
+                Thread.sleep(wait + 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
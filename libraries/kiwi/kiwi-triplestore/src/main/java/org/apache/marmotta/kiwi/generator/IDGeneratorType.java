@@ -38,5 +38,11 @@ public enum IDGeneratorType {
     /**
      * Generate the row ids using the Twitter Snowflake algorithm described in https://github.com/twitter/snowflake
      */
-    SNOWFLAKE
+    SNOWFLAKE,
+
+    /**
+     * Generate the row ids using the Snowflake id layout, but reserve blocks of ids for each thread without locking
+     * (see BlockIDGenerator)
+     */
+    SNOWFLAKE_BLOCK
 }
@@ -40,16 +40,16 @@ public class SnowflakeIDGenerator implements IDGenerator {
     private static Logger log = LoggerFactory.getLogger(SnowflakeIDGenerator.class);
 
 
-    private final long datacenterIdBits = 10L;
-    private final long maxDatacenterId = -1L ^ (-1L << datacenterIdBits);
-    private final long sequenceBits = 12L;
+    protected static final long datacenterIdBits = 10L;
+    protected static final long maxDatacenterId = -1L ^ (-1L << datacenterIdBits);
+    protected static final long sequenceBits = 12L;
 
-    private final long datacenterIdShift = sequenceBits;
-    private final long timestampLeftShift = sequenceBits + datacenterIdBits;
-    private final long sequenceMask = -1L ^ (-1L << sequenceBits);
+    protected static final long datacenterIdShift = sequenceBits;
+    protected static final long timestampLeftShift = sequenceBits + datacenterIdBits;
+    protected static final long sequenceMask = -1L ^ (-1L << sequenceBits);
 
-    private final long twepoch = 1288834974657L;
-    private long datacenterId;
+    protected static final long twepoch = 1288834974657L;
+    protected long datacenterId;
 
     private volatile long lastTimestamp = -1L;
     private volatile long sequence = 0L;
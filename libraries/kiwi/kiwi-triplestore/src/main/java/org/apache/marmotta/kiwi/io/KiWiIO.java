@@ -31,10 +31,14 @@ import org.slf4j.LoggerFactory;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
@@ -53,7 +57,44 @@ public class KiWiIO {
     /**
      * Minimum length of content where we start using compression.
      */
-    private static final int LITERAL_COMPRESS_LENGTH = 500;
+    private static volatile int literalCompressLength = 500;
+
+    // Deflater and Inflater allocate native memory on creation, so instances are reused per thread
+    private static final ThreadLocal<Deflater> compressors = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_SPEED, true);
+        }
+    };
+
+    private static final ThreadLocal<Inflater> decompressors = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    /**
+     * Dictionaries of additional URI prefixes used for decoding URIs, by dictionary id (one per database, see
+     * {@link PrefixDictionary}).
+     */
+    private static final ConcurrentMap<Integer,PrefixDictionary> prefixDictionaries = new ConcurrentHashMap<>();
+
+    /**
+     * Loaders used to fetch a newer dictionary version when reading data written by another cluster node.
+     */
+    private static final ConcurrentMap<Integer,PrefixDictionary.Loader> prefixDictionaryLoaders = new ConcurrentHashMap<>();
+
+    /**
+     * Ids of the dictionaries registered for encoding URIs.
+     */
+    private static final Set<Integer> encodingDictionaries = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+    /**
+     * Dictionary used for encoding URIs; only set if exactly one dictionary is registered for encoding, since the
+     * triple stores in the same JVM may share the same caches but not the same databases.
+     */
+    private static volatile PrefixDictionary encodingDictionary = PrefixDictionary.EMPTY;
 
     private static final int PREFIX_UNKNOWN = 0;
     private static final int PREFIX_XSD     = 1;
@@ -68,6 +109,7 @@ public class KiWiIO {
     private static final int PREFIX_SCHEMA  = 10;
     private static final int PREFIX_DBPEDIA = 11;
     private static final int PREFIX_FREEBASE= 12;
+    private static final int PREFIX_DICTIONARY = 13;
 
 
     private static final int TYPE_URI       = 1;
@@ -81,7 +123,7 @@ public class KiWiIO {
 
     public static final int MODE_DEFAULT    = 1; // no compression
     public static final int MODE_PREFIX     = 2; // prefix compression for some known URI prefixes
-    public static final int MODE_COMPRESSED = 3; // reserved: ZLIB string compression for long literals
+    public static final int MODE_COMPRESSED = 3; // ZLIB string compression for long literals
 
     private static final int LANG_UNKNOWN = 0;
     private static final int LANG_EN = 1;
@@ -132,6 +174,109 @@ public class KiWiIO {
         langTable.put("pl", LANG_PL);
     }
 
+    /**
+     * Return the minimum length of string literal content (in characters) that is written in compressed form.
+     */
+    public static int getLiteralCompressLength() {
+        return literalCompressLength;
+    }
+
+    /**
+     * Set the minimum length of string literal content (in characters) that is written in compressed form. Use
+     * Integer.MAX_VALUE to disable compression. Content is always readable regardless of this setting.
+     */
+    public static void setLiteralCompressLength(int length) {
+        literalCompressLength = length;
+    }
+
+    /**
+     * Return the prefix dictionary currently used for compressing URIs, or the empty dictionary in case none or more
+     * than one dictionary are registered for encoding.
+     */
+    public static PrefixDictionary getPrefixDictionary() {
+        return encodingDictionary;
+    }
+
+    /**
+     * Return the most recent version of the prefix dictionary with the given id known to this JVM, or null if no such
+     * dictionary is registered.
+     */
+    public static PrefixDictionary getPrefixDictionary(int id) {
+        return prefixDictionaries.get(id);
+    }
+
+    /**
+     * Register the prefix dictionary of a database for decoding URIs, and optionally for encoding them. Since data
+     * written with a dictionary can only be read with the same or a newer version, the new dictionary should extend
+     * an already registered dictionary with the same id.
+     *
+     * @param dictionary the dictionary to register
+     * @param loader     loader for fetching a newer version of the dictionary in case serialized data refers to a
+     *                   prefix that is not contained in the registered version (e.g. because another cluster node
+     *                   extended it); may be null
+     * @param encode     true if the dictionary should be used for compressing URIs
+     */
+    public static synchronized void registerPrefixDictionary(PrefixDictionary dictionary, PrefixDictionary.Loader loader, boolean encode) {
+        PrefixDictionary current = prefixDictionaries.get(dictionary.getId());
+        if(current != null && !dictionary.extendsDictionary(current)) {
+            log.warn("new prefix dictionary {} does not extend the current one; cached serialized data might not be readable anymore", dictionary.getId());
+        }
+        prefixDictionaries.put(dictionary.getId(), dictionary);
+        if(loader != null) {
+            prefixDictionaryLoaders.put(dictionary.getId(), loader);
+        } else {
+            prefixDictionaryLoaders.remove(dictionary.getId());
+        }
+        if(encode) {
+            encodingDictionaries.add(dictionary.getId());
+        } else {
+            encodingDictionaries.remove(dictionary.getId());
+        }
+        updateEncodingDictionary();
+    }
+
+    /**
+     * Remove the prefix dictionary with the given id, e.g. when shutting down the triple store using it.
+     */
+    public static synchronized void unregisterPrefixDictionary(int id) {
+        prefixDictionaries.remove(id);
+        prefixDictionaryLoaders.remove(id);
+        encodingDictionaries.remove(id);
+        updateEncodingDictionary();
+    }
+
+    private static void updateEncodingDictionary() {
+        PrefixDictionary dictionary = null;
+        if(encodingDictionaries.size() == 1) {
+            dictionary = prefixDictionaries.get(encodingDictionaries.iterator().next());
+        } else if(encodingDictionaries.size() > 1) {
+            log.warn("more than one prefix dictionary registered for encoding; URI compression with prefix dictionaries is disabled");
+        }
+        encodingDictionary = dictionary != null ? dictionary : PrefixDictionary.EMPTY;
+    }
+
+    private static String getDictionaryPrefix(int id, int index) throws IOException {
+        PrefixDictionary dictionary = prefixDictionaries.get(id);
+        if(dictionary == null || index >= dictionary.getVersion()) {
+            synchronized (KiWiIO.class) {
+                dictionary = prefixDictionaries.get(id);
+                PrefixDictionary.Loader loader = prefixDictionaryLoaders.get(id);
+                if((dictionary == null || index >= dictionary.getVersion()) && loader != null) {
+                    PrefixDictionary loaded = loader.load();
+                    if(dictionary == null || loaded.extendsDictionary(dictionary)) {
+                        dictionary = loaded;
+                        prefixDictionaries.put(id, loaded);
+                        updateEncodingDictionary();
+                    }
+                }
+            }
+        }
+        if(dictionary == null) {
+            throw new IOException("prefix dictionary " + id + " is not registered");
+        }
+        return dictionary.getPrefix(index);
+    }
+
     /**
      * Efficiently serialize a KiWiNode to a DataOutput destination. The type of node will be encoded with a single
      * byte usinbg the TYPE_* constants defined in this class
@@ -222,6 +367,9 @@ public class KiWiIO {
         } else {
             out.writeLong(uri.getId());
 
+            PrefixDictionary dictionary = encodingDictionary;
+            int dictionaryIndex;
+
             // compression for commonly used constant prefixes
             if(uri.stringValue().startsWith(XSD.NAMESPACE)) {
                 out.writeByte(PREFIX_XSD);
@@ -256,6 +404,12 @@ public class KiWiIO {
             } else if(uri.stringValue().startsWith(NS_FREEBASE)) {
                 out.writeByte(PREFIX_FREEBASE);
                 DataIO.writeString(out, uri.stringValue().substring(NS_FREEBASE.length()));
+            } else if((dictionaryIndex = dictionary.lookup(uri.stringValue())) >= 0) {
+                // compression for user-defined and frequently used prefixes
+                out.writeByte(PREFIX_DICTIONARY);
+                DataIO.writeString(out, uri.stringValue().substring(dictionary.getPrefix(dictionaryIndex).length()));
+                out.writeShort(dictionaryIndex);
+                out.writeInt(dictionary.getId());
             } else if(uri.stringValue().startsWith(HTTP_LOCALHOST)) {
                 out.writeByte(PREFIX_LOCAL);
                 DataIO.writeString(out, uri.stringValue().substring(HTTP_LOCALHOST.length()));
@@ -325,6 +479,10 @@ public class KiWiIO {
                 case PREFIX_LOCAL:
                     uriPrefix = HTTP_LOCALHOST;
                     break;
+                case PREFIX_DICTIONARY:
+                    int dictionaryIndex = input.readUnsignedShort();
+                    uriPrefix = getDictionaryPrefix(input.readInt(), dictionaryIndex);
+                    break;
                 default:
                     uriPrefix = "";
                     break;
@@ -798,12 +956,12 @@ public class KiWiIO {
             byte[] buffer = new byte[buflen];
             in.readFully(buffer);
 
-            Inflater decompressor = new Inflater(true);
+            Inflater decompressor = decompressors.get();
+            decompressor.reset();
             decompressor.setInput(buffer);
 
             byte[] data = new byte[strlen];
             decompressor.inflate(data);
-            decompressor.end();
 
             return new String(data,"UTF-8");
         } catch(DataFormatException ex) {
@@ -812,27 +970,28 @@ public class KiWiIO {
     }
 
     /**
-     * Write a string to the data output. In case the string length exceeds LITERAL_COMPRESS_LENGTH, uses a LZW
-     * compressed format, otherwise writes the plain bytes.
+     * Write a string to the data output. In case the string length exceeds the literal compress length, uses a
+     * ZLIB compressed format (fastest compression level), otherwise writes the plain bytes.
      *
      * @param out      output destination to write to
      * @param content  string to write
      * @throws IOException
      */
     private static void writeContent(DataOutput out, String content) throws IOException {
-        if(content.length() > LITERAL_COMPRESS_LENGTH) {
+        if(content.length() > literalCompressLength) {
             // temporary buffer of the size of bytes in the content string (assuming that the compressed data will fit into it)
             byte[] data   = content.getBytes("UTF-8");
             byte[] buffer = new byte[data.length];
 
-            Deflater compressor = new Deflater(Deflater.BEST_COMPRESSION, true);
+            Deflater compressor = compressors.get();
+            compressor.reset();
             compressor.setInput(data);
             compressor.finish();
 
             int length = compressor.deflate(buffer);
 
-            // only use compressed version if it is smaller than the number of bytes used by the string
-            if(length < buffer.length) {
+            // only use compressed version if it is complete and smaller than the number of bytes used by the string
+            if(compressor.finished() && length < buffer.length) {
                 log.debug("compressed string with {} bytes; compression ratio {}", data.length, (double) length / data.length);
 
                 out.writeByte(MODE_COMPRESSED);
@@ -840,13 +999,11 @@ public class KiWiIO {
                 out.writeInt(length);
                 out.write(buffer,0,length);
             } else {
-                log.warn("compressed length exceeds string buffer: {} > {}", length, buffer.length);
+                log.debug("compressed length exceeds string buffer, writing uncompressed string with {} bytes", buffer.length);
 
                 out.writeByte(MODE_DEFAULT);
                 DataIO.writeString(out,content);
             }
-
-            compressor.end();
         } else {
             out.writeByte(MODE_DEFAULT);
             DataIO.writeString(out,content);
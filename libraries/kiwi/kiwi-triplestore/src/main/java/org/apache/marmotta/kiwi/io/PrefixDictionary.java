@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A dictionary of URI prefixes used by KiWiIO to compress URIs that are not covered by the built-in prefixes. URIs
+ * are encoded as the index of the longest matching dictionary prefix and the remaining suffix. Prefixes must end
+ * with one of the separator characters '/', '#' or ':' to be matched.
+ * <p/>
+ * Dictionaries are append-only: a new version is created by appending prefixes to an existing dictionary, and the
+ * version of a dictionary is the number of its prefixes. Since existing indexes never change, data written with an
+ * older version can be decoded with any newer version. In a cluster, the dictionary is persisted in the database, so
+ * all nodes see the prefixes in the same order.
+ * <p/>
+ * Each database has its own dictionary, identified by a random id stored in the database metadata. The id is written
+ * together with the prefix index, so KiWiIO can decode data of several triple stores running in the same JVM.
+ */
+public final class PrefixDictionary {
+
+    /**
+     * Maximum number of prefixes; indexes are written as unsigned short.
+     */
+    public static final int MAX_SIZE = 65535;
+
+    public static final PrefixDictionary EMPTY = new PrefixDictionary(0, Collections.<String>emptyList());
+
+    private final int id;
+
+    private final List<String> prefixes;
+
+    private final Map<String,Integer> index;
+
+    public PrefixDictionary(int id, List<String> prefixes) {
+        if(prefixes.size() > MAX_SIZE) {
+            throw new IllegalArgumentException("prefix dictionary exceeds maximum size of " + MAX_SIZE);
+        }
+
+        this.id       = id;
+        this.prefixes = Collections.unmodifiableList(new ArrayList<>(prefixes));
+        this.index    = new HashMap<>();
+        for(int i = 0; i < prefixes.size(); i++) {
+            // a prefix stored twice keeps its first index, which is the one used by all writers
+            if(!index.containsKey(prefixes.get(i))) {
+                index.put(prefixes.get(i), i);
+            }
+        }
+    }
+
+    /**
+     * Return the id of this dictionary; all versions of the dictionary of a database share the same id.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Return the version of this dictionary, i.e. the number of prefixes it contains.
+     */
+    public int getVersion() {
+        return prefixes.size();
+    }
+
+    public List<String> getPrefixes() {
+        return prefixes;
+    }
+
+    /**
+     * Return the prefix with the given index.
+     *
+     * @throws IOException in case the index is not contained in this version of the dictionary
+     */
+    public String getPrefix(int i) throws IOException {
+        if(i < 0 || i >= prefixes.size()) {
+            throw new IOException("prefix " + i + " not contained in prefix dictionary version " + getVersion());
+        }
+        return prefixes.get(i);
+    }
+
+    /**
+     * Return the index of the longest prefix of the given URI contained in the dictionary, or -1 if there is none.
+     */
+    public int lookup(String uri) {
+        if(index.isEmpty()) {
+            return -1;
+        }
+
+        for(int i = uri.length() - 2; i > 0; i--) {
+            char c = uri.charAt(i);
+            if(c == '/' || c == '#' || c == ':') {
+                Integer result = index.get(uri.substring(0, i + 1));
+                if(result != null) {
+                    return result;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return a new version of this dictionary with the given prefixes appended, skipping prefixes already contained
+     * in the dictionary and prefixes beyond the maximum size.
+     */
+    public PrefixDictionary extend(Collection<String> newPrefixes) {
+        List<String> result = new ArrayList<>(prefixes);
+        Set<String> added   = new HashSet<>(index.keySet());
+        for(String prefix : newPrefixes) {
+            if(result.size() < MAX_SIZE && added.add(prefix)) {
+                result.add(prefix);
+            }
+        }
+        return new PrefixDictionary(id, result);
+    }
+
+    /**
+     * Return true if this dictionary starts with all prefixes of the given dictionary, i.e. it can decode all data
+     * written with the other dictionary.
+     */
+    public boolean extendsDictionary(PrefixDictionary other) {
+        return id == other.id && prefixes.size() >= other.prefixes.size() && prefixes.subList(0, other.prefixes.size()).equals(other.prefixes);
+    }
+
+
+    /**
+     * Loads the current version of the prefix dictionary, e.g. from the database. Used by KiWiIO when reading data
+     * written with a newer dictionary version than the one currently installed.
+     */
+    public interface Loader {
+
+        PrefixDictionary load() throws IOException;
+
+    }
+}
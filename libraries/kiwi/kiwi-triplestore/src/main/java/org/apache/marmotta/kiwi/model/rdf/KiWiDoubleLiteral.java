@@ -31,7 +31,7 @@ public class KiWiDoubleLiteral extends KiWiStringLiteral {
 	/**
      * Content as double value (if appropriate); for efficient querying
      */
-    protected Double doubleContent;
+    protected double doubleContent;
 
 
     public KiWiDoubleLiteral() {
@@ -31,7 +31,7 @@ public class KiWiIntLiteral extends KiWiDoubleLiteral {
 	/**
      * Content as integer value (if appropriate); for efficient querying
      */
-    private Long intContent;
+    private long intContent;
 
 
 
@@ -43,16 +43,16 @@ public abstract class KiWiNode implements Value, Serializable {
     private long id = -1L;
 
     /**
-     * The creation date of the KiWiNode.
+     * The creation date of the KiWiNode (in milliseconds since the epoch; stored as primitive to keep nodes small).
      **/
-    private Date created;
+    private long created;
 
     protected KiWiNode() {
-        this(new Date());
+        this.created = System.currentTimeMillis();
     }
 
     protected KiWiNode(Date created) {
-        this.created   = created;
+        this.created   = created != null ? created.getTime() : System.currentTimeMillis();
     }
 
     /**
@@ -80,7 +80,7 @@ public abstract class KiWiNode implements Value, Serializable {
      * @return the created
      */
     public Date getCreated() {
-        return new Date(created.getTime());
+        return new Date(created);
     }
 
     /**
@@ -89,7 +89,7 @@ public abstract class KiWiNode implements Value, Serializable {
      * @param created the created to set
      */
     public void setCreated(Date created) {
-        this.created = new Date(created.getTime());
+        this.created = created.getTime();
     }
 
 
@@ -52,6 +52,9 @@ public class KiWiTriple  implements Statement, Serializable {
 	 * 
 	 */
 	private static final long serialVersionUID = -8726615974625660845L;
+
+    // value of deletedAt for triples that are not deleted
+    private static final long NOT_DELETED = Long.MIN_VALUE;
 	
 	private long id = -1L;
 	
@@ -66,9 +69,10 @@ public class KiWiTriple  implements Statement, Serializable {
     
     private KiWiResource creator;
 	
-	private Date created;
+    // creation and deletion time in milliseconds since the epoch; stored as primitives to keep triples small
+	private long created;
 
-    private Date deletedAt;
+    private long deletedAt = NOT_DELETED;
 
 	private boolean deleted;
 
@@ -82,11 +86,11 @@ public class KiWiTriple  implements Statement, Serializable {
 	}
 
     public KiWiTriple(Date created) {
-        this.created = created;
+        this.created = created != null ? created.getTime() : System.currentTimeMillis();
         this.deleted = false;
         this.inferred = false;
         this.newTriple = false;
-        this.deletedAt = null;
+        this.deletedAt = NOT_DELETED;
     }
 
 
@@ -106,7 +110,6 @@ public class KiWiTriple  implements Statement, Serializable {
         this.predicate = predicate;
         this.object   = object;
         this.context  = context;
-        this.deletedAt = null;
 
     }
 
@@ -205,14 +208,14 @@ public class KiWiTriple  implements Statement, Serializable {
 	 * @return the created
 	 */
 	public Date getCreated() {
-		return new Date(created.getTime());
+		return new Date(created);
 	}
 
 	/**
 	 * @param created the created to set
 	 */
 	public void setCreated(Date created) {
-		this.created = new Date(created.getTime());
+		this.created = created.getTime();
 	}
 
     /**
@@ -221,7 +224,7 @@ public class KiWiTriple  implements Statement, Serializable {
      * @return
      */
     public Date getDeletedAt() {
-        return deletedAt == null ? null : new Date(deletedAt.getTime());
+        return deletedAt == NOT_DELETED ? null : new Date(deletedAt);
     }
 
     /**
@@ -230,7 +233,7 @@ public class KiWiTriple  implements Statement, Serializable {
      * @param deletedAt
      */
     public void setDeletedAt(Date deletedAt) {
-        this.deletedAt = deletedAt != null ? new Date(deletedAt.getTime()) : null;
+        this.deletedAt = deletedAt != null ? deletedAt.getTime() : NOT_DELETED;
     }
 
     /**
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence;
+
+/**
+ * A snapshot of the usage of one of the JDBC connection pools of a KiWiPersistence (the pool on the primary
+ * database or the pool on the read replica).
+ *
+ * @see KiWiPersistence#getPrimaryPoolStatistics()
+ * @see KiWiPersistence#getReplicaPoolStatistics()
+ */
+public class ConnectionPoolStatistics {
+
+    private final String name;
+
+    private final int active;
+
+    private final int idle;
+
+    private final int size;
+
+    private final int waiting;
+
+    private final long borrowed;
+
+    public ConnectionPoolStatistics(String name, int active, int idle, int size, int waiting, long borrowed) {
+        this.name = name;
+        this.active = active;
+        this.idle = idle;
+        this.size = size;
+        this.waiting = waiting;
+        this.borrowed = borrowed;
+    }
+
+    /**
+     * The name of the connection pool
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Number of connections currently in use
+     */
+    public int getActive() {
+        return active;
+    }
+
+    /**
+     * Number of idle connections in the pool
+     */
+    public int getIdle() {
+        return idle;
+    }
+
+    /**
+     * Number of connections currently opened by the pool
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Number of threads currently waiting for a connection
+     */
+    public int getWaiting() {
+        return waiting;
+    }
+
+    /**
+     * Total number of connections handed out by the pool since the persistence was initialised
+     */
+    public long getBorrowed() {
+        return borrowed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d active, %d idle, %d waiting, %d borrowed", name, active, idle, waiting, borrowed);
+    }
+}
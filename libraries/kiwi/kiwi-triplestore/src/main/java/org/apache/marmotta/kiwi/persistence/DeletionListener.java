@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence;
+
+import org.apache.marmotta.kiwi.model.rdf.KiWiResource;
+
+/**
+ * A listener that is notified about the progress of bulk deletions of a whole context or the whole repository.
+ * Bulk deletions mark triples as deleted in chunks (see KiWiConfiguration#getDeleteChunkSize()); listeners are
+ * called in the thread carrying out the deletion, so they can e.g. attach the progress to a task of this thread.
+ * Listeners are registered with KiWiPersistence#addDeletionListener.
+ */
+public interface DeletionListener {
+
+    /**
+     * Called before the first chunk of triples is deleted.
+     *
+     * @param context the context that is deleted, or null in case the whole repository is deleted
+     * @param total   the (approximate) number of triples that will be deleted
+     */
+    public void deletionStarted(KiWiResource context, long total);
+
+    /**
+     * Called after each chunk of triples has been deleted.
+     *
+     * @param context the context that is deleted, or null in case the whole repository is deleted
+     * @param deleted the number of triples deleted so far
+     */
+    public void deletionProgress(KiWiResource context, long deleted);
+
+    /**
+     * Called after the last chunk of triples has been deleted, or in case the deletion failed.
+     *
+     * @param context the context that is deleted, or null in case the whole repository is deleted
+     * @param deleted the number of triples deleted
+     */
+    public void deletionFinished(KiWiResource context, long deleted);
+}
@@ -20,18 +20,18 @@ package org.apache.marmotta.kiwi.persistence;
 import com.google.common.base.Preconditions;
 import com.google.common.hash.BloomFilter;
 import com.google.common.hash.Funnels;
-import com.google.common.primitives.Longs;
 import info.aduna.iteration.*;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.marmotta.commons.sesame.model.LiteralCommons;
 import org.apache.marmotta.commons.sesame.model.Namespaces;
-import org.apache.marmotta.commons.sesame.tripletable.TripleTable;
 import org.apache.marmotta.kiwi.caching.CacheManager;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.exception.ResultInterruptedException;
 import org.apache.marmotta.kiwi.model.rdf.*;
+import org.apache.marmotta.kiwi.persistence.util.CompactTripleList;
 import org.apache.marmotta.kiwi.persistence.util.ResultSetIteration;
 import org.apache.marmotta.kiwi.persistence.util.ResultTransformerFunction;
+import org.apache.marmotta.kiwi.persistence.util.TripleBuffer;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.openrdf.model.Literal;
@@ -45,6 +45,7 @@ import org.slf4j.LoggerFactory;
 import java.sql.*;
 import java.util.*;
 import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -68,7 +69,23 @@ public class KiWiConnection implements AutoCloseable {
 
     protected CacheManager cacheManager;
 
-    protected TripleTable<KiWiTriple> tripleBatch;
+    /**
+     * Triples that have been stored in the current transaction but not yet written to the database; the buffer
+     * is indexed by node ids and can be read concurrently without locking
+     */
+    protected TripleBuffer tripleBatch;
+
+    /**
+     * Nodes that have been stored in the current transaction but not yet written to the database; they are flushed
+     * together with the triple batch and remain visible through the node caches in the meantime
+     */
+    protected List<KiWiNode> nodeBatch;
+
+    /**
+     * Nodes that have been written to the database in the current transaction but not committed yet; they are
+     * removed from the node caches in case the transaction is rolled back
+     */
+    private List<KiWiNode> uncommittedNodes = new ArrayList<>();
 
     /**
      * Cache nodes by database ID
@@ -113,15 +130,53 @@ public class KiWiConnection implements AutoCloseable {
     private static Calendar calendarUTC = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
 
 
-    private Map<String,PreparedStatement> statementCache = new HashMap<>();
+    // maximum number of prepared statements kept open per connection; translated SPARQL queries are cached here as
+    // well, so the number of different statements is not bounded by statements.properties
+    private static final int STATEMENT_CACHE_SIZE = 512;
+
+    // prepared statements in least-recently-used order; evicted statements are closed, unless they are still in use
+    // by an acquired query, in which case they are closed when released
+    private Map<String,PreparedStatement> statementCache = new LinkedHashMap<String,PreparedStatement>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if(size() > STATEMENT_CACHE_SIZE) {
+                if(acquiredQueries.contains(eldest.getValue())) {
+                    uncachedQueries.add(eldest.getValue());
+                } else {
+                    try {
+                        eldest.getValue().close();
+                    } catch (SQLException ex) {
+                        log.debug("could not close evicted prepared statement: {}", ex.getMessage());
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // prepared queries handed out by acquirePreparedQuery() and not yet released; queries created in addition to
+    // the cached statements because these were in use are closed when they are released
+    private Set<PreparedStatement> acquiredQueries = Collections.newSetFromMap(new IdentityHashMap<PreparedStatement, Boolean>());
+    private Set<PreparedStatement> uncachedQueries = Collections.newSetFromMap(new IdentityHashMap<PreparedStatement, Boolean>());
 
     private boolean autoCommit = false;
     private boolean batchCommit = true;
 
+    // read-only connections reject modifications and may be served from a read replica
+    private boolean readOnly = false;
+
+    // maximum time in seconds native queries may run in the database, null for the configured default
+    private Integer queryTimeout;
+
     private boolean closed = false;
 
     private int batchSize = 1000;
 
+    // minimum number of nodes and triples in a batch for writing it with the bulk load command of the dialect
+    // instead of JDBC batch updates; 0 disables bulk loading
+    private int copyThreshold = 0;
+
     private ReentrantLock commitLock  = new ReentrantLock();
     private ReentrantLock literalLock = new ReentrantLock();
     private ReentrantLock uriLock     = new ReentrantLock();
@@ -134,8 +189,34 @@ public class KiWiConnection implements AutoCloseable {
 
     private long transactionId;
 
+    // changes of the number of triples per context in the active transaction, applied to the triple_counts table
+    // on commit; the total number of triples is kept under the key GLOBAL_COUNT
+    private final Map<Long,Long> tripleCounts = new HashMap<>();
+
+    // triples added and removed again while still in the triple batch; when added again, they count as new
+    private final Set<Long> removedFromBatch = Collections.synchronizedSet(new HashSet<Long>());
+
     private int QUERY_BATCH_SIZE = 1024;
 
+    /**
+     * Key of the counter holding the total number of triples in the triple_counts table
+     */
+    private static final long GLOBAL_COUNT = -1L;
+
+    /**
+     * Number of rows (stripes) each triple counter is split into; a transaction updates the counters of a randomly
+     * chosen stripe, so concurrent transactions rarely wait for each other's row locks. Reading sums up all stripes.
+     */
+    private static final int COUNT_STRIPES = 16;
+
+    /**
+     * Statements used for inserting nodes, in the order in which node batches are executed; resources come first
+     * because literals reference their datatype URI
+     */
+    private static final String[] NODE_STATEMENTS = {
+            "store.uri", "store.bnode", "store.sliteral", "store.iliteral", "store.dliteral", "store.bliteral", "store.tliteral"
+    };
+
     public KiWiConnection(KiWiPersistence persistence, KiWiDialect dialect, CacheManager cacheManager) throws SQLException {
         this.cacheManager = cacheManager;
         this.dialect      = dialect;
@@ -164,11 +245,24 @@ public class KiWiConnection implements AutoCloseable {
      */
     protected void requireJDBCConnection() throws SQLException {
         if (connection == null) {
-            connection = persistence.getJDBCConnection();
+            connection = readOnly ? persistence.getReadOnlyJDBCConnection() : persistence.getJDBCConnection();
             connection.setAutoCommit(autoCommit);
         }
         if (tripleBatch == null) {
-            tripleBatch = new TripleTable<>();
+            tripleBatch = new TripleBuffer();
+        }
+        if (nodeBatch == null) {
+            nodeBatch = new ArrayList<>();
+        }
+    }
+
+    /**
+     * This method must be called by all methods modifying the database or the caches. It fails in case the
+     * connection is read-only.
+     */
+    protected void requireWritable() throws SQLException {
+        if (readOnly) {
+            throw new SQLException("modification not allowed, the connection is read-only");
         }
     }
 
@@ -271,6 +365,7 @@ public class KiWiConnection implements AutoCloseable {
      * @throws SQLException the prefix or URI is already used, or a database error occurred
      */
     public void storeNamespace(KiWiNamespace namespace) throws SQLException {
+        requireWritable();
         // TODO: add unique constraints to table
         if (namespace.getId() >= 0) {
             log.warn("trying to store namespace which is already persisted: {}",namespace);
@@ -299,6 +394,7 @@ public class KiWiConnection implements AutoCloseable {
      * @throws SQLException in case a database error occurred
      */
     public void deleteNamespace(KiWiNamespace namespace) throws SQLException {
+        requireWritable();
         if (namespace.getId() < 0) {
             log.warn("trying to remove namespace which is not persisted: {}",namespace);
             return;
@@ -322,13 +418,7 @@ public class KiWiConnection implements AutoCloseable {
     public long getSize() throws SQLException {
         requireJDBCConnection();
 
-        PreparedStatement querySize = getPreparedStatement("query.size");
-        try (ResultSet result = querySize.executeQuery()) {
-            if (result.next()) {
-                return result.getLong(1) + (tripleBatch != null ? tripleBatch.size() : 0);
-            }
-        }
-        return tripleBatch != null ? tripleBatch.size() : 0;
+        return loadTripleCount(GLOBAL_COUNT);
     }
 
     /**
@@ -344,15 +434,156 @@ public class KiWiConnection implements AutoCloseable {
 
         requireJDBCConnection();
 
-        PreparedStatement querySize = getPreparedStatement("query.size_ctx");
-        querySize.setLong(1,context.getId());
+        return loadTripleCount(context.getId());
+    }
 
+    /**
+     * Return an estimate of the number of triples in the triple store, using the statistics of the database
+     * (e.g. the PostgreSQL planner statistics). The estimate is cheap to compute but may be considerably off, e.g.
+     * because it also includes deleted triples that have not yet been garbage collected.
+     *
+     * @return estimated number of triples in the triple store
+     * @throws SQLException
+     */
+    public long getSizeEstimate() throws SQLException {
+        requireJDBCConnection();
+
+        PreparedStatement querySize = getPreparedStatement("query.size_estimate");
         try (ResultSet result = querySize.executeQuery()) {
             if (result.next()) {
-                return result.getLong(1) + (tripleBatch != null ? tripleBatch.listTriples(null, null, null, context, false).size() : 0);
+                return Math.max(0, result.getLong(1));
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Return the value of the triple counter with the given key, including the changes of the active transaction.
+     */
+    private long loadTripleCount(long key) throws SQLException {
+        long count = 0;
+
+        synchronized (tripleCounts) {
+            PreparedStatement queryCount = getPreparedStatement("count.get");
+            queryCount.setLong(1, key);
+            try (ResultSet result = queryCount.executeQuery()) {
+                if (result.next()) {
+                    count = result.getLong(1);
+                }
+            }
+            Long delta = tripleCounts.get(key);
+            if(delta != null) {
+                count += delta;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Update the triple counters for a triple that has been added to (delta = 1) or removed from (delta = -1) the
+     * given context in the active transaction. The counters are written to the database on commit. Only needs to
+     * be called by components writing directly to the triples table (e.g. bulk loaders).
+     *
+     * @param context the context of the triple (may be null)
+     * @param delta   the change of the number of triples
+     */
+    public void updateTripleCount(KiWiResource context, long delta) {
+        if(delta == 0) {
+            return;
+        }
+        synchronized (tripleCounts) {
+            addTripleCount(GLOBAL_COUNT, delta);
+            if(context != null && context.getId() >= 0) {
+                addTripleCount(context.getId(), delta);
             }
         }
-        return tripleBatch != null ? tripleBatch.listTriples(null, null, null, context, false).size() : 0;
+    }
+
+    private void addTripleCount(long key, long delta) {
+        Long value = tripleCounts.get(key);
+        tripleCounts.put(key, value != null ? value + delta : delta);
+    }
+
+    /**
+     * Write the triple counter changes of the active transaction to the database. Counters are updated in order
+     * of their keys to avoid deadlocks between concurrent transactions, and all in the same randomly chosen stripe
+     * to avoid contention on the counter rows.
+     */
+    private void flushTripleCounts() throws SQLException {
+        synchronized (tripleCounts) {
+            if(tripleCounts.isEmpty()) {
+                return;
+            }
+
+            // the commit might be retried, so make sure the counters are not updated twice
+            Savepoint flush = connection.setSavepoint();
+            try {
+                flushTripleCountsInternal();
+                connection.releaseSavepoint(flush);
+            } catch (SQLException ex) {
+                connection.rollback(flush);
+                throw ex;
+            }
+        }
+    }
+
+    private void flushTripleCountsInternal() throws SQLException {
+        synchronized (tripleCounts) {
+            int stripe = ThreadLocalRandom.current().nextInt(COUNT_STRIPES);
+            for(Map.Entry<Long,Long> entry : new TreeMap<>(tripleCounts).entrySet()) {
+                if(entry.getValue() == 0) {
+                    continue;
+                }
+
+                PreparedStatement update = getPreparedStatement("count.update");
+                update.setLong(1, entry.getValue());
+                update.setLong(2, entry.getKey());
+                update.setInt(3, stripe);
+                if(update.executeUpdate() == 0) {
+                    // first update of this stripe; a concurrent transaction might create the counter at the same time
+                    Savepoint savepoint = connection.setSavepoint();
+                    try {
+                        PreparedStatement insert = getPreparedStatement("count.insert");
+                        insert.setLong(1, entry.getKey());
+                        insert.setInt(2, stripe);
+                        insert.setLong(3, entry.getValue());
+                        insert.executeUpdate();
+                        connection.releaseSavepoint(savepoint);
+                    } catch (SQLException ex) {
+                        connection.rollback(savepoint);
+                        update.executeUpdate();
+                    }
+                }
+            }
+        }
+    }
+
+    private void clearTripleCounts() {
+        synchronized (tripleCounts) {
+            tripleCounts.clear();
+            removedFromBatch.clear();
+        }
+    }
+
+    /**
+     * Recompute all triple counters from the content of the triples table. Only needed in case the triples table
+     * has been modified without updating the counters, since this is an expensive operation.
+     *
+     * @throws SQLException
+     */
+    public void rebuildTripleCounts() throws SQLException {
+        requireWritable();
+        requireJDBCConnection();
+
+        log.info("rebuilding triple counters ...");
+        synchronized (tripleCounts) {
+            getPreparedStatement("count.clear").executeUpdate();
+            getPreparedStatement("count.rebuild").executeUpdate();
+            getPreparedStatement("count.rebuild_ctx").executeUpdate();
+
+            // changes of the active transaction are already contained in the triples table
+            tripleCounts.clear();
+        }
     }
 
     /**
@@ -420,13 +651,21 @@ public class KiWiConnection implements AutoCloseable {
 
         KiWiNode[] result = new KiWiNode[ids.length];
 
-        // first look in the cache for any ids that have already been loaded
+        // first look in the cache for any ids that have already been loaded; remember the first position of each
+        // id that needs to be fetched, so rows can be assigned to their positions without scanning the ids
         ArrayList<Long> toFetch = new ArrayList<>(ids.length);
+        Map<Long,Integer> positions = new HashMap<>(ids.length * 2);
+        boolean duplicates = false;
         for(int i=0; i < ids.length; i++) {
             if(ids[i] != 0) {
                 result[i] = nodeCache.get(ids[i]);
                 if(result[i] == null) {
-                    toFetch.add(ids[i]);
+                    if(positions.containsKey(ids[i])) {
+                        duplicates = true;
+                    } else {
+                        positions.put(ids[i], i);
+                        toFetch.add(ids[i]);
+                    }
                 }
             }
         }
@@ -454,10 +693,9 @@ public class KiWiConnection implements AutoCloseable {
                     try (ResultSet rows = query.executeQuery()) {
                         while (rows.next()) {
                             node = constructNodeFromDatabase(rows);
-                            for (int i = 0; i < ids.length; i++) {
-                                if (ids[i] == node.getId()) {
-                                    result[i] = node;
-                                }
+                            Integer index = positions.get(node.getId());
+                            if (index != null) {
+                                result[index] = node;
                             }
                         }
                     }
@@ -466,7 +704,14 @@ public class KiWiConnection implements AutoCloseable {
                 }
             }
 
-
+            // ids requested more than once are only fetched once; copy the node to the remaining positions
+            if(duplicates) {
+                for(int i=0; i < ids.length; i++) {
+                    if(result[i] == null && ids[i] != 0) {
+                        result[i] = result[positions.get(ids[i])];
+                    }
+                }
+            }
         }
         return result;
     }
@@ -546,6 +791,60 @@ public class KiWiConnection implements AutoCloseable {
         return null;
     }
 
+    /**
+     * Batch load the KiWiUriResources with the given URIs. Resources that are not yet cached are loaded with one
+     * database query ('load.uris_by_uris') per batch of URIs and added to the caches, so that subsequent calls of
+     * {@link #loadUriResource(String)} for these URIs (e.g. when converting the values of a query) do not need
+     * further database roundtrips. URIs that do not exist in the database are skipped.
+     *
+     * @param uris the URIs of the resources to load
+     * @return the KiWiUriResources found in the cache or the database, in no particular order
+     */
+    public List<KiWiUriResource> loadUriResources(Collection<String> uris) throws SQLException {
+        List<KiWiUriResource> result = new ArrayList<>(uris.size());
+
+        // first look in the cache for any URIs that have already been loaded
+        List<String> toFetch = new ArrayList<>(uris.size());
+        for(String uri : new LinkedHashSet<>(uris)) {
+            KiWiUriResource element = uriCache.get(uri);
+            if(element != null) {
+                result.add(element);
+            } else {
+                toFetch.add(uri);
+            }
+        }
+
+        if(toFetch.size() > 0) {
+            requireJDBCConnection();
+
+            uriLock.lock();
+            try {
+                int position = 0;
+                while(position < toFetch.size()) {
+                    int nextBatchSize = computeBatchSize(position, toFetch.size());
+
+                    PreparedStatement query = getPreparedStatement("load.uris_by_uris", nextBatchSize);
+                    for(int i=0; i<nextBatchSize; i++) {
+                        query.setString(i+1, toFetch.get(position + i));
+                    }
+                    query.setMaxRows(nextBatchSize);
+
+                    // the method constructing the nodes takes care of caching them for future calls
+                    try (ResultSet rows = query.executeQuery()) {
+                        while (rows.next()) {
+                            result.add((KiWiUriResource) constructNodeFromDatabase(rows));
+                        }
+                    }
+
+                    position += nextBatchSize;
+                }
+            } finally {
+                uriLock.unlock();
+            }
+        }
+        return result;
+    }
+
     /**
      * Load a KiWiAnonResource by anonymous ID. The method will first look in the node cache for
      * cached nodes. If no cache entry is found, it will run a database query ('load.bnode_by_anonid')
@@ -858,6 +1157,11 @@ public class KiWiConnection implements AutoCloseable {
      * passed object. Afterwards, the node data will be inserted into the database using appropriate INSERT
      * statements. The caller must make sure the connection is committed and closed properly.
      * <p/>
+     * In case batched commits are enabled and the connection is not in auto-commit mode, the INSERT statements are
+     * not executed immediately. Instead, the node is added to the node batch, which is written to the database
+     * using JDBC batch updates together with the triple batch (see {@link #flushBatch()}). Until then, the node
+     * is only visible through the node caches.
+     * <p/>
      * If the node already has an ID, the method will do nothing (assuming that it is already persistent)
      *
      *
@@ -865,6 +1169,7 @@ public class KiWiConnection implements AutoCloseable {
      * @throws SQLException
      */
     public synchronized void storeNode(KiWiNode node) throws SQLException {
+        requireWritable();
 
         // ensure the data type of a literal is persisted first
         if (node instanceof KiWiLiteral) {
@@ -881,7 +1186,38 @@ public class KiWiConnection implements AutoCloseable {
             node.setId(getNextSequence());
         }
 
-        // distinguish the different node types and run the appropriate updates
+        if(batchCommit && !autoCommit) {
+            commitLock.lock();
+            try {
+                cacheNode(node);
+                nodeBatch.add(node);
+                maybeFlushBatch();
+            } finally {
+                commitLock.unlock();
+            }
+        } else {
+            PreparedStatement insertNode = prepareNodeInsert(node);
+            if(insertNode != null) {
+                insertNode.executeUpdate();
+            }
+
+            cacheNode(node);
+            if(!autoCommit) {
+                uncommittedNodes.add(node);
+            }
+        }
+    }
+
+    /**
+     * Return the prepared INSERT statement for the given node with all parameters set, or null if the node type is
+     * not supported. The statement can then either be executed directly or added to a batch.
+     *
+     * @param node the KiWiNode to insert; must already have a database id
+     * @return the prepared statement for inserting the node
+     * @throws SQLException
+     */
+    private PreparedStatement prepareNodeInsert(KiWiNode node) throws SQLException {
+        // distinguish the different node types and prepare the appropriate updates
         if (node instanceof KiWiUriResource) {
             KiWiUriResource uriResource = (KiWiUriResource)node;
 
@@ -890,7 +1226,7 @@ public class KiWiConnection implements AutoCloseable {
             insertNode.setString(2,uriResource.stringValue());
             insertNode.setTimestamp(3, new Timestamp(uriResource.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            return insertNode;
 
         } else if (node instanceof KiWiAnonResource) {
             KiWiAnonResource anonResource = (KiWiAnonResource)node;
@@ -900,7 +1236,7 @@ public class KiWiConnection implements AutoCloseable {
             insertNode.setString(2,anonResource.stringValue());
             insertNode.setTimestamp(3, new Timestamp(anonResource.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            return insertNode;
         } else if (node instanceof KiWiDateLiteral) {
             KiWiDateLiteral dateLiteral = (KiWiDateLiteral)node;
 
@@ -915,7 +1251,7 @@ public class KiWiConnection implements AutoCloseable {
                 throw new IllegalStateException("a date literal must have a datatype");
             insertNode.setTimestamp(6, new Timestamp(dateLiteral.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            return insertNode;
         } else if (node instanceof KiWiIntLiteral) {
             KiWiIntLiteral intLiteral = (KiWiIntLiteral)node;
 
@@ -930,7 +1266,7 @@ public class KiWiConnection implements AutoCloseable {
                 throw new IllegalStateException("an integer literal must have a datatype");
             insertNode.setTimestamp(6, new Timestamp(intLiteral.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            return insertNode;
         } else if (node instanceof KiWiDoubleLiteral) {
             KiWiDoubleLiteral doubleLiteral = (KiWiDoubleLiteral)node;
 
@@ -944,7 +1280,7 @@ public class KiWiConnection implements AutoCloseable {
                 throw new IllegalStateException("a double literal must have a datatype");
             insertNode.setTimestamp(5, new Timestamp(doubleLiteral.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            return insertNode;
         } else if (node instanceof KiWiBooleanLiteral) {
             KiWiBooleanLiteral booleanLiteral = (KiWiBooleanLiteral)node;
 
@@ -958,7 +1294,7 @@ public class KiWiConnection implements AutoCloseable {
                 throw new IllegalStateException("a boolean literal must have a datatype");
             insertNode.setTimestamp(5, new Timestamp(booleanLiteral.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            return insertNode;
         } else if (node instanceof KiWiStringLiteral) {
             KiWiStringLiteral stringLiteral = (KiWiStringLiteral)node;
 
@@ -1000,12 +1336,12 @@ public class KiWiConnection implements AutoCloseable {
             }
             insertNode.setTimestamp(7, new Timestamp(stringLiteral.getCreated().getTime()), calendarUTC);
 
-            insertNode.executeUpdate();
+            return insertNode;
         } else {
             log.warn("unrecognized node type: {}", node.getClass().getCanonicalName());
+            return null;
         }
 
-        cacheNode(node);
     }
 
     /**
@@ -1016,11 +1352,16 @@ public class KiWiConnection implements AutoCloseable {
      * @throws NullPointerException in case the subject, predicate, object or context have not been persisted
      */
     public synchronized void storeTriple(final KiWiTriple triple) throws SQLException {
+        requireWritable();
         // mutual exclusion: prevent parallel adding and removing of the same triple
         synchronized (triple) {
 
             requireJDBCConnection();
 
+            // the triple has not been stored before, either because it has no id yet or because the value factory
+            // created it in this transaction (or it was added and removed again while still in the triple batch)
+            final boolean isNew = triple.getId() < 0 || triple.isNewTriple() || removedFromBatch.remove(triple.getId());
+
             if (triple.getId() < 0) {
                 triple.setId(getNextSequence());
             }
@@ -1039,7 +1380,9 @@ public class KiWiConnection implements AutoCloseable {
                     commitLock.lock();
                     try {
                         cacheTriple(triple);
-                        tripleBatch.add(triple);
+                        if(tripleBatch.add(triple) && isNew) {
+                            updateTripleCount(triple.getContext(), 1);
+                        }
                         maybeFlushBatch();
                     } finally {
                         commitLock.unlock();
@@ -1068,6 +1411,9 @@ public class KiWiConnection implements AutoCloseable {
                                 insertTriple.setBoolean(6,triple.isInferred());
                                 insertTriple.setTimestamp(7, new Timestamp(triple.getCreated().getTime()));
                                 int count = insertTriple.executeUpdate();
+                                if(count > 0 && isNew) {
+                                    updateTripleCount(triple.getContext(), 1);
+                                }
 
                                 cacheTriple(triple);
 
@@ -1134,6 +1480,7 @@ public class KiWiConnection implements AutoCloseable {
      * @param triple the KiWiTriple to delete
      */
     public void deleteTriple(final KiWiTriple triple) throws SQLException {
+        requireWritable();
         requireJDBCConnection();
 
         RetryExecution<Void> execution = new RetryExecution<>("DELETE");
@@ -1160,9 +1507,12 @@ public class KiWiConnection implements AutoCloseable {
                                     PreparedStatement deleteTriple = getPreparedStatement("delete.triple");
                                     synchronized (deleteTriple) {
                                         deleteTriple.setLong(1, triple.getId());
-                                        deleteTriple.executeUpdate();
+                                        updateTripleCount(triple.getContext(), -deleteTriple.executeUpdate());
                                     }
                                     deletedStatementsLog.put(triple.getId());
+                                } else {
+                                    updateTripleCount(triple.getContext(), -1);
+                                    removedFromBatch.add(triple.getId());
                                 }
                             } finally {
                                 commitLock.unlock();
@@ -1173,7 +1523,7 @@ public class KiWiConnection implements AutoCloseable {
                             PreparedStatement deleteTriple = getPreparedStatement("delete.triple");
                             synchronized (deleteTriple) {
                                 deleteTriple.setLong(1, triple.getId());
-                                deleteTriple.executeUpdate();
+                                updateTripleCount(triple.getContext(), -deleteTriple.executeUpdate());
                             }
                             deletedStatementsLog.put(triple.getId());
 
@@ -1196,69 +1546,39 @@ public class KiWiConnection implements AutoCloseable {
      * The triple remains in the database, because other entities might still reference it (e.g. a version).
      * Use the method cleanupTriples() to fully remove all deleted triples without references.
      * <p/>
-     * Warning: this method skips some concurrency and transaction safeguards for performance and therefore should
-     * only be called if run in an isolated transaction!
+     * Triples are marked as deleted in chunks of at most KiWiConfiguration#getDeleteChunkSize() rows, ordered by
+     * their id. The commit lock is only held for a single chunk, so other threads may continue to use the
+     * connection while a large context is deleted; only the deleted triples are removed from the triple cache.
+     * Registered DeletionListeners are notified about the progress.
      *
      * @param ctx resource identifying the context to be deleted
      */
     public void deleteContext(final KiWiResource ctx) throws SQLException {
-        requireJDBCConnection();
-
-        RetryExecution<Void> execution = new RetryExecution<>("DELETE");
-        execution.setUseSavepoint(true);
-        execution.execute(connection, new RetryCommand<Void>() {
-            @Override
-            public Void run() throws SQLException {
-                // mutual exclusion: prevent parallel adding and removing of the same triple
-
-                if (ctx.getId() < 0) {
-                    log.warn("attempting to remove non-persistent context: {}", ctx);
-                } else {
-                    if (batchCommit) {
-                        // need to remove from triple batch and from database
-                        commitLock.lock();
-                        try {
-                            if (tripleBatch == null || tripleBatch.size() == 0) {
-
-                                PreparedStatement deleteTriple = getPreparedStatement("delete.context");
-                                synchronized (deleteTriple) {
-                                    deleteTriple.setLong(1, ctx.getId());
-                                    deleteTriple.executeUpdate();
-                                }
-                                // deletedStatementsLog.put(triple.getId());
-                            } else {
-                                // delete all triples from triple batch with a matching context
-                                for (Iterator<KiWiTriple> it = tripleBatch.iterator(); it.hasNext(); ) {
-                                    if (it.next().getContext().equals(ctx)) {
-                                        it.remove();
-                                    }
-                                }
-                            }
-                        } finally {
-                            commitLock.unlock();
-                        }
-                    } else {
-                        requireJDBCConnection();
-
-                        PreparedStatement deleteTriple = getPreparedStatement("delete.context");
-                        synchronized (deleteTriple) {
-                            deleteTriple.setLong(1, ctx.getId());
-                            deleteTriple.executeUpdate();
-                        }
-                        //deletedStatementsLog.put(triple.getId());
+        requireWritable();
+        if (ctx.getId() < 0) {
+            log.warn("attempting to remove non-persistent context: {}", ctx);
+            return;
+        }
 
+        requireJDBCConnection();
 
+        if (batchCommit) {
+            // delete all triples from triple batch with a matching context
+            commitLock.lock();
+            try {
+                for (KiWiTriple triple : new ArrayList<>(tripleBatch.listTriples(null, null, null, ctx, false))) {
+                    if (tripleBatch.remove(triple)) {
+                        updateTripleCount(ctx, -1);
+                        removedFromBatch.add(triple.getId());
+                        removeCachedTriple(triple);
                     }
                 }
-                //removeCachedTriple(triple);
-
-                // that's radical but safe, and the improved delete performance might be worth it
-                tripleCache.clear();
-
-                return null;
+            } finally {
+                commitLock.unlock();
             }
-        });
+        }
 
+        deleteChunked(ctx);
     }
 
     /**
@@ -1268,58 +1588,171 @@ public class KiWiConnection implements AutoCloseable {
      * The triple remains in the database, because other entities might still reference it (e.g. a version).
      * Use the method cleanupTriples() to fully remove all deleted triples without references.
      * <p/>
-     * Warning: this method skips some concurrency and transaction safeguards for performance and therefore should
-     * only be called if run in an isolated transaction!
+     * Triples are marked as deleted in chunks like in deleteContext().
      *
      */
     public void deleteAll() throws SQLException {
+        requireWritable();
         requireJDBCConnection();
 
-        RetryExecution<Void> execution = new RetryExecution<>("DELETE");
-        execution.setUseSavepoint(true);
-        execution.execute(connection, new RetryCommand<Void>() {
-            @Override
-            public Void run() throws SQLException {
-                // mutual exclusion: prevent parallel adding and removing of the same triple
+        if (batchCommit) {
+            commitLock.lock();
+            try {
+                for(KiWiTriple triple : tripleBatch) {
+                    updateTripleCount(triple.getContext(), -1);
+                    removedFromBatch.add(triple.getId());
+                }
+                tripleBatch.clear();
+            } finally {
+                commitLock.unlock();
+            }
+        }
 
-                if (batchCommit) {
-                    // need to remove from triple batch and from database
-                    commitLock.lock();
-                    try {
-                        if (tripleBatch == null || tripleBatch.size() == 0) {
+        deleteChunked(null);
 
-                            PreparedStatement deleteTriple = getPreparedStatement("delete.repository");
-                            synchronized (deleteTriple) {
-                                deleteTriple.executeUpdate();
+        tripleCache.clear();
+    }
+
+    /**
+     * Mark the triples of the given context (or of the whole repository in case the context is null) as deleted
+     * in chunks of at most KiWiConfiguration#getDeleteChunkSize() rows. Each chunk is selected by id starting after
+     * the last id of the previous chunk and then marked deleted with a single range update. The commit lock is
+     * only held while processing a single chunk.
+     * <p/>
+     * When deleting the whole repository, each chunk is marked deleted context by context, so the triple counters
+     * can be decreased by exactly the number of triples deleted in each context; concurrent transactions keep their
+     * own changes of the counters.
+     *
+     * @return the number of triples marked as deleted
+     */
+    private long deleteChunked(final KiWiResource ctx) throws SQLException {
+        final int chunkSize = Math.max(1, persistence.getConfiguration().getDeleteChunkSize());
+        final List<DeletionListener> listeners = persistence.getDeletionListeners();
+
+        if(!listeners.isEmpty()) {
+            long total = ctx != null ? getSize(ctx) : getSize();
+            for(DeletionListener listener : listeners) {
+                listener.deletionStarted(ctx, total);
+            }
+        }
+
+        long deleted = 0;
+        try {
+            final long[] lastId = { Long.MIN_VALUE };
+            final Map<Long,Long> contextCounts = new HashMap<>();
+            while (true) {
+                RetryExecution<Integer> execution = new RetryExecution<>("DELETE");
+                execution.setUseSavepoint(true);
+                Integer count = execution.execute(connection, new RetryCommand<Integer>() {
+                    @Override
+                    public Integer run() throws SQLException {
+                        commitLock.lock();
+                        try {
+                            contextCounts.clear();
+
+                            PreparedStatement queryChunk;
+                            if(ctx != null) {
+                                queryChunk = getPreparedStatement("query.context_chunk");
+                                queryChunk.setLong(1, ctx.getId());
+                                queryChunk.setLong(2, lastId[0]);
+                                queryChunk.setInt(3, chunkSize);
+                            } else {
+                                queryChunk = getPreparedStatement("query.repository_chunk");
+                                queryChunk.setLong(1, lastId[0]);
+                                queryChunk.setInt(2, chunkSize);
                             }
-                            // deletedStatementsLog.put(triple.getId());
-                        } else {
-                            // delete all triples from triple batch with a matching context
-                            tripleBatch.clear();
+
+                            List<Long> ids = new ArrayList<>(chunkSize);
+                            Set<Long> contexts = new TreeSet<>();
+                            ResultSet result = queryChunk.executeQuery();
+                            try {
+                                while (result.next()) {
+                                    ids.add(result.getLong(1));
+                                    if(ctx == null) {
+                                        long context = result.getLong(2);
+                                        if(!result.wasNull()) {
+                                            contexts.add(context);
+                                        }
+                                    }
+                                }
+                            } finally {
+                                result.close();
+                            }
+
+                            if(ids.isEmpty()) {
+                                return null;
+                            }
+
+                            long maxId = ids.get(ids.size() - 1);
+
+                            int updated = 0;
+                            if(ctx != null) {
+                                updated = deleteContextChunk(ctx.getId(), lastId[0], maxId);
+                            } else {
+                                for(long context : contexts) {
+                                    int count = deleteContextChunk(context, lastId[0], maxId);
+                                    contextCounts.put(context, (long) count);
+                                    updated += count;
+                                }
+
+                                // remaining triples without context
+                                PreparedStatement deleteChunk = getPreparedStatement("delete.repository");
+                                deleteChunk.setLong(1, lastId[0]);
+                                deleteChunk.setLong(2, maxId);
+                                updated += deleteChunk.executeUpdate();
+                            }
+
+                            if(ctx != null) {
+                                for(Long id : ids) {
+                                    tripleCache.remove(id);
+                                }
+                            }
+
+                            lastId[0] = maxId;
+                            return updated;
+                        } finally {
+                            commitLock.unlock();
                         }
-                    } finally {
-                        commitLock.unlock();
                     }
-                } else {
-                    requireJDBCConnection();
+                });
 
-                    PreparedStatement deleteTriple = getPreparedStatement("delete.repository");
-                    synchronized (deleteTriple) {
-                        deleteTriple.executeUpdate();
-                    }
-                    //deletedStatementsLog.put(triple.getId());
+                if(count == null) {
+                    break;
+                }
 
+                if(ctx != null) {
+                    updateTripleCount(ctx, -count);
+                } else {
+                    synchronized (tripleCounts) {
+                        addTripleCount(GLOBAL_COUNT, -count);
+                        for(Map.Entry<Long,Long> entry : contextCounts.entrySet()) {
+                            addTripleCount(entry.getKey(), -entry.getValue());
+                        }
+                    }
+                }
+                deleted += count;
 
+                for(DeletionListener listener : listeners) {
+                    listener.deletionProgress(ctx, deleted);
                 }
-                //removeCachedTriple(triple);
+            }
+        } finally {
+            for(DeletionListener listener : listeners) {
+                listener.deletionFinished(ctx, deleted);
+            }
+        }
 
-                // that's radical but safe, and the improved delete performance might be worth it
-                tripleCache.clear();
+        log.debug("marked {} triples of context {} as deleted", deleted, ctx != null ? ctx : "(all)");
 
-                return null;
-            }
-        });
+        return deleted;
+    }
 
+    private int deleteContextChunk(long context, long fromId, long toId) throws SQLException {
+        PreparedStatement deleteChunk = getPreparedStatement("delete.context");
+        deleteChunk.setLong(1, context);
+        deleteChunk.setLong(2, fromId);
+        deleteChunk.setLong(3, toId);
+        return deleteChunk.executeUpdate();
     }
 
 
@@ -1333,6 +1766,7 @@ public class KiWiConnection implements AutoCloseable {
      * @param triple the KiWiTriple to restore
      */
     public void undeleteTriple(KiWiTriple triple) throws SQLException {
+        requireWritable();
         if(triple.getId() < 0) {
             log.warn("attempting to undelete non-persistent triple: {}",triple);
             return;
@@ -1351,7 +1785,7 @@ public class KiWiConnection implements AutoCloseable {
 
             PreparedStatement undeleteTriple = getPreparedStatement("undelete.triple");
             undeleteTriple.setLong(1, triple.getId());
-            undeleteTriple.executeUpdate();
+            updateTripleCount(triple.getContext(), undeleteTriple.executeUpdate());
 
             if(!persistence.getConfiguration().isClustered()) {
                 cacheTriple(triple);
@@ -1375,12 +1809,7 @@ public class KiWiConnection implements AutoCloseable {
         if (tripleBatch != null && tripleBatch.size() > 0) {
             return new DistinctIteration<>(
                     new UnionIteration<>(
-                            new ConvertingIteration<Resource,KiWiResource,SQLException>(new IteratorIteration<Resource, SQLException>(tripleBatch.listContextIDs().iterator())) {
-                                @Override
-                                protected KiWiResource convert(Resource sourceObject) throws SQLException {
-                                    return (KiWiResource)sourceObject;
-                                }
-                            },
+                            new IteratorIteration<KiWiResource, SQLException>(tripleBatch.listContextIDs().iterator()),
                             new ResultSetIteration<>(result, new ResultTransformerFunction<KiWiResource>() {
                                 @Override
                                 public KiWiResource apply(ResultSet row) throws SQLException {
@@ -1487,28 +1916,26 @@ public class KiWiConnection implements AutoCloseable {
 
 
         if(tripleBatch != null && tripleBatch.size() > 0) {
-            synchronized (tripleBatch) {
-                return new RepositoryResult<>(
-                        new ExceptionConvertingIteration<Statement, RepositoryException>(
-                                new UnionIteration<>(
-                                        new IteratorIteration<Statement, SQLException>(tripleBatch.listTriples(subject,predicate,object,context, wildcardContext).iterator()),
-                                        new DelayedIteration<Statement, SQLException>() {
-                                            @Override
-                                            protected Iteration<? extends Statement, ? extends SQLException> createIteration() throws SQLException {
-                                                return listTriplesInternal(subject,predicate,object,context,inferred, wildcardContext);
-                                            }
+            return new RepositoryResult<>(
+                    new ExceptionConvertingIteration<Statement, RepositoryException>(
+                            new UnionIteration<>(
+                                    new IteratorIteration<Statement, SQLException>(tripleBatch.listTriples(subject,predicate,object,context, wildcardContext).iterator()),
+                                    new DelayedIteration<Statement, SQLException>() {
+                                        @Override
+                                        protected Iteration<? extends Statement, ? extends SQLException> createIteration() throws SQLException {
+                                            return listTriplesInternal(subject,predicate,object,context,inferred, wildcardContext);
                                         }
+                                    }
 
-                                )
-                        ) {
-                            @Override
-                            protected RepositoryException convert(Exception e) {
-                                return new RepositoryException("database error while iterating over result set",e);
-                            }
+                            )
+                    ) {
+                        @Override
+                        protected RepositoryException convert(Exception e) {
+                            return new RepositoryException("database error while iterating over result set",e);
                         }
+                    }
 
-                );
-            }
+            );
         }
         return new RepositoryResult<>(
                 new ExceptionConvertingIteration<Statement, RepositoryException>(listTriplesInternal(subject,predicate,object,context,inferred, wildcardContext)) {
@@ -1560,7 +1987,7 @@ public class KiWiConnection implements AutoCloseable {
         );
         query.clearParameters();
 
-        if(persistence.getDialect().isCursorSupported()) {
+        if(persistence.getDialect().isStreamingSupported()) {
             query.setFetchSize(persistence.getConfiguration().getCursorSize());
         }
 
@@ -1624,7 +2051,11 @@ public class KiWiConnection implements AutoCloseable {
     }
 
     /**
-     * Construct the SQL query string from the query pattern passed as arguments
+     * Construct the SQL query string from the query pattern passed as arguments. All bound positions are translated
+     * into plain equality conditions on the triple columns, so the database can choose the matching subject- or
+     * context-leading index, or the object-leading index in case it has been enabled (see
+     * {@link KiWiPersistence#hasObjectIndexes()}); the condition "deleted = false" is required by the partial indexes
+     * used on PostgreSQL.
      *
      * @param subject    the subject to query for, or null for a wildcard query
      * @param predicate  the predicate to query for, or null for a wildcard query
@@ -1845,13 +2276,9 @@ public class KiWiConnection implements AutoCloseable {
     protected List<KiWiTriple> constructTriplesFromDatabase(ResultSet row, int maxPrefetch) throws SQLException {
         int count = 0;
 
-        // declare variables to optimize stack allocation
-        KiWiTriple triple;
-        long id;
-
-        List<KiWiTriple> result = new ArrayList<>();
-        Map<Long,Long[]> tripleIds  = new HashMap<>();
-        Set<Long> nodeIds   = new HashSet<>();
+        // collect the rows in compact form first, nodes are then resolved for the whole batch at once
+        CompactTripleList batch = new CompactTripleList(maxPrefetch);
+        long deletedAt;
         while(count < maxPrefetch && row.next()) {
             count++;
 
@@ -1862,75 +2289,100 @@ public class KiWiConnection implements AutoCloseable {
             // columns: id,subject,predicate,object,context,deleted,inferred,creator,createdAt,deletedAt
             //          1 ,2      ,3        ,4     ,5      ,6      ,7       ,8      ,9        ,10
 
-            id = row.getLong(1);
+            deletedAt = Long.MIN_VALUE;
+            try {
+                if (row.getDate(10) != null) {
+                    deletedAt = row.getTimestamp(10).getTime();
+                }
+            } catch (SQLException ex) {
+                // work around a MySQL problem with null dates
+                // (see http://stackoverflow.com/questions/782823/handling-datetime-values-0000-00-00-000000-in-jdbc)
+            }
 
-            // lookup element in cache first, so we can avoid reconstructing it if it is already there
-            triple = tripleCache.get(id);
+            batch.add(row.getLong(1), row.getLong(2), row.getLong(3), row.getLong(4), row.getLong(5), row.getLong(8),
+                    row.getTimestamp(9).getTime(), deletedAt, row.getBoolean(6), row.getBoolean(7), false);
+        }
 
-            if(triple == null) {
-                triple = new KiWiTriple();
-                triple.setId(id);
+        return resolveTriples(batch, 0, batch.size());
+    }
 
-                // collect node ids for batch retrieval
-                nodeIds.add(row.getLong(2));
-                nodeIds.add(row.getLong(3));
-                nodeIds.add(row.getLong(4));
 
-                if (row.getLong(5) != 0) {
-                    nodeIds.add(row.getLong(5));
-                }
+    /**
+     * Resolve the triples in the given range of a compact triple list into KiWiTriple objects. Triples already in the
+     * triple cache are taken from there; the nodes of all other triples are loaded with a single batch lookup through
+     * the node cache, and the constructed triples are added to the triple cache.
+     *
+     * @param triples the compact triple list
+     * @param from    index of the first triple to resolve (inclusive)
+     * @param to      index of the last triple to resolve (exclusive)
+     * @return the resolved triples, in the order of the list
+     */
+    public List<KiWiTriple> resolveTriples(CompactTripleList triples, int from, int to) throws SQLException {
+        KiWiTriple[] result = new KiWiTriple[to - from];
+
+        // lookup triples in cache first, so we can avoid reconstructing them if they are already there, and
+        // collect the node ids of the remaining triples for batch retrieval
+        long[] nodeIds = new long[5 * result.length];
+        int nodeCount = 0;
+        for(int i = from; i < to; i++) {
+            result[i - from] = tripleCache.get(triples.getId(i));
+            if(result[i - from] == null) {
+                nodeIds[nodeCount++] = triples.getSubjectId(i);
+                nodeIds[nodeCount++] = triples.getPredicateId(i);
+                nodeIds[nodeCount++] = triples.getObjectId(i);
+                nodeIds[nodeCount++] = triples.getContextId(i);
+                nodeIds[nodeCount++] = triples.getCreatorId(i);
+            }
+        }
 
-                if (row.getLong(8) != 0) {
-                    nodeIds.add(row.getLong(8));
+        if(nodeCount > 0) {
+            // remove duplicates and missing context/creator ids (0)
+            Arrays.sort(nodeIds, 0, nodeCount);
+            int unique = 0;
+            for(int i = 0; i < nodeCount; i++) {
+                if(nodeIds[i] != 0 && (unique == 0 || nodeIds[unique - 1] != nodeIds[i])) {
+                    nodeIds[unique++] = nodeIds[i];
                 }
+            }
 
-                // remember which node ids where relevant for the triple
-                tripleIds.put(id, new Long[]{row.getLong(2), row.getLong(3), row.getLong(4), row.getLong(5), row.getLong(8)});
-
-                triple.setDeleted(row.getBoolean(6));
-                triple.setInferred(row.getBoolean(7));
-                triple.setCreated(new Date(row.getTimestamp(9).getTime()));
-                try {
-                    if (row.getDate(10) != null) {
-                        triple.setDeletedAt(new Date(row.getTimestamp(10).getTime()));
-                    }
-                } catch (SQLException ex) {
-                    // work around a MySQL problem with null dates
-                    // (see http://stackoverflow.com/questions/782823/handling-datetime-values-0000-00-00-000000-in-jdbc)
+            KiWiNode[] nodes = loadNodesByIds(Arrays.copyOf(nodeIds, unique));
+            Map<Long,KiWiNode> nodeMap = new HashMap<>(nodes.length << 1);
+            for (KiWiNode node : nodes) {
+                if(node != null) {
+                    nodeMap.put(node.getId(), node);
                 }
             }
-            result.add(triple);
-        }
 
-        KiWiNode[] nodes = loadNodesByIds(Longs.toArray(nodeIds));
-        Map<Long,KiWiNode> nodeMap = new HashMap<>(nodes.length << 1);
-        for (KiWiNode node : nodes) {
-            nodeMap.put(node.getId(), node);
-        }
-
-        for (KiWiTriple t : result) {
-            if (tripleIds.containsKey(t.getId())) {
-                // need to set subject, predicate, object, context and creator
-                Long[] ids = tripleIds.get(t.getId());
-                t.setSubject((KiWiResource) nodeMap.get(ids[0]));
-                t.setPredicate((KiWiUriResource) nodeMap.get(ids[1]));
-                t.setObject(nodeMap.get(ids[2]));
+            KiWiTriple triple;
+            for(int i = from; i < to; i++) {
+                if(result[i - from] == null) {
+                    triple = new KiWiTriple(new Date(triples.getCreated(i)));
+                    triple.setId(triples.getId(i));
+                    triple.setSubject((KiWiResource) nodeMap.get(triples.getSubjectId(i)));
+                    triple.setPredicate((KiWiUriResource) nodeMap.get(triples.getPredicateId(i)));
+                    triple.setObject(nodeMap.get(triples.getObjectId(i)));
+
+                    if(triples.getContextId(i) != 0) {
+                        triple.setContext((KiWiResource) nodeMap.get(triples.getContextId(i)));
+                    }
+                    if(triples.getCreatorId(i) != 0) {
+                        triple.setCreator((KiWiResource) nodeMap.get(triples.getCreatorId(i)));
+                    }
 
-                if(ids[3] != 0) {
-                    t.setContext((KiWiResource) nodeMap.get(ids[3]));
-                }
+                    triple.setDeleted(triples.isDeleted(i));
+                    triple.setInferred(triples.isInferred(i));
+                    triple.setNewTriple(triples.isNewTriple(i));
+                    if(triples.getDeletedAt(i) != Long.MIN_VALUE) {
+                        triple.setDeletedAt(new Date(triples.getDeletedAt(i)));
+                    }
 
-                if(ids[4] != 0) {
-                    t.setCreator((KiWiResource) nodeMap.get(ids[4]));
+                    cacheTriple(triple);
+                    result[i - from] = triple;
                 }
             }
-
-            cacheTriple(t);
         }
 
-
-
-        return result;
+        return Arrays.asList(result);
     }
 
 
@@ -2005,6 +2457,73 @@ public class KiWiConnection implements AutoCloseable {
         return statement;
     }
 
+    /**
+     * Return a prepared statement for the given SQL query string; first looks in the statement cache and if it does
+     * not exist there create a new statement. This method is used for queries that are constructed at runtime (e.g.
+     * translated SPARQL queries) and executed repeatedly with different parameters. The statement is closed together
+     * with the connection and must not be closed by the caller.
+     *
+     * @param sql the SQL query string, using "?" for parameters
+     * @return the PreparedStatement
+     * @throws SQLException
+     */
+    public PreparedStatement getPreparedQuery(String sql) throws SQLException {
+        requireJDBCConnection();
+
+        PreparedStatement statement = statementCache.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statementCache.put(sql,statement);
+        }
+        statement.clearParameters();
+        if(persistence.getDialect().isStreamingSupported()) {
+            statement.setFetchSize(persistence.getConfiguration().getCursorSize());
+        }
+        return statement;
+    }
+
+    /**
+     * Return a prepared statement for the given SQL query string whose result may be read lazily while other
+     * queries are executed on this connection. Like {@link #getPreparedQuery(String)}, the cached statement is used,
+     * unless it has been acquired before and not yet been released; in this case, a new statement is created. The
+     * statement must be handed back with {@link #releasePreparedQuery(java.sql.PreparedStatement)} once its result has
+     * been closed.
+     *
+     * @param sql the SQL query string, using "?" for parameters
+     * @return the PreparedStatement
+     * @throws SQLException
+     */
+    public synchronized PreparedStatement acquirePreparedQuery(String sql) throws SQLException {
+        PreparedStatement statement = statementCache.get(sql);
+        if(statement != null && acquiredQueries.contains(statement)) {
+            requireJDBCConnection();
+
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if(persistence.getDialect().isStreamingSupported()) {
+                statement.setFetchSize(persistence.getConfiguration().getCursorSize());
+            }
+            uncachedQueries.add(statement);
+        } else {
+            statement = getPreparedQuery(sql);
+        }
+        acquiredQueries.add(statement);
+        return statement;
+    }
+
+    /**
+     * Hand back a prepared statement returned by {@link #acquirePreparedQuery(String)}, so it can be used for the
+     * next query. Statements created in addition to the cached statement are closed.
+     *
+     * @param statement the statement to release
+     * @throws SQLException
+     */
+    public synchronized void releasePreparedQuery(PreparedStatement statement) throws SQLException {
+        acquiredQueries.remove(statement);
+        if(uncachedQueries.remove(statement)) {
+            statement.close();
+        }
+    }
+
 
     /**
      * Get next number in a sequence; for databases without sequence support (e.g. MySQL), this method will first update a
@@ -2031,6 +2550,19 @@ public class KiWiConnection implements AutoCloseable {
         }
     }
 
+    private void removeCachedNode(KiWiNode node) {
+        if (node.getId() >= 0) {
+            nodeCache.remove(node.getId());
+        }
+        if (node instanceof KiWiUriResource) {
+            uriCache.remove(node.stringValue());
+        } else if (node instanceof KiWiAnonResource) {
+            bnodeCache.remove(node.stringValue());
+        } else if (node instanceof KiWiLiteral) {
+            literalCache.remove(LiteralCommons.createCacheKey((Literal) node));
+        }
+    }
+
     private void cacheTriple(KiWiTriple triple) {
         if (triple.getId() >= 0) {
             tripleCache.put(triple.getId(), triple);
@@ -2092,6 +2624,7 @@ public class KiWiConnection implements AutoCloseable {
      * @throws SQLException
      */
     public void setMetadata(String key, String value) throws SQLException {
+        requireWritable();
         requireJDBCConnection();
 
         PreparedStatement statement = getPreparedStatement("meta.get");
@@ -2113,6 +2646,94 @@ public class KiWiConnection implements AutoCloseable {
     }
 
 
+    /**
+     * Return the id of the KiWiIO prefix dictionary of this database. The id is generated randomly when the database
+     * is created and allows to distinguish the dictionaries of different databases used in the same JVM.
+     *
+     * @return the dictionary id
+     * @throws SQLException in case the database does not contain a dictionary id
+     */
+    public int getDictionaryId() throws SQLException {
+        String id = getMetadata("dictionary");
+        if(id == null) {
+            throw new SQLException("no prefix dictionary id available");
+        }
+        return Integer.parseInt(id);
+    }
+
+    /**
+     * Return the URI prefixes of the KiWiIO prefix dictionary ordered by their index. Indexes are dense and start
+     * at 0; in case the stored indexes contain a gap, only the prefixes before the gap are returned, since the
+     * position of a prefix in the list must be its index.
+     *
+     * @return the list of dictionary prefixes, ordered by index
+     * @throws SQLException
+     */
+    public List<String> listDictionaryPrefixes() throws SQLException {
+        requireJDBCConnection();
+
+        List<String> prefixes = new ArrayList<>();
+        PreparedStatement statement = getPreparedStatement("meta.prefixes");
+        try (ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                int idx = result.getInt(1);
+                if(idx != prefixes.size()) {
+                    log.error("prefix dictionary index {} found where {} was expected; ignoring the remaining prefixes", idx, prefixes.size());
+                    break;
+                }
+                prefixes.add(result.getString(2));
+            }
+        }
+        return prefixes;
+    }
+
+    /**
+     * Append the given URI prefixes to the KiWiIO prefix dictionary stored in the database, starting at the given
+     * index. The index is the primary key of the prefixes table, so in case another cluster node has concurrently
+     * appended prefixes at the same indexes, the insert fails and the caller needs to reload the dictionary.
+     *
+     * @param start    the index of the first prefix, i.e. the size of the dictionary the prefixes are appended to
+     * @param prefixes the prefixes to append
+     * @throws SQLException
+     */
+    public void storeDictionaryPrefixes(int start, List<String> prefixes) throws SQLException {
+        requireWritable();
+        requireJDBCConnection();
+
+        PreparedStatement insert = getPreparedStatement("store.prefix");
+        for(int i = 0; i < prefixes.size(); i++) {
+            insert.clearParameters();
+            insert.setInt(1, start + i);
+            insert.setString(2, prefixes.get(i));
+            insert.addBatch();
+        }
+        insert.executeBatch();
+    }
+
+    /**
+     * Return the string values of (at most) the given number of URI resources stored in the database. Used for
+     * determining frequently used URI prefixes.
+     *
+     * @param limit the maximum number of URIs to return
+     * @return a list of URI strings
+     * @throws SQLException
+     */
+    public List<String> listUriSample(int limit) throws SQLException {
+        requireJDBCConnection();
+
+        List<String> uris = new ArrayList<>();
+        PreparedStatement statement = getPreparedStatement("query.uri_sample");
+        statement.clearParameters();
+        statement.setInt(1, limit);
+        try (ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                uris.add(result.getString(1));
+            }
+        }
+        return uris;
+    }
+
+
     /**
      * Return the KiWi version of the database this connection is operating on. This query is necessary for
      * checking proper state of a database when initialising the system.
@@ -2168,6 +2789,13 @@ public class KiWiConnection implements AutoCloseable {
      * @see #getAutoCommit
      */
     public void setAutoCommit(boolean autoCommit) throws SQLException {
+        if(autoCommit && nodeBatch != null && nodeBatch.size() > 0) {
+            // nodes stored before switching to auto-commit mode must not be lost
+            flushBatch();
+        }
+        if(autoCommit) {
+            uncommittedNodes.clear();
+        }
         this.autoCommit = autoCommit;
         if(connection != null) {
             connection.setAutoCommit(autoCommit);
@@ -2187,6 +2815,47 @@ public class KiWiConnection implements AutoCloseable {
         return autoCommit;
     }
 
+    /**
+     * Return true if the connection is read-only. Read-only connections reject all modifications and are served
+     * from the read replica of the database if one is configured.
+     * @return {@code true} if the connection is read-only
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Make the connection read-only or writable. Read-only connections reject all modifications and are served
+     * from the read replica of the database if one is configured. The mode can only be changed before the
+     * connection accesses the database.
+     * @param readOnly true if the connection should be read-only
+     */
+    public void setReadOnly(boolean readOnly) {
+        if (this.readOnly != readOnly) {
+            Preconditions.checkState(connection == null, "the read-only mode cannot be changed after the connection accessed the database");
+            this.readOnly = readOnly;
+        }
+    }
+
+    /**
+     * Return the maximum time in seconds native queries of this connection may run in the database before they are
+     * cancelled by the database, 0 if there is no limit. Defaults to the query timeout of the configuration.
+     * @return the query timeout in seconds
+     */
+    public int getQueryTimeout() {
+        return queryTimeout != null ? queryTimeout : getConfiguration().getQueryTimeout();
+    }
+
+    /**
+     * Set the maximum time in seconds native queries of this connection may run in the database before they are
+     * cancelled by the database, e.g. for queries sent by clients to a SPARQL endpoint. 0 means no limit.
+     * @param queryTimeout the query timeout in seconds
+     * @see java.sql.Statement#setQueryTimeout(int)
+     */
+    public void setQueryTimeout(int queryTimeout) {
+        this.queryTimeout = queryTimeout;
+    }
+
     /**
      * Return true if batched commits are enabled. Batched commits will try to group database operations and
      * keep a memory log while storing triples. This can considerably improve the database performance.
@@ -2228,6 +2897,30 @@ public class KiWiConnection implements AutoCloseable {
         this.batchSize = batchSize;
     }
 
+    /**
+     * Return the minimum size of a batch (nodes and triples) for writing it with the bulk load command of the
+     * database (e.g. COPY in PostgreSQL) instead of JDBC batch updates. 0 means bulk loading is disabled.
+     * @return the minimum batch size for bulk loading
+     * @see KiWiDialect#isCopySupported()
+     */
+    public int getCopyThreshold() {
+        return copyThreshold;
+    }
+
+    /**
+     * Set the minimum size of a batch (nodes and triples) for writing it with the bulk load command of the
+     * database (e.g. COPY in PostgreSQL) instead of JDBC batch updates. 0 disables bulk loading. Only applicable
+     * if batched commits are enabled and the dialect supports bulk loading.
+     * @param copyThreshold the minimum batch size for bulk loading
+     */
+    public void setCopyThreshold(int copyThreshold) {
+        if(copyThreshold <= 0 || dialect.isCopySupported()) {
+            this.copyThreshold = copyThreshold;
+        } else {
+            log.warn("bulk copying is not supported by this database dialect");
+        }
+    }
+
     /**
      * Makes all changes made since the previous
      * commit/rollback permanent and releases any database locks
@@ -2246,7 +2939,7 @@ public class KiWiConnection implements AutoCloseable {
         execution.execute(connection, new RetryCommand<Void>() {
             @Override
             public Void run() throws SQLException {
-                if(tripleBatch != null && tripleBatch.size() > 0) {
+                if((tripleBatch != null && tripleBatch.size() > 0) || (nodeBatch != null && nodeBatch.size() > 0)) {
                     flushBatch();
                 }
 
@@ -2254,8 +2947,11 @@ public class KiWiConnection implements AutoCloseable {
                 deletedStatementsLog = BloomFilter.create(Funnels.longFunnel(), 100000);
 
                 if(connection != null) {
+                    flushTripleCounts();
                     connection.commit();
                 }
+                clearTripleCounts();
+                uncommittedNodes.clear();
 
                 return null;
             }
@@ -2278,14 +2974,34 @@ public class KiWiConnection implements AutoCloseable {
      */
     public void rollback() throws SQLException {
         if (tripleBatch != null && tripleBatch.size() > 0) {
-            synchronized (tripleBatch) {
-                for(KiWiTriple triple : tripleBatch) {
-                    triple.setId(-1L);
+            for(KiWiTriple triple : tripleBatch) {
+                triple.setId(-1L);
+            }
+            tripleBatch.clear();
+        }
+        if (nodeBatch != null && nodeBatch.size() > 0) {
+            commitLock.lock();
+            try {
+                // nodes in the batch have never been written, so they must not remain visible in the caches
+                for(KiWiNode node : nodeBatch) {
+                    removeCachedNode(node);
+                    node.setId(-1L);
                 }
-                tripleBatch.clear();
+                nodeBatch.clear();
+            } finally {
+                commitLock.unlock();
             }
         }
+        if (uncommittedNodes.size() > 0) {
+            // nodes written in this transaction are removed from the database by the rollback
+            for(KiWiNode node : uncommittedNodes) {
+                removeCachedNode(node);
+                node.setId(-1L);
+            }
+            uncommittedNodes.clear();
+        }
         deletedStatementsLog = BloomFilter.create(Funnels.longFunnel(), 100000);
+        clearTripleCounts();
         if(connection != null && !connection.isClosed()) {
             connection.rollback();
         }
@@ -2345,6 +3061,11 @@ public class KiWiConnection implements AutoCloseable {
                         entry.getValue().close();
                     } catch (SQLException ignore) {}
                 }
+                for (PreparedStatement statement : uncachedQueries) {
+                    try {
+                        statement.close();
+                    } catch (SQLException ignore) {}
+                }
             } catch(AbstractMethodError ex) {
                 log.debug("database system does not allow closing statements");
             }
@@ -2354,11 +3075,22 @@ public class KiWiConnection implements AutoCloseable {
     }
 
     public void maybeFlushBatch() throws SQLException {
-        if (tripleBatch.size() >= batchSize) {
+        if (tripleBatch.size() + nodeBatch.size() >= batchSize) {
             flushBatch();
         }
     }
 
+    /**
+     * Write all nodes and triples that have been collected in the node and triple batches to the database using
+     * JDBC batch updates. Nodes are always written before triples, so the foreign key constraints of the triples
+     * table are satisfied.
+     * <p/>
+     * If the batch contains at least {@link #getCopyThreshold()} nodes and triples, it is written with the bulk
+     * load command of the dialect instead (see {@link KiWiDialect#copyNodes(Connection, Iterable)}). The bulk load
+     * runs in the same transaction and is covered by the same savepoint as the batch updates.
+     *
+     * @throws SQLException
+     */
     public synchronized void flushBatch() throws SQLException {
         if (batchCommit && tripleBatch != null) {
             requireJDBCConnection();
@@ -2370,34 +3102,77 @@ public class KiWiConnection implements AutoCloseable {
                 execution.execute(connection, new RetryCommand<Void>() {
                     @Override
                     public Void run() throws SQLException {
-                        PreparedStatement insertTriple = getPreparedStatement("store.triple");
-                        insertTriple.clearParameters();
-                        insertTriple.clearBatch();
+                        // assign triple IDs before writing, so both write paths store the same rows
+                        for(KiWiTriple triple : tripleBatch) {
+                            if(triple.getId() < 0) {
+                                triple.setId(getNextSequence());
+                            }
+                        }
 
-                        synchronized (tripleBatch) {
-                            for(KiWiTriple triple : tripleBatch) {
-                                // retrieve a new triple ID and set it in the object
-                                if(triple.getId() < 0) {
-                                    triple.setId(getNextSequence());
+                        if(copyThreshold > 0 && dialect.isCopySupported() && nodeBatch.size() + tripleBatch.size() >= copyThreshold) {
+                            if(nodeBatch.size() > 0) {
+                                dialect.copyNodes(connection, nodeBatch);
+                            }
+                            if(tripleBatch.size() > 0) {
+                                dialect.copyTriples(connection, tripleBatch);
+                            }
+
+                            if(!autoCommit) {
+                                uncommittedNodes.addAll(nodeBatch);
+                            }
+                            nodeBatch.clear();
+                            tripleBatch.clear();
+
+                            return null;
+                        }
+
+                        if(nodeBatch.size() > 0) {
+                            for(String key : NODE_STATEMENTS) {
+                                getPreparedStatement(key).clearBatch();
+                            }
+
+                            Set<PreparedStatement> batched = new HashSet<>();
+                            for(KiWiNode node : nodeBatch) {
+                                PreparedStatement insertNode = prepareNodeInsert(node);
+                                if(insertNode != null) {
+                                    insertNode.addBatch();
+                                    batched.add(insertNode);
                                 }
+                            }
 
-                                insertTriple.setLong(1,triple.getId());
-                                insertTriple.setLong(2,triple.getSubject().getId());
-                                insertTriple.setLong(3,triple.getPredicate().getId());
-                                insertTriple.setLong(4,triple.getObject().getId());
-                                if(triple.getContext() != null) {
-                                    insertTriple.setLong(5,triple.getContext().getId());
-                                } else {
-                                    insertTriple.setNull(5, Types.BIGINT);
+                            for(String key : NODE_STATEMENTS) {
+                                PreparedStatement insertNode = getPreparedStatement(key);
+                                if(batched.contains(insertNode)) {
+                                    insertNode.executeBatch();
                                 }
-                                insertTriple.setBoolean(6,triple.isInferred());
-                                insertTriple.setTimestamp(7, new Timestamp(triple.getCreated().getTime()));
+                            }
+                        }
 
-                                insertTriple.addBatch();
+                        PreparedStatement insertTriple = getPreparedStatement("store.triple");
+                        insertTriple.clearParameters();
+                        insertTriple.clearBatch();
+
+                        for(KiWiTriple triple : tripleBatch) {
+                            insertTriple.setLong(1,triple.getId());
+                            insertTriple.setLong(2,triple.getSubject().getId());
+                            insertTriple.setLong(3,triple.getPredicate().getId());
+                            insertTriple.setLong(4,triple.getObject().getId());
+                            if(triple.getContext() != null) {
+                                insertTriple.setLong(5,triple.getContext().getId());
+                            } else {
+                                insertTriple.setNull(5, Types.BIGINT);
                             }
+                            insertTriple.setBoolean(6,triple.isInferred());
+                            insertTriple.setTimestamp(7, new Timestamp(triple.getCreated().getTime()));
+
+                            insertTriple.addBatch();
                         }
                         insertTriple.executeBatch();
 
+                        if(!autoCommit) {
+                            uncommittedNodes.addAll(nodeBatch);
+                        }
+                        nodeBatch.clear();
                         tripleBatch.clear();
 
                         return null;
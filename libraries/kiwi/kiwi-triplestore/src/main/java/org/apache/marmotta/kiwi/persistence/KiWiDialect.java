@@ -19,10 +19,16 @@ package org.apache.marmotta.kiwi.persistence;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.marmotta.kiwi.exception.DriverNotFoundException;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URL;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.util.Enumeration;
 import java.util.Properties;
 import java.util.Set;
@@ -37,10 +43,12 @@ public abstract class KiWiDialect {
 
     private static Logger log = LoggerFactory.getLogger(KiWiDialect.class);
 
-    public final static int VERSION = 4;
+    public final static int VERSION = 9;
 
     private Properties statements;
 
+    private boolean fulltextEnabled = false;
+
 
     protected KiWiDialect() throws DriverNotFoundException {
         statements = new Properties();
@@ -61,6 +69,16 @@ public abstract class KiWiDialect {
         return VERSION;
     }
 
+    /**
+     * Check the version and capabilities of the database server this dialect is used with. Called once when the
+     * persistence is initialised, before any other database access. The default implementation does nothing.
+     *
+     * @param metaData the metadata of a connection to the database server
+     * @throws SQLException in case the metadata cannot be read
+     */
+    public void initialise(DatabaseMetaData metaData) throws SQLException {
+    }
+
 
     /**
      * Return the name of the driver class (used for properly initialising JDBC connections)
@@ -102,6 +120,24 @@ public abstract class KiWiDialect {
     }
 
 
+    /**
+     * Return the contents of the SQL script used for creating the optional indexes with the given name (e.g. "object")
+     * @return SQL Command String to create the indexes and record them in the metadata table
+     */
+    public String getCreateIndexScript(String indexName) {
+        return getScript("create_"+indexName+"_indexes.sql");
+    }
+
+
+    /**
+     * Return the contents of the SQL script used for dropping the optional indexes with the given name (e.g. "object")
+     * @return SQL Command String to drop the indexes and remove them from the metadata table
+     */
+    public String getDropIndexScript(String indexName) {
+        return getScript("drop_"+indexName+"_indexes.sql");
+    }
+
+
     /**
      * Return the contents of the SQL script with the given file name (relative to the current class)
      * @return SQL Command String loaded from the script in the classpath
@@ -229,4 +265,99 @@ public abstract class KiWiDialect {
     public boolean isCursorSupported() {
         return false;
     }
+
+    /**
+     * Return true in case the database system can stream the rows of large query results (listing triples, native
+     * SPARQL queries) in chunks of the configured cursor size instead of loading the complete result into memory
+     * before the first row is returned. Other statements can still be executed on the same connection while such a
+     * result is open. Defaults to {@link #isCursorSupported()}.
+     * @return {@code true} if large results can be streamed
+     */
+    public boolean isStreamingSupported() {
+        return isCursorSupported();
+    }
+
+    /**
+     * Return additional JDBC connection properties required by this dialect (e.g. for streaming results), in the
+     * format "key1=value1;key2=value2", or null if no additional properties are needed.
+     * @return the connection properties or null
+     */
+    public String getConnectionProperties() {
+        return null;
+    }
+
+    /**
+     * Return true in case the database system supports writing large node and triple batches with a bulk load
+     * command (e.g. COPY in PostgreSQL) instead of batched INSERT statements.
+     * @return {@code true} if bulk copying is supported
+     * @see #copyNodes(java.sql.Connection, Iterable)
+     * @see #copyTriples(java.sql.Connection, Iterable)
+     */
+    public boolean isCopySupported() {
+        return false;
+    }
+
+    /**
+     * Write the given nodes into the nodes table using the bulk load command of the database. The nodes must already
+     * have a database id. The command runs in the current transaction of the connection.
+     *
+     * @param connection the JDBC connection to use
+     * @param nodes      the nodes to write
+     * @return the number of rows written
+     * @throws SQLException in case the bulk load failed or is not supported by this dialect
+     */
+    public long copyNodes(Connection connection, Iterable<? extends KiWiNode> nodes) throws SQLException {
+        throw new SQLFeatureNotSupportedException("bulk copying is not supported by this database dialect");
+    }
+
+    /**
+     * Write the given triples into the triples table using the bulk load command of the database. The triples and
+     * their nodes must already have a database id. The command runs in the current transaction of the connection.
+     *
+     * @param connection the JDBC connection to use
+     * @param triples    the triples to write
+     * @return the number of rows written
+     * @throws SQLException in case the bulk load failed or is not supported by this dialect
+     */
+    public long copyTriples(Connection connection, Iterable<? extends KiWiTriple> triples) throws SQLException {
+        throw new SQLFeatureNotSupportedException("bulk copying is not supported by this database dialect");
+    }
+
+    /**
+     * Return true in case the database system supports recursive common table expressions (WITH RECURSIVE) with
+     * UNION in the recursive part and several of them per query, which are used for evaluating SPARQL property paths
+     * natively. UNION removes pairs that have been found before, so the recursion terminates on cyclic data.
+     * @return {@code true} if recursive queries are supported
+     */
+    public boolean isRecursiveQuerySupported() {
+        return false;
+    }
+
+    /**
+     * Return true in case fulltext support is enabled in the configuration using this dialect, i.e. the SPARQL module
+     * creates the fulltext indexes that some databases need for evaluating fulltext searches.
+     * @return {@code true} if fulltext support is enabled
+     * @see org.apache.marmotta.kiwi.config.KiWiConfiguration#isFulltextEnabled()
+     */
+    public boolean isFulltextEnabled() {
+        return fulltextEnabled;
+    }
+
+    /**
+     * Set to true in case fulltext support is enabled in the configuration using this dialect. Called by the
+     * configuration.
+     * @param fulltextEnabled {@code true} if fulltext support is enabled
+     */
+    public void setFulltextEnabled(boolean fulltextEnabled) {
+        this.fulltextEnabled = fulltextEnabled;
+    }
+
+    /**
+     * Return true in case the database system supports reading a random sample of a table's pages with
+     * TABLESAMPLE SYSTEM, which is used for computing statistics without scanning complete tables.
+     * @return {@code true} if table sampling is supported
+     */
+    public boolean isTableSampleSupported() {
+        return false;
+    }
 }
@@ -29,6 +29,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class implements a garbage collector for the database that cleans up deleted triples and nodes when they
@@ -36,9 +37,15 @@ import java.util.concurrent.TimeUnit;
  * a complex SQL query, checking for all tables referencing rows in the triples and nodes tables. References need
  * to be registered by other components via the addTripleTableDependency and addNodeTableDependency methods.
  * <p/>
+ * Garbage collection is incremental: the tables are processed in chunks of ascending id ranges (see
+ * KiWiConfiguration#getGarbageCollectionChunkSize()), each chunk is committed separately, and the collector pauses
+ * between chunks so that it does not examine more than KiWiConfiguration#getGarbageCollectionRate() rows per
+ * second. The position reached in each table is stored in the metadata table, so an interrupted garbage
+ * collection resumes where it stopped, also after a restart.
+ * <p/>
  * Author: Sebastian Schaffert (sschaffert@apache.org)
  */
-public class KiWiGarbageCollector extends Thread {
+public class KiWiGarbageCollector extends Thread implements KiWiGarbageCollectorMBean {
 
     private static Logger log = LoggerFactory.getLogger(KiWiGarbageCollector.class);
 
@@ -53,6 +60,21 @@ public class KiWiGarbageCollector extends Thread {
 
     private boolean shutdown = false;
 
+    // metadata keys for storing the position reached in the triples and nodes tables
+    private static final String POSITION_TRIPLES = "gc.triples";
+    private static final String POSITION_NODES   = "gc.nodes";
+
+    // statistics
+    private final AtomicLong triplesReclaimed = new AtomicLong();
+    private final AtomicLong nodesReclaimed   = new AtomicLong();
+    private final AtomicLong chunks           = new AtomicLong();
+    private final AtomicLong chunkTime        = new AtomicLong();
+    private volatile long lastChunkLatency = 0;
+    private volatile long backlog = 0;
+
+    // highest triple id at the start of the current pass over the triples table, used for estimating the backlog
+    private long maxTripleId = Long.MIN_VALUE;
+
     public KiWiGarbageCollector(KiWiPersistence persistence) {
         super("KiWi Garbage Collector");
 
@@ -210,26 +232,29 @@ public class KiWiGarbageCollector extends Thread {
 
             // garbage collect triples
             try {
-                String gcTripleQuery = buildGCTriplesQuery();
-                PreparedStatement stmtGcTriples = con.prepareStatement(gcTripleQuery);
-                count += stmtGcTriples.executeUpdate();
-                stmtGcTriples.close();
+                PreparedStatement stmtMaxId = con.prepareStatement(persistence.getDialect().getStatement("gc.max_triple_id"));
+                try {
+                    try(ResultSet result = stmtMaxId.executeQuery()) {
+                        maxTripleId = result.next() ? result.getLong(1) : Long.MIN_VALUE;
+                    }
+                } finally {
+                    stmtMaxId.close();
+                }
                 con.commit();
+
+                count += collectChunks(con, POSITION_TRIPLES, "gc.triples_chunk", buildGCTriplesQuery(), triplesReclaimed);
             } catch (SQLException ex) {
                 con.rollback();
 
                 log.warn("SQL error while executing garbage collection on triples table: {}", ex.getMessage());
             }
 
-            // garbage collect nodes (only every 10th garbage collection, only makes sense when we previously deleted triples ...)
-            if(count > 0 && round % 10 == 1) {
+            // garbage collect nodes (only every 10th garbage collection, only makes sense when we previously deleted
+            // triples ..., or in case an earlier garbage collection of the nodes has been interrupted)
+            if(nodeTableDependencies.size() > 0 && ((count > 0 && round % 10 == 1) || loadPosition(con, POSITION_NODES) != Long.MIN_VALUE)) {
                 // then delete all unconnected nodes
                 try {
-                    String gcNodesQuery = buildGCNodesQuery();
-                    PreparedStatement stmtGcNodes = con.prepareStatement(gcNodesQuery);
-                    count += stmtGcNodes.executeUpdate();
-                    stmtGcNodes.close();
-                    con.commit();
+                    count += collectChunks(con, POSITION_NODES, "gc.nodes_chunk", buildGCNodesQuery(), nodesReclaimed);
                 } catch (SQLException ex) {
                     con.rollback();
 
@@ -244,6 +269,194 @@ public class KiWiGarbageCollector extends Thread {
         }
     }
 
+    /**
+     * Run the given delete statement over consecutive id ranges of the table, starting after the position stored
+     * under the given key. The bounds of each range are determined by the chunk query, which lists at most
+     * chunkSize candidate ids greater than a given id. Each chunk is committed together with the new position.
+     *
+     * @return the number of rows deleted
+     */
+    private int collectChunks(Connection con, String positionKey, String chunkQuery, String deleteQuery, AtomicLong reclaimed) throws SQLException {
+        final int  chunkSize = Math.max(1, persistence.getConfiguration().getGarbageCollectionChunkSize());
+        final long rate      = persistence.getConfiguration().getGarbageCollectionRate();
+
+        int count = 0;
+        long position = loadPosition(con, positionKey);
+
+        PreparedStatement stmtChunk  = con.prepareStatement(persistence.getDialect().getStatement(chunkQuery));
+        PreparedStatement stmtDelete = con.prepareStatement(deleteQuery);
+        try {
+            while (!shutdown) {
+                long chunkStart = System.currentTimeMillis();
+
+                // determine the upper bound of the next chunk
+                int rows = 0;
+                long lower = position, upper = position;
+                stmtChunk.setLong(1, position);
+                stmtChunk.setInt(2, chunkSize);
+                try(ResultSet result = stmtChunk.executeQuery()) {
+                    while (result.next()) {
+                        upper = result.getLong(1);
+                        if(rows++ == 0) {
+                            lower = upper;
+                        }
+                    }
+                }
+
+                if(rows > 0) {
+                    stmtDelete.setLong(1, position);
+                    stmtDelete.setLong(2, upper);
+                    int deleted = stmtDelete.executeUpdate();
+
+                    count += deleted;
+                    reclaimed.addAndGet(deleted);
+                }
+
+                // a chunk with less rows than requested is the last one; the next garbage collection starts again
+                // at the beginning of the table
+                position = rows < chunkSize ? Long.MIN_VALUE : upper;
+                storePosition(con, positionKey, position);
+                con.commit();
+
+                long latency = System.currentTimeMillis() - chunkStart;
+                lastChunkLatency = latency;
+                chunks.incrementAndGet();
+                chunkTime.addAndGet(latency);
+                if(POSITION_TRIPLES.equals(positionKey)) {
+                    backlog = position == Long.MIN_VALUE ? 0 : estimateBacklog(rows, lower, upper);
+                }
+
+                if(position == Long.MIN_VALUE) {
+                    break;
+                }
+
+                // stay within the budget of rows per second
+                if(rate > 0) {
+                    long pause = rows * 1000L / rate - latency;
+                    if(pause > 0) {
+                        synchronized (this) {
+                            try {
+                                this.wait(pause);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            stmtChunk.close();
+            stmtDelete.close();
+        }
+
+        return count;
+    }
+
+    /**
+     * Estimate the number of deleted triples with ids between the end of the last chunk and the highest triple id,
+     * assuming the deleted triples in the remaining id range are as dense as in the last chunk. Counting them
+     * exactly would require scanning the triples table.
+     */
+    private long estimateBacklog(int rows, long lower, long upper) {
+        if(rows == 0 || maxTripleId <= upper) {
+            return 0;
+        }
+        double density = (double) rows / ((double) upper - (double) lower + 1);
+        return (long) (density * ((double) maxTripleId - (double) upper));
+    }
+
+    /**
+     * Load the position reached by an earlier garbage collection in a table from the metadata table.
+     */
+    private long loadPosition(Connection con, String key) throws SQLException {
+        PreparedStatement stmt = con.prepareStatement(persistence.getDialect().getStatement("meta.get"));
+        try {
+            stmt.setString(1, key);
+            try(ResultSet result = stmt.executeQuery()) {
+                if(result.next()) {
+                    return Long.parseLong(result.getString(1));
+                } else {
+                    return Long.MIN_VALUE;
+                }
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private void storePosition(Connection con, String key, long position) throws SQLException {
+        PreparedStatement stmtUpdate = con.prepareStatement(persistence.getDialect().getStatement("meta.update"));
+        try {
+            stmtUpdate.setString(1, Long.toString(position));
+            stmtUpdate.setString(2, key);
+            if(stmtUpdate.executeUpdate() > 0) {
+                return;
+            }
+        } finally {
+            stmtUpdate.close();
+        }
+
+        PreparedStatement stmtInsert = con.prepareStatement(persistence.getDialect().getStatement("meta.insert"));
+        try {
+            stmtInsert.setString(1, key);
+            stmtInsert.setString(2, Long.toString(position));
+            stmtInsert.executeUpdate();
+        } finally {
+            stmtInsert.close();
+        }
+    }
+
+    /**
+     * Total number of deleted triples removed from the database since startup.
+     */
+    @Override
+    public long getTriplesReclaimed() {
+        return triplesReclaimed.get();
+    }
+
+    /**
+     * Total number of unreferenced nodes removed from the database since startup.
+     */
+    @Override
+    public long getNodesReclaimed() {
+        return nodesReclaimed.get();
+    }
+
+    /**
+     * Total number of chunks processed since startup.
+     */
+    @Override
+    public long getChunks() {
+        return chunks.get();
+    }
+
+    /**
+     * Duration of the last processed chunk in milliseconds.
+     */
+    @Override
+    public long getLastChunkLatency() {
+        return lastChunkLatency;
+    }
+
+    /**
+     * Average duration of the processed chunks in milliseconds.
+     */
+    @Override
+    public double getAverageChunkLatency() {
+        long n = chunks.get();
+        return n > 0 ? (double) chunkTime.get() / n : 0.0;
+    }
+
+    /**
+     * Estimated number of deleted triples that have not yet been examined by the current garbage collection pass,
+     * extrapolated from the density of deleted triples in the last processed chunk.
+     */
+    @Override
+    public long getBacklog() {
+        return backlog;
+    }
+
 
     /**
      * Run the garbage collector thread. The thread will run garbage collection on startup, and then in a loop wait
@@ -294,7 +507,7 @@ public class KiWiGarbageCollector extends Thread {
 
     private String buildGCTriplesQuery() {
         StringBuilder builder = new StringBuilder();
-        builder.append("DELETE FROM triples WHERE deleted = true");
+        builder.append("DELETE FROM triples WHERE deleted = true AND id > ? AND id <= ?");
 
         if(tripleTableDependencies.size() > 0) {
             builder.append(" AND NOT EXISTS (");
@@ -329,7 +542,7 @@ public class KiWiGarbageCollector extends Thread {
         StringBuilder builder = new StringBuilder();
 
         if(nodeTableDependencies.size() > 0) {
-            builder.append("DELETE FROM nodes T1 WHERE NOT EXISTS (");
+            builder.append("DELETE FROM nodes T1 WHERE T1.id > ? AND T1.id <= ? AND NOT EXISTS (");
 
             Iterator<TableDependency> iterator = nodeTableDependencies.iterator();
             while (iterator.hasNext()) {
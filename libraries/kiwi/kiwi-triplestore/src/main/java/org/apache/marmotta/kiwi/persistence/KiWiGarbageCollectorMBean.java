@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence;
+
+/**
+ * Statistics of the incremental garbage collector, to be published in JMX. The JMX name of the bean will be
+ * org.apache.marmotta.kiwi.jmx:type=KiWiGarbageCollectorMBean,name=[configuration name]
+ */
+public interface KiWiGarbageCollectorMBean {
+
+    /**
+     * Total number of deleted triples removed from the database since startup.
+     */
+    long getTriplesReclaimed();
+
+    /**
+     * Total number of unreferenced nodes removed from the database since startup.
+     */
+    long getNodesReclaimed();
+
+    /**
+     * Total number of chunks processed since startup.
+     */
+    long getChunks();
+
+    /**
+     * Duration of the last processed chunk in milliseconds.
+     */
+    long getLastChunkLatency();
+
+    /**
+     * Average duration of the processed chunks in milliseconds.
+     */
+    double getAverageChunkLatency();
+
+    /**
+     * Estimated number of deleted triples that have not yet been examined by the current garbage collection pass.
+     */
+    long getBacklog();
+}
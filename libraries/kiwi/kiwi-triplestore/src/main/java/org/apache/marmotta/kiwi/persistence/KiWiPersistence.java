@@ -17,12 +17,16 @@
  */
 package org.apache.marmotta.kiwi.persistence;
 
+import info.aduna.iteration.CloseableIteration;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.marmotta.kiwi.caching.CacheManager;
 import org.apache.marmotta.kiwi.caching.CacheManagerFactory;
 import org.apache.marmotta.kiwi.caching.GuavaCacheManagerFactory;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
-import org.apache.marmotta.kiwi.generator.IDGenerator;
-import org.apache.marmotta.kiwi.generator.SnowflakeIDGenerator;
+import org.apache.marmotta.kiwi.generator.*;
+import org.apache.marmotta.kiwi.io.KiWiIO;
+import org.apache.marmotta.kiwi.io.PrefixDictionary;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNamespace;
 import org.apache.marmotta.kiwi.persistence.util.ScriptRunner;
 import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
 import org.apache.tomcat.jdbc.pool.DataSource;
@@ -30,11 +34,18 @@ import org.apache.tomcat.jdbc.pool.PoolProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Add file description here!
@@ -48,6 +59,21 @@ public class KiWiPersistence {
     // internal KiWi persistence ID (used for pool name)
     private static int KIWI_ID = 0;
 
+    /**
+     * Number of URIs examined when determining frequently used prefixes for the prefix dictionary.
+     */
+    private static final int PREFIX_SAMPLE_SIZE = 100000;
+
+    /**
+     * Number of attempts for extending the prefix dictionary in case other cluster nodes extend it concurrently.
+     */
+    private static final int PREFIX_STORE_ATTEMPTS = 3;
+
+    /**
+     * Minimum number of occurrences in the sample for a URI prefix to be added to the prefix dictionary.
+     */
+    private static final int PREFIX_MIN_COUNT = 10;
+
     /**
      * The connection pool for managing JDBC connections
      */
@@ -55,10 +81,42 @@ public class KiWiPersistence {
 
     private PoolProperties        poolConfig;
 
+    /**
+     * The connection pool for read-only connections on the read replica; null if no replica is configured
+     */
+    private DataSource replicaPool;
+
+    private PoolProperties        replicaPoolConfig;
+
+    // replication lag of the read replica (in milliseconds) measured at the last check
+    private volatile long replicaLag = 0;
+
+    // false if the read replica could not be reached at the last check
+    private volatile boolean replicaAvailable = true;
+
+    // time of the last check of the read replica
+    private final AtomicLong replicaChecked = new AtomicLong(0);
+
+    // number of connections handed out by the primary and the replica pool, and number of read-only connections
+    // that were served from the primary because the replica was lagging or not available
+    private final AtomicLong primaryBorrowed  = new AtomicLong(0);
+    private final AtomicLong replicaBorrowed  = new AtomicLong(0);
+    private final AtomicLong replicaFallbacks = new AtomicLong(0);
+
     private CacheManager cacheManager;
 
     private KiWiGarbageCollector  garbageCollector;
 
+    /**
+     * JMX name of the garbage collector statistics, null if not published
+     */
+    private ObjectName            garbageCollectorBean;
+
+    /**
+     * Listeners notified about the progress of bulk deletions of contexts or the whole repository
+     */
+    private List<DeletionListener> deletionListeners = new CopyOnWriteArrayList<>();
+
     /**
      * The KiWi configuration for this persistence.
      */
@@ -72,6 +130,16 @@ public class KiWiPersistence {
 
     private IDGenerator    idGenerator;
 
+    /**
+     * Id of the KiWiIO prefix dictionary registered for this database, null if not (yet) registered
+     */
+    private Integer        prefixDictionaryId;
+
+    /**
+     * True in case the object-leading triple indexes exist in the database, see {@link #initObjectIndexes(boolean)}
+     */
+    private volatile boolean objectIndexes = false;
+
 
     /**
      * This lock allows setting the backend into maintenance mode (by locking the write lock), which essentially
@@ -97,6 +165,9 @@ public class KiWiPersistence {
         // init JDBC connection pool
         initConnectionPool();
 
+        // let the dialect check the capabilities of the database server
+        initDialect();
+
         // init Infinispan caches
         initCachePool();
 
@@ -109,9 +180,23 @@ public class KiWiPersistence {
             // must not happen!
         }
 
-        idGenerator = new SnowflakeIDGenerator(configuration.getDatacenterId());
-
-        log.info("database key generation strategy: Twitter Snowflake");
+        switch (configuration.getIdGeneratorType()) {
+            case UUID_TIME:
+                idGenerator = new UUIDTimeIDGenerator();
+                log.info("database key generation strategy: time-based UUID");
+                break;
+            case UUID_RANDOM:
+                idGenerator = new UUIDRandomIDGenerator();
+                log.info("database key generation strategy: random UUID");
+                break;
+            case SNOWFLAKE_BLOCK:
+                idGenerator = new BlockIDGenerator(configuration.getDatacenterId());
+                log.info("database key generation strategy: Twitter Snowflake (block allocation)");
+                break;
+            default:
+                idGenerator = new SnowflakeIDGenerator(configuration.getDatacenterId());
+                log.info("database key generation strategy: Twitter Snowflake");
+        }
 
         //garbageCollector.start();
 
@@ -144,12 +229,37 @@ public class KiWiPersistence {
 
 
     private void initConnectionPool() {
-        poolConfig = new PoolProperties();
-        poolConfig.setName("kiwi-" + (++KIWI_ID));
-        poolConfig.setUrl(configuration.getJdbcUrl());
+        String name = "kiwi-" + (++KIWI_ID);
+
+        poolConfig = createPoolProperties(name, configuration.getJdbcUrl(), configuration.getDbUser(), configuration.getDbPassword());
+        connectionPool = new DataSource(poolConfig);
+
+        if (StringUtils.isNotBlank(configuration.getReplicaJdbcUrl())) {
+            replicaPoolConfig = createPoolProperties(name + "-replica", configuration.getReplicaJdbcUrl(), configuration.getReplicaDbUser(), configuration.getReplicaDbPassword());
+            replicaPool = new DataSource(replicaPoolConfig);
+
+            log.info("read-only connections are served from read replica {}", configuration.getReplicaJdbcUrl());
+        }
+    }
+
+    private void initDialect() {
+        try (Connection conn = connectionPool.getConnection()) {
+            configuration.getDialect().initialise(conn.getMetaData());
+        } catch (SQLException ex) {
+            log.warn("could not determine the capabilities of the database server, using defaults (error: {})", ex.getMessage());
+        }
+    }
+
+    private PoolProperties createPoolProperties(String name, String jdbcUrl, String dbUser, String dbPassword) {
+        PoolProperties poolConfig = new PoolProperties();
+        poolConfig.setName(name);
+        poolConfig.setUrl(jdbcUrl);
         poolConfig.setDriverClassName(configuration.getDialect().getDriverClass());
-        poolConfig.setUsername(configuration.getDbUser());
-        poolConfig.setPassword(configuration.getDbPassword());
+        poolConfig.setUsername(dbUser);
+        poolConfig.setPassword(dbPassword);
+        if (configuration.getDialect().getConnectionProperties() != null) {
+            poolConfig.setConnectionProperties(configuration.getDialect().getConnectionProperties());
+        }
         poolConfig.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
         poolConfig.setCommitOnReturn(true);
         poolConfig.setValidationQuery(configuration.getDialect().getValidationQuery());
@@ -180,9 +290,7 @@ public class KiWiPersistence {
             poolConfig.setLogAbandoned(true);
         }
 
-
-        connectionPool = new DataSource(poolConfig);
-
+        return poolConfig;
     }
 
     private void initGarbageCollector() {
@@ -195,6 +303,19 @@ public class KiWiPersistence {
         garbageCollector.addNodeTableDependency("triples","creator");
         garbageCollector.addNodeTableDependency("nodes","ltype");
 
+        // publish the garbage collector statistics in JMX, as org.apache.marmotta.kiwi.jmx:type=KiWiGarbageCollectorMBean,name=[configuration name]
+        if(configuration.isJmxEnabled()) {
+            try {
+                MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName("org.apache.marmotta.kiwi.jmx:type=KiWiGarbageCollectorMBean,name=" + ObjectName.quote(configuration.getName()));
+                if(!mbs.isRegistered(name)) {
+                    mbs.registerMBean(garbageCollector, name);
+                    garbageCollectorBean = name;
+                }
+            } catch (Exception ex) {
+                log.warn("could not register garbage collector in JMX: {}", ex.getMessage());
+            }
+        }
     }
 
     public void logPoolInfo() throws SQLException {
@@ -205,12 +326,231 @@ public class KiWiPersistence {
             } else {
                 log.debug("connection pool not initialized");
             }
+            if (replicaPool != null) {
+                log.debug("replica_busy_connections: {}", replicaPool.getNumActive());
+                log.debug("replica_idle_connections: {}", replicaPool.getNumIdle());
+                log.debug("replica_lag:              {} ms", replicaLag);
+                log.debug("replica_fallbacks:        {}", replicaFallbacks.get());
+            }
+        }
+    }
+
+    /**
+     * Return the current usage of the connection pool on the primary database.
+     */
+    public ConnectionPoolStatistics getPrimaryPoolStatistics() {
+        return getPoolStatistics(connectionPool, primaryBorrowed);
+    }
+
+    /**
+     * Return the current usage of the connection pool on the read replica, or null if no read replica is configured.
+     */
+    public ConnectionPoolStatistics getReplicaPoolStatistics() {
+        return getPoolStatistics(replicaPool, replicaBorrowed);
+    }
+
+    private static ConnectionPoolStatistics getPoolStatistics(DataSource pool, AtomicLong borrowed) {
+        if (pool == null) {
+            return null;
         }
+        return new ConnectionPoolStatistics(pool.getPoolProperties().getName(), pool.getNumActive(), pool.getNumIdle(), pool.getSize(), pool.getWaitCount(), borrowed.get());
+    }
+
+    /**
+     * Return the replication lag of the read replica (in milliseconds) measured at the last check.
+     */
+    public long getReplicaLag() {
+        return replicaLag;
+    }
+
+    /**
+     * Return the number of read-only connections served from the primary database because the read replica was
+     * lagging behind or not available.
+     */
+    public long getReplicaFallbacks() {
+        return replicaFallbacks.get();
     }
 
 
     public void initDatabase() throws SQLException {
         initDatabase("base", new String[] {"nodes", "triples", "namespaces","metadata"});
+
+        initObjectIndexes(configuration.isObjectIndexesEnabled());
+        initPrefixDictionary(configuration.isPrefixDictionaryEnabled());
+    }
+
+
+    /**
+     * Create or drop the object-leading triple indexes according to the configuration. The index state is recorded
+     * in the metadata table, so the indexes are only created once.
+     *
+     * @param enabled true if the indexes should exist
+     */
+    public void initObjectIndexes(boolean enabled) throws SQLException {
+        KiWiConnection connection = getConnection();
+        try {
+            boolean exists = connection.getMetadata("idx.object") != null;
+            if(enabled && !exists) {
+                log.info("creating object-leading triple indexes ...");
+
+                ScriptRunner runner = new ScriptRunner(connection.getJDBCConnection(), false, false);
+                runner.runScript(new StringReader(configuration.getDialect().getCreateIndexScript("object")));
+            } else if(!enabled && exists) {
+                log.info("dropping object-leading triple indexes ...");
+
+                ScriptRunner runner = new ScriptRunner(connection.getJDBCConnection(), false, false);
+                runner.runScript(new StringReader(configuration.getDialect().getDropIndexScript("object")));
+            }
+            connection.getJDBCConnection().commit();
+
+            objectIndexes = enabled;
+        } catch (SQLException ex) {
+            log.error("SQL exception while initialising object indexes, rolling back");
+            connection.rollback();
+            throw ex;
+        } catch (IOException ex) {
+            log.error("I/O exception while initialising object indexes, rolling back");
+            connection.rollback();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Return true in case the object-leading triple indexes (object,predicate,subject) and (object,subject,predicate)
+     * exist in the database. Query construction and bulk loading must only rely on them in this case.
+     */
+    public boolean hasObjectIndexes() {
+        return objectIndexes;
+    }
+
+
+    /**
+     * Initialise the KiWiIO prefix dictionary used for compressing URIs in serialized nodes and triples. The
+     * dictionary of this database is always registered for decoding, since other cluster nodes might use it for
+     * encoding. If enabled, it is extended with the namespaces and the most frequently used URI prefixes in the
+     * database and used for encoding. Prefixes are stored with a dense index that is the primary key of the
+     * prefixes table, so concurrent extensions by several cluster nodes cannot assign the same index twice.
+     *
+     * @param enabled true if the dictionary should be extended and used for compressing URIs
+     */
+    public void initPrefixDictionary(boolean enabled) throws SQLException {
+        KiWiConnection connection = getConnection();
+        try {
+            final int dictionaryId = connection.getDictionaryId();
+
+            PrefixDictionary dictionary = new PrefixDictionary(dictionaryId, connection.listDictionaryPrefixes());
+            for(int attempt = 1; enabled && dictionary.getVersion() < configuration.getPrefixDictionarySize(); attempt++) {
+                List<String> added = selectDictionaryPrefixes(connection, dictionary);
+                if(added.isEmpty()) {
+                    break;
+                }
+
+                try {
+                    connection.storeDictionaryPrefixes(dictionary.getVersion(), added);
+                    connection.commit();
+                } catch (SQLException ex) {
+                    // another cluster node extended the dictionary concurrently; reload and try again
+                    connection.rollback();
+                    if(attempt >= PREFIX_STORE_ATTEMPTS) {
+                        log.warn("could not extend prefix dictionary after {} attempts ({})", attempt, ex.getMessage());
+                        dictionary = new PrefixDictionary(dictionaryId, connection.listDictionaryPrefixes());
+                        break;
+                    }
+                    log.debug("concurrent extension of prefix dictionary, retrying ({})", ex.getMessage());
+                }
+                dictionary = new PrefixDictionary(dictionaryId, connection.listDictionaryPrefixes());
+            }
+
+            PrefixDictionary current = KiWiIO.getPrefixDictionary(dictionaryId);
+            if(current != null && !dictionary.extendsDictionary(current)) {
+                // previously serialized data uses a different dictionary and can no longer be decoded
+                cacheManager.clear();
+            }
+            KiWiIO.registerPrefixDictionary(dictionary, new PrefixDictionary.Loader() {
+                @Override
+                public PrefixDictionary load() throws IOException {
+                    try (KiWiConnection con = getConnection()) {
+                        return new PrefixDictionary(dictionaryId, con.listDictionaryPrefixes());
+                    } catch (SQLException ex) {
+                        throw new IOException("could not load prefix dictionary", ex);
+                    }
+                }
+            }, enabled);
+            if(prefixDictionaryId != null && prefixDictionaryId != dictionaryId) {
+                // the database has been dropped and recreated
+                KiWiIO.unregisterPrefixDictionary(prefixDictionaryId);
+            }
+            prefixDictionaryId = dictionaryId;
+
+            log.info("initialised URI prefix dictionary {} (version: {}, compression: {})", dictionaryId, dictionary.getVersion(), enabled);
+        } catch (SQLException ex) {
+            log.error("SQL exception while initialising prefix dictionary, rolling back");
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Select the prefixes to append to the given dictionary: user-defined prefixes first, then namespaces, then
+     * frequent prefixes, up to the configured dictionary size.
+     */
+    private List<String> selectDictionaryPrefixes(KiWiConnection connection, PrefixDictionary dictionary) throws SQLException {
+        Set<String> candidates = new LinkedHashSet<>(configuration.getPrefixDictionaryPrefixes());
+        CloseableIteration<KiWiNamespace, SQLException> namespaces = connection.listNamespaces();
+        try {
+            while (namespaces.hasNext()) {
+                candidates.add(namespaces.next().getName());
+            }
+        } finally {
+            namespaces.close();
+        }
+        candidates.addAll(getFrequentPrefixes(connection.listUriSample(PREFIX_SAMPLE_SIZE)));
+        candidates.removeAll(dictionary.getPrefixes());
+
+        int free = configuration.getPrefixDictionarySize() - dictionary.getVersion();
+        List<String> added = new ArrayList<>();
+        for(String prefix : candidates) {
+            if(added.size() >= free) {
+                break;
+            }
+            if(prefix.length() > 1 && prefix.length() <= 256 && StringUtils.endsWithAny(prefix, "/", "#", ":")) {
+                added.add(prefix);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Return the URI prefixes (up to the last '/' or '#') occurring at least PREFIX_MIN_COUNT times in the given
+     * URIs, ordered by descending frequency.
+     */
+    private static List<String> getFrequentPrefixes(List<String> uris) {
+        final Map<String,Integer> counts = new HashMap<>();
+        for(String uri : uris) {
+            int pos = Math.max(uri.lastIndexOf('/', uri.length() - 2), uri.lastIndexOf('#', uri.length() - 2));
+            if(pos > 0) {
+                String prefix = uri.substring(0, pos + 1);
+                Integer count = counts.get(prefix);
+                counts.put(prefix, count == null ? 1 : count + 1);
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        for(Map.Entry<String,Integer> entry : counts.entrySet()) {
+            if(entry.getValue() >= PREFIX_MIN_COUNT) {
+                result.add(entry.getKey());
+            }
+        }
+        Collections.sort(result, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return Integer.compare(counts.get(o2), counts.get(o1));
+            }
+        });
+        return result;
     }
 
 
@@ -343,6 +683,19 @@ public class KiWiPersistence {
      * @throws SQLException in case a new connection could not be established
      */
     public KiWiConnection getConnection() throws SQLException {
+        return getConnection(false);
+    }
+
+    /**
+     * Return a connection from the connection pool which already has the auto-commit disabled. Read-only connections
+     * reject all modifications and are served from the read replica if one is configured
+     * (see {@link #getReadOnlyJDBCConnection()}).
+     *
+     * @param readOnly true if the connection is only used for reading
+     * @return a fresh JDBC connection from the connection pool
+     * @throws SQLException in case a new connection could not be established
+     */
+    public KiWiConnection getConnection(boolean readOnly) throws SQLException {
         if (!initialized) {
             throw new SQLException("persistence backend not initialized; call initialise before acquiring a connection");
         }
@@ -352,9 +705,13 @@ public class KiWiPersistence {
         }
 
         KiWiConnection con = new KiWiConnection(this,configuration.getDialect(),cacheManager);
+        con.setReadOnly(readOnly);
         if(getDialect().isBatchSupported()) {
             con.setBatchCommit(configuration.isTripleBatchCommit());
             con.setBatchSize(configuration.getTripleBatchSize());
+            if(getDialect().isCopySupported()) {
+                con.setCopyThreshold(configuration.getTripleCopyThreshold());
+            }
         }
         return con;
     }
@@ -392,10 +749,97 @@ public class KiWiPersistence {
 
         Connection conn = connectionPool.getConnection();
         conn.setAutoCommit(false);
+        primaryBorrowed.incrementAndGet();
+
+        return conn;
+    }
+
+    /**
+     * Return a raw, read-only JDBC connection, which already has the auto-commit disabled. If a read replica is
+     * configured, the connection is taken from the replica pool, unless the replication lag exceeds the configured
+     * maximum or the replica is not reachable; in this case the connection is taken from the primary database. The
+     * replica is checked again after the configured check interval.
+     *
+     * @return a raw, read-only JDBC connection, with auto-commit disabled
+     * @throws SQLException
+     */
+    public Connection getReadOnlyJDBCConnection() throws SQLException {
+        if (!initialized || connectionPool == null) {
+            throw new SQLException("connection pool is closed, database connections not available");
+        }
 
+        DataSource replica = replicaPool;
+        if (replica != null) {
+            if (replicaAvailable || System.currentTimeMillis() - replicaChecked.get() >= configuration.getReplicaCheckInterval()) {
+                Connection conn = null;
+                try {
+                    conn = replica.getConnection();
+                    conn.setAutoCommit(false);
+                    conn.setReadOnly(true);
+
+                    if (checkReplica(conn)) {
+                        replicaBorrowed.incrementAndGet();
+                        return conn;
+                    }
+                    conn.rollback();
+                    conn.setReadOnly(false);
+                    conn.close();
+                } catch (SQLException ex) {
+                    if (replicaAvailable) {
+                        log.warn("read replica not available, reading from primary database (error: {})", ex.getMessage());
+                    }
+                    replicaAvailable = false;
+                    replicaChecked.set(System.currentTimeMillis());
+                    if (conn != null) {
+                        try {
+                            conn.close();
+                        } catch (SQLException ignore) {}
+                    }
+                }
+            }
+            replicaFallbacks.incrementAndGet();
+        }
+
+        Connection conn = getJDBCConnection();
+        conn.setReadOnly(true);
         return conn;
     }
 
+    /**
+     * Check whether the read replica can be used, i.e. its replication lag does not exceed the configured maximum.
+     * The lag is measured at most once per check interval using the given replica connection; in between, the
+     * result of the last check is used.
+     */
+    private boolean checkReplica(Connection conn) throws SQLException {
+        long now  = System.currentTimeMillis();
+        long last = replicaChecked.get();
+        if (replicaAvailable && now - last < configuration.getReplicaCheckInterval() || !replicaChecked.compareAndSet(last, now)) {
+            // checked recently or another thread is checking
+            return replicaLag <= configuration.getReplicaMaxLag();
+        }
+
+        long lag = 0;
+        if (getDialect().hasStatement("meta.replication_lag")) {
+            try (PreparedStatement stmt = conn.prepareStatement(getDialect().getStatement("meta.replication_lag"));
+                 ResultSet result = stmt.executeQuery()) {
+                if (result.next()) {
+                    lag = result.getLong(1);
+                }
+            }
+        }
+
+        if (!replicaAvailable) {
+            log.info("read replica available again (replication lag: {} ms)", lag);
+        }
+        if (lag > configuration.getReplicaMaxLag() && replicaLag <= configuration.getReplicaMaxLag()) {
+            log.warn("replication lag of read replica ({} ms) exceeds maximum of {} ms, reading from primary database", lag, configuration.getReplicaMaxLag());
+        }
+        replicaLag = lag;
+        replicaAvailable = true;
+
+        return lag <= configuration.getReplicaMaxLag();
+    }
+
 
     /**
      * Release the JDBC connection passed as argument. This method will close the connection and release
@@ -405,7 +849,17 @@ public class KiWiPersistence {
      */
     public void releaseJDBCConnection(Connection con) throws SQLException {
         try {
-            con.close();
+            // read-only connections cannot have changes, and the read-only flag must not stay set on pooled connections
+            if (!con.isClosed() && con.isReadOnly()) {
+                try {
+                    con.rollback();
+                    con.setReadOnly(false);
+                } finally {
+                    con.close();
+                }
+            } else {
+                con.close();
+            }
         } finally {
             synchronized (this) {
                 if(this.maintenance) {
@@ -420,6 +874,10 @@ public class KiWiPersistence {
         if(connectionPool != null) {
             connectionPool.close(true);
         }
+        if(replicaPool != null) {
+            replicaPool.close(true);
+            replicaPool = new DataSource(replicaPoolConfig);
+        }
 
         connectionPool = new DataSource(poolConfig);
     }
@@ -448,6 +906,25 @@ public class KiWiPersistence {
         garbageCollector.addTripleTableDependency(tableName, columnName);
     }
 
+    /**
+     * Register a listener that is notified about the progress of bulk deletions of a whole context or the whole
+     * repository.
+     */
+    public void addDeletionListener(DeletionListener listener) {
+        deletionListeners.add(listener);
+    }
+
+    public void removeDeletionListener(DeletionListener listener) {
+        deletionListeners.remove(listener);
+    }
+
+    /**
+     * Return the listeners registered for bulk deletions.
+     */
+    public List<DeletionListener> getDeletionListeners() {
+        return deletionListeners;
+    }
+
 
     public void shutdown() {
         log.info("shutting down KiWi persistence ...");
@@ -455,10 +932,26 @@ public class KiWiPersistence {
 
         idGenerator.shutdown();
         garbageCollector.shutdown();
+        if(garbageCollectorBean != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(garbageCollectorBean);
+            } catch (Exception ex) {
+                log.warn("could not unregister {} from JMX: {}", garbageCollectorBean, ex.getMessage());
+            }
+            garbageCollectorBean = null;
+        }
         cacheManager.shutdown();
+        if(prefixDictionaryId != null) {
+            KiWiIO.unregisterPrefixDictionary(prefixDictionaryId);
+            prefixDictionaryId = null;
+        }
         connectionPool.close();
+        if(replicaPool != null) {
+            replicaPool.close();
+        }
 
         connectionPool = null;
+        replicaPool = null;
     }
 
     /**
@@ -486,6 +979,13 @@ public class KiWiPersistence {
         this.garbageCollector.garbageCollect();
     }
 
+    /**
+     * Return the garbage collector of this persistence, e.g. for inspecting its statistics.
+     */
+    public KiWiGarbageCollector getGarbageCollector() {
+        return garbageCollector;
+    }
+
     public boolean checkConsistency() throws SQLException {
         return garbageCollector.checkConsistency();
     }
@@ -20,6 +20,11 @@ package org.apache.marmotta.kiwi.persistence.mysql;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.marmotta.kiwi.exception.DriverNotFoundException;
 import org.apache.marmotta.kiwi.persistence.KiWiDialect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
 
 /**
  * A dialect for MySQL. When using MySQL, make sure the JDBC connection URL has the following arguments (workarounds
@@ -38,6 +43,10 @@ import org.apache.marmotta.kiwi.persistence.KiWiDialect;
  */
 public class MySQLDialect extends KiWiDialect {
 
+    private static Logger log = LoggerFactory.getLogger(MySQLDialect.class);
+
+    // recursive common table expressions are only available since MySQL 8.0 (and MariaDB 10.2)
+    private boolean recursiveQuerySupported = false;
 
     public MySQLDialect() throws DriverNotFoundException {
         try {
@@ -47,6 +56,23 @@ public class MySQLDialect extends KiWiDialect {
         }
     }
 
+    /**
+     * Check whether the server supports recursive common table expressions (MySQL 8.0 or MariaDB 10.2 and later).
+     */
+    @Override
+    public void initialise(DatabaseMetaData metaData) throws SQLException {
+        int major = metaData.getDatabaseMajorVersion();
+        int minor = metaData.getDatabaseMinorVersion();
+        if(StringUtils.containsIgnoreCase(metaData.getDatabaseProductVersion(), "mariadb")) {
+            recursiveQuerySupported = major > 10 || (major == 10 && minor >= 2);
+        } else {
+            recursiveQuerySupported = major >= 8;
+        }
+        if(!recursiveQuerySupported) {
+            log.info("MySQL {} does not support recursive queries, SPARQL property paths will be evaluated in memory", metaData.getDatabaseProductVersion());
+        }
+    }
+
     /**
      * Return the name of the driver class (used for properly initialising JDBC connections)
      *
@@ -139,4 +165,38 @@ public class MySQLDialect extends KiWiDialect {
         return "SELECT 1";
     }
 
+    /**
+     * MySQL streams large results using server-side cursors (useCursorFetch), which, unlike a fetch size of
+     * Integer.MIN_VALUE, allows executing other statements on the connection (e.g. for resolving nodes) while a
+     * result is being read.
+     *
+     * @return
+     */
+    @Override
+    public boolean isStreamingSupported() {
+        return true;
+    }
+
+    /**
+     * Enable server-side cursors, so results are fetched in chunks of the fetch size instead of being loaded
+     * completely into memory.
+     *
+     * @return
+     */
+    @Override
+    public String getConnectionProperties() {
+        return "useCursorFetch=true";
+    }
+
+    /**
+     * Return true in case the database server supports recursive common table expressions (WITH RECURSIVE), which
+     * has been determined when the persistence was initialised.
+     *
+     * @return
+     */
+    @Override
+    public boolean isRecursiveQuerySupported() {
+        return recursiveQuerySupported;
+    }
+
 }
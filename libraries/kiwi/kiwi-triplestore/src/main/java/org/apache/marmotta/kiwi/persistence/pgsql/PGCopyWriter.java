@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence.pgsql;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.marmotta.kiwi.model.rdf.*;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.PooledConnection;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Writes nodes and triples to a PostgreSQL database using the COPY command in CSV format. The rows written contain
+ * the same column values as the INSERT statements of the dialect, so data written by COPY is indistinguishable from
+ * data written by the batched INSERTs. The COPY runs inside the current transaction of the connection.
+ * <p/>
+ * Triples are copied into a temporary staging table and then merged into the triples table, skipping existing ids,
+ * since COPY does not apply the rule ignoring duplicate inserts into the triples table.
+ * <p/>
+ * This class is only loaded when the PostgreSQL dialect is used, so the PostgreSQL driver is only required in this
+ * case.
+ *
+ * @author Sebastian Schaffert (sschaffert@apache.org)
+ */
+class PGCopyWriter {
+
+    private static Logger log = LoggerFactory.getLogger(PGCopyWriter.class);
+
+    private static final String COPY_NODES   = "COPY nodes(id,ntype,svalue,dvalue,ivalue,tvalue,tzoffset,bvalue,ltype,lang,createdAt) FROM STDIN (FORMAT csv)";
+
+    // triples are copied into a staging table first: COPY bypasses the rule ignoring duplicate inserts into the
+    // triples table, so triples that already exist (e.g. because they are added again) are filtered when merging
+    private static final String CREATE_STAGING = "CREATE TEMPORARY TABLE IF NOT EXISTS triples_copy (id bigint, subject bigint, predicate bigint, object bigint, context bigint, inferred boolean, createdAt timestamp) ON COMMIT DELETE ROWS";
+
+    private static final String COPY_TRIPLES = "COPY triples_copy(id,subject,predicate,object,context,inferred,createdAt) FROM STDIN (FORMAT csv)";
+
+    private static final String MERGE_TRIPLES = "INSERT INTO triples(id,subject,predicate,object,context,inferred,createdAt) " +
+            "SELECT DISTINCT ON (id) id,subject,predicate,object,context,inferred,createdAt FROM triples_copy c " +
+            "WHERE NOT EXISTS (SELECT 1 FROM triples t WHERE t.id = c.id)";
+
+    private static final String CLEAR_STAGING = "TRUNCATE triples_copy";
+
+    // flush the row buffer to the server once it reaches this size (in characters)
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CopyIn copyIn;
+
+    private final StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 4096);
+
+    // timestamps of nodes are stored in UTC, triple timestamps in the default time zone (like the INSERT statements)
+    private final SimpleDateFormat utcFormat;
+    private final SimpleDateFormat localFormat;
+
+    private PGCopyWriter(Connection connection, String sql) throws SQLException {
+        this.copyIn = getWrappedConnection(connection).getCopyAPI().copyIn(sql);
+
+        this.utcFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        this.utcFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        this.localFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    }
+
+    /**
+     * Write the given nodes into the nodes table using a single COPY command.
+     *
+     * @param connection the JDBC connection (possibly wrapped by the connection pool)
+     * @param nodes      the nodes to write; all nodes must already have a database id
+     * @return the number of rows written
+     */
+    static long copyNodes(Connection connection, Iterable<? extends KiWiNode> nodes) throws SQLException {
+        PGCopyWriter writer = new PGCopyWriter(connection, COPY_NODES);
+        try {
+            for(KiWiNode node : nodes) {
+                writer.writeNode(node);
+            }
+            return writer.finish();
+        } finally {
+            writer.cancel();
+        }
+    }
+
+    /**
+     * Write the given triples into the triples table using a single COPY command into a temporary staging table,
+     * from which the triples not yet contained in the triples table are inserted. Like the INSERT statement of the
+     * dialect, triples with an id that already exists are ignored.
+     *
+     * @param connection the JDBC connection (possibly wrapped by the connection pool)
+     * @param triples    the triples to write; all triples must already have a database id
+     * @return the number of rows written to the triples table
+     */
+    static long copyTriples(Connection connection, Iterable<? extends KiWiTriple> triples) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(CREATE_STAGING);
+
+            PGCopyWriter writer = new PGCopyWriter(connection, COPY_TRIPLES);
+            try {
+                for(KiWiTriple triple : triples) {
+                    writer.writeTriple(triple);
+                }
+                writer.finish();
+            } finally {
+                writer.cancel();
+            }
+
+            long rows = stmt.executeUpdate(MERGE_TRIPLES);
+            stmt.execute(CLEAR_STAGING);
+            return rows;
+        }
+    }
+
+    /**
+     * Return the PGConnection wrapped by the connection pool so we are able to access PostgreSQL specific functionality.
+     */
+    private static PGConnection getWrappedConnection(Connection con) throws SQLException {
+        if(con instanceof PGConnection) {
+            return (PGConnection)con;
+        } else if(con instanceof PooledConnection) {
+            return (PGConnection) ((PooledConnection)con).getConnection();
+        } else {
+            return con.unwrap(PGConnection.class);
+        }
+    }
+
+
+    private void writeNode(KiWiNode node) throws SQLException {
+        if(node instanceof KiWiUriResource) {
+            writeNodeRow(node, "uri", node.stringValue(), null, null, null, null, null, null, null);
+        } else if(node instanceof KiWiAnonResource) {
+            writeNodeRow(node, "bnode", node.stringValue(), null, null, null, null, null, null, null);
+        } else if(node instanceof KiWiDateLiteral) {
+            KiWiDateLiteral l = (KiWiDateLiteral)node;
+            if(l.getType() == null) {
+                throw new IllegalStateException("a date literal must have a datatype");
+            }
+            writeNodeRow(node, "date", l.stringValue(), null, null, utcFormat.format(l.getDateContent().toDate()),
+                    l.getDateContent().getZone().getOffset(l.getDateContent()) / 1000, null, l.getType(), null);
+        } else if(node instanceof KiWiIntLiteral) {
+            KiWiIntLiteral l = (KiWiIntLiteral)node;
+            if(l.getType() == null) {
+                throw new IllegalStateException("an integer literal must have a datatype");
+            }
+            writeNodeRow(node, "int", l.getContent(), l.getDoubleContent(), l.getIntContent(), null, null, null, l.getType(), null);
+        } else if(node instanceof KiWiDoubleLiteral) {
+            KiWiDoubleLiteral l = (KiWiDoubleLiteral)node;
+            if(l.getType() == null) {
+                throw new IllegalStateException("a double literal must have a datatype");
+            }
+            writeNodeRow(node, "double", l.getContent(), l.getDoubleContent(), null, null, null, null, l.getType(), null);
+        } else if(node instanceof KiWiBooleanLiteral) {
+            KiWiBooleanLiteral l = (KiWiBooleanLiteral)node;
+            if(l.getType() == null) {
+                throw new IllegalStateException("a boolean literal must have a datatype");
+            }
+            writeNodeRow(node, "boolean", l.getContent(), null, null, null, null, l.booleanValue(), l.getType(), null);
+        } else if(node instanceof KiWiStringLiteral) {
+            KiWiStringLiteral l = (KiWiStringLiteral)node;
+
+            Double dbl_value = null;
+            Long   lng_value = null;
+            if (l.getContent().length() < 64 && NumberUtils.isNumber(l.getContent()))
+                try {
+                    dbl_value = Double.parseDouble(l.getContent());
+                    lng_value = Long.parseLong(l.getContent());
+                } catch (NumberFormatException ex) {
+                    // ignore, keep NaN
+                }
+
+            String lang = l.getLocale() != null ? l.getLocale().getLanguage().toLowerCase() : null;
+
+            writeNodeRow(node, "string", l.getContent(), dbl_value, lng_value, null, null, null, l.getType(), lang);
+        } else {
+            log.warn("unrecognized node type: {}", node.getClass().getCanonicalName());
+        }
+    }
+
+    private void writeNodeRow(KiWiNode node, String ntype, String svalue, Double dvalue, Long ivalue, String tvalue,
+                              Integer tzoffset, Boolean bvalue, KiWiUriResource ltype, String lang) throws SQLException {
+        buffer.append(node.getId()).append(',');
+        buffer.append(ntype).append(',');
+        appendString(svalue);
+        buffer.append(',');
+        appendValue(dvalue);
+        buffer.append(',');
+        appendValue(ivalue);
+        buffer.append(',');
+        appendValue(tvalue);
+        buffer.append(',');
+        appendValue(tzoffset);
+        buffer.append(',');
+        appendValue(bvalue);
+        buffer.append(',');
+        appendValue(ltype != null ? ltype.getId() : null);
+        buffer.append(',');
+        appendString(lang);
+        buffer.append(',');
+        buffer.append(utcFormat.format(node.getCreated()));
+        buffer.append('\n');
+
+        maybeFlush();
+    }
+
+    private void writeTriple(KiWiTriple triple) throws SQLException {
+        buffer.append(triple.getId()).append(',');
+        buffer.append(triple.getSubject().getId()).append(',');
+        buffer.append(triple.getPredicate().getId()).append(',');
+        buffer.append(triple.getObject().getId()).append(',');
+        appendValue(triple.getContext() != null ? triple.getContext().getId() : null);
+        buffer.append(',');
+        buffer.append(triple.isInferred()).append(',');
+        buffer.append(localFormat.format(triple.getCreated()));
+        buffer.append('\n');
+
+        maybeFlush();
+    }
+
+    /**
+     * Append an unquoted value; null values are written as an empty field, which is NULL in the CSV format.
+     */
+    private void appendValue(Object value) {
+        if(value != null) {
+            buffer.append(value);
+        }
+    }
+
+    /**
+     * Append a quoted string value; quoting is required to distinguish the empty string from NULL.
+     */
+    private void appendString(String value) {
+        if(value != null) {
+            buffer.append('"');
+            for(int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if(c == '"') {
+                    buffer.append('"');
+                }
+                buffer.append(c);
+            }
+            buffer.append('"');
+        }
+    }
+
+    private void maybeFlush() throws SQLException {
+        if(buffer.length() >= BUFFER_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() throws SQLException {
+        if(buffer.length() > 0) {
+            byte[] data = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(data, 0, data.length);
+            buffer.setLength(0);
+        }
+    }
+
+    private long finish() throws SQLException {
+        flush();
+        return copyIn.endCopy();
+    }
+
+    /**
+     * Cancel the COPY in case it has not been finished successfully, so the connection can be used again
+     */
+    private void cancel() throws SQLException {
+        if(copyIn.isActive()) {
+            copyIn.cancelCopy();
+        }
+    }
+
+}
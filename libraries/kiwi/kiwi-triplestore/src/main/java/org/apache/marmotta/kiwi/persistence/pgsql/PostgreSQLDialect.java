@@ -19,8 +19,14 @@ package org.apache.marmotta.kiwi.persistence.pgsql;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.marmotta.kiwi.exception.DriverNotFoundException;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
 import org.apache.marmotta.kiwi.persistence.KiWiDialect;
 
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
 /**
  * Add file description here!
  * <p/>
@@ -28,6 +34,8 @@ import org.apache.marmotta.kiwi.persistence.KiWiDialect;
  */
 public class PostgreSQLDialect extends KiWiDialect {
 
+    private boolean tableSampleSupported = true;
+
     public PostgreSQLDialect() throws DriverNotFoundException {
         try {
             Class.forName(getDriverClass());
@@ -36,6 +44,16 @@ public class PostgreSQLDialect extends KiWiDialect {
         }
     }
 
+    /**
+     * Check whether the server supports TABLESAMPLE (PostgreSQL 9.5 and later).
+     */
+    @Override
+    public void initialise(DatabaseMetaData metaData) throws SQLException {
+        int major = metaData.getDatabaseMajorVersion();
+        int minor = metaData.getDatabaseMinorVersion();
+        tableSampleSupported = major > 9 || (major == 9 && minor >= 5);
+    }
+
     /**
      * Return the name of the driver class (used for properly initialising JDBC connections)
      *
@@ -149,4 +167,51 @@ public class PostgreSQLDialect extends KiWiDialect {
         return true;
     }
 
+    /**
+     * Return true in case the database system supports recursive common table expressions (WITH RECURSIVE).
+     *
+     * @return
+     */
+    @Override
+    public boolean isRecursiveQuerySupported() {
+        return true;
+    }
+
+    /**
+     * Return true in case the database system supports writing large node and triple batches with a bulk load
+     * command. PostgreSQL supports the COPY command.
+     *
+     * @return
+     */
+    @Override
+    public boolean isCopySupported() {
+        return true;
+    }
+
+    /**
+     * Return true in case the database system supports TABLESAMPLE SYSTEM (PostgreSQL 9.5 and later).
+     *
+     * @return
+     */
+    @Override
+    public boolean isTableSampleSupported() {
+        return tableSampleSupported;
+    }
+
+    /**
+     * Write the given nodes into the nodes table using COPY ... FROM STDIN in CSV format.
+     */
+    @Override
+    public long copyNodes(Connection connection, Iterable<? extends KiWiNode> nodes) throws SQLException {
+        return PGCopyWriter.copyNodes(connection, nodes);
+    }
+
+    /**
+     * Write the given triples into the triples table using COPY ... FROM STDIN in CSV format.
+     */
+    @Override
+    public long copyTriples(Connection connection, Iterable<? extends KiWiTriple> triples) throws SQLException {
+        return PGCopyWriter.copyTriples(connection, triples);
+    }
+
 }
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * A triple registry implementation based on the Infinispan cache. Registry entries are stored in a replicated,
@@ -37,10 +38,10 @@ public class CacheTripleRegistry implements KiWiTripleRegistry {
 
     private static Logger log = LoggerFactory.getLogger(CacheTripleRegistry.class);
 
-    private Map<Long,Long> cache;
+    private Map<UUID,Long> cache;
 
 
-    private Map<Long,List<Long>>  transactions;
+    private Map<Long,List<UUID>>  transactions;
 
 
     public CacheTripleRegistry(CacheManager cacheManager) {
@@ -59,13 +60,14 @@ public class CacheTripleRegistry implements KiWiTripleRegistry {
      */
     @Override
     public void registerKey(IntArray key, long transactionId, long tripleId) {
-        List<Long> transaction = transactions.get(transactionId);
+        List<UUID> transaction = transactions.get(transactionId);
         if(transaction == null) {
             transaction = new ArrayList<>();
             transactions.put(transactionId, transaction);
         }
-        cache.put(key.longHashCode(), tripleId);
-        transaction.add(key.longHashCode());
+        UUID k = key.getKey();
+        cache.put(k, tripleId);
+        transaction.add(k);
     }
 
     /**
@@ -77,7 +79,7 @@ public class CacheTripleRegistry implements KiWiTripleRegistry {
      */
     @Override
     public long lookupKey(IntArray key) {
-        Long value = cache.get(key.longHashCode());
+        Long value = cache.get(key.getKey());
         if(value != null) {
             return value;
         } else {
@@ -94,7 +96,7 @@ public class CacheTripleRegistry implements KiWiTripleRegistry {
     @Override
     public void releaseTransaction(long transactionId) {
         if(transactions.containsKey(transactionId)) {
-            for(long key : transactions.remove(transactionId)) {
+            for(UUID key : transactions.remove(transactionId)) {
                 cache.remove(key);
             }
         }
@@ -107,6 +109,17 @@ public class CacheTripleRegistry implements KiWiTripleRegistry {
      */
     @Override
     public void deleteKey(IntArray key) {
-        cache.remove(key.longHashCode());
+        cache.remove(key.getKey());
+    }
+
+    /**
+     * Return the registry itself, i.e. all lookups and registrations are serialized.
+     *
+     * @param key the key identifying the triple arguments (subject, object, predicate, context)
+     * @return the monitor guarding the key
+     */
+    @Override
+    public Object getLock(IntArray key) {
+        return this;
     }
 }
@@ -56,9 +56,10 @@ public class DBTripleRegistry implements KiWiTripleRegistry {
         try {
             PreparedStatement stmt = con.getPreparedStatement("registry.register");
             synchronized (stmt) {
-                stmt.setLong(1, key.longHashCode());
-                stmt.setLong(2, tripleId);
-                stmt.setLong(3, transactionId);
+                stmt.setLong(1, key.getKeyHigh());
+                stmt.setLong(2, key.getKeyLow());
+                stmt.setLong(3, tripleId);
+                stmt.setLong(4, transactionId);
                 stmt.executeUpdate();
             }
         } catch (SQLException e) {
@@ -76,7 +77,8 @@ public class DBTripleRegistry implements KiWiTripleRegistry {
         try {
             PreparedStatement stmt = con.getPreparedStatement("registry.lookup");
             synchronized (stmt) {
-                stmt.setLong(1, key.longHashCode());
+                stmt.setLong(1, key.getKeyHigh());
+                stmt.setLong(2, key.getKeyLow());
 
                 try(ResultSet r = stmt.executeQuery()) {
                     if(r.next()) {
@@ -117,7 +119,8 @@ public class DBTripleRegistry implements KiWiTripleRegistry {
         try {
             PreparedStatement stmt = con.getPreparedStatement("registry.delete");
             synchronized (stmt) {
-                stmt.setLong(1, key.longHashCode());
+                stmt.setLong(1, key.getKeyHigh());
+                stmt.setLong(2, key.getKeyLow());
                 stmt.executeUpdate();
             }
         } catch (SQLException e) {
@@ -148,5 +151,14 @@ public class DBTripleRegistry implements KiWiTripleRegistry {
         }
     }
 
-
+    /**
+     * Return the registry itself, i.e. all lookups and registrations are serialized.
+     *
+     * @param key the key identifying the triple arguments (subject, object, predicate, context)
+     * @return the monitor guarding the key
+     */
+    @Override
+    public Object getLock(IntArray key) {
+        return this;
+    }
 }
@@ -58,4 +58,14 @@ public interface KiWiTripleRegistry {
      * @param key            the key identifying the triple arguments (subject, object, predicate, context)
      */
     void deleteKey(IntArray key);
+
+    /**
+     * Return the monitor to hold while looking up and registering the given key, so that concurrent transactions
+     * creating the same triple agree on a single triple id. Implementations may return the same monitor for all keys
+     * or use lock striping, so threads working on different triples can proceed in parallel.
+     *
+     * @param key            the key identifying the triple arguments (subject, object, predicate, context)
+     * @return               the monitor guarding the key
+     */
+    Object getLock(IntArray key);
 }
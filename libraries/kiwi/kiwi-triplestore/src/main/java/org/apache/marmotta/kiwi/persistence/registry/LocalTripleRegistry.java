@@ -19,26 +19,40 @@ package org.apache.marmotta.kiwi.persistence.registry;
 
 import org.apache.marmotta.commons.sesame.tripletable.IntArray;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Add file description here!
+ * An in-memory triple registry for a single instance. Registry entries are kept in concurrent maps, and lookups and
+ * registrations are guarded by a fixed number of lock stripes selected by the hash of the triple key, so threads
+ * creating different triples do not block each other.
  *
  * @author Sebastian Schaffert (sschaffert@apache.org)
  */
 public class LocalTripleRegistry implements KiWiTripleRegistry {
 
-    private Map<Long,Long> cache;
+    /**
+     * Number of lock stripes, must be a power of two.
+     */
+    private static final int STRIPES = 256;
+
+    private ConcurrentMap<UUID,Long> cache;
+
+    private ConcurrentMap<Long,Queue<UUID>>  transactions;
 
-    private Map<Long,List<Long>>  transactions;
+    private final Object[] locks;
 
     public LocalTripleRegistry() {
         cache        = new ConcurrentHashMap<>();
         transactions = new ConcurrentHashMap<>();
 
+        locks = new Object[STRIPES];
+        for(int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
     }
 
     /**
@@ -50,13 +64,16 @@ public class LocalTripleRegistry implements KiWiTripleRegistry {
      */
     @Override
     public void registerKey(IntArray key, long transactionId, long tripleId) {
-        List<Long> transaction = transactions.get(transactionId);
+        Queue<UUID> transaction = transactions.get(transactionId);
         if(transaction == null) {
-            transaction = new ArrayList<>();
-            transactions.put(transactionId, transaction);
+            Queue<UUID> existing = transactions.putIfAbsent(transactionId, transaction = new ConcurrentLinkedQueue<>());
+            if(existing != null) {
+                transaction = existing;
+            }
         }
-        cache.put(key.longHashCode(), tripleId);
-        transaction.add(key.longHashCode());
+        UUID k = key.getKey();
+        cache.put(k, tripleId);
+        transaction.add(k);
     }
 
     /**
@@ -68,7 +85,7 @@ public class LocalTripleRegistry implements KiWiTripleRegistry {
      */
     @Override
     public long lookupKey(IntArray key) {
-        Long value = cache.get(key.longHashCode());
+        Long value = cache.get(key.getKey());
         if(value != null) {
             return value;
         }
@@ -84,8 +101,9 @@ public class LocalTripleRegistry implements KiWiTripleRegistry {
      */
     @Override
     public void releaseTransaction(long transactionId) {
-        if(transactions.containsKey(transactionId)) {
-            for(long key : transactions.remove(transactionId)) {
+        Queue<UUID> transaction = transactions.remove(transactionId);
+        if(transaction != null) {
+            for(UUID key : transaction) {
                 cache.remove(key);
             }
         }
@@ -98,6 +116,17 @@ public class LocalTripleRegistry implements KiWiTripleRegistry {
      */
     @Override
     public void deleteKey(IntArray key) {
-        cache.remove(key.longHashCode());
+        cache.remove(key.getKey());
+    }
+
+    /**
+     * Return the lock stripe for the given key. Keys with the same hash always share the same stripe.
+     *
+     * @param key the key identifying the triple arguments (subject, object, predicate, context)
+     * @return the monitor guarding the key
+     */
+    @Override
+    public Object getLock(IntArray key) {
+        return locks[key.hashCode() & (STRIPES - 1)];
     }
 }
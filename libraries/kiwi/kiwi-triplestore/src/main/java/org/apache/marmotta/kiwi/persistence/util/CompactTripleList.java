@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence.util;
+
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+
+import java.util.Arrays;
+
+/**
+ * A compact, column-oriented list of triples for internal pipelines (query result batches, reasoner worklists).
+ * Instead of KiWiTriple objects referencing KiWiNode objects, the list only stores the database ids of the nodes and
+ * the triple metadata in primitive arrays, which needs 65 bytes per triple and creates no garbage per entry.
+ * Nodes are resolved lazily through the node cache of a connection when the triples are actually needed (see
+ * {@link org.apache.marmotta.kiwi.persistence.KiWiConnection#resolveTriples(CompactTripleList, int, int)}).
+ * <p/>
+ * A node id of 0 denotes a missing context or creator, like in the database. All nodes of a triple must already
+ * have a database id. The list is not thread safe.
+ */
+public class CompactTripleList {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final byte FLAG_DELETED  = 1;
+    private static final byte FLAG_INFERRED = 2;
+    private static final byte FLAG_NEW      = 4;
+
+    // value of deletedAt for triples that are not deleted
+    private static final long NOT_DELETED = Long.MIN_VALUE;
+
+    private long[] ids;
+    private long[] subjects;
+    private long[] predicates;
+    private long[] objects;
+    private long[] contexts;
+    private long[] creators;
+    private long[] created;
+    private long[] deletedAt;
+    private byte[] flags;
+
+    private int size;
+
+    public CompactTripleList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CompactTripleList(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    private void allocate(int capacity) {
+        ids        = new long[capacity];
+        subjects   = new long[capacity];
+        predicates = new long[capacity];
+        objects    = new long[capacity];
+        contexts   = new long[capacity];
+        creators   = new long[capacity];
+        created    = new long[capacity];
+        deletedAt  = new long[capacity];
+        flags      = new byte[capacity];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(capacity > ids.length) {
+            int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1));
+
+            ids        = Arrays.copyOf(ids, newCapacity);
+            subjects   = Arrays.copyOf(subjects, newCapacity);
+            predicates = Arrays.copyOf(predicates, newCapacity);
+            objects    = Arrays.copyOf(objects, newCapacity);
+            contexts   = Arrays.copyOf(contexts, newCapacity);
+            creators   = Arrays.copyOf(creators, newCapacity);
+            created    = Arrays.copyOf(created, newCapacity);
+            deletedAt  = Arrays.copyOf(deletedAt, newCapacity);
+            flags      = Arrays.copyOf(flags, newCapacity);
+        }
+    }
+
+    /**
+     * Add the given triple to the list. Only the ids of its nodes are kept, the triple object itself is not
+     * referenced by the list.
+     *
+     * @throws IllegalArgumentException in case one of the nodes of the triple has not been persisted yet
+     */
+    public void add(KiWiTriple triple) {
+        add(triple.getId(),
+                nodeId(triple.getSubject()), nodeId(triple.getPredicate()), nodeId(triple.getObject()),
+                triple.getContext() != null ? nodeId(triple.getContext()) : 0,
+                triple.getCreator() != null ? nodeId(triple.getCreator()) : 0,
+                triple.getCreated().getTime(),
+                triple.getDeletedAt() != null ? triple.getDeletedAt().getTime() : NOT_DELETED,
+                triple.isDeleted(), triple.isInferred(), triple.isNewTriple());
+    }
+
+    /**
+     * Add a triple given by its database id, the database ids of its nodes and its metadata. Context and creator
+     * are 0 if not given, deletedAt is Long.MIN_VALUE if the triple is not deleted.
+     */
+    public void add(long id, long subject, long predicate, long object, long context, long creator,
+                    long createdAt, long deletedAt, boolean deleted, boolean inferred, boolean newTriple) {
+        ensureCapacity(size + 1);
+
+        this.ids[size]        = id;
+        this.subjects[size]   = subject;
+        this.predicates[size] = predicate;
+        this.objects[size]    = object;
+        this.contexts[size]   = context;
+        this.creators[size]   = creator;
+        this.created[size]    = createdAt;
+        this.deletedAt[size]  = deletedAt;
+        this.flags[size]      = (byte) ((deleted ? FLAG_DELETED : 0) | (inferred ? FLAG_INFERRED : 0) | (newTriple ? FLAG_NEW : 0));
+
+        size++;
+    }
+
+    private static long nodeId(KiWiNode node) {
+        if(node.getId() < 0) {
+            throw new IllegalArgumentException("node " + node + " has not been persisted yet");
+        }
+        return node.getId();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all triples from the list; the allocated capacity is kept for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    private void checkIndex(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+    }
+
+    public long getId(int index) {
+        checkIndex(index);
+        return ids[index];
+    }
+
+    public long getSubjectId(int index) {
+        checkIndex(index);
+        return subjects[index];
+    }
+
+    public long getPredicateId(int index) {
+        checkIndex(index);
+        return predicates[index];
+    }
+
+    public long getObjectId(int index) {
+        checkIndex(index);
+        return objects[index];
+    }
+
+    /**
+     * Database id of the context of the triple at the given index, or 0 if the triple has no context
+     */
+    public long getContextId(int index) {
+        checkIndex(index);
+        return contexts[index];
+    }
+
+    /**
+     * Database id of the creator of the triple at the given index, or 0 if the triple has no creator
+     */
+    public long getCreatorId(int index) {
+        checkIndex(index);
+        return creators[index];
+    }
+
+    /**
+     * Creation time of the triple at the given index in milliseconds since the epoch
+     */
+    public long getCreated(int index) {
+        checkIndex(index);
+        return created[index];
+    }
+
+    /**
+     * Deletion time of the triple at the given index in milliseconds since the epoch, or Long.MIN_VALUE if the
+     * triple has not been deleted
+     */
+    public long getDeletedAt(int index) {
+        checkIndex(index);
+        return deletedAt[index];
+    }
+
+    public boolean isDeleted(int index) {
+        checkIndex(index);
+        return (flags[index] & FLAG_DELETED) != 0;
+    }
+
+    public boolean isInferred(int index) {
+        checkIndex(index);
+        return (flags[index] & FLAG_INFERRED) != 0;
+    }
+
+    public boolean isNewTriple(int index) {
+        checkIndex(index);
+        return (flags[index] & FLAG_NEW) != 0;
+    }
+}
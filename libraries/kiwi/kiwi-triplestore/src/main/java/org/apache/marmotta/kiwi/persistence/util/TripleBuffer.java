@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.persistence.util;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Collections2;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiResource;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrent in-memory buffer for the triples that are added in a transaction but not yet written to the
+ * database. Triples are indexed by the database ids of their nodes in the four orders SPOC, POSC, OSPC and CSPO,
+ * so every triple pattern with at least one bound position is answered by a range scan over one of the indexes
+ * instead of a scan over all buffered triples.
+ * <p/>
+ * Reads never block and return weakly consistent views, i.e. they can safely be iterated while other threads
+ * modify the buffer. Modifications of the same triple (adding and removing it) need to be serialized by the
+ * caller; the KiWiConnection does this using its commit lock.
+ * <p/>
+ * All nodes of a buffered triple must already have a database id.
+ */
+public class TripleBuffer implements Iterable<KiWiTriple> {
+
+    /**
+     * Node id used in index keys for triples without a context; database ids are never negative, and -1 is used
+     * by non-persistent nodes
+     */
+    private static final long NO_CONTEXT = Long.MIN_VALUE;
+
+    private static final int S = 0, P = 1, O = 2, C = 3;
+
+    // positions of subject, predicate, object and context in the keys of the different indexes
+    private static final int[] ORDER_SPOC = { S, P, O, C };
+    private static final int[] ORDER_POSC = { P, O, S, C };
+    private static final int[] ORDER_OSPC = { O, S, P, C };
+    private static final int[] ORDER_CSPO = { C, S, P, O };
+
+    private static final int[][] ORDERS = { ORDER_SPOC, ORDER_POSC, ORDER_OSPC, ORDER_CSPO };
+
+    /**
+     * The indexes, one for each order in ORDERS; the SPOC index is the primary index deciding whether a triple is
+     * contained in the buffer
+     */
+    private final List<ConcurrentSkipListMap<Key,KiWiTriple>> indexes;
+
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    public TripleBuffer() {
+        indexes = new ArrayList<>(ORDERS.length);
+        for(int i = 0; i < ORDERS.length; i++) {
+            indexes.add(new ConcurrentSkipListMap<Key, KiWiTriple>());
+        }
+    }
+
+    /**
+     * Return the number of triples in the buffer. Runs in constant time.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    /**
+     * Add the triple to the buffer unless a triple with the same subject, predicate, object and context is
+     * already contained.
+     *
+     * @return true if the triple was added, false if the buffer already contained a triple with the same nodes
+     */
+    public boolean add(KiWiTriple triple) {
+        long[] ids = createIds(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext());
+
+        if(indexes.get(0).putIfAbsent(createKey(ORDER_SPOC, ids), triple) != null) {
+            return false;
+        }
+        for(int i = 1; i < ORDERS.length; i++) {
+            indexes.get(i).put(createKey(ORDERS[i], ids), triple);
+        }
+        size.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Remove the triple with the same subject, predicate, object and context as the given triple from the buffer.
+     *
+     * @return true if the buffer contained such a triple
+     */
+    public boolean remove(KiWiTriple triple) {
+        long[] ids = createIds(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext());
+
+        if(indexes.get(0).remove(createKey(ORDER_SPOC, ids)) == null) {
+            return false;
+        }
+        for(int i = 1; i < ORDERS.length; i++) {
+            indexes.get(i).remove(createKey(ORDERS[i], ids));
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Remove all triples from the buffer.
+     */
+    public void clear() {
+        for(Map<Key,KiWiTriple> index : indexes) {
+            index.clear();
+        }
+        size.set(0);
+    }
+
+    /**
+     * Return a weakly consistent iterator over all buffered triples. The iterator supports removal.
+     */
+    @Override
+    public Iterator<KiWiTriple> iterator() {
+        final Iterator<KiWiTriple> it = indexes.get(0).values().iterator();
+        return new Iterator<KiWiTriple>() {
+            private KiWiTriple current;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public KiWiTriple next() {
+                current = it.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                if(current == null) {
+                    throw new IllegalStateException("next() has not been called");
+                }
+                TripleBuffer.this.remove(current);
+                current = null;
+            }
+        };
+    }
+
+    /**
+     * Return a weakly consistent view of the buffered triples matching the given pattern. Arguments with null
+     * value are treated as wildcards, except for a null context when wildcardContext is false, which only matches
+     * triples without context. The view uses the index whose key order has the longest prefix of bound positions.
+     *
+     * @param subject  the subject to match, or null
+     * @param property the property to match, or null
+     * @param object   the object to match, or null
+     * @param context  the context to match, or null
+     * @param wildcardContext if true, a null context will be interpreted as a wildcard, if false, a null context will be interpreted as "no context"
+     */
+    public Collection<KiWiTriple> listTriples(KiWiResource subject, KiWiNode property, KiWiNode object, KiWiResource context, boolean wildcardContext) {
+        final long[] ids = new long[4];
+        final boolean[] bound = new boolean[4];
+
+        bound[S] = subject != null;
+        bound[P] = property != null;
+        bound[O] = object != null;
+        bound[C] = context != null || !wildcardContext;
+
+        ids[S] = bound[S] ? subject.getId() : 0;
+        ids[P] = bound[P] ? property.getId() : 0;
+        ids[O] = bound[O] ? object.getId() : 0;
+        ids[C] = context != null ? context.getId() : NO_CONTEXT;
+
+        // select the index with the longest prefix of bound positions
+        int best = 0, bestPrefix = -1;
+        for(int i = 0; i < ORDERS.length; i++) {
+            int prefix = 0;
+            while (prefix < 4 && bound[ORDERS[i][prefix]]) {
+                prefix++;
+            }
+            if(prefix > bestPrefix) {
+                best = i;
+                bestPrefix = prefix;
+            }
+        }
+
+        ConcurrentSkipListMap<Key,KiWiTriple> index = indexes.get(best);
+        if(bestPrefix == 4) {
+            KiWiTriple result = index.get(createKey(ORDERS[best], ids));
+            return result != null ? Collections.singleton(result) : Collections.<KiWiTriple>emptyList();
+        }
+
+        Collection<KiWiTriple> candidates;
+        if(bestPrefix == 0) {
+            candidates = index.values();
+        } else {
+            ConcurrentNavigableMap<Key,KiWiTriple> range = index.subMap(
+                    createBoundaryKey(ORDERS[best], ids, bestPrefix, Long.MIN_VALUE), true,
+                    createBoundaryKey(ORDERS[best], ids, bestPrefix, Long.MAX_VALUE), true);
+            candidates = range.values();
+        }
+
+        // check whether there are bound positions not covered by the prefix
+        boolean filter = false;
+        for(int pos = bestPrefix; pos < 4; pos++) {
+            filter = filter || bound[ORDERS[best][pos]];
+        }
+        if(!filter) {
+            return candidates;
+        }
+
+        return Collections2.filter(candidates, new Predicate<KiWiTriple>() {
+            @Override
+            public boolean apply(KiWiTriple triple) {
+                long[] tids = createIds(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext());
+                for(int pos = 0; pos < 4; pos++) {
+                    if(bound[pos] && tids[pos] != ids[pos]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * List the distinct contexts of all buffered triples. Triples without context are ignored. Skips over the
+     * CSPO index, so the cost depends on the number of contexts rather than the number of triples.
+     */
+    public Collection<KiWiResource> listContextIDs() {
+        ConcurrentSkipListMap<Key,KiWiTriple> index = indexes.get(3);
+
+        List<KiWiResource> result = new ArrayList<>();
+        Map.Entry<Key,KiWiTriple> entry = index.firstEntry();
+        while (entry != null) {
+            long ctx = entry.getKey().id0;
+            if(ctx != NO_CONTEXT) {
+                result.add(entry.getValue().getContext());
+            }
+            entry = index.higherEntry(new Key(ctx, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE));
+        }
+        return result;
+    }
+
+
+    private static long[] createIds(KiWiResource subject, KiWiNode property, KiWiNode object, KiWiResource context) {
+        return new long[] {
+                subject.getId(),
+                property.getId(),
+                object.getId(),
+                context != null ? context.getId() : NO_CONTEXT
+        };
+    }
+
+    private static Key createKey(int[] order, long[] ids) {
+        return new Key(ids[order[0]], ids[order[1]], ids[order[2]], ids[order[3]]);
+    }
+
+    /**
+     * Create a key that uses the given ids for the first prefix positions of the order and the boundary value for
+     * all remaining positions.
+     */
+    private static Key createBoundaryKey(int[] order, long[] ids, int prefix, long boundary) {
+        long[] key = new long[4];
+        for(int pos = 0; pos < 4; pos++) {
+            key[pos] = pos < prefix ? ids[order[pos]] : boundary;
+        }
+        return new Key(key[0], key[1], key[2], key[3]);
+    }
+
+    /**
+     * Index key consisting of four node ids, ordered lexicographically.
+     */
+    private static final class Key implements Comparable<Key> {
+
+        private final long id0, id1, id2, id3;
+
+        private Key(long id0, long id1, long id2, long id3) {
+            this.id0 = id0;
+            this.id1 = id1;
+            this.id2 = id2;
+            this.id3 = id3;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int c = Long.compare(id0, other.id0);
+            if(c == 0) {
+                c = Long.compare(id1, other.id1);
+            }
+            if(c == 0) {
+                c = Long.compare(id2, other.id2);
+            }
+            if(c == 0) {
+                c = Long.compare(id3, other.id3);
+            }
+            return c;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return id0 == key.id0 && id1 == key.id1 && id2 == key.id2 && id3 == key.id3;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (id0 ^ (id0 >>> 32));
+            result = 31 * result + (int) (id1 ^ (id1 >>> 32));
+            result = 31 * result + (int) (id2 ^ (id2 >>> 32));
+            result = 31 * result + (int) (id3 ^ (id3 >>> 32));
+            return result;
+        }
+    }
+}
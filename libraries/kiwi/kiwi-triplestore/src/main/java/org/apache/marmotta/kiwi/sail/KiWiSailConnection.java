@@ -98,6 +98,29 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
         return databaseConnection;
     }
 
+    /**
+     * Return true if this connection is read-only (see {@link #setReadOnly(boolean)}).
+     */
+    public boolean isReadOnly() {
+        return databaseConnection.isReadOnly();
+    }
+
+    /**
+     * Make this connection read-only. Read-only connections reject all modifications and are served from the read
+     * replica of the database if one is configured. Must be called before the connection is used.
+     */
+    public void setReadOnly(boolean readOnly) {
+        databaseConnection.setReadOnly(readOnly);
+    }
+
+    /**
+     * Set the maximum time in seconds native queries of this connection may run in the database, 0 for no limit
+     * (see {@link KiWiConnection#setQueryTimeout(int)}).
+     */
+    public void setQueryTimeout(int queryTimeout) {
+        databaseConnection.setQueryTimeout(queryTimeout);
+    }
+
     @Override
     protected void addStatementInternal(Resource subj, URI pred, Value obj, Resource... contexts) throws SailException {
         addStatementInternal(subj,pred,obj,false,contexts);
@@ -175,6 +198,7 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
 
     @Override
     protected void closeInternal() throws SailException {
+        valueFactory.unbindConnection(databaseConnection);
         try {
             databaseConnection.close();
         } catch (SQLException e) {
@@ -335,6 +359,11 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
         // nothing to do, the database transaction is started automatically
         triplesAdded = false;
         triplesRemoved = false;
+
+        // nodes created by the value factory while the transaction is running are stored with the transaction
+        if(!databaseConnection.isReadOnly()) {
+            valueFactory.bindConnection(databaseConnection);
+        }
     }
 
     @Override
@@ -344,6 +373,8 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
             databaseConnection.commit();
         } catch (SQLException e) {
             throw new SailException("database error while committing transaction",e);
+        } finally {
+            valueFactory.unbindConnection(databaseConnection);
         }
         if(triplesAdded || triplesRemoved) {
 
@@ -373,6 +404,8 @@ public class KiWiSailConnection extends NotifyingSailConnectionBase implements I
             databaseConnection.rollback();
         } catch (SQLException e) {
             throw new SailException("database error while rolling back transaction",e);
+        } finally {
+            valueFactory.unbindConnection(databaseConnection);
         }
     }
 
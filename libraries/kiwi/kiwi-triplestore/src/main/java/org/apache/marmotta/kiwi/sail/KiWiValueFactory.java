@@ -55,6 +55,11 @@ public class KiWiValueFactory implements ValueFactory {
 
     private String defaultContext;
 
+    /**
+     * Connection of the transaction currently running in a thread, see {@link #bindConnection(KiWiConnection)}
+     */
+    private final ThreadLocal<KiWiConnection> transactions = new ThreadLocal<>();
+
     public KiWiValueFactory(KiWiStore store, String defaultContext) {
         anonIdGenerator = new Random();
 
@@ -80,9 +85,39 @@ public class KiWiValueFactory implements ValueFactory {
         this.defaultContext = defaultContext;
     }
 
+    /**
+     * Bind the connection of a transaction started in the current thread to this value factory. Nodes created by
+     * the value factory in this thread are then stored using this connection, so they are batched together with
+     * the triples of the transaction and committed or rolled back with it. Does nothing in case another transaction
+     * is already bound to the current thread.
+     *
+     * @param connection the connection of the transaction
+     */
+    protected void bindConnection(KiWiConnection connection) {
+        if(transactions.get() == null) {
+            transactions.set(connection);
+        }
+    }
+
+    /**
+     * Remove the binding of the given connection from the current thread, see {@link #bindConnection(KiWiConnection)}.
+     *
+     * @param connection the connection of the finished transaction
+     */
+    protected void unbindConnection(KiWiConnection connection) {
+        if(transactions.get() == connection) {
+            transactions.remove();
+        }
+    }
+
     protected KiWiConnection aqcuireConnection() {
         try {
-            KiWiConnection connection = store.getPersistence().getConnection();
+            KiWiConnection connection = transactions.get();
+            if(connection != null && !connection.isClosed()) {
+                return connection;
+            }
+
+            connection = store.getPersistence().getConnection();
             connection.setAutoCommit(true);
             return connection;
         } catch(SQLException ex) {
@@ -92,6 +127,9 @@ public class KiWiValueFactory implements ValueFactory {
     }
 
     protected void releaseConnection(KiWiConnection con) {
+        if(con == transactions.get()) {
+            return;
+        }
         try {
             con.close();
         } catch (SQLException ex) {
@@ -144,6 +182,25 @@ public class KiWiValueFactory implements ValueFactory {
 
     }
 
+    /**
+     * Return the URI resource with the given URI in case it is already stored in the database, or null otherwise.
+     * Unlike {@link #createURI(String)}, this method does not create a new node for unknown URIs.
+     *
+     * @param uri the URI to look up
+     * @return the stored URI resource, or null
+     */
+    public KiWiUriResource loadURI(String uri) {
+        KiWiConnection connection = aqcuireConnection();
+        try {
+            return connection.loadUriResource(uri);
+        } catch (SQLException e) {
+            log.error("database error, could not load URI resource",e);
+            throw new IllegalStateException("database error, could not load URI resource",e);
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
     /**
      * Creates a new URI from the supplied namespace and local name. Calling this
      * method is funtionally equivalent to calling
@@ -568,7 +625,7 @@ public class KiWiValueFactory implements ValueFactory {
 
             boolean needsDBLookup = false;
 
-            synchronized (registry) {
+            synchronized (registry.getLock(cacheKey)) {
                 long tripleId = registry.lookupKey(cacheKey);
 
                 if(tripleId >= 0) {
@@ -588,7 +645,7 @@ public class KiWiValueFactory implements ValueFactory {
 
             // triple has no id from registry or database, so we create one and flag it for reasoning
             if(result.getId() < 0) {
-                synchronized (registry) {
+                synchronized (registry.getLock(cacheKey)) {
                     // It's possible a concurrent thread might have created this
                     // triple while we were blocked.  Check the registry again.
                     long tripleId = registry.lookupKey(cacheKey);
@@ -622,7 +679,7 @@ public class KiWiValueFactory implements ValueFactory {
         if(triple.getId() >= 0) {
             IntArray cacheKey = IntArray.createSPOCKey(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getContext());
 
-            synchronized (registry) {
+            synchronized (registry.getLock(cacheKey)) {
                 registry.deleteKey(cacheKey);
             }
         }
@@ -646,7 +703,8 @@ public class KiWiValueFactory implements ValueFactory {
         if(value == null) {
             return null;
         }
-        if(value instanceof KiWiNode) {
+        // nodes created in a transaction that has been rolled back are not stored anymore and are created again
+        if(value instanceof KiWiNode && ((KiWiNode) value).getId() >= 0) {
             return (KiWiNode)value;
         }
         if(value instanceof URI) {
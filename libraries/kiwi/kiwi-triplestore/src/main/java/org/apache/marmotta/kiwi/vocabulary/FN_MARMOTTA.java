@@ -49,6 +49,8 @@ public class FN_MARMOTTA {
 
     public static final URI QUERY_FULLTEXT;
 
+    public static final URI RANK_FULLTEXT;
+
     // URIs for SPARQL built-in functions, used internally by marmotta
     public static final URI RAND;
     public static final URI UUID;
@@ -79,6 +81,7 @@ public class FN_MARMOTTA {
 
         SEARCH_FULLTEXT = f.createURI(NAMESPACE,"fulltext-search");
         QUERY_FULLTEXT = f.createURI(NAMESPACE,"fulltext-query");
+        RANK_FULLTEXT = f.createURI(NAMESPACE,"fulltext-rank");
 
         RAND      = f.createURI(NAMESPACE,"rand");
         UUID      = f.createURI(NAMESPACE,"uuid");
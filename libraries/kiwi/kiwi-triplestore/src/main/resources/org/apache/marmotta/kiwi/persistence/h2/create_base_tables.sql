@@ -59,17 +59,34 @@ CREATE TABLE metadata (
   PRIMARY KEY(id)
 );
 
+-- the URI prefix dictionary used for compressing serialized URIs; idx is the dense position of the prefix
+CREATE TABLE prefixes (
+  idx       integer       NOT NULL,
+  prefix    varchar(256)  NOT NULL,
+  PRIMARY KEY(idx)
+);
+
 
 -- a table for temporary triple id registrations
 CREATE TABLE registry (
-  tripleKey BIGINT NOT NULL,
+  keyHigh   BIGINT NOT NULL,
+  keyLow    BIGINT NOT NULL,
   tripleId  BIGINT NOT NULL,
   txId      BIGINT NOT NULL
 );
 CREATE INDEX idx_reg_triple ON registry(tripleId);
-CREATE INDEX idx_reg_key ON registry(tripleKey);
+CREATE INDEX idx_reg_key ON registry(keyHigh,keyLow);
 CREATE INDEX idx_reg_tx ON registry(txId);
 
+-- counters of the non-deleted triples per context; context -1 holds the total number of triples; each counter is
+-- split into several stripes that are summed up when reading, so concurrent transactions do not update the same row
+CREATE TABLE triple_counts (
+  context   BIGINT NOT NULL,
+  stripe    INTEGER NOT NULL,
+  tcount    BIGINT NOT NULL,
+  PRIMARY KEY(context,stripe)
+);
+
 -- Indexes for accessing nodes and triples efficiently
 CREATE INDEX idx_node_content ON nodes(svalue);
 CREATE INDEX idx_literal_lang ON nodes(lang);
@@ -77,10 +94,15 @@ CREATE INDEX idx_literal_lang ON nodes(lang);
 CREATE INDEX idx_triples_spo ON triples(subject,predicate,object);
 CREATE INDEX idx_triples_p ON triples(predicate);
 CREATE INDEX idx_triples_cspo ON triples(context,subject,predicate,object);
+CREATE INDEX idx_triples_cid ON triples(context,id);
 
 CREATE INDEX idx_namespaces_uri ON namespaces(uri);
 CREATE INDEX idx_namespaces_prefix ON namespaces(prefix);
 
+-- initial triple counters
+INSERT INTO triple_counts(context,stripe,tcount) VALUES (-1,0,0);
+
 -- insert initial metadata
-INSERT INTO metadata(mkey,mvalue) VALUES ('version','4');
+INSERT INTO metadata(mkey,mvalue) VALUES ('version','9');
+INSERT INTO metadata(mkey,mvalue) VALUES ('dictionary',CAST(CAST(FLOOR(1 + RAND() * 2147483646) AS INT) AS VARCHAR));
 INSERT INTO metadata(mkey,mvalue) VALUES ('created',FORMATDATETIME(now(),'yyyy-MM-dd HH:mm:ss z','en') );
\ No newline at end of file
@@ -0,0 +1,32 @@
+-- Licensed to the Apache Software Foundation (ASF) under one or more
+-- contributor license agreements.  See the NOTICE file distributed with
+-- this work for additional information regarding copyright ownership.
+-- The ASF licenses this file to You under the Apache License, Version 2.0
+-- (the "License"); you may not use this file except in compliance with
+-- the License.  You may obtain a copy of the License at
+--
+--      http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- the URI prefix dictionary used for compressing serialized URIs; idx is the dense position of the prefix
+CREATE TABLE prefixes (
+  idx       integer       NOT NULL,
+  prefix    varchar(256)  NOT NULL,
+  PRIMARY KEY(idx)
+);
+
+-- the prefixes were stored in the metadata table before; their order was not reliable, so start a new dictionary
+DELETE FROM metadata WHERE mkey = 'prefix';
+INSERT INTO metadata(mkey,mvalue) VALUES ('dictionary',CAST(CAST(FLOOR(1 + RAND() * 2147483646) AS INT) AS VARCHAR));
+
+-- split the triple counters into stripes to avoid lock contention between concurrent transactions
+ALTER TABLE triple_counts ADD COLUMN stripe INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE triple_counts DROP PRIMARY KEY;
+ALTER TABLE triple_counts ADD PRIMARY KEY(context,stripe);
+
+UPDATE METADATA SET mvalue = '9' WHERE mkey = 'version';
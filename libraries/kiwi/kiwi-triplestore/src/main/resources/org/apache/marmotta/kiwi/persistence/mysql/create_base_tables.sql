@@ -59,16 +59,33 @@ CREATE TABLE metadata (
   PRIMARY KEY(id)
 ) CHARACTER SET utf8 COLLATE utf8_bin  ENGINE=InnoDB;
 
+-- the URI prefix dictionary used for compressing serialized URIs; idx is the dense position of the prefix
+CREATE TABLE prefixes (
+  idx       integer       NOT NULL,
+  prefix    varchar(256)  NOT NULL,
+  PRIMARY KEY(idx)
+) CHARACTER SET utf8 COLLATE utf8_bin  ENGINE=InnoDB;
+
 -- a table for temporary triple id registrations
 CREATE TABLE registry (
-  tripleKey BIGINT NOT NULL,
+  keyHigh   BIGINT NOT NULL,
+  keyLow    BIGINT NOT NULL,
   tripleId  BIGINT NOT NULL,
   txId      BIGINT NOT NULL,
-  INDEX USING BTREE(tripleKey),
+  INDEX USING BTREE(keyHigh,keyLow),
   INDEX USING BTREE(tripleId),
   INDEX USING BTREE(txId)
 ) ENGINE=MEMORY;
 
+-- counters of the non-deleted triples per context; context -1 holds the total number of triples; each counter is
+-- split into several stripes that are summed up when reading, so concurrent transactions do not update the same row
+CREATE TABLE triple_counts (
+  context   bigint NOT NULL,
+  stripe    integer NOT NULL,
+  tcount    bigint NOT NULL,
+  PRIMARY KEY(context,stripe)
+) ENGINE=InnoDB;
+
 -- Indexes for accessing nodes and triples efficiently
 CREATE INDEX idx_node_content ON nodes(svalue(256));
 CREATE INDEX idx_literal_lang ON nodes(lang);
@@ -76,10 +93,15 @@ CREATE INDEX idx_literal_lang ON nodes(lang);
 CREATE INDEX idx_triples_p ON triples(predicate);
 CREATE INDEX idx_triples_spo ON triples(subject,predicate,object);
 CREATE INDEX idx_triples_cspo ON triples(context,subject,predicate,object);
+CREATE INDEX idx_triples_cid ON triples(context,id);
 
 CREATE INDEX idx_namespaces_uri ON namespaces(uri);
 CREATE INDEX idx_namespaces_prefix ON namespaces(prefix);
 
+-- initial triple counters
+INSERT INTO triple_counts(context,stripe,tcount) VALUES (-1,0,0);
+
 -- insert initial metadata
-INSERT INTO metadata(mkey,mvalue) VALUES ('version','4');
+INSERT INTO metadata(mkey,mvalue) VALUES ('version','9');
+INSERT INTO metadata(mkey,mvalue) VALUES ('dictionary',CAST(FLOOR(1 + RAND() * 2147483646) AS CHAR));
 INSERT INTO metadata(mkey,mvalue) VALUES ('created',DATE_FORMAT(now(),'%Y-%m-%d %H:%i:%s') );
@@ -19,6 +19,7 @@ DROP INDEX idx_literal_lang ON nodes;
 DROP INDEX idx_triples_p ON triples;
 DROP INDEX idx_triples_spo ON triples;
 DROP INDEX idx_triples_cspo ON triples;
+DROP INDEX idx_triples_cid ON triples;
 
 DROP INDEX idx_namespaces_uri ON namespaces;
 DROP INDEX idx_namespaces_prefix ON namespaces;
@@ -27,5 +28,7 @@ DROP TABLE IF EXISTS triples;
 DROP TABLE IF EXISTS namespaces;
 DROP TABLE IF EXISTS nodes;
 DROP TABLE IF EXISTS metadata;
+DROP TABLE IF EXISTS prefixes;
 DROP TABLE IF EXISTS registry;
+DROP TABLE IF EXISTS triple_counts;
 
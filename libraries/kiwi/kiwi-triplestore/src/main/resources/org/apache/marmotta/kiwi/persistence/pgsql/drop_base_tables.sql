@@ -18,6 +18,10 @@ DROP INDEX IF EXISTS idx_literal_lang;
 DROP INDEX IF EXISTS idx_triples_p;
 DROP INDEX IF EXISTS idx_triples_spo;
 DROP INDEX IF EXISTS idx_triples_cspo;
+DROP INDEX IF EXISTS idx_triples_cid;
+DROP INDEX IF EXISTS idx_triples_deleted;
+DROP INDEX IF EXISTS idx_triples_ops;
+DROP INDEX IF EXISTS idx_triples_osp;
 
 DROP INDEX IF EXISTS idx_namespaces_uri;
 DROP INDEX IF EXISTS idx_namespaces_prefix;
@@ -30,7 +34,9 @@ DROP TABLE IF EXISTS triples;
 DROP TABLE IF EXISTS namespaces;
 DROP TABLE IF EXISTS nodes;
 DROP TABLE IF EXISTS metadata;
+DROP TABLE IF EXISTS prefixes;
 DROP TABLE IF EXISTS registry;
+DROP TABLE IF EXISTS triple_counts;
 
 DROP TYPE IF EXISTS nodetype;
 
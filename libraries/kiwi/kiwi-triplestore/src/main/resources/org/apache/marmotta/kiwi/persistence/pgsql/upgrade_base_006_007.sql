@@ -0,0 +1,27 @@
+-- Licensed to the Apache Software Foundation (ASF) under one or more
+-- contributor license agreements.  See the NOTICE file distributed with
+-- this work for additional information regarding copyright ownership.
+-- The ASF licenses this file to You under the Apache License, Version 2.0
+-- (the "License"); you may not use this file except in compliance with
+-- the License.  You may obtain a copy of the License at
+--
+--      http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- counters of the non-deleted triples per context; context -1 holds the total number of triples
+CREATE TABLE triple_counts (
+  context   bigint NOT NULL,
+  tcount    bigint NOT NULL,
+  PRIMARY KEY(context)
+);
+
+-- initialise the counters from the current content of the triple store
+INSERT INTO triple_counts(context,tcount) SELECT -1, count(*) FROM triples WHERE deleted = false;
+INSERT INTO triple_counts(context,tcount) SELECT context, count(*) FROM triples WHERE deleted = false AND context IS NOT NULL GROUP BY context;
+
+UPDATE METADATA SET mvalue = '7' WHERE mkey = 'version';
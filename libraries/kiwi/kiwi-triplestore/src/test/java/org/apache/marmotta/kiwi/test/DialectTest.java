@@ -27,7 +27,9 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Set;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 
 /**
  * Test if the dialects returns correct values
@@ -77,10 +79,30 @@ public class DialectTest {
         Assert.assertNotNull(migrateScript);
         Assert.assertFalse("".equals(migrateScript));
 
-        String migrateScript2 = dialect.getMigrationScript(4,"base");
+        String migrateScript2 = dialect.getMigrationScript(KiWiDialect.VERSION,"base");
 
         Assert.assertNotNull(migrateScript2);
         Assert.assertTrue("".equals(migrateScript2));
+
+        String migrateScript3 = dialect.getMigrationScript(4,"base");
+
+        Assert.assertThat(migrateScript3, not(containsString("idx_triples_ops")));
+    }
+
+
+    @Test
+    public void testGetIndexScripts() {
+        Assert.assertThat(dialect.getCreateScript("base"), not(containsString("idx_triples_ops")));
+
+        String createScript = dialect.getCreateIndexScript("object");
+
+        Assert.assertThat(createScript, containsString("idx_triples_ops"));
+        Assert.assertThat(createScript, containsString("idx_triples_osp"));
+
+        String dropScript = dialect.getDropIndexScript("object");
+
+        Assert.assertThat(dropScript, containsString("idx_triples_ops"));
+        Assert.assertThat(dropScript, containsString("idx_triples_osp"));
     }
 
 
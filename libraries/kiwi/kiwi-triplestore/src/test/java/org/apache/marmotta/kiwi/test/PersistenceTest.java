@@ -20,11 +20,18 @@ import info.aduna.iteration.Iterations;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.marmotta.commons.sesame.model.Namespaces;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.io.KiWiIO;
+import org.apache.marmotta.kiwi.io.PrefixDictionary;
 import org.apache.marmotta.kiwi.model.rdf.*;
+import org.apache.marmotta.kiwi.persistence.DeletionListener;
 import org.apache.marmotta.kiwi.persistence.KiWiConnection;
 import org.apache.marmotta.kiwi.persistence.KiWiDialect;
+import org.apache.marmotta.kiwi.persistence.KiWiGarbageCollector;
 import org.apache.marmotta.kiwi.persistence.KiWiPersistence;
+import org.apache.marmotta.kiwi.persistence.mysql.MySQLDialect;
+import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
 import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner.ForDialects;
 import org.joda.time.DateTime;
 import org.junit.After;
 import org.junit.Assert;
@@ -32,10 +39,16 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.openrdf.model.Statement;
+import org.openrdf.repository.RepositoryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.*;
 
 import static org.apache.marmotta.commons.sesame.model.LiteralCommons.getRDFLangStringType;
@@ -52,6 +65,7 @@ import static org.hamcrest.Matchers.hasItems;
 @RunWith(KiWiDatabaseRunner.class)
 public class PersistenceTest {
 
+    private static Logger log = LoggerFactory.getLogger(PersistenceTest.class);
 
     private KiWiPersistence persistence;
 
@@ -1070,6 +1084,525 @@ public class PersistenceTest {
 
     }
 
+    /**
+     * Test storing a batch of nodes and triples that exceeds the copy threshold; on databases supporting bulk
+     * loading the batch is written with COPY, otherwise with JDBC batch updates. In both cases the stored data
+     * must be the same.
+     */
+    @Test
+    public void testStoreTriplesCopy() throws Exception {
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            if(kiwiConfig.getDialect().isCopySupported()) {
+                connection.setCopyThreshold(10);
+            }
+
+            KiWiUriResource stype    = new KiWiUriResource(Namespaces.NS_XSD+"string");
+            KiWiUriResource itype    = new KiWiUriResource(Namespaces.NS_XSD+"integer");
+            KiWiUriResource dtype    = new KiWiUriResource(Namespaces.NS_XSD+"double");
+            KiWiUriResource btype    = new KiWiUriResource(Namespaces.NS_XSD+"boolean");
+            KiWiUriResource ttype    = new KiWiUriResource(Namespaces.NS_XSD+"dateTime");
+            KiWiUriResource ltype    = new KiWiUriResource(getRDFLangStringType());
+            KiWiUriResource subject  = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource pred     = new KiWiUriResource("http://localhost/predicate/P1");
+            KiWiUriResource context  = new KiWiUriResource("http://localhost/context/"+RandomStringUtils.randomAlphanumeric(8));
+
+            List<KiWiNode> objects = new ArrayList<>();
+            objects.add(new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8)));
+            objects.add(new KiWiAnonResource(RandomStringUtils.randomAlphanumeric(8)));
+            objects.add(new KiWiStringLiteral("a \"quoted\", multi-line\nliteral", null, stype));
+            objects.add(new KiWiStringLiteral("", null, stype));
+            objects.add(new KiWiStringLiteral("42", null, stype));
+            objects.add(new KiWiStringLiteral(RandomStringUtils.randomAlphanumeric(8), Locale.ENGLISH, ltype));
+            objects.add(new KiWiIntLiteral(-17L, itype));
+            objects.add(new KiWiDoubleLiteral(3.5e10, dtype));
+            objects.add(new KiWiBooleanLiteral(true, btype));
+            objects.add(new KiWiDateLiteral(DateTime.now().withMillisOfSecond(0), ttype));
+
+            for(KiWiNode node : Arrays.asList(stype, itype, dtype, btype, ttype, ltype, subject, pred, context)) {
+                connection.storeNode(node);
+            }
+
+            List<KiWiTriple> triples = new ArrayList<>();
+            for(int i = 0; i < objects.size(); i++) {
+                connection.storeNode(objects.get(i));
+
+                KiWiTriple triple = new KiWiTriple(subject, pred, objects.get(i), i % 2 == 0 ? context : null);
+                connection.storeTriple(triple);
+                triples.add(triple);
+            }
+
+            connection.commit();
+
+            Assert.assertEquals(objects.size(), connection.getSize());
+            Assert.assertEquals(objects.size() / 2, connection.getSize(context));
+
+            // clear cache and check that nodes and triples are loaded from the database
+            persistence.clearCache();
+            for(KiWiNode node : objects) {
+                KiWiNode loaded = connection.loadNodeById(node.getId());
+                Assert.assertEquals(node, loaded);
+                Assert.assertEquals(node.getId(), loaded.getId());
+            }
+            for(KiWiTriple triple : triples) {
+                KiWiTriple loaded = connection.loadTripleById(triple.getId());
+                Assert.assertNotNull(loaded);
+                Assert.assertEquals(triple, loaded);
+            }
+
+            // a rolled back batch must not be persisted
+            KiWiUriResource uri = new KiWiUriResource("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+            connection.storeNode(uri);
+            for(int i = 0; i < 20; i++) {
+                KiWiUriResource object = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+                connection.storeNode(object);
+                connection.storeTriple(new KiWiTriple(uri, pred, object, context));
+            }
+            connection.flushBatch();
+            connection.rollback();
+
+            persistence.clearCache();
+            Assert.assertNull(connection.loadUriResource(uri.stringValue()));
+            Assert.assertEquals(objects.size(), connection.getSize());
+
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Test adding triples that already exist in the database again in a batch exceeding the copy threshold; like
+     * with the INSERT statements, the existing triples must be ignored instead of violating the primary key.
+     */
+    @Test
+    public void testStoreTriplesCopyExisting() throws Exception {
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            if(kiwiConfig.getDialect().isCopySupported()) {
+                connection.setCopyThreshold(10);
+            }
+
+            KiWiUriResource subject  = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource pred     = new KiWiUriResource("http://localhost/predicate/P1");
+            KiWiUriResource context  = new KiWiUriResource("http://localhost/context/"+RandomStringUtils.randomAlphanumeric(8));
+            connection.storeNode(subject);
+            connection.storeNode(pred);
+            connection.storeNode(context);
+
+            List<KiWiTriple> triples = new ArrayList<>();
+            for(int i = 0; i < 20; i++) {
+                KiWiUriResource object = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+                connection.storeNode(object);
+
+                KiWiTriple triple = new KiWiTriple(subject, pred, object, context);
+                connection.storeTriple(triple);
+                triples.add(triple);
+            }
+            connection.commit();
+
+            // add the stored triples again, together with some new triples, in a single batch
+            persistence.clearCache();
+            for(KiWiTriple triple : triples) {
+                connection.storeTriple(connection.loadTripleById(triple.getId()));
+            }
+            for(int i = 0; i < 5; i++) {
+                KiWiUriResource object = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+                connection.storeNode(object);
+                connection.storeTriple(new KiWiTriple(subject, pred, object, context));
+            }
+            connection.commit();
+
+            Assert.assertEquals(25, connection.getSize());
+            Assert.assertEquals(25, connection.getSize(context));
+            Assert.assertEquals(25, Iterations.asList(connection.listTriples(subject, pred, null, context, false, true)).size());
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Test that read-only connections can read the data stored by other connections, reject modifications, and
+     * are served from the read replica if one is configured (here the replica is the primary database itself).
+     */
+    @Test
+    public void testReadOnlyConnection() throws Exception {
+        KiWiUriResource subject  = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+        KiWiUriResource pred     = new KiWiUriResource("http://localhost/predicate/P1");
+        KiWiUriResource object   = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+        KiWiUriResource context  = new KiWiUriResource("http://localhost/context/"+RandomStringUtils.randomAlphanumeric(8));
+        KiWiTriple triple = new KiWiTriple(subject, pred, object, context);
+
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            connection.storeNode(subject);
+            connection.storeNode(pred);
+            connection.storeNode(object);
+            connection.storeNode(context);
+            connection.storeTriple(triple);
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+        persistence.clearCache();
+
+        connection = persistence.getConnection(true);
+        try {
+            Assert.assertTrue(connection.isReadOnly());
+            Assert.assertEquals(subject, connection.loadUriResource(subject.stringValue()));
+            Assert.assertEquals(1, Iterations.asList(connection.listTriples(subject, null, null, null, false, true)).size());
+
+            try {
+                connection.storeNode(new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8)));
+                Assert.fail("read-only connection accepted a modification");
+            } catch (SQLException ex) {
+                // expected
+            }
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+        Assert.assertNull(persistence.getReplicaPoolStatistics());
+
+        KiWiConfiguration replicaConfig = new KiWiConfiguration(kiwiConfig.getName() + "-replica", kiwiConfig.getJdbcUrl(), kiwiConfig.getDbUser(), kiwiConfig.getDbPassword(), kiwiConfig.getDialect());
+        replicaConfig.setReplicaJdbcUrl(kiwiConfig.getJdbcUrl());
+
+        KiWiPersistence replicated = new KiWiPersistence(replicaConfig);
+        replicated.initialise();
+        try {
+            connection = replicated.getConnection(true);
+            try {
+                Assert.assertEquals(subject, connection.loadUriResource(subject.stringValue()));
+                Assert.assertEquals(1, Iterations.asList(connection.listTriples(subject, null, null, null, false, true)).size());
+                connection.commit();
+            } finally {
+                connection.close();
+            }
+
+            Assert.assertEquals(1, replicated.getReplicaPoolStatistics().getBorrowed());
+            Assert.assertEquals(0, replicated.getReplicaPoolStatistics().getActive());
+            Assert.assertEquals(0, replicated.getReplicaFallbacks());
+            Assert.assertEquals(0, replicated.getPrimaryPoolStatistics().getBorrowed());
+        } finally {
+            replicated.shutdown();
+        }
+    }
+
+    /**
+     * Test that listing a result of several million triples streams the rows from the database instead of loading
+     * the complete result into memory. The triples are created directly in the database; H2 is excluded because
+     * the in-memory test database itself lives on the heap.
+     */
+    @Test
+    @ForDialects({PostgreSQLDialect.class, MySQLDialect.class})
+    public void testListTriplesStreaming() throws Exception {
+        final int numNodes = 1500;
+        final long maxMemory = 128 * 1024 * 1024;
+
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            // nodes with ids 1 .. numNodes; node 1 is used as predicate and context of all triples
+            PreparedStatement insertNode = connection.getPreparedStatement("store.uri");
+            for(int i = 1; i <= numNodes; i++) {
+                insertNode.setLong(1, i);
+                insertNode.setString(2, "http://localhost/resource/" + i);
+                insertNode.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+                insertNode.addBatch();
+            }
+            insertNode.executeBatch();
+
+            PreparedStatement insertTriples = connection.getJDBCConnection().prepareStatement(
+                    "INSERT INTO triples (id,subject,predicate,object,context,inferred,createdAt) " +
+                    "SELECT a.id * 10000 + b.id, a.id, 1, b.id, 1, false, a.createdAt FROM nodes a, nodes b " +
+                    "WHERE a.id <= ? AND b.id <= ?");
+            insertTriples.setLong(1, numNodes);
+            insertTriples.setLong(2, numNodes);
+            insertTriples.executeUpdate();
+            insertTriples.close();
+            connection.commit();
+
+            persistence.clearCache();
+            System.gc();
+            long baseline = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+            long maxUsed = 0;
+
+            long count = 0;
+            RepositoryResult<Statement> triples = connection.listTriples(null, null, null, null, false, true);
+            try {
+                while(triples.hasNext()) {
+                    triples.next();
+                    if(++count % 250000 == 0) {
+                        System.gc();
+                        maxUsed = Math.max(maxUsed, Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory() - baseline);
+                    }
+                }
+            } finally {
+                triples.close();
+            }
+            connection.commit();
+
+            log.info("listed {} triples, additional memory used: {} MB", count, maxUsed / (1024 * 1024));
+
+            Assert.assertEquals((long)numNodes * numNodes, count);
+            Assert.assertTrue("listing triples used " + (maxUsed / (1024 * 1024)) + " MB of memory", maxUsed < maxMemory);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Test that the triple counters are maintained when adding and removing triples, also across commit and
+     * rollback, and that rebuilding them from the triples table gives the same result.
+     */
+    @Test
+    public void testTripleCounts() throws Exception {
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            KiWiUriResource subject  = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource pred     = new KiWiUriResource("http://localhost/predicate/P1");
+            KiWiUriResource context1 = new KiWiUriResource("http://localhost/context/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource context2 = new KiWiUriResource("http://localhost/context/"+RandomStringUtils.randomAlphanumeric(8));
+
+            connection.storeNode(subject);
+            connection.storeNode(pred);
+            connection.storeNode(context1);
+            connection.storeNode(context2);
+
+            List<KiWiTriple> triples = new ArrayList<>();
+            for(int i = 0; i < 10; i++) {
+                KiWiUriResource object = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+                connection.storeNode(object);
+
+                KiWiTriple triple = new KiWiTriple(subject, pred, object, i < 6 ? context1 : context2);
+                connection.storeTriple(triple);
+                triples.add(triple);
+            }
+
+            // storing the same triple again does not change the counters
+            connection.storeTriple(triples.get(0));
+
+            Assert.assertEquals(10, connection.getSize());
+            Assert.assertEquals(6, connection.getSize(context1));
+            Assert.assertEquals(4, connection.getSize(context2));
+
+            connection.commit();
+
+            Assert.assertEquals(10, connection.getSize());
+            Assert.assertEquals(6, connection.getSize(context1));
+            Assert.assertEquals(4, connection.getSize(context2));
+
+            // deleting a triple twice only counts once
+            connection.deleteTriple(triples.get(0));
+            connection.deleteTriple(triples.get(0));
+            Assert.assertEquals(9, connection.getSize());
+            Assert.assertEquals(5, connection.getSize(context1));
+
+            connection.rollback();
+
+            Assert.assertEquals(10, connection.getSize());
+            Assert.assertEquals(6, connection.getSize(context1));
+
+            connection.deleteTriple(triples.get(0));
+            connection.deleteContext(context2);
+            connection.commit();
+
+            Assert.assertEquals(5, connection.getSize());
+            Assert.assertEquals(5, connection.getSize(context1));
+            Assert.assertEquals(0, connection.getSize(context2));
+
+            // counters are visible to other connections after commit
+            KiWiConnection connection2 = persistence.getConnection();
+            try {
+                Assert.assertEquals(5, connection2.getSize());
+                Assert.assertEquals(5, connection2.getSize(context1));
+                Assert.assertTrue(connection2.getSizeEstimate() >= 0);
+            } finally {
+                connection2.close();
+            }
+
+            connection.rebuildTripleCounts();
+            connection.commit();
+
+            Assert.assertEquals(5, connection.getSize());
+            Assert.assertEquals(5, connection.getSize(context1));
+            Assert.assertEquals(0, connection.getSize(context2));
+
+            connection.deleteAll();
+            Assert.assertEquals(0, connection.getSize());
+            Assert.assertEquals(0, connection.getSize(context1));
+            connection.commit();
+
+            Assert.assertEquals(0, connection.getSize());
+            Assert.assertEquals(0, connection.getSize(context1));
+
+            // the deleted triples are subtracted from the stored counters
+            connection2 = persistence.getConnection();
+            try {
+                Assert.assertEquals(0, connection2.getSize());
+                Assert.assertEquals(0, connection2.getSize(context1));
+            } finally {
+                connection2.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Test deleting a context in several chunks, notifying deletion listeners and leaving other contexts intact.
+     */
+    @Test
+    public void testDeleteContextChunked() throws Exception {
+        final List<Long> progress = new ArrayList<>();
+        final long[] finished = { -1 };
+        DeletionListener listener = new DeletionListener() {
+            @Override
+            public void deletionStarted(KiWiResource context, long total) {
+                progress.add(total);
+            }
+
+            @Override
+            public void deletionProgress(KiWiResource context, long deleted) {
+                progress.add(deleted);
+            }
+
+            @Override
+            public void deletionFinished(KiWiResource context, long deleted) {
+                finished[0] = deleted;
+            }
+        };
+
+        int chunkSize = kiwiConfig.getDeleteChunkSize();
+        kiwiConfig.setDeleteChunkSize(7);
+        persistence.addDeletionListener(listener);
+
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            KiWiUriResource subject  = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource pred     = new KiWiUriResource("http://localhost/predicate/P1");
+            KiWiUriResource context1 = new KiWiUriResource("http://localhost/context/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource context2 = new KiWiUriResource("http://localhost/context/"+RandomStringUtils.randomAlphanumeric(8));
+
+            connection.storeNode(subject);
+            connection.storeNode(pred);
+            connection.storeNode(context1);
+            connection.storeNode(context2);
+
+            List<KiWiTriple> triples1 = new ArrayList<>();
+            List<KiWiTriple> triples2 = new ArrayList<>();
+            for(int i = 0; i < 30; i++) {
+                KiWiUriResource object = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+                connection.storeNode(object);
+
+                KiWiTriple triple1 = new KiWiTriple(subject, pred, object, context1);
+                connection.storeTriple(triple1);
+                triples1.add(triple1);
+
+                KiWiTriple triple2 = new KiWiTriple(subject, pred, object, context2);
+                connection.storeTriple(triple2);
+                triples2.add(triple2);
+            }
+            connection.commit();
+
+            // one more triple in the batch of the active transaction
+            KiWiUriResource object = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            connection.storeNode(object);
+            connection.storeTriple(new KiWiTriple(subject, pred, object, context1));
+
+            connection.deleteContext(context1);
+
+            Assert.assertEquals(0, connection.getSize(context1));
+            Assert.assertEquals(30, connection.getSize(context2));
+            Assert.assertEquals(0, Iterations.asList(connection.listTriples(null, null, null, context1, false, true)).size());
+            Assert.assertEquals(30, Iterations.asList(connection.listTriples(null, null, null, context2, false, true)).size());
+
+            // 31 triples expected; with batch commits the last triple is only removed from the batch
+            long fromDatabase = connection.isBatchCommit() ? 30 : 31;
+            Assert.assertEquals(Arrays.asList(31L, 7L, 14L, 21L, 28L, fromDatabase), progress);
+            Assert.assertEquals(fromDatabase, finished[0]);
+
+            connection.commit();
+
+            for(KiWiTriple triple : triples1) {
+                Assert.assertTrue(connection.loadTripleById(triple.getId()).isDeleted());
+            }
+            for(KiWiTriple triple : triples2) {
+                Assert.assertFalse(connection.loadTripleById(triple.getId()).isDeleted());
+            }
+            Assert.assertEquals(30, connection.getSize());
+        } finally {
+            connection.close();
+            persistence.removeDeletionListener(listener);
+            kiwiConfig.setDeleteChunkSize(chunkSize);
+        }
+    }
+
+    /**
+     * Test that the incremental garbage collector removes deleted triples in several chunks and records its
+     * statistics.
+     */
+    @Test
+    public void testGarbageCollection() throws Exception {
+        int chunkSize = kiwiConfig.getGarbageCollectionChunkSize();
+        kiwiConfig.setGarbageCollectionChunkSize(3);
+
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            KiWiUriResource subject  = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+            KiWiUriResource pred     = new KiWiUriResource("http://localhost/predicate/P1");
+            KiWiUriResource context  = new KiWiUriResource("http://localhost/context/"+RandomStringUtils.randomAlphanumeric(8));
+
+            connection.storeNode(subject);
+            connection.storeNode(pred);
+            connection.storeNode(context);
+
+            List<KiWiTriple> triples = new ArrayList<>();
+            for(int i = 0; i < 20; i++) {
+                KiWiUriResource object = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+                connection.storeNode(object);
+
+                KiWiTriple triple = new KiWiTriple(subject, pred, object, context);
+                connection.storeTriple(triple);
+                triples.add(triple);
+            }
+            connection.commit();
+
+            for(int i = 0; i < 10; i++) {
+                connection.deleteTriple(triples.get(i));
+            }
+            connection.commit();
+
+            persistence.garbageCollect();
+
+            KiWiGarbageCollector gc = persistence.getGarbageCollector();
+            Assert.assertEquals(10, gc.getTriplesReclaimed());
+            Assert.assertTrue(gc.getChunks() >= 4);
+            Assert.assertEquals(0, gc.getBacklog());
+            if(kiwiConfig.isJmxEnabled()) {
+                ObjectName name = new ObjectName("org.apache.marmotta.kiwi.jmx:type=KiWiGarbageCollectorMBean,name=" + ObjectName.quote(kiwiConfig.getName()));
+                Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+            }
+
+            persistence.getCacheManager().clear();
+            for(int i = 0; i < 20; i++) {
+                KiWiTriple triple = connection.loadTripleById(triples.get(i).getId());
+                if(i < 10) {
+                    Assert.assertNull(triple);
+                } else {
+                    Assert.assertNotNull(triple);
+                }
+            }
+            Assert.assertEquals(10, connection.getSize());
+
+            // nothing left to collect
+            persistence.garbageCollect();
+            Assert.assertEquals(10, gc.getTriplesReclaimed());
+        } finally {
+            connection.close();
+            kiwiConfig.setGarbageCollectionChunkSize(chunkSize);
+        }
+    }
+
     // TODO: test namespaces
     @Test
     public void testStoreNamespaces() throws SQLException {
@@ -1122,4 +1655,293 @@ public class PersistenceTest {
             connection.close();
         }
     }
+
+    /**
+     * Test that the triple counters are correct when the changes of consecutive transactions are spread over
+     * several counter stripes, and that rebuilding the counters merges the stripes.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testTripleCountStripes() throws SQLException {
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            KiWiUriResource predicate = new KiWiUriResource("http://localhost/predicate/P1");
+            KiWiUriResource context   = new KiWiUriResource("http://localhost/context/"+RandomStringUtils.randomAlphanumeric(8));
+            connection.storeNode(predicate);
+            connection.storeNode(context);
+            connection.commit();
+
+            List<KiWiTriple> triples = new ArrayList<>();
+            for(int i = 0; i < 40; i++) {
+                KiWiUriResource subject = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+                KiWiUriResource object  = new KiWiUriResource("http://localhost/resource/"+RandomStringUtils.randomAlphanumeric(8));
+                connection.storeNode(subject);
+                connection.storeNode(object);
+
+                KiWiTriple triple = new KiWiTriple(subject,predicate,object,context);
+                connection.storeTriple(triple);
+                connection.commit();
+                triples.add(triple);
+            }
+
+            for(KiWiTriple triple : triples.subList(0, 10)) {
+                connection.deleteTriple(triple);
+                connection.commit();
+            }
+
+            Assert.assertEquals(30, connection.getSize());
+            Assert.assertEquals(30, connection.getSize(context));
+            Assert.assertTrue(countCounterRows(connection) > 1);
+
+            connection.rebuildTripleCounts();
+            connection.commit();
+
+            Assert.assertEquals(30, connection.getSize());
+            Assert.assertEquals(30, connection.getSize(context));
+            Assert.assertEquals(1, countCounterRows(connection));
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static int countCounterRows(KiWiConnection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.getJDBCConnection().prepareStatement("SELECT count(*) FROM triple_counts WHERE context = -1");
+             ResultSet result = stmt.executeQuery()) {
+            result.next();
+            return result.getInt(1);
+        }
+    }
+
+    /**
+     * Test building the KiWiIO prefix dictionary from the namespaces and frequently used URI prefixes, and that it
+     * is persisted in the database with dense indexes.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testPrefixDictionary() throws SQLException {
+        try {
+            KiWiConnection connection = persistence.getConnection();
+            try {
+                connection.storeNamespace(new KiWiNamespace("ex", "http://example.com/vocab#"));
+                for(int i = 0; i < 20; i++) {
+                    connection.storeNode(new KiWiUriResource("http://example.com/data/" + RandomStringUtils.randomAlphanumeric(8)));
+                }
+                connection.storeNode(new KiWiUriResource("http://example.org/rare/" + RandomStringUtils.randomAlphanumeric(8)));
+                connection.commit();
+            } finally {
+                connection.close();
+            }
+
+            persistence.initPrefixDictionary(true);
+
+            PrefixDictionary dictionary = KiWiIO.getPrefixDictionary();
+            Assert.assertThat(dictionary.getPrefixes(), hasItems("http://example.com/vocab#", "http://example.com/data/"));
+            Assert.assertFalse(dictionary.getPrefixes().contains("http://example.org/rare/"));
+
+            connection = persistence.getConnection();
+            try {
+                Assert.assertEquals(dictionary.getId(), connection.getDictionaryId());
+                Assert.assertEquals(dictionary.getPrefixes(), connection.listDictionaryPrefixes());
+
+                // an index can only be assigned once
+                try {
+                    connection.storeDictionaryPrefixes(0, Collections.singletonList("http://example.org/other/"));
+                    Assert.fail("storing a prefix with an existing index should fail");
+                } catch (SQLException ex) {
+                    connection.rollback();
+                }
+
+                // prefixes after a gap in the indexes are ignored
+                connection.storeDictionaryPrefixes(dictionary.getVersion() + 1, Collections.singletonList("http://example.org/other/"));
+                connection.commit();
+                Assert.assertEquals(dictionary.getPrefixes(), connection.listDictionaryPrefixes());
+            } finally {
+                connection.close();
+            }
+
+            // initialising again does not change the dictionary
+            persistence.initPrefixDictionary(true);
+            Assert.assertEquals(dictionary.getPrefixes(), KiWiIO.getPrefixDictionary().getPrefixes());
+
+            // with compression disabled, the dictionary is still available for decoding
+            persistence.initPrefixDictionary(false);
+            Assert.assertEquals(0, KiWiIO.getPrefixDictionary().getVersion());
+            Assert.assertEquals(dictionary.getPrefixes(), KiWiIO.getPrefixDictionary(dictionary.getId()).getPrefixes());
+        } finally {
+            persistence.initPrefixDictionary(false);
+        }
+    }
+
+    /**
+     * Test creating and dropping the optional object-leading triple indexes; their state is recorded in the
+     * metadata table.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testObjectIndexes() throws SQLException {
+        Assert.assertFalse(persistence.hasObjectIndexes());
+
+        persistence.initObjectIndexes(true);
+        Assert.assertTrue(persistence.hasObjectIndexes());
+
+        // initialising again does not create the indexes twice
+        persistence.initObjectIndexes(true);
+
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            Assert.assertEquals("true", connection.getMetadata("idx.object"));
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+
+        persistence.initObjectIndexes(false);
+        Assert.assertFalse(persistence.hasObjectIndexes());
+
+        connection = persistence.getConnection();
+        try {
+            Assert.assertNull(connection.getMetadata("idx.object"));
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Test storing many nodes in one transaction; with batched commits enabled, the nodes are written in a batch
+     * on commit and need to be visible through the caches before.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testStoreNodeBatch() throws SQLException {
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            KiWiUriResource stype = new KiWiUriResource(Namespaces.NS_XSD + "string");
+            List<KiWiNode> nodes = new ArrayList<>();
+            for(int i=0; i<100; i++) {
+                nodes.add(new KiWiUriResource("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8)));
+                nodes.add(new KiWiStringLiteral(RandomStringUtils.randomAlphanumeric(8), null, stype));
+            }
+            for(KiWiNode node : nodes) {
+                connection.storeNode(node);
+            }
+
+            // check before transaction commit
+            for(KiWiNode node : nodes) {
+                Assert.assertTrue(node.getId() >= 0);
+                Assert.assertEquals(node, connection.loadNodeById(node.getId()));
+            }
+            Assert.assertEquals(nodes.get(0), connection.loadUriResource(nodes.get(0).stringValue()));
+
+            connection.commit();
+
+            // clear cache and check again, now the nodes are loaded from the database
+            persistence.clearCache();
+            for(KiWiNode node : nodes) {
+                KiWiNode loaded = connection.loadNodeById(node.getId());
+                Assert.assertEquals(node, loaded);
+                Assert.assertEquals(node.getId(), loaded.getId());
+            }
+
+            PreparedStatement checkNodeStmt = connection.getJDBCConnection().prepareStatement("SELECT count(*) FROM nodes");
+            ResultSet result = checkNodeStmt.executeQuery();
+            Assert.assertTrue(result.next());
+            Assert.assertEquals(nodes.size() + 1, result.getLong(1));
+            result.close();
+
+            if(connection.isBatchCommit()) {
+                // a rolled back node must neither be persisted nor remain in the caches
+                KiWiUriResource uri = new KiWiUriResource("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+                connection.storeNode(uri);
+                Assert.assertEquals(uri, connection.loadUriResource(uri.stringValue()));
+
+                connection.rollback();
+
+                Assert.assertTrue(uri.getId() < 0);
+                Assert.assertNull(connection.loadUriResource(uri.stringValue()));
+            }
+
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Test loading several nodes at once by their ids, including ids requested more than once and ids not found in
+     * the database.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testLoadNodesByIds() throws SQLException {
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            List<KiWiNode> nodes = new ArrayList<>();
+            for(int i=0; i<50; i++) {
+                KiWiUriResource uri = new KiWiUriResource("http://localhost/"+ RandomStringUtils.randomAlphanumeric(8));
+                connection.storeNode(uri);
+                nodes.add(uri);
+            }
+            connection.commit();
+
+            persistence.clearCache();
+
+            long[] ids = new long[nodes.size() * 2 + 2];
+            for(int i=0; i<nodes.size(); i++) {
+                ids[i] = nodes.get(i).getId();
+                ids[ids.length - 1 - i] = nodes.get(i).getId();
+            }
+            ids[nodes.size()]     = 0;
+            ids[nodes.size() + 1] = Long.MAX_VALUE;
+
+            KiWiNode[] loaded = connection.loadNodesByIds(ids);
+            Assert.assertEquals(ids.length, loaded.length);
+            for(int i=0; i<nodes.size(); i++) {
+                Assert.assertEquals(nodes.get(i), loaded[i]);
+                Assert.assertEquals(nodes.get(i), loaded[ids.length - 1 - i]);
+            }
+            Assert.assertNull(loaded[nodes.size()]);
+            Assert.assertNull(loaded[nodes.size() + 1]);
+
+            connection.commit();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Measure how many new nodes can be stored per second, committing every 1000 nodes.
+     *
+     * @throws SQLException
+     */
+    @Test
+    public void testStoreNodePerformance() throws SQLException {
+        KiWiConnection connection = persistence.getConnection();
+        try {
+            long count = 0;
+            long start = System.currentTimeMillis();
+
+            while(System.currentTimeMillis() < start + 5000) {
+                connection.storeNode(new KiWiUriResource("http://localhost/"+ RandomStringUtils.randomAlphanumeric(16)));
+                count++;
+
+                if(count % 1000 == 0) {
+                    connection.commit();
+                }
+            }
+            connection.commit();
+
+            long duration = System.currentTimeMillis() - start;
+            log.info("stored {} nodes ({}/sec, batch commit: {})", count, count * 1000 / duration, connection.isBatchCommit());
+
+            Assert.assertTrue(count > 1000);
+        } finally {
+            connection.close();
+        }
+    }
 }
@@ -23,7 +23,10 @@ import info.aduna.iteration.Iterations;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.marmotta.commons.sesame.repository.ResourceUtils;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
 import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
 import org.hamcrest.CoreMatchers;
 import org.junit.After;
@@ -47,6 +50,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ConcurrentModificationException;
 import java.util.List;
@@ -879,4 +884,88 @@ public class RepositoryTest {
 
     }
 
+    /**
+     * Test creating nodes with the value factory: nodes created while a transaction is running in the same thread
+     * are stored with this transaction and committed or rolled back with it, nodes created outside a transaction
+     * are stored immediately.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testValueFactoryNodeBatch() throws Exception {
+        KiWiValueFactory vf = (KiWiValueFactory) repository.getValueFactory();
+
+        URI predicate = vf.createURI("http://localhost/resource/" + RandomStringUtils.randomAlphanumeric(8));
+        Assert.assertTrue(((KiWiNode) predicate).getId() >= 0);
+        Assert.assertEquals(1, countNodes(predicate.stringValue()));
+
+        // nodes created in a committed transaction are written with the transaction
+        RepositoryConnection connection1 = repository.getConnection();
+        try {
+            connection1.begin();
+
+            URI subject = vf.createURI("http://localhost/resource/" + RandomStringUtils.randomAlphanumeric(8));
+            Literal object = vf.createLiteral(RandomStringUtils.randomAlphanumeric(8));
+            Assert.assertTrue(((KiWiNode) subject).getId() >= 0);
+            Assert.assertEquals(((KiWiNode) subject).getId(), ((KiWiNode) vf.createURI(subject.stringValue())).getId());
+            Assert.assertEquals("node visible before the transaction was committed", 0, countNodes(subject.stringValue()));
+
+            connection1.add(subject, predicate, object);
+            connection1.commit();
+
+            Assert.assertEquals(1, countNodes(subject.stringValue()));
+            Assert.assertEquals(1, countNodes(object.stringValue()));
+        } finally {
+            connection1.close();
+        }
+
+        // nodes created in a rolled back transaction are discarded and created again when used later
+        URI subject;
+        Literal object;
+        RepositoryConnection connection2 = repository.getConnection();
+        try {
+            connection2.begin();
+
+            subject = vf.createURI("http://localhost/resource/" + RandomStringUtils.randomAlphanumeric(8));
+            object = vf.createLiteral(RandomStringUtils.randomAlphanumeric(8));
+            connection2.add(subject, predicate, object);
+            connection2.rollback();
+        } finally {
+            connection2.close();
+        }
+
+        Assert.assertEquals(0, countNodes(subject.stringValue()));
+        Assert.assertEquals(0, countNodes(object.stringValue()));
+
+        RepositoryConnection connection3 = repository.getConnection();
+        try {
+            connection3.begin();
+            connection3.add(subject, predicate, object);
+            connection3.commit();
+
+            Assert.assertTrue(connection3.hasStatement(subject, predicate, object, true));
+        } finally {
+            connection3.close();
+        }
+
+        Assert.assertEquals(1, countNodes(subject.stringValue()));
+        Assert.assertEquals(1, countNodes(object.stringValue()));
+    }
+
+    private long countNodes(String svalue) throws SQLException {
+        KiWiConnection connection = store.getPersistence().getConnection();
+        try {
+            PreparedStatement query = connection.getJDBCConnection().prepareStatement("SELECT count(*) FROM nodes WHERE svalue = ?");
+            query.setString(1, svalue);
+            try (ResultSet result = query.executeQuery()) {
+                result.next();
+                return result.getLong(1);
+            } finally {
+                query.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
 }
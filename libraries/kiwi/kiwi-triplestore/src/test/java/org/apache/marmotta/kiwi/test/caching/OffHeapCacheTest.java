@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test.caching;
+
+import org.apache.marmotta.kiwi.caching.OffHeapCache;
+import org.apache.marmotta.kiwi.caching.OffHeapCacheManager;
+import org.apache.marmotta.kiwi.config.CachingBackends;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiStringLiteral;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.persistence.h2.H2Dialect;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.sail.SailRepository;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the off-heap caches and the off-heap caching backend.
+ */
+public class OffHeapCacheTest {
+
+    private static class StringCache extends OffHeapCache<String> {
+
+        private StringCache(long maxBytes, int concurrency) {
+            super(maxBytes, concurrency);
+        }
+
+        @Override
+        protected void writeValue(DataOutput output, String value) throws IOException {
+            output.writeUTF(value);
+        }
+
+        @Override
+        protected String readValue(DataInput input) throws IOException {
+            return input.readUTF();
+        }
+    }
+
+    private static KiWiConfiguration createConfiguration() {
+        KiWiConfiguration config = new KiWiConfiguration(
+                "offheap-H2",
+                "jdbc:h2:mem:kiwioffheap;MVCC=true;DB_CLOSE_ON_EXIT=TRUE;DB_CLOSE_DELAY=-1",
+                "kiwi", "kiwi",
+                new H2Dialect());
+        config.setCachingBackend(CachingBackends.OFFHEAP);
+        config.setNodeCacheMemory(4 * 1024 * 1024);
+        config.setTripleCacheMemory(1024 * 1024);
+        return config;
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        StringCache cache = new StringCache(64 * 1024, 4);
+
+        Assert.assertNull(cache.put(1L, "one"));
+        Assert.assertNull(cache.put(2L, "two"));
+        Assert.assertEquals("one", cache.put(1L, "uno"));
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals("uno", cache.get(1L));
+        Assert.assertEquals("two", cache.get(2L));
+        Assert.assertNull(cache.get(3L));
+        Assert.assertNull(cache.get("1"));
+        Assert.assertTrue(cache.containsKey(2L));
+
+        Assert.assertEquals("two", cache.remove(2L));
+        Assert.assertFalse(cache.containsKey(2L));
+        Assert.assertEquals(1, cache.entrySet().size());
+
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getUsedBytes());
+    }
+
+    /**
+     * Fill a small cache with many entries; the oldest entries are evicted and memory stays within the bound.
+     */
+    @Test
+    public void testEviction() {
+        int maxBytes = 64 * 1024;
+        StringCache cache = new StringCache(maxBytes, 4);
+
+        for(long i = 0; i < 10000; i++) {
+            cache.put(i, "value " + i + " with some padding to make the entries larger than their header");
+        }
+
+        Assert.assertTrue(cache.size() > 0);
+        Assert.assertTrue(cache.size() < 10000);
+        Assert.assertTrue(cache.getUsedBytes() <= maxBytes);
+
+        Assert.assertNull(cache.get(0L));
+        for(long i = 9990; i < 10000; i++) {
+            Assert.assertEquals("value " + i + " with some padding to make the entries larger than their header", cache.get(i));
+        }
+        for(Map.Entry<Long,String> e : cache.entrySet()) {
+            Assert.assertEquals("value " + e.getKey() + " with some padding to make the entries larger than their header", e.getValue());
+        }
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        final StringCache cache = new StringCache(256 * 1024, 8);
+        final AtomicInteger errors = new AtomicInteger(0);
+
+        Thread[] threads = new Thread[8];
+        for(int t = 0; t < threads.length; t++) {
+            final Random random = new Random(t);
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for(int i = 0; i < 50000; i++) {
+                        long key = random.nextInt(5000);
+                        switch (random.nextInt(3)) {
+                            case 0:
+                                cache.put(key, "value " + key);
+                                break;
+                            case 1:
+                                String value = cache.get(key);
+                                if(value != null && !value.equals("value " + key)) {
+                                    errors.incrementAndGet();
+                                }
+                                break;
+                            default:
+                                cache.remove(key);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread t : threads) {
+            t.join();
+        }
+
+        Assert.assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testNodeAndTripleCache() {
+        OffHeapCacheManager cacheManager = new OffHeapCacheManager(createConfiguration());
+
+        KiWiUriResource subject = new KiWiUriResource("http://localhost/subject");
+        subject.setId(1);
+        KiWiUriResource predicate = new KiWiUriResource("http://localhost/predicate");
+        predicate.setId(2);
+        KiWiStringLiteral object = new KiWiStringLiteral("a literal");
+        object.setId(3);
+
+        cacheManager.getNodeCache().put(subject.getId(), subject);
+        cacheManager.getNodeCache().put(object.getId(), object);
+
+        KiWiNode cachedSubject = cacheManager.getNodeCache().get(1L);
+        Assert.assertEquals(subject, cachedSubject);
+        Assert.assertNotSame(subject, cachedSubject);
+        Assert.assertEquals(1, cachedSubject.getId());
+        Assert.assertEquals(object, cacheManager.getNodeCache().get(3L));
+
+        KiWiTriple triple = new KiWiTriple(subject, predicate, object, null);
+        triple.setId(4);
+        cacheManager.getTripleCache().put(triple.getId(), triple);
+
+        KiWiTriple cachedTriple = cacheManager.getTripleCache().get(4L);
+        Assert.assertEquals(triple, cachedTriple);
+        Assert.assertEquals(4, cachedTriple.getId());
+
+        cacheManager.clear();
+        Assert.assertNull(cacheManager.getNodeCache().get(1L));
+        Assert.assertNull(cacheManager.getTripleCache().get(4L));
+    }
+
+    @Test
+    public void testStore() throws Exception {
+        Repository repository = new SailRepository(new KiWiStore(createConfiguration()));
+        repository.initialize();
+        try {
+            RepositoryConnection con = repository.getConnection();
+            try {
+                con.begin();
+                URI subject = repository.getValueFactory().createURI("http://localhost/subject");
+                URI predicate = repository.getValueFactory().createURI("http://localhost/predicate");
+                for(int i = 0; i < 100; i++) {
+                    con.add(subject, predicate, repository.getValueFactory().createLiteral("value " + i));
+                }
+                con.commit();
+
+                con.begin();
+                List<Statement> result = con.getStatements(subject, predicate, null, false).asList();
+                Assert.assertEquals(100, result.size());
+                con.commit();
+            } finally {
+                con.close();
+            }
+        } finally {
+            repository.shutDown();
+        }
+    }
+}
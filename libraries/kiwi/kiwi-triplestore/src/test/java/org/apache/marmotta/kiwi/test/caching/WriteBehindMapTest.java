@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test.caching;
+
+import org.apache.marmotta.kiwi.caching.WriteBehindMap;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the write-behind map used by the clustered caching backends.
+ */
+public class WriteBehindMapTest {
+
+    /**
+     * Delegate map counting the writes it receives, standing in for a cluster cache
+     */
+    private static class CountingMap extends ConcurrentHashMap<String,String> {
+        private final AtomicInteger writes = new AtomicInteger(0);
+
+        @Override
+        public String put(String key, String value) {
+            writes.incrementAndGet();
+            return super.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<? extends String, ? extends String> m) {
+            writes.addAndGet(m.size());
+            super.putAll(m);
+        }
+
+        @Override
+        public String remove(Object key) {
+            writes.incrementAndGet();
+            return super.remove(key);
+        }
+    }
+
+    private ScheduledExecutorService executor;
+
+    private CountingMap delegate;
+
+    @Before
+    public void setup() {
+        executor = WriteBehindMap.createFlushExecutor("Test");
+        delegate = new CountingMap();
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testReadOwnWrites() {
+        // long interval, so nothing is flushed automatically during the test
+        WriteBehindMap<String,String> map = new WriteBehindMap<>(delegate, 1000, 3600000, executor);
+
+        map.put("a", "1");
+        Assert.assertEquals("1", map.get("a"));
+        Assert.assertTrue(map.containsKey("a"));
+        Assert.assertFalse(delegate.containsKey("a"));
+
+        map.flush();
+        Assert.assertEquals("1", delegate.get("a"));
+        Assert.assertEquals(0, map.getPendingCount());
+
+        map.remove("a");
+        Assert.assertNull(map.get("a"));
+        Assert.assertFalse(map.containsKey("a"));
+        Assert.assertEquals("1", delegate.get("a"));
+
+        map.close();
+        Assert.assertFalse(delegate.containsKey("a"));
+    }
+
+    @Test
+    public void testCoalescing() {
+        WriteBehindMap<String,String> map = new WriteBehindMap<>(delegate, 1000, 3600000, executor);
+
+        for(int i = 0; i < 100; i++) {
+            map.put("a", "" + i);
+            map.put("b", "" + i);
+        }
+        Assert.assertEquals(2, map.getPendingCount());
+        Assert.assertEquals(198, map.getCoalescedCount());
+
+        map.flush();
+        Assert.assertEquals(2, delegate.writes.get());
+        Assert.assertEquals("99", delegate.get("a"));
+        Assert.assertEquals("99", delegate.get("b"));
+    }
+
+    @Test
+    public void testBoundedQueue() {
+        WriteBehindMap<String,String> map = new WriteBehindMap<>(delegate, 10, 3600000, executor);
+
+        for(int i = 0; i < 20; i++) {
+            map.put("k" + i, "" + i);
+        }
+        Assert.assertEquals(10, map.getPendingCount());
+        Assert.assertEquals(10, map.getWrittenThroughCount());
+        Assert.assertEquals(10, delegate.size());
+
+        // keys already queued are still coalesced when the queue is full
+        map.put("k0", "x");
+        Assert.assertEquals(10, map.getWrittenThroughCount());
+
+        Assert.assertEquals(20, map.size());
+        Assert.assertEquals("x", delegate.get("k0"));
+    }
+
+    @Test
+    public void testBackgroundFlush() throws InterruptedException {
+        WriteBehindMap<String,String> map = new WriteBehindMap<>(delegate, 1000, 10, executor);
+
+        map.put("a", "1");
+
+        for(int i = 0; i < 100 && !delegate.containsKey("a"); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals("1", delegate.get("a"));
+        Assert.assertEquals(0, map.getPendingCount());
+    }
+
+    @Test
+    public void testClear() {
+        WriteBehindMap<String,String> map = new WriteBehindMap<>(delegate, 1000, 3600000, executor);
+
+        delegate.put("a", "1");
+        map.put("b", "2");
+        map.clear();
+
+        map.flush();
+        Assert.assertTrue(delegate.isEmpty());
+        Assert.assertNull(map.get("b"));
+    }
+}
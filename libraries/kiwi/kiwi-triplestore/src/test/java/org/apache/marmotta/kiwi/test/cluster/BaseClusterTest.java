@@ -35,6 +35,8 @@ import org.openrdf.repository.sail.SailRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.UUID;
+
 /**
  * Add file description here!
  *
@@ -150,10 +152,10 @@ public abstract class BaseClusterTest {
         log.info("testing synchronized registry ...");
 
         for(int i=0; i < REGISTRY_TESTS; i++) {
-            cacheManagerSync1.getRegistryCache().put((long)i,(long)i);
+            cacheManagerSync1.getRegistryCache().put(new UUID(i,i),(long)i);
 
-            Long j = cacheManagerSync1.getRegistryCache().get((long)i);
-            Long k = cacheManagerSync2.getRegistryCache().get((long)i);
+            Long j = cacheManagerSync1.getRegistryCache().get(new UUID(i,i));
+            Long k = cacheManagerSync2.getRegistryCache().get(new UUID(i,i));
 
             Assert.assertEquals("objects in same cache were not identical!", (long)i, (long)j);
             Assert.assertEquals("objects in caches 1 and 2 were not identical!", (long)i, (long)k);
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test.generator;
+
+import org.apache.marmotta.kiwi.generator.BlockIDGenerator;
+import org.apache.marmotta.kiwi.generator.IDGenerator;
+import org.apache.marmotta.kiwi.generator.SnowflakeIDGenerator;
+import org.apache.marmotta.kiwi.generator.UUIDRandomIDGenerator;
+import org.apache.marmotta.kiwi.generator.UUIDTimeIDGenerator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test the block-allocating id generator and compare its throughput with the other id generators.
+ */
+public class BlockIDGeneratorTest {
+
+    private static Logger log = LoggerFactory.getLogger(BlockIDGeneratorTest.class);
+
+    private BlockIDGenerator generator;
+
+    @Before
+    public void setup() {
+        generator = new BlockIDGenerator(42, 16);
+    }
+
+    @After
+    public void shutdown() {
+        generator.shutdown();
+    }
+
+    @Test
+    public void testDatacenterId() {
+        for(int i = 0; i < 1000; i++) {
+            long id = generator.getId();
+
+            Assert.assertTrue(id > 0);
+            Assert.assertEquals(42, (id >>> 12) & 0x3FF);
+        }
+    }
+
+    /**
+     * Generators with different datacenter ids never produce the same ids.
+     */
+    @Test
+    public void testDatacenterUnique() {
+        BlockIDGenerator other = new BlockIDGenerator(43, 16);
+
+        Set<Long> ids = new HashSet<>();
+        for(int i = 0; i < 10000; i++) {
+            Assert.assertTrue(ids.add(generator.getId()));
+            Assert.assertTrue(ids.add(other.getId()));
+        }
+    }
+
+    /**
+     * Ids generated concurrently by many threads are unique, also in case the slot counter runs ahead of the clock.
+     */
+    @Test
+    public void testConcurrentUnique() throws Exception {
+        final int threads = 8, count = 50000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for(int t = 0; t < threads; t++) {
+                results.add(executor.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() throws Exception {
+                        long[] ids = new long[count];
+                        for(int i = 0; i < count; i++) {
+                            ids[i] = generator.getId();
+                        }
+                        return ids;
+                    }
+                }));
+            }
+
+            Set<Long> ids = new HashSet<>(threads * count * 2);
+            for(Future<long[]> result : results) {
+                for(long id : result.get()) {
+                    Assert.assertTrue("duplicate id " + id, ids.add(id));
+                }
+            }
+            Assert.assertEquals(threads * count, ids.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Compare the throughput of the id generators with an increasing number of threads. Each measurement is
+     * preceded by a warmup round.
+     */
+    @Test
+    public void testThroughput() throws Exception {
+        UUIDTimeIDGenerator uuidTime = new UUIDTimeIDGenerator();
+        try {
+            for(int threads : new int[] {1, 4, 16}) {
+                measure("SNOWFLAKE", new SnowflakeIDGenerator(42), threads);
+                measure("SNOWFLAKE_BLOCK", new BlockIDGenerator(42), threads);
+                measure("UUID_TIME", uuidTime, threads);
+                measure("UUID_RANDOM", new UUIDRandomIDGenerator(), threads);
+            }
+        } finally {
+            uuidTime.shutdown();
+        }
+    }
+
+    private static void measure(String name, final IDGenerator generator, int threads) throws Exception {
+        final int count = 20000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long time = 0;
+            for(int round = 0; round < 2; round++) {
+                List<Callable<Long>> tasks = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    tasks.add(new Callable<Long>() {
+                        @Override
+                        public Long call() throws Exception {
+                            long sum = 0;
+                            for (int i = 0; i < count; i++) {
+                                sum += generator.getId();
+                            }
+                            return sum;
+                        }
+                    });
+                }
+
+                long start = System.nanoTime();
+                for(Future<Long> result : executor.invokeAll(tasks)) {
+                    result.get();
+                }
+                time = System.nanoTime() - start;
+            }
+
+            log.info("{} ({} threads): {} ids/sec", name, threads, (long) (threads * count / (time / 1e9)));
+        } finally {
+            executor.shutdown();
+            generator.shutdown();
+        }
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test.io;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.marmotta.kiwi.io.KiWiIO;
+import org.apache.marmotta.kiwi.io.PrefixDictionary;
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiStringLiteral;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Test serialization of nodes and triples with KiWiIO, in particular compression of long literals.
+ */
+public class KiWiIOTest {
+
+    private static Logger log = LoggerFactory.getLogger(KiWiIOTest.class);
+
+    private static final int DEFAULT_COMPRESS_LENGTH = KiWiIO.getLiteralCompressLength();
+
+    @After
+    public void resetCompression() {
+        KiWiIO.setLiteralCompressLength(DEFAULT_COMPRESS_LENGTH);
+        KiWiIO.unregisterPrefixDictionary(1);
+        KiWiIO.unregisterPrefixDictionary(2);
+    }
+
+    private static String createText(int length) {
+        StringBuilder b = new StringBuilder();
+        while(b.length() < length) {
+            b.append("The quick brown fox jumps over the lazy dog ").append(b.length() % 97).append(". ");
+        }
+        return b.substring(0, length);
+    }
+
+    private static KiWiStringLiteral createLiteral(String content) {
+        KiWiUriResource type = new KiWiUriResource("http://www.w3.org/2001/XMLSchema#string", new Date());
+        type.setId(41);
+
+        KiWiStringLiteral literal = new KiWiStringLiteral(content, null, type, new Date());
+        literal.setId(42);
+        return literal;
+    }
+
+    private static byte[] write(KiWiNode node) throws IOException {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        KiWiIO.writeNode(out, node);
+        return out.toByteArray();
+    }
+
+    private static KiWiNode read(byte[] data) throws IOException {
+        return KiWiIO.readNode(ByteStreams.newDataInput(data));
+    }
+
+    private static void assertRoundTrip(KiWiStringLiteral literal, byte[] data) throws IOException {
+        KiWiStringLiteral result = (KiWiStringLiteral) read(data);
+        Assert.assertEquals(literal, result);
+        Assert.assertEquals(literal.getId(), result.getId());
+        Assert.assertEquals(literal.getContent(), result.getContent());
+        Assert.assertEquals(literal.getLanguage(), result.getLanguage());
+        Assert.assertEquals(literal.getCreated(), result.getCreated());
+    }
+
+    @Test
+    public void testShortLiteral() throws IOException {
+        KiWiStringLiteral literal = createLiteral("short literal");
+        assertRoundTrip(literal, write(literal));
+    }
+
+    @Test
+    public void testCompressedLiteral() throws IOException {
+        KiWiStringLiteral literal = createLiteral(createText(10000));
+
+        KiWiIO.setLiteralCompressLength(Integer.MAX_VALUE);
+        byte[] plain = write(literal);
+
+        KiWiIO.setLiteralCompressLength(DEFAULT_COMPRESS_LENGTH);
+        byte[] compressed = write(literal);
+
+        Assert.assertTrue(compressed.length < plain.length);
+
+        // data written in either mode is readable regardless of the current setting
+        assertRoundTrip(literal, plain);
+        assertRoundTrip(literal, compressed);
+        KiWiIO.setLiteralCompressLength(Integer.MAX_VALUE);
+        assertRoundTrip(literal, compressed);
+    }
+
+    @Test
+    public void testIncompressibleLiteral() throws IOException {
+        KiWiStringLiteral literal = createLiteral(RandomStringUtils.random(2000));
+        assertRoundTrip(literal, write(literal));
+    }
+
+    @Test
+    public void testCompressThreshold() throws IOException {
+        KiWiStringLiteral literal = createLiteral(createText(200));
+
+        byte[] plain = write(literal);
+
+        KiWiIO.setLiteralCompressLength(100);
+        byte[] compressed = write(literal);
+
+        Assert.assertTrue(compressed.length < plain.length);
+        assertRoundTrip(literal, compressed);
+    }
+
+    @Test
+    public void testPrefixTriple() throws IOException {
+        KiWiUriResource s = new KiWiUriResource("http://localhost/resource/subject", new Date());
+        s.setId(1);
+        KiWiUriResource p = new KiWiUriResource("http://localhost/vocabulary/predicate", new Date());
+        p.setId(2);
+        KiWiUriResource o = new KiWiUriResource("http://localhost/resource/object", new Date());
+        o.setId(3);
+
+        KiWiTriple triple = new KiWiTriple(s, p, o, null, new Date());
+        triple.setId(4);
+
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        KiWiIO.writeTriple(out, triple);
+
+        KiWiTriple result = KiWiIO.readTriple(ByteStreams.newDataInput(out.toByteArray()));
+        Assert.assertEquals(triple, result);
+        Assert.assertEquals(triple.getId(), result.getId());
+        Assert.assertEquals(s.getId(), result.getSubject().getId());
+        Assert.assertEquals(o.getId(), result.getObject().getId());
+    }
+
+    private static KiWiUriResource createURI(String uri, long id) {
+        KiWiUriResource r = new KiWiUriResource(uri, new Date());
+        r.setId(id);
+        return r;
+    }
+
+    private static KiWiUriResource readURI(byte[] data) throws IOException {
+        return KiWiIO.readURI(ByteStreams.newDataInput(data));
+    }
+
+    private static byte[] writeURI(KiWiUriResource uri) throws IOException {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        KiWiIO.writeURI(out, uri);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testPrefixDictionaryLookup() {
+        PrefixDictionary dictionary = new PrefixDictionary(1, Arrays.asList("http://example.com/", "http://example.com/data/", "urn:isbn:"));
+
+        Assert.assertEquals(3, dictionary.getVersion());
+        Assert.assertEquals(1, dictionary.lookup("http://example.com/data/1234"));
+        Assert.assertEquals(0, dictionary.lookup("http://example.com/other/1234"));
+        Assert.assertEquals(2, dictionary.lookup("urn:isbn:0451450523"));
+        Assert.assertEquals(-1, dictionary.lookup("http://example.org/data/1234"));
+        Assert.assertEquals(-1, dictionary.lookup("http://example.com/"));
+
+        PrefixDictionary extended = dictionary.extend(Arrays.asList("http://example.com/", "http://example.org/"));
+        Assert.assertEquals(4, extended.getVersion());
+        Assert.assertTrue(extended.extendsDictionary(dictionary));
+        Assert.assertFalse(dictionary.extendsDictionary(extended));
+        Assert.assertFalse(new PrefixDictionary(2, extended.getPrefixes()).extendsDictionary(dictionary));
+        Assert.assertEquals(3, extended.lookup("http://example.org/data/1234"));
+    }
+
+    @Test
+    public void testPrefixDictionaryURI() throws IOException {
+        KiWiUriResource uri = createURI("http://example.com/data/1234", 1);
+
+        byte[] plain = writeURI(uri);
+
+        KiWiIO.registerPrefixDictionary(new PrefixDictionary(1, Collections.singletonList("http://example.com/data/")), null, true);
+        byte[] compressed = writeURI(uri);
+
+        Assert.assertTrue(compressed.length < plain.length);
+        Assert.assertEquals(uri, readURI(plain));
+        Assert.assertEquals(uri, readURI(compressed));
+        Assert.assertEquals(uri.getCreated(), readURI(compressed).getCreated());
+
+        // data written with an older version is readable with newer versions
+        KiWiIO.registerPrefixDictionary(KiWiIO.getPrefixDictionary(1).extend(Collections.singletonList("http://example.com/")), null, true);
+        Assert.assertEquals(uri, readURI(compressed));
+    }
+
+    @Test
+    public void testPrefixDictionaryLoader() throws IOException {
+        final PrefixDictionary dictionary = new PrefixDictionary(1, Arrays.asList("http://example.com/", "http://example.org/"));
+
+        KiWiUriResource uri = createURI("http://example.org/1234", 1);
+
+        KiWiIO.registerPrefixDictionary(dictionary, null, true);
+        byte[] data = writeURI(uri);
+
+        // simulate another cluster node with an older dictionary version
+        KiWiIO.registerPrefixDictionary(new PrefixDictionary(1, Collections.<String>emptyList()), null, true);
+        try {
+            readURI(data);
+            Assert.fail("reading an unknown prefix should fail");
+        } catch (IOException ex) {
+            // expected
+        }
+
+        KiWiIO.registerPrefixDictionary(new PrefixDictionary(1, Collections.<String>emptyList()), new PrefixDictionary.Loader() {
+            @Override
+            public PrefixDictionary load() throws IOException {
+                return dictionary;
+            }
+        }, true);
+        Assert.assertEquals(uri, readURI(data));
+        Assert.assertEquals(2, KiWiIO.getPrefixDictionary(1).getVersion());
+        Assert.assertEquals(2, KiWiIO.getPrefixDictionary().getVersion());
+    }
+
+    /**
+     * Test that the dictionaries of two databases used in the same JVM do not interfere: data is decoded with the
+     * dictionary it was written with, and URIs are only compressed if a single dictionary is used for encoding.
+     */
+    @Test
+    public void testPrefixDictionaryMultipleStores() throws IOException {
+        KiWiUriResource uri1 = createURI("http://example.com/1234", 1);
+        KiWiUriResource uri2 = createURI("http://example.org/1234", 2);
+
+        byte[] plain = writeURI(uri1);
+
+        KiWiIO.registerPrefixDictionary(new PrefixDictionary(1, Collections.singletonList("http://example.com/")), null, true);
+        byte[] data1 = writeURI(uri1);
+
+        KiWiIO.registerPrefixDictionary(new PrefixDictionary(2, Collections.singletonList("http://example.org/")), null, false);
+        Assert.assertEquals(1, KiWiIO.getPrefixDictionary().getId());
+        Assert.assertEquals(uri1, readURI(data1));
+
+        // the second store compresses with its own dictionary at the same index
+        KiWiIO.unregisterPrefixDictionary(1);
+        KiWiIO.registerPrefixDictionary(KiWiIO.getPrefixDictionary(2), null, true);
+        byte[] data2 = writeURI(uri2);
+        KiWiIO.registerPrefixDictionary(new PrefixDictionary(1, Collections.singletonList("http://example.com/")), null, false);
+        Assert.assertEquals(uri1, readURI(data1));
+        Assert.assertEquals(uri2, readURI(data2));
+
+        // both stores encoding: compression with dictionaries is disabled
+        KiWiIO.registerPrefixDictionary(KiWiIO.getPrefixDictionary(1), null, true);
+        Assert.assertEquals(0, KiWiIO.getPrefixDictionary().getVersion());
+        Assert.assertArrayEquals(plain, writeURI(uri1));
+
+        // unknown dictionaries cannot be decoded
+        KiWiIO.unregisterPrefixDictionary(2);
+        try {
+            readURI(data2);
+            Assert.fail("reading with an unknown dictionary should fail");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Report the reduction of the serialized size of triples using URIs not covered by the built-in prefixes.
+     */
+    @Test
+    public void testPrefixDictionarySize() throws IOException {
+        String[] namespaces = {
+                "http://data.example.com/resource/",
+                "http://vocab.example.com/ontology#",
+                "http://www.wikidata.org/entity/",
+                "http://purl.org/goodrelations/v1#"
+        };
+
+        List<KiWiTriple> triples = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            KiWiUriResource s = createURI(namespaces[0] + RandomStringUtils.randomAlphanumeric(8), 3*i+1);
+            KiWiUriResource p = createURI(namespaces[1 + i % 3] + "property" + (i % 20), 3*i+2);
+            KiWiUriResource o = createURI(namespaces[2] + "Q" + i, 3*i+3);
+            KiWiTriple t = new KiWiTriple(s, p, o, null, new Date());
+            t.setId(i);
+            triples.add(t);
+        }
+
+        long plain = size(triples);
+
+        KiWiIO.registerPrefixDictionary(new PrefixDictionary(1, Arrays.asList(namespaces)), null, true);
+        long compressed = size(triples);
+
+        for(KiWiTriple t : triples) {
+            ByteArrayDataOutput out = ByteStreams.newDataOutput();
+            KiWiIO.writeTriple(out, t);
+            Assert.assertEquals(t, KiWiIO.readTriple(ByteStreams.newDataInput(out.toByteArray())));
+        }
+
+        Assert.assertTrue(compressed < plain);
+        log.info("prefix dictionary: {} bytes without, {} bytes with dictionary ({}% reduction)", plain, compressed, 100 - (100 * compressed / plain));
+    }
+
+    private static long size(List<KiWiTriple> triples) throws IOException {
+        long size = 0;
+        for(KiWiTriple t : triples) {
+            ByteArrayDataOutput out = ByteStreams.newDataOutput();
+            KiWiIO.writeTriple(out, t);
+            size += out.toByteArray().length;
+        }
+        return size;
+    }
+
+    /**
+     * Compare size and time of writing and reading literals and triples in the different encodings.
+     */
+    @Test
+    public void testThroughput() throws IOException {
+        int iterations = 2000;
+
+        KiWiStringLiteral literal = createLiteral(createText(4000));
+
+        KiWiIO.setLiteralCompressLength(Integer.MAX_VALUE);
+        measure("MODE_DEFAULT literal", literal, iterations);
+
+        KiWiIO.setLiteralCompressLength(DEFAULT_COMPRESS_LENGTH);
+        measure("MODE_COMPRESSED literal", literal, iterations);
+
+        KiWiUriResource s = new KiWiUriResource("http://localhost/resource/" + RandomStringUtils.randomAlphanumeric(16), new Date());
+        KiWiUriResource p = new KiWiUriResource("http://localhost/vocabulary/predicate", new Date());
+        KiWiUriResource o = new KiWiUriResource("http://localhost/resource/" + RandomStringUtils.randomAlphanumeric(16), new Date());
+        KiWiStringLiteral l = createLiteral("a literal");
+        s.setId(1);
+        p.setId(2);
+        o.setId(3);
+
+        measure("MODE_PREFIX triple", new KiWiTriple(s, p, o, null, new Date()), iterations);
+        measure("MODE_DEFAULT triple", new KiWiTriple(s, p, l, null, new Date()), iterations);
+    }
+
+    private static void measure(String name, Object value, int iterations) throws IOException {
+        int bytes = 0;
+        long start = System.nanoTime();
+        for(int i = 0; i < iterations; i++) {
+            ByteArrayDataOutput out = ByteStreams.newDataOutput();
+            if(value instanceof KiWiTriple) {
+                KiWiIO.writeTriple(out, (KiWiTriple) value);
+                bytes = out.toByteArray().length;
+                Assert.assertEquals(value, KiWiIO.readTriple(ByteStreams.newDataInput(out.toByteArray())));
+            } else {
+                KiWiIO.writeNode(out, (KiWiNode) value);
+                bytes = out.toByteArray().length;
+                Assert.assertEquals(value, KiWiIO.readNode(ByteStreams.newDataInput(out.toByteArray())));
+            }
+        }
+        long time = System.nanoTime() - start;
+
+        log.info("{}: {} bytes, {} ns/op (write and read)", name, bytes, time / iterations);
+    }
+}
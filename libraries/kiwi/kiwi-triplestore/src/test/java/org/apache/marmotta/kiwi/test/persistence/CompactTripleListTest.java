@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test.persistence;
+
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.persistence.util.CompactTripleList;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Test the compact triple list and compare its memory footprint with a list of KiWiTriple objects.
+ */
+public class CompactTripleListTest {
+
+    private static Logger log = LoggerFactory.getLogger(CompactTripleListTest.class);
+
+    private static final int BENCHMARK_SIZE = 500000;
+
+    @Test
+    public void testAddAndGet() {
+        KiWiUriResource s = createUri(1, "http://localhost/s");
+        KiWiUriResource p = createUri(2, "http://localhost/p");
+        KiWiUriResource o = createUri(3, "http://localhost/o");
+        KiWiUriResource c = createUri(4, "http://localhost/c");
+
+        KiWiTriple t1 = new KiWiTriple(s, p, o, c, new Date(1000));
+        t1.setId(10);
+        t1.setInferred(true);
+
+        KiWiTriple t2 = new KiWiTriple(o, p, s, null, new Date(2000));
+        t2.setId(11);
+        t2.setCreator(s);
+        t2.setDeleted(true);
+        t2.setDeletedAt(new Date(3000));
+
+        CompactTripleList list = new CompactTripleList(1);
+        Assert.assertTrue(list.isEmpty());
+
+        list.add(t1);
+        list.add(t2);
+        Assert.assertEquals(2, list.size());
+
+        Assert.assertEquals(10, list.getId(0));
+        Assert.assertEquals(1, list.getSubjectId(0));
+        Assert.assertEquals(2, list.getPredicateId(0));
+        Assert.assertEquals(3, list.getObjectId(0));
+        Assert.assertEquals(4, list.getContextId(0));
+        Assert.assertEquals(0, list.getCreatorId(0));
+        Assert.assertEquals(1000, list.getCreated(0));
+        Assert.assertEquals(Long.MIN_VALUE, list.getDeletedAt(0));
+        Assert.assertTrue(list.isInferred(0));
+        Assert.assertFalse(list.isDeleted(0));
+
+        Assert.assertEquals(11, list.getId(1));
+        Assert.assertEquals(3, list.getSubjectId(1));
+        Assert.assertEquals(0, list.getContextId(1));
+        Assert.assertEquals(1, list.getCreatorId(1));
+        Assert.assertEquals(3000, list.getDeletedAt(1));
+        Assert.assertFalse(list.isInferred(1));
+        Assert.assertTrue(list.isDeleted(1));
+
+        list.clear();
+        Assert.assertTrue(list.isEmpty());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIndexOutOfBounds() {
+        CompactTripleList list = new CompactTripleList();
+        list.add(1, 1, 2, 3, 0, 0, 0, Long.MIN_VALUE, false, false, false);
+        list.getSubjectId(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPersistentNode() {
+        KiWiUriResource s = createUri(1, "http://localhost/s");
+        KiWiUriResource p = new KiWiUriResource("http://localhost/p");
+
+        new CompactTripleList().add(new KiWiTriple(s, p, s, null));
+    }
+
+    /**
+     * Measure the heap needed for holding a batch of triples as KiWiTriple objects and in a compact triple list.
+     * Nodes are shared by both representations (they live in the node cache), so only the per-triple overhead is
+     * compared.
+     */
+    @Test
+    public void testMemoryFootprint() {
+        KiWiUriResource[] nodes = new KiWiUriResource[1000];
+        for(int i = 0; i < nodes.length; i++) {
+            nodes[i] = createUri(i + 1, "http://localhost/resource/" + i);
+        }
+
+        long before = usedMemory();
+        List<KiWiTriple> objects = new ArrayList<>(BENCHMARK_SIZE);
+        for(int i = 0; i < BENCHMARK_SIZE; i++) {
+            KiWiTriple t = new KiWiTriple(nodes[i % nodes.length], nodes[(i / 7) % nodes.length], nodes[(i / 13) % nodes.length], null);
+            t.setId(i + 1);
+            objects.add(t);
+        }
+        long objectBytes = usedMemory() - before;
+
+        before = usedMemory();
+        CompactTripleList compact = new CompactTripleList(BENCHMARK_SIZE);
+        for(KiWiTriple t : objects) {
+            compact.add(t);
+        }
+        long compactBytes = usedMemory() - before;
+
+        Assert.assertEquals(objects.size(), compact.size());
+
+        log.info("memory footprint of {} triples: KiWiTriple objects {} bytes/triple, compact list {} bytes/triple",
+                BENCHMARK_SIZE, objectBytes / BENCHMARK_SIZE, compactBytes / BENCHMARK_SIZE);
+
+        // the compact list needs 65 bytes per triple; a KiWiTriple with its list entry needs considerably more
+        Assert.assertTrue("compact list uses more memory than expected", compactBytes < BENCHMARK_SIZE * 100L);
+        Assert.assertTrue("compact list is not smaller than KiWiTriple objects", compactBytes < objectBytes);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static KiWiUriResource createUri(long id, String uri) {
+        KiWiUriResource r = new KiWiUriResource(uri);
+        r.setId(id);
+        return r;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test.persistence;
+
+import org.apache.marmotta.kiwi.model.rdf.KiWiNode;
+import org.apache.marmotta.kiwi.model.rdf.KiWiResource;
+import org.apache.marmotta.kiwi.model.rdf.KiWiStringLiteral;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.model.rdf.KiWiUriResource;
+import org.apache.marmotta.kiwi.persistence.util.TripleBuffer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test the index-backed triple buffer used for the triple batch of a KiWiConnection.
+ */
+public class TripleBufferTest {
+
+    private long nextId = 1;
+
+    private List<KiWiUriResource> subjects, predicates, contexts;
+    private List<KiWiNode> objects;
+
+    private List<KiWiTriple> triples;
+
+    private TripleBuffer buffer;
+
+    @Before
+    public void setup() {
+        subjects   = new ArrayList<>();
+        predicates = new ArrayList<>();
+        objects    = new ArrayList<>();
+        contexts   = new ArrayList<>();
+
+        for(int i = 0; i < 8; i++) {
+            subjects.add(createUri("http://localhost/subject/" + i));
+            objects.add(createLiteral("object " + i));
+        }
+        for(int i = 0; i < 4; i++) {
+            predicates.add(createUri("http://localhost/predicate/" + i));
+            contexts.add(createUri("http://localhost/context/" + i));
+        }
+        // subjects can also be objects
+        objects.add(subjects.get(0));
+
+        buffer  = new TripleBuffer();
+        triples = new ArrayList<>();
+        for(KiWiResource s : subjects) {
+            for(KiWiUriResource p : predicates) {
+                for(KiWiNode o : objects) {
+                    for(KiWiResource c : contexts) {
+                        KiWiTriple triple = new KiWiTriple(s, p, o, c);
+                        triples.add(triple);
+                        Assert.assertTrue(buffer.add(triple));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAddRemove() {
+        Assert.assertEquals(triples.size(), buffer.size());
+
+        KiWiTriple first = triples.get(0);
+
+        // a different triple object with the same nodes is considered a duplicate
+        KiWiTriple copy = new KiWiTriple(first.getSubject(), first.getPredicate(), first.getObject(), first.getContext());
+        Assert.assertFalse(buffer.add(copy));
+        Assert.assertEquals(triples.size(), buffer.size());
+
+        Assert.assertTrue(buffer.remove(copy));
+        Assert.assertFalse(buffer.remove(first));
+        Assert.assertEquals(triples.size() - 1, buffer.size());
+        Assert.assertTrue(buffer.listTriples(first.getSubject(), first.getPredicate(), first.getObject(), first.getContext(), false).isEmpty());
+        for(KiWiTriple t : buffer.listTriples(null, first.getPredicate(), null, null, true)) {
+            Assert.assertNotSame(first, t);
+        }
+
+        Assert.assertTrue(buffer.add(first));
+        Assert.assertEquals(triples.size(), buffer.size());
+
+        buffer.clear();
+        Assert.assertEquals(0, buffer.size());
+        Assert.assertFalse(buffer.iterator().hasNext());
+        Assert.assertTrue(buffer.listTriples(first.getSubject(), null, null, null, true).isEmpty());
+    }
+
+    /**
+     * Every combination of bound and unbound positions returns exactly the matching triples.
+     */
+    @Test
+    public void testListTriples() {
+        for(int pattern = 0; pattern < 16; pattern++) {
+            KiWiTriple template = triples.get(pattern * 37 % triples.size());
+
+            KiWiResource    s = (pattern & 1) != 0 ? template.getSubject() : null;
+            KiWiUriResource p = (pattern & 2) != 0 ? template.getPredicate() : null;
+            KiWiNode        o = (pattern & 4) != 0 ? template.getObject() : null;
+            KiWiResource    c = (pattern & 8) != 0 ? template.getContext() : null;
+
+            // triple equality ignores the context, so compare by identity
+            Set<KiWiTriple> expected = Collections.newSetFromMap(new IdentityHashMap<KiWiTriple, Boolean>());
+            for(KiWiTriple t : triples) {
+                if((s == null || t.getSubject() == s) && (p == null || t.getPredicate() == p) && (o == null || t.getObject() == o) && (c == null || t.getContext() == c)) {
+                    expected.add(t);
+                }
+            }
+
+            Set<KiWiTriple> result = Collections.newSetFromMap(new IdentityHashMap<KiWiTriple, Boolean>());
+            result.addAll(buffer.listTriples(s, p, o, c, true));
+            Assert.assertEquals("pattern " + pattern, expected.size(), buffer.listTriples(s, p, o, c, true).size());
+            Assert.assertEquals("pattern " + pattern, expected, result);
+        }
+    }
+
+    /**
+     * A null context only matches triples without context unless it is a wildcard.
+     */
+    @Test
+    public void testNoContext() {
+        KiWiTriple global = new KiWiTriple(subjects.get(1), predicates.get(1), objects.get(1), null);
+        Assert.assertTrue(buffer.add(global));
+
+        Assert.assertEquals(1, buffer.listTriples(null, null, null, null, false).size());
+        Assert.assertEquals(1, buffer.listTriples(subjects.get(1), predicates.get(1), objects.get(1), null, false).size());
+        Assert.assertEquals(contexts.size() + 1, buffer.listTriples(subjects.get(1), predicates.get(1), objects.get(1), null, true).size());
+
+        Assert.assertEquals(contexts.size(), buffer.listContextIDs().size());
+        Assert.assertTrue(buffer.remove(global));
+    }
+
+    @Test
+    public void testListContexts() {
+        Assert.assertEquals(new HashSet<>(contexts), new HashSet<>(buffer.listContextIDs()));
+
+        for(KiWiTriple t : new ArrayList<>(buffer.listTriples(null, null, null, contexts.get(2), false))) {
+            Assert.assertTrue(buffer.remove(t));
+        }
+        Assert.assertEquals(contexts.size() - 1, buffer.listContextIDs().size());
+        Assert.assertFalse(buffer.listContextIDs().contains(contexts.get(2)));
+    }
+
+    /**
+     * Listings can be iterated while another thread modifies the buffer.
+     */
+    @Test
+    public void testConcurrentModification() throws Exception {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (running.get()) {
+                        for(KiWiTriple t : triples) {
+                            buffer.remove(t);
+                            buffer.add(t);
+                        }
+                    }
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        };
+        writer.start();
+
+        try {
+            for(int i = 0; i < 100; i++) {
+                for(KiWiTriple t : buffer.listTriples(null, predicates.get(i % predicates.size()), null, null, true)) {
+                    Assert.assertEquals(predicates.get(i % predicates.size()), t.getPredicate());
+                }
+                for(KiWiTriple t : buffer.listTriples(null, null, objects.get(i % objects.size()), contexts.get(i % contexts.size()), false)) {
+                    Assert.assertEquals(objects.get(i % objects.size()), t.getObject());
+                }
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+
+        Assert.assertNull(error.get());
+        Assert.assertEquals(triples.size(), buffer.size());
+    }
+
+    private KiWiUriResource createUri(String uri) {
+        KiWiUriResource r = new KiWiUriResource(uri);
+        r.setId(nextId++);
+        return r;
+    }
+
+    private KiWiStringLiteral createLiteral(String content) {
+        KiWiStringLiteral l = new KiWiStringLiteral(content);
+        l.setId(nextId++);
+        return l;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.kiwi.test.registry;
+
+import org.apache.marmotta.commons.sesame.tripletable.IntArray;
+import org.apache.marmotta.kiwi.config.KiWiConfiguration;
+import org.apache.marmotta.kiwi.config.RegistryStrategy;
+import org.apache.marmotta.kiwi.model.rdf.KiWiTriple;
+import org.apache.marmotta.kiwi.persistence.KiWiConnection;
+import org.apache.marmotta.kiwi.persistence.registry.LocalTripleRegistry;
+import org.apache.marmotta.kiwi.sail.KiWiStore;
+import org.apache.marmotta.kiwi.sail.KiWiValueFactory;
+import org.apache.marmotta.kiwi.test.junit.KiWiDatabaseRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the in-memory triple registry with many concurrent writers creating statements through the value factory.
+ */
+@RunWith(KiWiDatabaseRunner.class)
+public class LocalTripleRegistryTest {
+
+    private static Logger log = LoggerFactory.getLogger(LocalTripleRegistryTest.class);
+
+    private static final String NS = "http://localhost/registry/";
+
+    private KiWiStore store;
+
+    private KiWiValueFactory valueFactory;
+
+    private final KiWiConfiguration kiwiConfiguration;
+
+    public LocalTripleRegistryTest(KiWiConfiguration kiwiConfiguration) {
+        this.kiwiConfiguration = kiwiConfiguration;
+    }
+
+    @Before
+    public void initDatabase() throws Exception {
+        kiwiConfiguration.setRegistryStrategy(RegistryStrategy.LOCAL);
+
+        store = new KiWiStore(kiwiConfiguration);
+        store.setDropTablesOnShutdown(true);
+        store.initialize();
+
+        valueFactory = (KiWiValueFactory) store.getValueFactory();
+    }
+
+    @After
+    public void dropDatabase() throws Exception {
+        store.shutDown();
+    }
+
+    /**
+     * Create the given number of distinct statement patterns (subject, predicate, object and context); the subjects
+     * start with the given prefix, so statements created with different prefixes differ.
+     */
+    private List<URI[]> createStatements(String prefix, int count) {
+        List<URI[]> statements = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            statements.add(new URI[] {
+                    valueFactory.createURI(NS + prefix + i),
+                    valueFactory.createURI(NS + "p" + (i % 17)),
+                    valueFactory.createURI(NS + "o" + (i % 101)),
+                    valueFactory.createURI(NS + "c" + (i % 5))
+            });
+        }
+        return statements;
+    }
+
+    /**
+     * Run the given number of writer threads, each creating all statements through the value factory in its own
+     * random order and its own transaction, and return the elapsed time in milliseconds. The triple id each writer
+     * got for a statement is recorded in ids; writers getting a different id than another writer count as conflict.
+     */
+    private long runWriters(int threads, final List<URI[]> statements, final ConcurrentMap<Integer,Long> ids,
+                            final AtomicInteger created, final AtomicInteger conflicts) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done  = new CountDownLatch(threads);
+
+        for(int t = 0; t < threads; t++) {
+            final List<Integer> order = new ArrayList<>(statements.size());
+            for(int i = 0; i < statements.size(); i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order);
+
+            new Thread("Registry Writer " + t) {
+                @Override
+                public void run() {
+                    try {
+                        KiWiConnection connection = store.getPersistence().getConnection();
+                        try {
+                            start.await();
+                            for(int i : order) {
+                                URI[] st = statements.get(i);
+                                Statement triple = valueFactory.createStatement(st[0], st[1], st[2], st[3], connection);
+                                if(((KiWiTriple) triple).isNewTriple()) {
+                                    created.incrementAndGet();
+                                }
+
+                                long id = ((KiWiTriple) triple).getId();
+                                Long existing = ids.putIfAbsent(i, id);
+                                if(existing != null && existing != id) {
+                                    conflicts.incrementAndGet();
+                                }
+                            }
+                            connection.rollback();
+                        } finally {
+                            connection.close();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (SQLException e) {
+                        log.error("database error", e);
+                        conflicts.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        return (System.nanoTime() - startTime) / 1000000;
+    }
+
+    @Test
+    public void testRegisterAndRelease() {
+        LocalTripleRegistry registry = new LocalTripleRegistry();
+        IntArray key = new IntArray(new int[] { 1, 2, 3, 4 });
+
+        Assert.assertEquals(-1, registry.lookupKey(key));
+        Assert.assertSame(registry.getLock(key), registry.getLock(new IntArray(new int[]{1, 2, 3, 4})));
+
+        registry.registerKey(key, 1, 42);
+        Assert.assertEquals(42, registry.lookupKey(key));
+
+        registry.releaseTransaction(1);
+        Assert.assertEquals(-1, registry.lookupKey(key));
+
+        registry.registerKey(key, 2, 43);
+        registry.deleteKey(key);
+        Assert.assertEquals(-1, registry.lookupKey(key));
+    }
+
+    /**
+     * Many writers concurrently create the same statements with KiWiValueFactory.createStatement; each statement
+     * must get exactly one triple id, i.e. a writer that finds a statement created by a concurrent writer takes
+     * the existing id, and only one writer creates a new triple.
+     */
+    @Test
+    public void testConcurrentWriters() throws InterruptedException {
+        List<URI[]> statements = createStatements("s", 2000);
+
+        ConcurrentMap<Integer,Long> ids = new ConcurrentHashMap<>();
+        AtomicInteger created   = new AtomicInteger(0);
+        AtomicInteger conflicts = new AtomicInteger(0);
+
+        runWriters(16, statements, ids, created, conflicts);
+
+        Assert.assertEquals(0, conflicts.get());
+        Assert.assertEquals(statements.size(), ids.size());
+        Assert.assertEquals(statements.size(), created.get());
+        Assert.assertEquals(statements.size(), new HashSet<>(ids.values()).size());
+    }
+
+    /**
+     * Measure the throughput of creating statements through the value factory for 1 to 32 writer threads.
+     */
+    @Test
+    public void testThroughput() throws InterruptedException {
+        for(int threads = 1; threads <= 32; threads *= 2) {
+            // registry entries of earlier runs are not released, so each run creates new statements
+            List<URI[]> statements = createStatements("t" + threads + "_", 5000);
+
+            ConcurrentMap<Integer,Long> ids = new ConcurrentHashMap<>();
+            AtomicInteger created   = new AtomicInteger(0);
+            AtomicInteger conflicts = new AtomicInteger(0);
+
+            long time = runWriters(threads, statements, ids, created, conflicts);
+
+            log.info("{} writer threads: {} statements in {} ms ({} per second)",
+                    threads, threads * statements.size(), time,
+                    time > 0 ? threads * statements.size() * 1000L / time : "-");
+
+            Assert.assertEquals(0, conflicts.get());
+            Assert.assertEquals(statements.size(), created.get());
+        }
+    }
+}
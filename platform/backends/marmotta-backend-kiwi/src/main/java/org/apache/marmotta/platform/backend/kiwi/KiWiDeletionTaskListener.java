@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.backend.kiwi;
+
+import org.apache.marmotta.kiwi.model.rdf.KiWiResource;
+import org.apache.marmotta.kiwi.persistence.DeletionListener;
+import org.apache.marmotta.platform.core.api.task.Task;
+import org.apache.marmotta.platform.core.api.task.TaskManagerService;
+
+/**
+ * Reports the progress of bulk deletions of contexts or the whole repository in the KiWi triple store as a task
+ * of the deleting thread in the task manager.
+ */
+public class KiWiDeletionTaskListener implements DeletionListener {
+
+    private TaskManagerService taskManagerService;
+
+    // the task of the deletion running in the current thread
+    private ThreadLocal<Task> tasks = new ThreadLocal<>();
+
+    public KiWiDeletionTaskListener(TaskManagerService taskManagerService) {
+        this.taskManagerService = taskManagerService;
+    }
+
+    @Override
+    public void deletionStarted(KiWiResource context, long total) {
+        Task task = taskManagerService.createSubTask(context != null ? "Deleting Context " + context.stringValue() : "Deleting Repository", "Triple Store");
+        task.updateMessage("marking triples as deleted");
+        task.updateTotalSteps(total);
+        tasks.set(task);
+    }
+
+    @Override
+    public void deletionProgress(KiWiResource context, long deleted) {
+        Task task = tasks.get();
+        if(task != null) {
+            task.updateProgress(deleted);
+        }
+    }
+
+    @Override
+    public void deletionFinished(KiWiResource context, long deleted) {
+        Task task = tasks.get();
+        if(task != null) {
+            tasks.remove();
+            taskManagerService.endTask(task);
+        }
+    }
+}
@@ -25,8 +25,10 @@ package org.apache.marmotta.platform.backend.kiwi;
 public class KiWiOptions {
     public static final String SPARQL_STRATEGY    = "sparql.strategy";
     public static final String DATACENTER_ID      = "database.datacenter.id";
+    public static final String ID_GENERATOR       = "database.generator";
     public static final String FULLTEXT_ENABLED   = "database.fulltext.enabled";
     public static final String FULLTEXT_LANGUAGES = "database.fulltext.languages";
+    public static final String OBJECT_INDEXES     = "database.index.object";
     public static final String DEBUG_SLOWQUERIES = "database.debug.slowqueries";
     public static final String CLUSTERING_ENABLED = "clustering.enabled";
     public static final String CACHING_LITERAL_SIZE = "caching.literal.size";
@@ -44,8 +46,21 @@ public class KiWiOptions {
     public static final String DATABASE_USER = "database.user";
     public static final String DATABASE_PASSWORD = "database.password";
 
+    public static final String REPLICA_URL = "database.replica.url";
+    public static final String REPLICA_USER = "database.replica.user";
+    public static final String REPLICA_PASSWORD = "database.replica.password";
+    public static final String REPLICA_MAXLAG = "database.replica.maxlag";
+
     public static final String TRIPLES_BATCHCOMMIT = "database.triples.batchcommit";
     public static final String TRIPLES_BATCHSIZE = "database.triples.batchsize";
+    public static final String TRIPLES_COPYTHRESHOLD = "database.triples.copythreshold";
+    public static final String GC_CHUNKSIZE = "database.gc.chunksize";
+    public static final String GC_RATE = "database.gc.rate";
+    public static final String STATISTICS_INTERVAL = "database.statistics.interval";
+    public static final String STATISTICS_SAMPLE = "database.statistics.sample";
+    public static final String STATISTICS_FULLSCAN = "database.statistics.fullscan";
     public static final String CLUSTERING_BACKEND = "clustering.backend";
     public static final String CLUSTERING_MODE = "clustering.mode";
+    public static final String CLUSTERING_WRITEMODE = "clustering.writemode";
+    public static final String CLUSTERING_WRITEBEHIND_INTERVAL = "clustering.writebehind.interval";
 }
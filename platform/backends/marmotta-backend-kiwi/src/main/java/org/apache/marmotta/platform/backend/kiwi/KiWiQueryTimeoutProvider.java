@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.marmotta.platform.backend.kiwi;
+
+import org.apache.marmotta.kiwi.sail.KiWiSailConnection;
+import org.apache.marmotta.platform.core.api.triplestore.QueryTimeoutProvider;
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.SailException;
+
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Sets the time limit of native SPARQL queries on KiWi connections, so that the database cancels queries running
+ * longer than the limit.
+ */
+@ApplicationScoped
+public class KiWiQueryTimeoutProvider implements QueryTimeoutProvider {
+
+    /**
+     * Set the query timeout of the KiWi connection wrapped by the sail connection given as argument.
+     *
+     * @param connection   the (possibly wrapped) sail connection
+     * @param queryTimeout the maximum time in seconds, 0 for no limit
+     */
+    @Override
+    public void setQueryTimeout(SailConnection connection, int queryTimeout) throws SailException {
+        KiWiSailConnection root = KiWiReadOnlyConnectionProvider.getRootConnection(connection);
+        if(root != null) {
+            root.setQueryTimeout(queryTimeout);
+        }
+    }
+}
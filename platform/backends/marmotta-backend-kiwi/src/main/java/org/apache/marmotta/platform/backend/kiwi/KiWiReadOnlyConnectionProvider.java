@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.platform.backend.kiwi;
+
+import org.apache.marmotta.kiwi.sail.KiWiSailConnection;
+import org.apache.marmotta.platform.core.api.triplestore.ReadOnlyConnectionProvider;
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.SailException;
+import org.openrdf.sail.helpers.SailConnectionWrapper;
+
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Makes KiWi connections read-only, so that they are served from the read replica of the database in case one is
+ * configured (subject to the configured replication lag check).
+ */
+@ApplicationScoped
+public class KiWiReadOnlyConnectionProvider implements ReadOnlyConnectionProvider {
+
+    /**
+     * Make the KiWi connection wrapped by the sail connection given as argument read-only.
+     *
+     * @param connection the (possibly wrapped) sail connection
+     */
+    @Override
+    public void setReadOnly(SailConnection connection) throws SailException {
+        KiWiSailConnection root = getRootConnection(connection);
+        if(root != null) {
+            root.setReadOnly(true);
+        }
+    }
+
+    static KiWiSailConnection getRootConnection(SailConnection connection) {
+        if(connection instanceof KiWiSailConnection) {
+            return (KiWiSailConnection) connection;
+        } else if(connection instanceof SailConnectionWrapper) {
+            return getRootConnection(((SailConnectionWrapper) connection).getWrappedConnection());
+        } else {
+            return null;
+        }
+    }
+}
@@ -17,11 +17,14 @@
 package org.apache.marmotta.platform.backend.kiwi;
 
 import com.google.common.collect.ImmutableList;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.marmotta.kiwi.config.CacheMode;
+import org.apache.marmotta.kiwi.config.CacheWriteMode;
 import org.apache.marmotta.kiwi.config.CachingBackends;
 import org.apache.marmotta.kiwi.config.KiWiConfiguration;
 import org.apache.marmotta.kiwi.config.RegistryStrategy;
 import org.apache.marmotta.kiwi.exception.DriverNotFoundException;
+import org.apache.marmotta.kiwi.generator.IDGeneratorType;
 import org.apache.marmotta.kiwi.persistence.KiWiDialect;
 import org.apache.marmotta.kiwi.persistence.h2.H2Dialect;
 import org.apache.marmotta.kiwi.persistence.mysql.MySQLDialect;
@@ -29,6 +32,7 @@ import org.apache.marmotta.kiwi.persistence.pgsql.PostgreSQLDialect;
 import org.apache.marmotta.kiwi.sail.KiWiStore;
 import org.apache.marmotta.kiwi.sparql.sail.KiWiSparqlSail;
 import org.apache.marmotta.platform.core.api.config.ConfigurationService;
+import org.apache.marmotta.platform.core.api.task.TaskManagerService;
 import org.apache.marmotta.platform.core.api.triplestore.SesameService;
 import org.apache.marmotta.platform.core.api.triplestore.StoreProvider;
 import org.apache.marmotta.platform.core.events.ConfigurationChangedEvent;
@@ -52,8 +56,17 @@ import javax.inject.Inject;
  *     <li>database.batchcommit: commit triples in batches instead of individual inserts - faster but no recovery if
  *         system stops during transaction</li>
  *     <li>database.batchsize: how many triples to keep in one batch (default 10000)</li>
- *     <li>database.generator: which strategy to use for generating database ids (options are "snowflake", "database",
- *         "memory", "uuid-time", and "uuid-random", "snowflake" is very fast and reliable and therefore preferred)</li>
+ *     <li>database.triples.copythreshold: minimum batch size for writing a batch with COPY instead of INSERTs; only
+ *         used by PostgreSQL (default 5000, 0 = disabled)</li>
+ *     <li>database.replica.url, database.replica.user, database.replica.password: JDBC URL and credentials of a
+ *         read replica serving read-only connections (default: no replica, user and password of the primary)</li>
+ *     <li>database.replica.maxlag: maximum replication lag in milliseconds before read-only connections fall back to
+ *         the primary database (default 10000)</li>
+ *     <li>database.gc.chunksize: how many rows the garbage collector examines in one chunk (default 1000)</li>
+ *     <li>database.gc.rate: how many rows per second the garbage collector may examine (default 10000, 0 = no limit)</li>
+ *     <li>database.generator: which strategy to use for generating database ids (options are "SNOWFLAKE",
+ *         "SNOWFLAKE_BLOCK", "UUID_TIME", and "UUID_RANDOM", "SNOWFLAKE" is very fast and reliable and therefore
+ *         preferred, "SNOWFLAKE_BLOCK" avoids lock contention with many concurrent writers)</li>
  * </ul>
  *
  * @author Sebastian Schaffert (sschaffert@apache.org)
@@ -70,6 +83,9 @@ public class KiWiStoreProvider implements StoreProvider {
     @Inject
     private SesameService sesameService;
 
+    @Inject
+    private TaskManagerService taskManagerService;
+
 
     /**
      * Create the store provided by this SailProvider
@@ -101,13 +117,25 @@ public class KiWiStoreProvider implements StoreProvider {
         String dbPass  = configurationService.getStringConfiguration(KiWiOptions.DATABASE_PASSWORD);
 
         KiWiConfiguration configuration = new KiWiConfiguration(configurationService.getStringConfiguration(KiWiOptions.CLUSTERING_NAME, "Marmotta") + " KiWi", jdbcUrl, dbUser, dbPass, dialect, configurationService.getDefaultContext(), configurationService.getInferredContext());
+        configuration.setReplicaJdbcUrl(configurationService.getStringConfiguration(KiWiOptions.REPLICA_URL));
+        configuration.setReplicaDbUser(StringUtils.defaultIfBlank(configurationService.getStringConfiguration(KiWiOptions.REPLICA_USER), null));
+        configuration.setReplicaDbPassword(StringUtils.defaultIfBlank(configurationService.getStringConfiguration(KiWiOptions.REPLICA_PASSWORD), null));
+        configuration.setReplicaMaxLag(configurationService.getIntConfiguration(KiWiOptions.REPLICA_MAXLAG, 10000));
         configuration.setQueryLoggingEnabled(configurationService.getBooleanConfiguration(KiWiOptions.DEBUG_SLOWQUERIES, false));
         configuration.setTripleBatchCommit(configurationService.getBooleanConfiguration(KiWiOptions.TRIPLES_BATCHCOMMIT, true));
         configuration.setTripleBatchSize(configurationService.getIntConfiguration(KiWiOptions.TRIPLES_BATCHSIZE, 10000));
+        configuration.setTripleCopyThreshold(configurationService.getIntConfiguration(KiWiOptions.TRIPLES_COPYTHRESHOLD, 5000));
+        configuration.setGarbageCollectionChunkSize(configurationService.getIntConfiguration(KiWiOptions.GC_CHUNKSIZE, 1000));
+        configuration.setGarbageCollectionRate(configurationService.getIntConfiguration(KiWiOptions.GC_RATE, 10000));
+        configuration.setStatisticsRefreshInterval(configurationService.getIntConfiguration(KiWiOptions.STATISTICS_INTERVAL, 3600));
+        configuration.setStatisticsSamplePercent(configurationService.getDoubleConfiguration(KiWiOptions.STATISTICS_SAMPLE, 5.0));
+        configuration.setStatisticsFullScanEnabled(configurationService.getBooleanConfiguration(KiWiOptions.STATISTICS_FULLSCAN, false));
 
         configuration.setDatacenterId(configurationService.getIntConfiguration(KiWiOptions.DATACENTER_ID,0));
+        configuration.setIdGeneratorType(IDGeneratorType.valueOf(configurationService.getStringConfiguration(KiWiOptions.ID_GENERATOR, "SNOWFLAKE")));
         configuration.setFulltextEnabled(configurationService.getBooleanConfiguration(KiWiOptions.FULLTEXT_ENABLED, true));
         configuration.setFulltextLanguages(configurationService.getListConfiguration(KiWiOptions.FULLTEXT_LANGUAGES, ImmutableList.of("en")));
+        configuration.setObjectIndexesEnabled(configurationService.getBooleanConfiguration(KiWiOptions.OBJECT_INDEXES, false));
 
         configuration.setClustered(configurationService.getBooleanConfiguration(KiWiOptions.CLUSTERING_ENABLED, false));
         configuration.setClusterName(configurationService.getStringConfiguration(KiWiOptions.CLUSTERING_NAME, "Marmotta"));
@@ -122,6 +150,8 @@ public class KiWiStoreProvider implements StoreProvider {
 
         configuration.setCachingBackend(CachingBackends.valueOf(configurationService.getStringConfiguration(KiWiOptions.CLUSTERING_BACKEND, "GUAVA")));
         configuration.setCacheMode(CacheMode.valueOf(configurationService.getStringConfiguration(KiWiOptions.CLUSTERING_MODE,"LOCAL")));
+        configuration.setCacheWriteMode(CacheWriteMode.valueOf(configurationService.getStringConfiguration(KiWiOptions.CLUSTERING_WRITEMODE, "ASYNC")));
+        configuration.setCacheWriteBehindInterval(configurationService.getIntConfiguration(KiWiOptions.CLUSTERING_WRITEBEHIND_INTERVAL, 100));
 
         if(configuration.isClustered()) {
             configuration.setRegistryStrategy(RegistryStrategy.CACHE);
@@ -129,7 +159,10 @@ public class KiWiStoreProvider implements StoreProvider {
             configuration.setRegistryStrategy(RegistryStrategy.LOCAL);
         }
 
-        NotifyingSail base = new KiWiStore(configuration);
+        KiWiStore store = new KiWiStore(configuration);
+        store.getPersistence().addDeletionListener(new KiWiDeletionTaskListener(taskManagerService));
+
+        NotifyingSail base = store;
 
 
         if("native".equalsIgnoreCase(configurationService.getStringConfiguration(KiWiOptions.SPARQL_STRATEGY))) {
@@ -180,6 +213,7 @@ public class KiWiStoreProvider implements StoreProvider {
                 e.containsChangedKey(KiWiOptions.CONTEXTS_INFERRED) ||
                 e.containsChangedKey(KiWiOptions.FULLTEXT_ENABLED) ||
                 e.containsChangedKey(KiWiOptions.FULLTEXT_LANGUAGES) ||
+                e.containsChangedKey(KiWiOptions.OBJECT_INDEXES) ||
                 e.containsChangedKey(KiWiOptions.DEBUG_SLOWQUERIES) ||
                 e.containsChangedKey(KiWiOptions.CLUSTERING_ENABLED) ||
                 e.containsChangedKey(KiWiOptions.CACHING_LITERAL_SIZE) ||
@@ -190,7 +224,13 @@ public class KiWiStoreProvider implements StoreProvider {
                 e.containsChangedKey(KiWiOptions.CLUSTERING_BACKEND) ||
                 e.containsChangedKey(KiWiOptions.CLUSTERING_ADDRESS) ||
                 e.containsChangedKey(KiWiOptions.CLUSTERING_PORT) ||
-                e.containsChangedKey(KiWiOptions.CLUSTERING_MODE)
+                e.containsChangedKey(KiWiOptions.CLUSTERING_MODE) ||
+                e.containsChangedKey(KiWiOptions.CLUSTERING_WRITEMODE) ||
+                e.containsChangedKey(KiWiOptions.CLUSTERING_WRITEBEHIND_INTERVAL) ||
+                e.containsChangedKey(KiWiOptions.REPLICA_URL) ||
+                e.containsChangedKey(KiWiOptions.REPLICA_USER) ||
+                e.containsChangedKey(KiWiOptions.REPLICA_PASSWORD) ||
+                e.containsChangedKey(KiWiOptions.REPLICA_MAXLAG)
                 ) {
             log.info("KiWi backend configuration changed, re-initialising triple store");
 
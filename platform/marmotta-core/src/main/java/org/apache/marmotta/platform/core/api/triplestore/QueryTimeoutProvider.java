@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.platform.core.api.triplestore;
+
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.SailException;
+
+/**
+ * This interface can be implemented by services in the backend in case the underlying triple store can limit the
+ * time a query runs in the database, e.g. for queries sent by clients to the SPARQL endpoint.
+ */
+public interface QueryTimeoutProvider {
+
+    /**
+     * Limit the time queries of the sail connection given as argument may run. Called before the connection is used
+     * for the first time. Connections of triple stores not handled by this provider must be left unchanged.
+     *
+     * @param connection   the (possibly wrapped) sail connection
+     * @param queryTimeout the maximum time in seconds, 0 for no limit
+     */
+    void setQueryTimeout(SailConnection connection, int queryTimeout) throws SailException;
+}
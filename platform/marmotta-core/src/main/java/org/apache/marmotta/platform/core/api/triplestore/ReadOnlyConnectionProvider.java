@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.marmotta.platform.core.api.triplestore;
+
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.SailException;
+
+/**
+ * This interface can be implemented by services in the backend in case the underlying triple store can serve
+ * read-only connections differently from writable ones, e.g. from a read replica of the database.
+ */
+public interface ReadOnlyConnectionProvider {
+
+    /**
+     * Make the sail connection given as argument read-only. Called before the connection is used for the first time.
+     * Connections of triple stores not handled by this provider must be left unchanged.
+     *
+     * @param connection the (possibly wrapped) sail connection
+     */
+    void setReadOnly(SailConnection connection) throws SailException;
+}
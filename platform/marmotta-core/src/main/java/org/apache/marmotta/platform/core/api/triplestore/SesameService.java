@@ -77,6 +77,24 @@ public interface SesameService {
      */
     RepositoryConnection getConnection() throws RepositoryException;
 
+    /**
+     * Return a read-only Sesame RepositoryConnection to the underlying repository. Backends may serve such
+     * connections from a read replica of the database; all modifications through the connection fail.
+     *
+     * @return a read-only RepositoryConnection to the underlying Sesame repository.
+     */
+    RepositoryConnection getReadOnlyConnection() throws RepositoryException;
+
+    /**
+     * Return a read-only Sesame RepositoryConnection to the underlying repository for answering queries sent by
+     * clients. Backends supporting it let the database cancel queries of the connection that run longer than the
+     * given time limit; other connections, e.g. those used internally, are not limited.
+     *
+     * @param queryTimeout maximum time in seconds a query may run in the database, 0 for no limit
+     * @return a read-only RepositoryConnection to the underlying Sesame repository.
+     */
+    RepositoryConnection getReadOnlyConnection(int queryTimeout) throws RepositoryException;
+
     /**
      * Return a Sesame ValueFactory for creating new RDF objects.
      *
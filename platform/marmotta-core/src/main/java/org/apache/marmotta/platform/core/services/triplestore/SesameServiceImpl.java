@@ -34,6 +34,7 @@ import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.repository.base.RepositoryConnectionWrapper;
 import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.repository.sail.SailRepositoryConnection;
 import org.openrdf.sail.NotifyingSail;
 import org.openrdf.sail.Sail;
 import org.openrdf.sail.SailException;
@@ -120,6 +121,18 @@ public class SesameServiceImpl implements SesameService {
     @Inject
     private Instance<GarbageCollectionProvider> garbageCollectionProviders;
 
+    /**
+     * read-only connection support for backends that provide it
+     */
+    @Inject
+    private Instance<ReadOnlyConnectionProvider> readOnlyConnectionProviders;
+
+    /**
+     * query time limits for backends that support them
+     */
+    @Inject
+    private Instance<QueryTimeoutProvider> queryTimeoutProviders;
+
     private NotifyingSail store;
 
     private SailRepository repository;
@@ -311,6 +324,51 @@ public class SesameServiceImpl implements SesameService {
         };
     }
 
+    /**
+     * Return a read-only Sesame RepositoryConnection to the underlying repository. Backends may serve such
+     * connections from a read replica of the database; all modifications through the connection fail.
+     *
+     * @return a read-only RepositoryConnection to the underlying Sesame repository.
+     */
+    @Override
+    public RepositoryConnection getReadOnlyConnection() throws RepositoryException {
+        return getReadOnlyConnection(-1);
+    }
+
+    /**
+     * Return a read-only Sesame RepositoryConnection whose queries are cancelled by the database after the given time
+     * limit. A negative limit keeps the default of the backend.
+     */
+    @Override
+    public RepositoryConnection getReadOnlyConnection(int queryTimeout) throws RepositoryException {
+        restartLock.readLock().lock();
+        SailRepositoryConnection connection = repository.getConnection();
+        try {
+            for(ReadOnlyConnectionProvider p : readOnlyConnectionProviders) {
+                p.setReadOnly(connection.getSailConnection());
+            }
+            if(queryTimeout >= 0) {
+                for(QueryTimeoutProvider p : queryTimeoutProviders) {
+                    p.setQueryTimeout(connection.getSailConnection(), queryTimeout);
+                }
+            }
+        } catch (SailException | RuntimeException e) {
+            try {
+                connection.close();
+            } finally {
+                restartLock.readLock().unlock();
+            }
+            throw new RepositoryException("could not create read-only connection", e);
+        }
+        return new RepositoryConnectionWrapper(repository,connection) {
+            @Override
+            public void close() throws RepositoryException {
+                super.close();
+                restartLock.readLock().unlock();
+            }
+        };
+    }
+
     /**
      * Return a Sesame ValueFactory for creating new RDF objects.
      *
@@ -89,7 +89,7 @@ public class LDPathServiceImpl implements LDPathService {
             config.addFunction(((AutoRegisteredLDPathFunction) function).getLocalName(), function);
         } else {
             try {
-                RepositoryConnection conn = sesameService.getConnection();
+                RepositoryConnection conn = sesameService.getReadOnlyConnection();
                 try {
                     conn.begin();
                     SesameConnectionBackend backend = SesameConnectionBackend.withConnection(conn);
@@ -145,7 +145,7 @@ public class LDPathServiceImpl implements LDPathService {
     @Override
     public Collection<Value> pathQuery(Value context, String path, Map<String, String> namespaces) throws LDPathParseException {
         try {
-            RepositoryConnection conn = sesameService.getConnection();
+            RepositoryConnection conn = sesameService.getReadOnlyConnection();
             try {
                 conn.begin();
                 SesameConnectionBackend backend = SesameConnectionBackend.withConnection(conn);
@@ -174,7 +174,7 @@ public class LDPathServiceImpl implements LDPathService {
     @Override
     public Map<String, Collection<?>> programQuery(Value context, String program) throws LDPathParseException {
         try {
-            RepositoryConnection conn = sesameService.getConnection();
+            RepositoryConnection conn = sesameService.getReadOnlyConnection();
             try {
                 conn.begin();
                 SesameConnectionBackend backend = SesameConnectionBackend.withConnection(conn);
@@ -204,7 +204,7 @@ public class LDPathServiceImpl implements LDPathService {
     public Map<Value, Map<String, Collection<?>>> programQuery(String program) throws LDPathParseException {
         Map<Value,  Map<String, Collection<?>>> result = new HashMap<>();
         try {
-            RepositoryConnection conn = sesameService.getConnection();
+            RepositoryConnection conn = sesameService.getReadOnlyConnection();
             try {
                 conn.begin();
                 SesameConnectionBackend backend = SesameConnectionBackend.withConnection(conn);
@@ -93,7 +93,7 @@ public class LDPathWebService {
         //Preconditions.checkArgument(urlValidator.isValid(resourceUri));
 
         try {
-            RepositoryConnection con = sesameService.getConnection();
+            RepositoryConnection con = sesameService.getReadOnlyConnection();
             try {
                 con.begin();
                 if (ResourceUtils.isSubject(con, resourceUri)) {
@@ -157,7 +157,7 @@ public class LDPathWebService {
         }
 
         try {
-            RepositoryConnection con = sesameService.getConnection();
+            RepositoryConnection con = sesameService.getReadOnlyConnection();
             try {
                 con.begin();
                 if (ResourceUtils.isSubject(con, resourceUri)) {
@@ -239,7 +239,7 @@ public class LDPathWebService {
         List<Map<String,String>> results = new ArrayList<Map<String, String>>();
 
         try {
-            RepositoryConnection con = sesameService.getConnection();
+            RepositoryConnection con = sesameService.getReadOnlyConnection();
             try {
                 con.begin();
                 SesameConnectionBackend backend = SesameConnectionBackend.withConnection(con);
@@ -281,7 +281,7 @@ public class LDPathWebService {
     @Produces("application/json")
     public Response getFunction(@PathParam("name") String name) {
         try {
-            RepositoryConnection con = sesameService.getConnection();
+            RepositoryConnection con = sesameService.getReadOnlyConnection();
             try {
                 con.begin();
                 SesameConnectionBackend backend = SesameConnectionBackend.withConnection(con);
@@ -338,7 +338,7 @@ public class LDPathWebService {
 
             // 2. auto-register all namespaces that are defined in the triple store
             Map<String,String> namespaces = new HashMap<String, String>();
-            RepositoryConnection con = sesameService.getConnection();
+            RepositoryConnection con = sesameService.getReadOnlyConnection();
             try {
                 con.begin();
                 for(Namespace ns : iterable(con.getNamespaces())) {
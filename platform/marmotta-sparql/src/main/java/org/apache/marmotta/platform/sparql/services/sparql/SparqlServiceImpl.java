@@ -143,7 +143,7 @@ public class SparqlServiceImpl implements SparqlService {
 
     @Override
     @Deprecated
-    public void query(final QueryLanguage queryLanguage, final String query, final TupleQueryResultWriter tupleWriter, final BooleanQueryResultWriter booleanWriter, final SPARQLGraphResultWriter graphWriter, int timeoutInSeconds) throws MarmottaException, MalformedQueryException, QueryEvaluationException, TimeoutException {
+    public void query(final QueryLanguage queryLanguage, final String query, final TupleQueryResultWriter tupleWriter, final BooleanQueryResultWriter booleanWriter, final SPARQLGraphResultWriter graphWriter, final int timeoutInSeconds) throws MarmottaException, MalformedQueryException, QueryEvaluationException, TimeoutException {
 
         log.debug("executing SPARQL query:\n{}", query);
 
@@ -152,10 +152,12 @@ public class SparqlServiceImpl implements SparqlService {
             public Boolean call() throws Exception {
                 long start = System.currentTimeMillis();
                 try {
-                    RepositoryConnection connection = sesameService.getConnection();
+                    RepositoryConnection connection = sesameService.getReadOnlyConnection(timeoutInSeconds);
                     try {
                         connection.begin();
                         Query sparqlQuery = connection.prepareQuery(queryLanguage, query, configurationService.getBaseUri());
+                        // let the store cancel the query itself instead of only abandoning the worker thread
+                        sparqlQuery.setMaxQueryTime(timeoutInSeconds);
 
                         if (sparqlQuery instanceof TupleQuery) {
                             query((TupleQuery) sparqlQuery, tupleWriter);
@@ -217,10 +219,11 @@ public class SparqlServiceImpl implements SparqlService {
             public Boolean call() throws Exception {
                 long start = System.currentTimeMillis();
                 try {
-                    RepositoryConnection connection = sesameService.getConnection();
+                    RepositoryConnection connection = sesameService.getReadOnlyConnection(timeoutInSeconds);
                     try {
                         connection.begin();
                         Query sparqlQuery = connection.prepareQuery(queryLanguage, query, configurationService.getBaseUri());
+                        sparqlQuery.setMaxQueryTime(timeoutInSeconds);
 
                         if (sparqlQuery instanceof TupleQuery) {
                             query((TupleQuery) sparqlQuery, (TupleQueryResultWriter)writer);
@@ -274,17 +277,18 @@ public class SparqlServiceImpl implements SparqlService {
     }
 
     @Override
-    public void query(final QueryLanguage language, final String query, final OutputStream output, final String format, int timeoutInSeconds) throws MarmottaException, TimeoutException, MalformedQueryException {
+    public void query(final QueryLanguage language, final String query, final OutputStream output, final String format, final int timeoutInSeconds) throws MarmottaException, TimeoutException, MalformedQueryException {
         log.debug("executing SPARQL query:\n{}", query);
         Future<Boolean> future = executorService.submit(new Callable<Boolean>() {
             @Override
             public Boolean call() throws Exception {
                 long start = System.currentTimeMillis();
                 try {
-                    RepositoryConnection connection = sesameService.getConnection();
+                    RepositoryConnection connection = sesameService.getReadOnlyConnection(timeoutInSeconds);
                     try {
                         connection.begin();
                         Query sparqlQuery = connection.prepareQuery(language, query, configurationService.getBaseUri());
+                        sparqlQuery.setMaxQueryTime(timeoutInSeconds);
 
                         if (sparqlQuery instanceof TupleQuery) {
                             query((TupleQuery)sparqlQuery, output, format);
@@ -395,7 +399,7 @@ public class SparqlServiceImpl implements SparqlService {
         List<Map<String,Value>> result = new LinkedList<>();
 
         try {
-            RepositoryConnection connection = sesameService.getConnection();
+            RepositoryConnection connection = sesameService.getReadOnlyConnection();
             try {
                 connection.begin();
                 TupleQuery tupleQuery = connection.prepareTupleQuery(queryLanguage, query);
@@ -478,7 +482,7 @@ public class SparqlServiceImpl implements SparqlService {
 
         boolean result = false;
         try {
-            RepositoryConnection connection = sesameService.getConnection();
+            RepositoryConnection connection = sesameService.getReadOnlyConnection();
             try {
                 connection.begin();
                 BooleanQuery ask = connection.prepareBooleanQuery(queryLanguage, query, configurationService.getBaseUri());
@@ -536,7 +540,7 @@ public class SparqlServiceImpl implements SparqlService {
             writer.handleStatement(vf.createStatement(sd, SPARQL_SD.defaultDataset, dataset));
             writer.handleStatement(vf.createStatement(dataset, RDF.TYPE, SPARQL_SD.Dataset));
 
-            final RepositoryConnection kiwiCon = sesameService.getConnection();
+            final RepositoryConnection kiwiCon = sesameService.getReadOnlyConnection();
             try {
                 kiwiCon.begin();
                 // FIXME: Default graph, in KiWi this is all - is it not?